@@ -14,6 +14,7 @@
  *
  * Who   Date       Description
  * ====  =========  =================================================
+ * AG    17Oct2026  Read files through MappedFileRandomAccessInputStream
  * WY    22Jan2015  Revised read(InputStream) to leave the stream open
  * WY    08Jan2015  Added getReader(PushbackInputStream)
  * WY    22Sep2014  Added read() to detect image type and read image
@@ -24,13 +25,13 @@ package com.icafe4j.image;
 
 import java.awt.image.BufferedImage;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import com.icafe4j.image.reader.ImageReader;
 import com.icafe4j.image.util.IMGUtils;
 import com.icafe4j.image.writer.ImageWriter;
+import com.icafe4j.io.MappedFileRandomAccessInputStream;
 import com.icafe4j.io.PeekHeadInputStream;
 import com.icafe4j.io.RandomAccessInputStream;
 
@@ -92,17 +93,21 @@ public final class ImageIO {
 	}
 	
 	/**
+	 * The file is memory mapped, so image types needing random access
+	 * such as TIFF are read in place instead of through a cache file.
+	 * 
 	 * @param file input image File
 	 * @return BufferedImage
 	 * @throws Exception
 	 */
 	public static BufferedImage read(File file) throws Exception {
-		FileInputStream fin = new FileInputStream(file);
-		BufferedImage bi = read(fin);
-		// Release resources
-		fin.close();
-		
-		return bi;
+		RandomAccessInputStream randIS = new MappedFileRandomAccessInputStream(file);
+		try {
+			return read(randIS);
+		} finally {
+			// Release resources
+			randIS.close();
+		}
 	}
 	
 	/**
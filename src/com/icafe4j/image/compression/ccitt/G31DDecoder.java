@@ -5,178 +5,223 @@
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
  * http://www.eclipse.org/legal/epl-v10.html
- * 
+ *
  * Any modifications to this file must keep this entire header intact.
+ *
+ * Change History - most recent changes go on top of previous changes
+ *
+ * G31DDecoder.java
+ *
+ * Who   Date       Description
+ * ====  =========  =================================================
+ * AG    17Oct2026  Decode run lengths with lookup tables
  */
 
 package com.icafe4j.image.compression.ccitt;
 
+import java.util.Arrays;
+
 import com.icafe4j.image.compression.ImageDecoder;
-import com.icafe4j.image.compression.huffman.T4BlackCodeHuffmanTreeNode;
-import com.icafe4j.image.compression.huffman.T4CodeHuffmanTreeNode;
-import com.icafe4j.image.compression.huffman.T4WhiteCodeHuffmanTreeNode;
 
+/**
+ * CCITT modified Huffman run length decoding (TIFF compression 2). Each scan line
+ * is one dimensional coded and starts on a byte boundary.
+ * <p>
+ * Run lengths are looked up in tables indexed by the next 13 bits of the input
+ * instead of walking the Huffman tree one bit at a time. The tables, the bit
+ * reading and the scan line output are shared with {@link G32DDecoder} and
+ * {@link G42DDecoder}.
+ * <p>
+ * Decoded scan lines are packed one bit per pixel, padded to a byte boundary,
+ * with white as 0 and black as 1.
+ *
+ * @author Wen Yu, yuwen_66@yahoo.com
+ * @version 1.0 12/20/2013
+ */
 public class G31DDecoder implements ImageDecoder {
-	
-	private int empty_bits = 8;
-	private int lineOffset = 0;
-	
+	// The longest white or black code is 13 bits long
+	private static final int TABLE_BITS = 13;
+	// Entries are run length << 4 | code length, 0 for the EOL and invalid codes
+	private static final int[] WHITE_TABLE = createTable(T4WhiteCode.values());
+	private static final int[] BLACK_TABLE = createTable(T4BlackCode.values());
+
 	public G31DDecoder(int scanLineWidth, int rowsPerStrip) {
 		this.scanLineWidth = scanLineWidth;
 		this.rowsPerStrip = rowsPerStrip;
+		this.bytesPerLine = (scanLineWidth + 7)>>3;
+		// A scan line has at most scanLineWidth + 1 changing elements
+		this.refChanges = new int[scanLineWidth + 1];
+		this.curChanges = new int[scanLineWidth + 1];
 	}
-	
+
 	public G31DDecoder(byte[] input, int scanLineWidth, int rowsPerStrip) {
-		this.input = input;
-		this.scanLineWidth = scanLineWidth;
-		this.rowsPerStrip = rowsPerStrip;
-		reset(0, input.length, 7);
+		this(scanLineWidth, rowsPerStrip);
+		setInput(input);
+	}
+
+	private static int[] createTable(T4Code[] codes) {
+		int[] table = new int[1<<TABLE_BITS];
+		for(T4Code code : codes) {
+			int runLen = code.getRunLen();
+			if(runLen < 0 || runLen > 2560) continue; // Special or unknown code
+			int codeLen = code.getCodeLen();
+			// Codes are left aligned in 16 bits
+			int start = (code.getCode()&0xffff)>>>(16 - TABLE_BITS);
+			Arrays.fill(table, start, start + (1<<(TABLE_BITS - codeLen)), (runLen<<4)|codeLen);
+		}
+		return table;
 	}
 
 	public int decode(byte[] pix, int offset, int len) throws Exception {
-		T4CodeHuffmanTreeNode blackNodes = T4BlackCodeHuffmanTreeNode.getInstance();
-		T4CodeHuffmanTreeNode whiteNodes = T4WhiteCodeHuffmanTreeNode.getInstance();
-		T4CodeHuffmanTreeNode currNode = whiteNodes;
-		byte cur = input[byteOffset];
-		int endOffset = byteOffset + this.len;
-		destByteOffset = offset;
-		
-		int runLen = 0;
-		int remaining = scanLineWidth;
-		boolean isWhiteCode = true;
-		
-		while(true) {
-			if(((cur>>bitOffset) & 0x01) == 0) {
-				if(currNode.left() != null) {
-					currNode = currNode.left();
-					bitOffset--;
-					if(bitOffset < 0) {
-						bitOffset = 7;
-						byteOffset++;
-						if(byteOffset >= endOffset) break;
-						cur = input[byteOffset];				
-					}
-				} else {
-					runLen += currNode.value();			
-					if(currNode.value() <= 63) {
-						//output runLen
-						if(runLen > remaining)
-							runLen = remaining;
-						remaining -= runLen;
-						// Check code
-						if(isWhiteCode) {
-							destByteOffset = outputRunLen(pix, destByteOffset, runLen,  scanLineWidth, 0, len);
-							if(remaining != 0) {
-								currNode = blackNodes;
-								isWhiteCode = false;
-							} else {
-								currNode = whiteNodes;
-								isWhiteCode = true;
-							}
-						} else {
-							destByteOffset = outputRunLen(pix, destByteOffset, runLen,  scanLineWidth, 1, len);
-							currNode = whiteNodes;
-							isWhiteCode = true;
-						}
-						if(remaining == 0) {
-							remaining = scanLineWidth;
-							if(bitOffset != 7) {
-								byteOffset++;
-								bitOffset = 7;
-								if(byteOffset >= endOffset) break;
-								cur = input[byteOffset];								
-							}			
-						}
-						runLen = 0;
-					} else {
-						if(isWhiteCode) currNode = whiteNodes;
-						else currNode = blackNodes;
-					}
-				}
-			} else if(((cur>>bitOffset) & 0x01) == 1) {
-				if(currNode.right() != null) {
-					currNode = currNode.right();
-					bitOffset--;
-					if(bitOffset < 0) {
-						bitOffset = 7;
-						byteOffset++;
-						if(byteOffset >= endOffset) break;
-						cur = input[byteOffset];				
-					}
-				} else {
-					runLen += currNode.value();
-					if(currNode.value() <= 63) {
-						//output runLen
-						if(runLen > remaining)
-							runLen = remaining;
-						remaining -= runLen;
-						// Check code
-						if(isWhiteCode) {
-							destByteOffset = outputRunLen(pix, destByteOffset, runLen,  scanLineWidth, 0, len);
-							if(remaining != 0) {
-								currNode = blackNodes;
-								isWhiteCode = false;
-							} else {
-								currNode = whiteNodes;
-								isWhiteCode = true;
-							}
-						} else {
-							destByteOffset = outputRunLen(pix, destByteOffset, runLen,  scanLineWidth, 1, len);
-							currNode = whiteNodes;
-							isWhiteCode = true;
-						}
-						if(remaining == 0) {
-							remaining = scanLineWidth;
-							if(bitOffset != 7) {
-								byteOffset++;
-								bitOffset = 7;
-								if(byteOffset >= endOffset) break;
-								cur = input[byteOffset];
-							}					
-						}
-						runLen = 0;
-					} else {
-						if(isWhiteCode) currNode = whiteNodes;
-						else currNode = blackNodes;
-					}
-				}
-			}		
+		int lines = getNumOfLines(len);
+		int line = 0;
+
+		for(; line < lines; line++) {
+			if(!decode1DLine()) break;
+			outputLine(pix, offset + line*bytesPerLine);
+			// Each scan line starts on a byte boundary
+			bitPos = (bitPos + 7) & ~7;
 		}
-		
-		if(totalRunLen < (scanLineWidth*rowsPerStrip))
-			destByteOffset = outputRunLen(pix, destByteOffset, scanLineWidth*rowsPerStrip - totalRunLen, scanLineWidth, 0, len);
-		
-		return uncompressedBytes; 
-	}
-	
-	protected int outputRunLen(byte[] output, int offset, int runLen,  int stride, int color, int len) {
-		int i = 0;
-		
-		for(i = 0; i < runLen; i++) {
-			if(uncompressedBytes >= len) break;			
-			if(empty_bits >= 1) {
-				output[offset] |= (color<<(empty_bits-1));
-				empty_bits--;
-			} 
-			// Check to see if we need to move to next byte
-			if(++lineOffset%stride == 0 || empty_bits == 0) {
-				offset++;
-				uncompressedBytes++;
-				empty_bits = 8;
+
+		return finish(pix, offset, line, lines);
+	}
+
+	/**
+	 * Read the white and black runs of a one dimensional coded scan line into the
+	 * current changing elements.
+	 *
+	 * @return false if an EOL or an invalid code is met or the input runs out
+	 */
+	protected boolean decode1DLine() {
+		curCount = 0;
+		int a0 = 0;
+
+		while(a0 < scanLineWidth) {
+			int runLen = readRunLen((curCount&1) == 0);
+			if(runLen < 0) return false;
+			a0 += runLen;
+			if(a0 > scanLineWidth) a0 = scanLineWidth;
+			addChange(a0);
+		}
+
+		return true;
+	}
+
+	/**
+	 * Append a changing element to the current scan line. A changing element at
+	 * the same position as the previous one cancels it out.
+	 *
+	 * @param pos position of the changing element
+	 */
+	protected final void addChange(int pos) {
+		if(curCount > 0 && curChanges[curCount - 1] == pos)
+			curCount--;
+		else
+			curChanges[curCount++] = pos;
+	}
+
+	// Pad the scan lines we couldn't decode with white
+	protected final int finish(byte[] pix, int offset, int decodedLines, int lines) {
+		Arrays.fill(pix, offset + decodedLines*bytesPerLine, offset + lines*bytesPerLine, (byte)0);
+		return lines*bytesPerLine;
+	}
+
+	protected final int getNumOfLines(int len) {
+		int lines = len/bytesPerLine;
+		if(rowsPerStrip > 0 && rowsPerStrip < lines)
+			lines = rowsPerStrip;
+		return lines;
+	}
+
+	/**
+	 * Write the current scan line to the output with the black runs set to 1
+	 *
+	 * @param pix output buffer
+	 * @param offset start of the scan line in the output buffer
+	 */
+	protected final void outputLine(byte[] pix, int offset) {
+		Arrays.fill(pix, offset, offset + bytesPerLine, (byte)0);
+		// Runs alternate between white and black starting with white
+		for(int i = 0; i < curCount; i += 2) {
+			int start = curChanges[i];
+			int end = (i + 1 < curCount)? curChanges[i + 1] : scanLineWidth;
+			if(start >= end) continue;
+			int first = offset + (start>>3);
+			int last = offset + ((end - 1)>>3);
+			int firstMask = 0xff>>>(start&7);
+			int lastMask = 0xff<<(7 - ((end - 1)&7));
+			if(first == last) {
+				pix[first] |= firstMask & lastMask;
+			} else {
+				pix[first] |= firstMask;
+				for(int j = first + 1; j < last; j++)
+					pix[j] = (byte)0xff;
+				pix[last] |= lastMask;
 			}
 		}
-		
-		totalRunLen += i;
-		
-		return offset;
 	}
-	
-	private void reset(int byteOffset, int len, int bitOffset) {
-		this.byteOffset = byteOffset;
-		this.len = len;
-		this.bitOffset = bitOffset;
-		this.uncompressedBytes = 0;
-		this.totalRunLen = 0;
+
+	/**
+	 * Look at the next bits of the input without consuming them. Bits past the
+	 * end of the input read as 0.
+	 *
+	 * @param numOfBits number of bits to look at, no more than 16
+	 * @return the bits right aligned
+	 */
+	protected final int peekBits(int numOfBits) {
+		int index = bitPos>>>3;
+		int word = (byteAt(index)<<16)|(byteAt(index + 1)<<8)|byteAt(index + 2);
+		return (word>>>(24 - numOfBits - (bitPos&7))) & ((1<<numOfBits) - 1);
+	}
+
+	private int byteAt(int index) {
+		return (index < endByte)? input[index]&0xff : 0;
+	}
+
+	/**
+	 * Read a run length made up of any makeup codes and a terminating code
+	 *
+	 * @param white true to read a white run, false to read a black run
+	 * @return the run length or -1 if an EOL or an invalid code is met or the input runs out
+	 */
+	protected final int readRunLen(boolean white) {
+		int[] table = white? WHITE_TABLE : BLACK_TABLE;
+		int runLen = 0;
+
+		while(bitPos < endPos) {
+			int entry = table[peekBits(TABLE_BITS)];
+			if(entry == 0) return -1;
+			bitPos += entry&0x0f;
+			runLen += entry>>>4;
+			// Terminating codes are for runs shorter than 64
+			if((entry>>>4) < 64) return runLen;
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Skip the fill bits and the EOL in front of a scan line if there are any
+	 *
+	 * @return true if an EOL was skipped
+	 */
+	protected final boolean skipEOL() {
+		// No valid code starts with 12 zeros, so these can only be fill bits
+		while(bitPos < endPos && peekBits(12) == 0)
+			bitPos++;
+		if(bitPos < endPos && peekBits(12) == 1) {
+			bitPos += 12;
+			return true;
+		}
+		return false;
+	}
+
+	// The current scan line becomes the reference line for the next one
+	protected final void swapLines() {
+		int[] temp = refChanges;
+		refChanges = curChanges;
+		curChanges = temp;
+		refCount = curCount;
 	}
 
 	public void setInput(byte[] input) {
@@ -185,16 +230,25 @@ public class G31DDecoder implements ImageDecoder {
 
 	public void setInput(byte[] input, int offset, int len) {
 		this.input = input;
-		reset(offset, len, 7);	
+		this.bitPos = offset<<3;
+		this.endByte = offset + len;
+		this.endPos = endByte<<3;
+		// The first reference line is an imaginary white line
+		this.refCount = 0;
 	}
-	
+
 	protected byte[] input;
-	protected int len;
 	protected int scanLineWidth;
-	protected int totalRunLen;
 	protected int rowsPerStrip;
-	protected int byteOffset;
-	protected int bitOffset = 7;
-	protected int destByteOffset;
-	protected int uncompressedBytes;
+	protected int bytesPerLine;
+	// Position of the next bit to read and the end of the input in bits
+	protected int bitPos;
+	protected int endPos;
+	private int endByte;
+	// Changing elements of the reference and the current scan line. Elements
+	// at even indexes start black runs, those at odd indexes white runs
+	protected int[] refChanges;
+	protected int[] curChanges;
+	protected int refCount;
+	protected int curCount;
 }
@@ -5,394 +5,162 @@
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
  * http://www.eclipse.org/legal/epl-v10.html
- * 
+ *
  * Any modifications to this file must keep this entire header intact.
+ *
+ * Change History - most recent changes go on top of previous changes
+ *
+ * G32DDecoder.java
+ *
+ * Who   Date       Description
+ * ====  =========  =================================================
+ * AG    17Oct2026  Added two dimensional coded scan lines
  */
 
 package com.icafe4j.image.compression.ccitt;
 
 import com.icafe4j.image.compression.ImageDecoder;
-import com.icafe4j.image.compression.huffman.T4BlackCodeHuffmanTreeNode;
-import com.icafe4j.image.compression.huffman.T4CodeHuffmanTreeNode;
-import com.icafe4j.image.compression.huffman.T4WhiteCodeHuffmanTreeNode;
 
+/**
+ * CCITT Group 3 decoding (TIFF compression 3). Every scan line follows an EOL
+ * which may be preceded by fill bits. With two dimensional encoding, a tag bit
+ * after the EOL tells whether the scan line is one or two dimensional coded.
+ *
+ * @author Wen Yu, yuwen_66@yahoo.com
+ * @version 1.0 01/02/2014
+ */
 public class G32DDecoder extends G31DDecoder implements ImageDecoder {
-	
+	// Two dimensional codes are at most 7 bits long
+	private static final int MODE_BITS = 7;
+	private static final T42DCode[] MODE_TABLE = createModeTable();
+
 	private boolean is1DEncoding;
-	
+
 	public G32DDecoder(int scanLineWidth, int rowsPerStrip) {
 		this(scanLineWidth, rowsPerStrip, false);
 	}
-	
+
 	public G32DDecoder(int scanLineWidth, int rowsPerStrip, boolean is1DEncoding) {
 		super(scanLineWidth, rowsPerStrip);
 		this.is1DEncoding = is1DEncoding;
 	}
-	
+
 	public G32DDecoder(byte[] input, int scanLineWidth, int rowsPerStrip) {
 		this(input, scanLineWidth, rowsPerStrip, false);
 	}
-	
+
 	public G32DDecoder(byte[] input, int scanLineWidth, int rowsPerStrip, boolean is1DEncoding) {
 		super(input, scanLineWidth, rowsPerStrip);
 		this.is1DEncoding = is1DEncoding;
 	}
-	
-	public int decode(byte[] pix, int offset, int len) throws Exception {
-		if(is1DEncoding)
-			return decode1D(pix, offset, len);
-		return decode2D(pix, offset, len);
+
+	private static T42DCode[] createModeTable() {
+		T42DCode[] table = new T42DCode[1<<MODE_BITS];
+		for(T42DCode code : T42DCode.values()) {
+			if(code.getCodeLen() > MODE_BITS || code == T42DCode.EXTENSION2D) continue;
+			int start = (code.getCode()&0xffff)>>>(16 - MODE_BITS);
+			for(int i = 0; i < (1<<(MODE_BITS - code.getCodeLen())); i++)
+				table[start + i] = code;
+		}
+		return table;
 	}
 
-	private int decode1D(byte[] pix, int offset, int len) throws Exception {
-		T4CodeHuffmanTreeNode blackNodes = T4BlackCodeHuffmanTreeNode.getInstance();
-		T4CodeHuffmanTreeNode whiteNodes = T4WhiteCodeHuffmanTreeNode.getInstance();
-		T4CodeHuffmanTreeNode currNode = whiteNodes;
-		byte cur = input[byteOffset];
-		int endOffset = byteOffset + this.len;
-		destByteOffset = offset;
-		
-		int runLen = 0;
-		int remaining = scanLineWidth;
-		boolean isWhiteCode = true;
-		
-		// Used to fix wrong byte alignment
-		int markByteOffset = offset;
-		int markBitOffset = 7;
-		boolean markIsWhiteCode = true;
-		T4CodeHuffmanTreeNode markCurrNode = whiteNodes;
-		boolean expectEOL = true;
-		
-		while(true) {
-			if(((cur>>bitOffset) & 0x01) == 0) {
-				if(currNode.left() != null) {
-					currNode = currNode.left();
-					bitOffset--;
-					if(bitOffset < 0) {
-						bitOffset = 7;
-						byteOffset++;
-						if(byteOffset >= endOffset) break;
-						cur = input[byteOffset];				
-					}
-				} else if (currNode.value() >= 0) {					
-					runLen += currNode.value();			
-					if(currNode.value() <= 63) {
-						if(expectEOL) {
-							currNode = markCurrNode;
-							byteOffset = markByteOffset;
-							bitOffset = markBitOffset;
-							isWhiteCode = markIsWhiteCode;
-							if(bitOffset != 7) {
-								byteOffset++;
-								bitOffset = 7;
-								if(byteOffset >= endOffset) break;
-							}
-							cur = input[byteOffset];
-							runLen = 0;
-							expectEOL = false;
-							continue;
-						}
-						//output runLen
-						if(runLen > remaining)
-							runLen = remaining;
-						remaining -= runLen;
-						// Check code
-						if(isWhiteCode) {
-							destByteOffset = outputRunLen(pix, destByteOffset, runLen,  scanLineWidth, 0, len);
-							if(remaining != 0) {
-								currNode = blackNodes;
-								isWhiteCode = false;
-							} else {
-								currNode = whiteNodes;
-								isWhiteCode = true;
-							}
-						} else {
-							destByteOffset = outputRunLen(pix, destByteOffset, runLen,  scanLineWidth, 1, len);
-							currNode = whiteNodes;
-							isWhiteCode = true;
-						}
-						if(remaining == 0) {
-							remaining = scanLineWidth;
-							markByteOffset = byteOffset;
-							markBitOffset = bitOffset;
-							if(isWhiteCode) {
-								markCurrNode = whiteNodes; 
-								markIsWhiteCode = true;
-							} else {
-								markCurrNode = blackNodes;
-								markIsWhiteCode = false;
-							}
-							expectEOL = true;
-						}
-						runLen = 0;
-					} else {
-						if(isWhiteCode) currNode = whiteNodes;
-						else currNode = blackNodes;
-					}
-				} else {
-					if(remaining != scanLineWidth) {
-						destByteOffset = outputRunLen(pix, destByteOffset, remaining, scanLineWidth, 0, len);
-						remaining = scanLineWidth;
-					}
-					expectEOL = false;
-					isWhiteCode = true;
-					currNode = whiteNodes;
-				}
-			} else if(((cur>>bitOffset) & 0x01) == 1) {
-				if(currNode.right() != null) {
-					currNode = currNode.right();
-					bitOffset--;
-					if(bitOffset < 0) {
-						bitOffset = 7;
-						byteOffset++;
-						if(byteOffset >= endOffset) break;
-						cur = input[byteOffset];				
-					}
-				} else if (currNode.value() >= 0) {					
-					runLen += currNode.value();
-					if(currNode.value() <= 63) {
-						if(expectEOL) {
-							currNode = markCurrNode;
-							isWhiteCode = markIsWhiteCode;
-							byteOffset = markByteOffset;
-							bitOffset = markBitOffset;
-							if(bitOffset != 7) {
-								byteOffset++;
-								bitOffset = 7;
-								if(byteOffset >= endOffset) break;
-							}
-							cur = input[byteOffset];
-							runLen = 0;
-							expectEOL = false;
+	public int decode(byte[] pix, int offset, int len) throws Exception {
+		int lines = getNumOfLines(len);
+		int line = 0;
 
-							continue;
-						}
-						//output runLen
-						if(runLen > remaining)
-							runLen = remaining;
-						remaining -= runLen;
-						// Check code
-						if(isWhiteCode) {
-							destByteOffset = outputRunLen(pix, destByteOffset, runLen,  scanLineWidth, 0, len);
-							if(remaining != 0) {
-								currNode = blackNodes;
-								isWhiteCode = false;
-							} else {
-								currNode = whiteNodes;
-								isWhiteCode = true;
-							}
-						} else {
-							destByteOffset = outputRunLen(pix, destByteOffset, runLen,  scanLineWidth, 1, len);
-							currNode = whiteNodes;
-							isWhiteCode = true;
-						}
-						if(remaining == 0) {
-							remaining = scanLineWidth;
-							markByteOffset = byteOffset;
-							markBitOffset = bitOffset;
-							if(isWhiteCode) {
-								markCurrNode = whiteNodes; 
-								markIsWhiteCode = true;
-							} else {
-								markCurrNode = blackNodes;
-								markIsWhiteCode = false;
-							}
-							expectEOL = true;
-						}
-						runLen = 0;
-					} else {
-						if(isWhiteCode) currNode = whiteNodes;
-						else currNode = blackNodes;
-					}
-				} else {
-					if(remaining != scanLineWidth) {
-						destByteOffset = outputRunLen(pix, destByteOffset, remaining, scanLineWidth, 0, len);
-						remaining = scanLineWidth;
-					}
-					expectEOL = false;
-					isWhiteCode = true;
-					currNode = whiteNodes;
-				}
+		for(; line < lines; line++) {
+			boolean is1DLine = true;
+			// Some encoders leave out the EOL, the scan line is taken as one dimensional coded then
+			if(skipEOL() && !is1DEncoding) {
+				is1DLine = (peekBits(1) == 1);
+				bitPos++;
 			}
-		}		
-		if(totalRunLen < (scanLineWidth*rowsPerStrip))
-			destByteOffset = outputRunLen(pix, destByteOffset, scanLineWidth*rowsPerStrip - totalRunLen, scanLineWidth, 0, len);
-		return uncompressedBytes; 
+			if(!(is1DLine? decode1DLine() : decode2DLine())) break;
+			outputLine(pix, offset + line*bytesPerLine);
+			swapLines();
+		}
+
+		return finish(pix, offset, line, lines);
 	}
-	
-	private int decode2D(byte[] pix, int offset, int len) throws Exception {
-		T4CodeHuffmanTreeNode blackNodes = T4BlackCodeHuffmanTreeNode.getInstance();
-		T4CodeHuffmanTreeNode whiteNodes = T4WhiteCodeHuffmanTreeNode.getInstance();
-		T4CodeHuffmanTreeNode currNode = whiteNodes;
-		byte cur = input[byteOffset];
-		int endOffset = byteOffset + this.len;
-		destByteOffset = offset;
-		
-		int runLen = 0;
-		int remaining = scanLineWidth;
-		boolean isWhiteCode = true;
-		
-		// Used to fix wrong byte alignment
-		int markByteOffset = offset;
-		int markBitOffset = 7;
-		boolean markIsWhiteCode = true;
-		T4CodeHuffmanTreeNode markCurrNode = whiteNodes;
-		boolean expectEOL = true;
-		
-		while(true) {
-			if(((cur>>bitOffset) & 0x01) == 0) {
-				if(currNode.left() != null) {
-					currNode = currNode.left();
-					bitOffset--;
-					if(bitOffset < 0) {
-						bitOffset = 7;
-						byteOffset++;
-						if(byteOffset >= endOffset) break;
-						cur = input[byteOffset];				
-					}
-				} else if (currNode.value() >= 0) {					
-					runLen += currNode.value();			
-					if(currNode.value() <= 63) {
-						if(expectEOL) {
-							currNode = markCurrNode;
-							byteOffset = markByteOffset;
-							bitOffset = markBitOffset;
-							isWhiteCode = markIsWhiteCode;
-							if(bitOffset != 7) {
-								byteOffset++;
-								bitOffset = 7;
-								if(byteOffset >= endOffset) break;
-							}
-							cur = input[byteOffset];
-							runLen = 0;
-							expectEOL = false;
-							continue;
-						}
-						//output runLen
-						if(runLen > remaining)
-							runLen = remaining;
-						remaining -= runLen;
-						// Check code
-						if(isWhiteCode) {
-							destByteOffset = outputRunLen(pix, destByteOffset, runLen,  scanLineWidth, 0, len);
-							if(remaining != 0) {
-								currNode = blackNodes;
-								isWhiteCode = false;
-							} else {
-								currNode = whiteNodes;
-								isWhiteCode = true;
-							}
-						} else {
-							destByteOffset = outputRunLen(pix, destByteOffset, runLen,  scanLineWidth, 1, len);
-							currNode = whiteNodes;
-							isWhiteCode = true;
-						}
-						if(remaining == 0) {
-							remaining = scanLineWidth;
-							markByteOffset = byteOffset;
-							markBitOffset = bitOffset;
-							if(isWhiteCode) {
-								markCurrNode = whiteNodes; 
-								markIsWhiteCode = true;
-							} else {
-								markCurrNode = blackNodes;
-								markIsWhiteCode = false;
-							}
-							expectEOL = true;
-						}
-						runLen = 0;
-					} else {
-						if(isWhiteCode) currNode = whiteNodes;
-						else currNode = blackNodes;
-					}
-				} else {
-					if(remaining != scanLineWidth) {
-						destByteOffset = outputRunLen(pix, destByteOffset, remaining, scanLineWidth, 0, len);
-						remaining = scanLineWidth;
-					}
-					expectEOL = false;
-					isWhiteCode = true;
-					currNode = whiteNodes;
-				}
-			} else if(((cur>>bitOffset) & 0x01) == 1) {
-				if(currNode.right() != null) {
-					currNode = currNode.right();
-					bitOffset--;
-					if(bitOffset < 0) {
-						bitOffset = 7;
-						byteOffset++;
-						if(byteOffset >= endOffset) break;
-						cur = input[byteOffset];				
-					}
-				} else if (currNode.value() >= 0) {					
-					runLen += currNode.value();
-					if(currNode.value() <= 63) {
-						if(expectEOL) {
-							currNode = markCurrNode;
-							isWhiteCode = markIsWhiteCode;
-							byteOffset = markByteOffset;
-							bitOffset = markBitOffset;
-							if(bitOffset != 7) {
-								byteOffset++;
-								bitOffset = 7;
-								if(byteOffset >= endOffset) break;
-							}
-							cur = input[byteOffset];
-							runLen = 0;
-							expectEOL = false;
 
-							continue;
-						}
-						//output runLen
-						if(runLen > remaining)
-							runLen = remaining;
-						remaining -= runLen;
-						// Check code
-						if(isWhiteCode) {
-							destByteOffset = outputRunLen(pix, destByteOffset, runLen,  scanLineWidth, 0, len);
-							if(remaining != 0) {
-								currNode = blackNodes;
-								isWhiteCode = false;
-							} else {
-								currNode = whiteNodes;
-								isWhiteCode = true;
-							}
-						} else {
-							destByteOffset = outputRunLen(pix, destByteOffset, runLen,  scanLineWidth, 1, len);
-							currNode = whiteNodes;
-							isWhiteCode = true;
-						}
-						if(remaining == 0) {
-							remaining = scanLineWidth;
-							markByteOffset = byteOffset;
-							markBitOffset = bitOffset;
-							if(isWhiteCode) {
-								markCurrNode = whiteNodes; 
-								markIsWhiteCode = true;
-							} else {
-								markCurrNode = blackNodes;
-								markIsWhiteCode = false;
-							}
-							expectEOL = true;
-						}
-						runLen = 0;
-					} else {
-						if(isWhiteCode) currNode = whiteNodes;
-						else currNode = blackNodes;
-					}
-				} else {
-					if(remaining != scanLineWidth) {
-						destByteOffset = outputRunLen(pix, destByteOffset, remaining, scanLineWidth, 0, len);
-						remaining = scanLineWidth;
-					}
-					expectEOL = false;
-					isWhiteCode = true;
-					currNode = whiteNodes;
-				}
+	/**
+	 * Read the changing elements of a two dimensional coded scan line relative to the
+	 * reference line. ITU-T Rec. T.4 (07/2003) Figure 7/T.4 - Two-dimensional coding flow diagram.
+	 *
+	 * @return false if an EOL or an invalid code is met or the input runs out
+	 */
+	protected boolean decode2DLine() {
+		curCount = 0;
+		int a0 = -1;
+		// Index of b1 in the reference line changing elements
+		int i = 0;
+
+		while(a0 < scanLineWidth) {
+			if(bitPos >= endPos) return false;
+			boolean white = (curCount&1) == 0;
+			// b1 is the first changing element to the right of a0 with the opposite colour of a0
+			while(i < refCount && (refChanges[i] <= a0 || ((i&1) == 0) != white))
+				i++;
+			int b1 = (i < refCount)? refChanges[i] : scanLineWidth;
+			int b2 = (i + 1 < refCount)? refChanges[i + 1] : scanLineWidth;
+
+			T42DCode mode = MODE_TABLE[peekBits(MODE_BITS)];
+			if(mode == null) return false;
+			bitPos += mode.getCodeLen();
+
+			int a1;
+			switch(mode) {
+				case P:
+					a0 = b2;
+					continue;
+				case H:
+					int runLen1 = readRunLen(white);
+					if(runLen1 < 0) return false;
+					int runLen2 = readRunLen(!white);
+					if(runLen2 < 0) return false;
+					a1 = Math.min(Math.max(a0, 0) + runLen1, scanLineWidth);
+					int a2 = Math.min(a1 + runLen2, scanLineWidth);
+					if(!isAfterLastChange(a1)) return false;
+					addChange(a1);
+					addChange(a2);
+					a0 = a2;
+					continue;
+				case V0:
+					a1 = b1;
+					break;
+				case VR1:
+					a1 = b1 + 1;
+					break;
+				case VR2:
+					a1 = b1 + 2;
+					break;
+				case VR3:
+					a1 = b1 + 3;
+					break;
+				case VL1:
+					a1 = b1 - 1;
+					break;
+				case VL2:
+					a1 = b1 - 2;
+					break;
+				case VL3:
+					a1 = b1 - 3;
+					break;
+				default:
+					return false;
 			}
-		}		
-		if(totalRunLen < (scanLineWidth*rowsPerStrip))
-			destByteOffset = outputRunLen(pix, destByteOffset, scanLineWidth*rowsPerStrip - totalRunLen, scanLineWidth, 0, len);
-		return uncompressedBytes; 
+			if(a1 > scanLineWidth || !isAfterLastChange(a1)) return false;
+			addChange(a1);
+			a0 = a1;
+			// The colour changed, b1 may be the element before the previous b1
+			if(i > 0) i--;
+		}
+
+		return true;
+	}
+
+	private boolean isAfterLastChange(int pos) {
+		return (curCount == 0)? pos >= 0 : pos >= curChanges[curCount - 1];
 	}
 }
@@ -0,0 +1,47 @@
+/**
+ * COPYRIGHT (C) 2014-2019 WEN YU (YUWEN_66@YAHOO.COM) ALL RIGHTS RESERVED.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Any modifications to this file must keep this entire header intact.
+ */
+
+package com.icafe4j.image.compression.ccitt;
+
+import com.icafe4j.image.compression.ImageDecoder;
+
+/**
+ * CCITT Group 4 two dimensional decoding (TIFF compression 4). There are no EOLs,
+ * every scan line is two dimensional coded and the reference line for the first
+ * one is an imaginary white line. Decoding stops at the EOFB.
+ *
+ * @author agent
+ * @version 1.0 10/17/2026
+ */
+public class G42DDecoder extends G32DDecoder implements ImageDecoder {
+
+	public G42DDecoder(int scanLineWidth, int rowsPerStrip) {
+		super(scanLineWidth, rowsPerStrip);
+	}
+
+	public G42DDecoder(byte[] input, int scanLineWidth, int rowsPerStrip) {
+		super(input, scanLineWidth, rowsPerStrip);
+	}
+
+	@Override public int decode(byte[] pix, int offset, int len) throws Exception {
+		int lines = getNumOfLines(len);
+		int line = 0;
+
+		for(; line < lines; line++) {
+			// The EOFB is not a valid two dimensional code, so this also stops at the EOFB
+			if(!decode2DLine()) break;
+			outputLine(pix, offset + line*bytesPerLine);
+			swapLines();
+		}
+
+		return finish(pix, offset, line, lines);
+	}
+}
@@ -14,6 +14,8 @@ package com.icafe4j.image.compression.ccitt;
 import java.util.HashMap;
 import java.util.Map;
 
+import com.icafe4j.util.IntIntHashtable;
+
 /**
  * Enumeration for T4 white codes
  * 
@@ -155,10 +157,10 @@ public enum T4WhiteCode implements T4Code {
 	}
 	
 	public static T4Code fromRunLen(int runLen) {
-		T4Code t4Code = runLenMap.get(runLen);
-		if (t4Code == null)
+		int index = runLenMap.get(runLen, -1);
+		if (index < 0)
 			return UNKNOWN;
-		return t4Code;
+		return codes[index];
 	}
 	
 	public static T4Code fromCode(short code) {
@@ -168,14 +170,16 @@ public enum T4WhiteCode implements T4Code {
 		return t4Code;
 	}
 	   
-	private static final Map<Integer, T4Code> runLenMap = new HashMap<Integer, T4Code>();
+	// Looked up for every run by the encoders, so the run lengths are kept unboxed
+	private static final T4Code[] codes = values();
+	private static final IntIntHashtable runLenMap = new IntIntHashtable(256);
 	private static final Map<Short, T4Code> codeMap = new HashMap<Short, T4Code>();
 	    
 	static
 	{
-		for(T4Code code : values()) {
-			runLenMap.put(code.getRunLen(), code);
-			codeMap.put(code.getCode(), code);
+		for(int i = 0; i < codes.length; i++) {
+			runLenMap.put(codes[i].getRunLen(), i);
+			codeMap.put(codes[i].getCode(), codes[i]);
 		}	
 	}	
 	
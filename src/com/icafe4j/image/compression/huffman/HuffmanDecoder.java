@@ -5,7 +5,7 @@
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
  * http://www.eclipse.org/legal/epl-v10.html
- * 
+ *
  * Any modifications to this file must keep this entire header intact.
  */
 
@@ -14,140 +14,194 @@ package com.icafe4j.image.compression.huffman;
 import java.io.*;
 
 /**
+ * JPEG entropy decoder working on the entropy-coded segments of a scan.
+ * <p>
+ * Bytes are pulled from the underlying stream into a 32 bit buffer, stuffed
+ * zero bytes are removed and the decoding stops when a marker is found. Once
+ * a marker is hit, zero bits are fed to the decoder and the marker can be
+ * retrieved by calling {@link #getMarker()}.
+ * <p>
+ * If the input is a {@link PushbackInputStream} with a push back buffer of at
+ * least {@link #BUFFER_SIZE} bytes, data are read in chunks and the bytes read
+ * past the marker are pushed back once the marker is retrieved. Otherwise bytes
+ * are read one by one and the stream is expected to be buffered.
+ *
  * @author Wen Yu, yuwen_66@yahoo.com
  * @version 1.0 04/20/2007
  */
 public class HuffmanDecoder {
-	// Define number of lines
-	private static final int DNL  = 0xDC; 
-   
 	private InputStream is;
 	
-	private int[] VALPTR;
-	private int[] MINCODE;
-	private int[] MAXCODE;
-	private byte[] HUFFVAL;
-		
-	private int CNT = 0;
-	private int ZZ[] = new int[64];
+	public static final int BUFFER_SIZE = 4096;
+	
+	// Input buffer and the position of the next byte in it
+	private byte[] buf;
+	private int bufPos;
+	private int bufLen;
 
-	// CCITT Rec. T.81(1992 E) Annex F, Page 109, Figure F.16
-	public HuffmanDecoder(InputStream is, HuffmanTbl ht) {
-		this.is = is;
-		this.VALPTR  = ht.getValPTRTable();
-		this.MINCODE = ht.getMinCodeTable();
-		this.MAXCODE = ht.getMaxCodeTable();
-		this.HUFFVAL = ht.getValueTable();
+	private int bitBuf;
+	private int bitCnt;
+	// Marker found while reading the entropy-coded data
+	private int marker;
+
+	private static final int[] BIT_MASK = new int[17];
+
+	static {
+		for(int i = 1; i < BIT_MASK.length; i++)
+			BIT_MASK[i] = (1<<i) - 1;
 	}
 
-	private int DECODE() {
-		int CODE, I = 1, J;
-		CODE = NEXTBIT();
-    
-	    while (CODE > MAXCODE[I]) {
-		   I++;
-		   CODE = (CODE<<1) + NEXTBIT();
-	    }
-
-        J = VALPTR[I] + CODE - MINCODE[I];
-        
-        return (HUFFVAL[J]&0xff);
+	public HuffmanDecoder(InputStream is) {
+		this.is = is;
+		this.buf = new byte[(is instanceof PushbackInputStream)? BUFFER_SIZE : 1];
 	}
-	
-	// CCITT Rec. T.81(1992 E) Annex F, Page 106, Figure F.13
-	public void decode_AC_coefficients() {
-		int K = 1;
-		int RS, SSSS, R;
-	    
-		while (true) {
-			RS = DECODE();
-			SSSS = (RS%16);
-			R = (RS>>4);
-            
-			if (SSSS == 0) {
-				if (R == 15) {
-					K += 16;
-					continue;
-				}
-				
-				break;
-			}
 
-			K += R;
-            decode_ZZ(K,SSSS);
-				
-            if (K != 63) K++;
-				
-			break;			
+	// CCITT Rec. T.81(1992 E) Annex F, Page 109, Figure F.16 with a lookahead table
+	public int decode(HuffmanTbl ht) throws IOException {
+		if(bitCnt < 16) fill();
+
+		int entry = ht.LOOKUP[(bitBuf>>>(bitCnt - HuffmanTbl.LOOKAHEAD))&BIT_MASK[HuffmanTbl.LOOKAHEAD]];
+
+		if(entry != 0) {
+			bitCnt -= (entry>>8);
+			return entry&0xff;
 		}
-    }
-	
-	// CCITT Rec. T.81(1992 E) Annex F, Page 107, Figure F.14
-    private void decode_ZZ(int K, int SSSS) {
-		ZZ[K] = RECEIVE(SSSS);
-		ZZ[K] = EXTEND(ZZ[K],SSSS);
-    }
-    
+
+		// Codes longer than the lookahead bits
+		int I = HuffmanTbl.LOOKAHEAD;
+		int CODE = getBits(I);
+
+		do {
+			CODE = (CODE<<1) + getBit();
+			I++;
+		} while(I < 16 && CODE > ht.MAXCODE[I - 1]);
+
+		if(CODE > ht.MAXCODE[I - 1])
+			return 0; // Corrupted data, let it go
+
+		return ht.HUFFVAL[ht.VALPTR[I - 1] + CODE - ht.MINCODE[I - 1]]&0xff;
+	}
+
 	// CCITT Rec. T.81(1992 E) Annex F, Page 105, Figure F.12
-	private static int EXTEND(int V, int T) {
-		int Vt = (1<<(T-1));
+	public static int EXTEND(int V, int T) {
+		return (V < (1<<(T - 1)))? V + ((-1)<<T) + 1 : V;
+	}
 
-		if (V < Vt) {
-			Vt = ((-1)<<T)+1;
-			V += Vt; 
+	// Fill the bit buffer with at least 25 bits
+	private void fill() throws IOException {
+		while(bitCnt <= 24) {
+			bitBuf = (bitBuf<<8)|NEXTBYTE();
+			bitCnt += 8;
 		}
+	}
 
-		return V;
-    }
-	
-	// CCITT Rec. T.81(1992 E) Annex F, Page 111, Figure F.18
-	private int NEXTBIT() {
-		int BIT, B = 0, B2;
-
-		if (CNT == 0) {
-			B = NEXTBYTE();
-			CNT = 8;
-
-			if (B == 0xFF) {
-				B2 = NEXTBYTE();
-				
-				if (B2 != 0) {
-					if (B2==DNL) {
-						// do_DNL();
-						// terminate scan;
-					} else; // showError();
-				}
+	public int getBit() throws IOException {
+		if(bitCnt == 0) fill();
+
+		return (bitBuf>>>(--bitCnt))&1;
+	}
+
+	public int getBits(int n) throws IOException {
+		if(n == 0) return 0;
+		if(bitCnt < n) fill();
+		bitCnt -= n;
+
+		return (bitBuf>>>bitCnt)&BIT_MASK[n];
+	}
+
+	/**
+	 * Retrieve the marker terminating the current entropy-coded segment.
+	 * If no marker has been met yet, the remaining bytes are skipped
+	 * until the next marker is found.
+	 *
+	 * @return the marker or -1 if end of stream is reached
+	 * @throws IOException
+	 */
+	public int getMarker() throws IOException {
+		while(marker == 0) {
+			int readByte = read();
+			if(readByte == -1) {
+				marker = -1;
+			} else if(readByte == 0xff) {
+				do {
+					readByte = read();
+				} while(readByte == 0xff);
+				if(readByte == -1)
+					marker = -1;
+				else if(readByte != 0)
+					marker = 0xff00|readByte;
 			}
 		}
+		// Give back whatever we have read past the marker
+		if(bufPos < bufLen) {
+			((PushbackInputStream)is).unread(buf, bufPos, bufLen - bufPos);
+			bufPos = bufLen;
+		}
 
-		BIT = (B>>7);
-		CNT--;
-		B <<= 1;
-
-		return BIT;
+		return marker;
 	}
 	
-	private int NEXTBYTE() {
-        int readByte;
-		
-		try {
-        	readByte = is.read();
-        } catch (IOException ioe) {
-			throw new RuntimeException("Error reading NEXTBYTE...");
-        }
+	private int read() throws IOException {
+		if(bufPos == bufLen) {
+			bufPos = 0;
+			bufLen = is.read(buf, 0, buf.length);
+			if(bufLen <= 0) {
+				bufLen = 0;
+				return -1;
+			}
+		}
 		
-		return readByte;
+		return buf[bufPos++]&0xff;
 	}
 
-	// CCITT Rec. T.81(1992 E) Annex F, Page 110, Figure F.17
-	private int RECEIVE(int SSSS) {
-		int I = 0, V = 0;
+	// CCITT Rec. T.81(1992 E) Annex F, Page 111, Figure F.18 (modified to work on bytes)
+	private int NEXTBYTE() throws IOException {
+		if(marker != 0) return 0;
 
-		while (I != SSSS) {
-			I++;
-			V= (V<<1) + NEXTBIT();
+		int B = (bufPos < bufLen)? buf[bufPos++]&0xff : read();
+
+		if(B == 0xff) {
+			int B2 = read();
+			while(B2 == 0xff) B2 = read(); // Fill bytes
+			if(B2 == 0) return 0xff;
+			// Either a marker or end of stream
+			marker = (B2 == -1)? -1 : (0xff00|B2);
+
+			return 0;
+		}
+
+		if(B == -1) {
+			marker = -1;
+			return 0;
 		}
 
-		return V;
-    }
+		return B;
+	}
+
+	// CCITT Rec. T.81(1992 E) Annex F, Page 110, Figure F.17 combined with EXTEND
+	public int receiveExtend(int SSSS) throws IOException {
+		if(SSSS == 0) return 0;
+
+		return EXTEND(getBits(SSSS), SSSS);
+	}
+
+	/**
+	 * Reset the decoder at a restart marker. The buffered bits are discarded
+	 * and the restart marker is consumed. Any other marker found instead is
+	 * kept so that it can still be retrieved by {@link #getMarker()}.
+	 *
+	 * @return the marker found
+	 * @throws IOException
+	 */
+	public int restart() throws IOException {
+		int found = getMarker();
+
+		bitBuf = 0;
+		bitCnt = 0;
+
+		if(found >= 0xffd0 && found <= 0xffd7) // RST0 - RST7
+			marker = 0;
+
+		return found;
+	}
 }
@@ -18,6 +18,13 @@ import com.icafe4j.image.compression.ImageEncoder;
 import com.icafe4j.image.jpeg.JPGConsts;
 
 /**
+ * JPEG Huffman entropy encoder.
+ * <p>
+ * Besides the sequential encoding, the DC and AC first scans of a spectral
+ * selection only progressive JPEG can be encoded. If symbol statistics are
+ * requested by {@link #setStatistics(int[][], int[][])}, no output is produced
+ * and the symbols are counted instead for the generation of optimal tables.
+ *
  * @author Wen Yu, yuwen_66@yahoo.com
  * @version 1.0 03/07/2014
  */
@@ -35,6 +42,16 @@ public class HuffmanEncoder implements ImageEncoder {
 	private int[][] AC_EHUFSI = new int[4][];
 	
 	private int[] PREDICTION = new int[4];
+	// End of band run for the progressive AC scans
+	private int EOBRUN;
+	private int EOBRUN_component;
+	// Restart interval in MCUs, MCUs left in the current interval and the next restart marker number
+	private int restartInterval;
+	private int restartsToGo;
+	private int nextRestartNum;
+	// Symbol frequencies for each component if we are gathering statistics
+	private int[][] DC_FREQ;
+	private int[][] AC_FREQ;
 	
 	private boolean extraFlush = true;
 	
@@ -95,28 +112,15 @@ public class HuffmanEncoder implements ImageEncoder {
 	
 	public void encode(int[] ZZ, int component_id) throws Exception {
 		int temp, ssss, k, r = 0, rs;       
-		// The AC part
-		temp = ZZ[0] - PREDICTION[component_id];
-        ssss = CSIZE(temp);
-        
-        if(temp < 0) {
-        	temp--;
-        }        
-        
-        send_code_to_buffer(DC_EHUFCO[component_id][ssss], DC_EHUFSI[component_id][ssss]);
-  
-        if (ssss != 0) {
-        	send_code_to_buffer(temp, ssss);
-        }
-        
-        PREDICTION[component_id] = ZZ[0];
+		// The DC part
+		encodeDC(ZZ, component_id);
         // The AC coefficients
         for(k = 1; k < 64; k++) {
 			if ((temp = ZZ[ZIGZAG_TRAVERSE_ORDER[k]]) == 0) {
 				r++;
 			} else {
 				while (r > 15) {
-					send_code_to_buffer(AC_EHUFCO[component_id][0xF0], AC_EHUFSI[component_id][0xF0]);
+					emitAC(component_id, 0xF0);
 					r -= 16;
 				}
 				ssss = CSIZE(temp);
@@ -124,21 +128,121 @@ public class HuffmanEncoder implements ImageEncoder {
 					temp--;
 				}				
 				rs = (r << 4) + ssss;
-				send_code_to_buffer(AC_EHUFCO[component_id][rs], AC_EHUFSI[component_id][rs]);
-				send_code_to_buffer(temp, ssss);
+				emitAC(component_id, rs);
+				emitBits(temp, ssss);
 				r = 0;
 			}
 		}
 
 		if (r > 0) {
-			send_code_to_buffer(AC_EHUFCO[component_id][0], AC_EHUFSI[component_id][0]);
+			emitAC(component_id, 0);
+		}
+	}
+	
+	/**
+	 * Encode the AC coefficients Ss through Se of a block for the first AC scan
+	 * of a progressive JPEG (CCITT Rec. T.81(1992 E) Annex G.1.2.2). The point
+	 * transform is not supported.
+	 * 
+	 * @param ZZ quantized coefficients in natural order
+	 * @param Ss start of the spectral band
+	 * @param Se end of the spectral band
+	 * @param component_id component id
+	 * @throws Exception
+	 */
+	public void encodeAC(int[] ZZ, int Ss, int Se, int component_id) throws Exception {
+		int temp, ssss, r = 0;
+		
+		for(int k = Ss; k <= Se; k++) {
+			if((temp = ZZ[ZIGZAG_TRAVERSE_ORDER[k]]) == 0) {
+				r++;
+				continue;
+			}
+			if(EOBRUN > 0)
+				emitEOBRUN();
+			while(r > 15) {
+				emitAC(component_id, 0xF0);
+				r -= 16;
+			}
+			ssss = CSIZE(temp);
+			if(temp < 0) {
+				temp--;
+			}
+			emitAC(component_id, (r << 4) + ssss);
+			emitBits(temp, ssss);
+			r = 0;
 		}
+		
+		if(r > 0) {
+			EOBRUN_component = component_id;
+			if(++EOBRUN == 0x7FFF) // The largest run EOB14 can code
+				emitEOBRUN();
+		}
+	}
+	
+	/**
+	 * Encode the DC coefficient of a block alone. Used for the sequential
+	 * encoding as well as the DC first scan of a progressive JPEG without
+	 * point transform.
+	 * 
+	 * @param ZZ quantized coefficients in natural order
+	 * @param component_id component id
+	 * @throws Exception
+	 */
+	public void encodeDC(int[] ZZ, int component_id) throws Exception {
+		int temp = ZZ[0] - PREDICTION[component_id];
+		int ssss = CSIZE(temp);
+        
+		if(temp < 0) {
+			temp--;
+		}
+		
+		emitDC(component_id, ssss);
+		emitBits(temp, ssss);
+        
+		PREDICTION[component_id] = ZZ[0];
+	}
+	
+	private void emitAC(int component_id, int rs) throws Exception {
+		if(AC_FREQ != null)
+			AC_FREQ[component_id][rs]++;
+		else
+			send_code_to_buffer(AC_EHUFCO[component_id][rs], AC_EHUFSI[component_id][rs]);
+	}
+	
+	private void emitBits(int code, int codeLen) throws Exception {
+		if(codeLen != 0 && AC_FREQ == null)
+			send_code_to_buffer(code, codeLen);
+	}
+	
+	private void emitDC(int component_id, int ssss) throws Exception {
+		if(DC_FREQ != null)
+			DC_FREQ[component_id][ssss]++;
+		else
+			send_code_to_buffer(DC_EHUFCO[component_id][ssss], DC_EHUFSI[component_id][ssss]);
+	}
+	
+	// Emit the pending EOBRUN as EOBn symbol followed by the extra bits
+	private void emitEOBRUN() throws Exception {
+		int nbits = 31 - Integer.numberOfLeadingZeros(EOBRUN);
+		
+		emitAC(EOBRUN_component, nbits << 4);
+		emitBits(EOBRUN, nbits);
+		
+		EOBRUN = 0;
 	}
 	
 	public void finish() throws Exception {
+		if(EOBRUN > 0)
+			emitEOBRUN();
+		if(AC_FREQ != null)
+			return;
+		// Pad the last byte with 1 bits (CCITT Rec. T.81(1992 E) Annex F.1.2.3)
+		if(empty_bits > 0 && empty_bits < 8)
+			send_code_to_buffer(0x7f, empty_bits);
 		// Cleanup
 		if(extraFlush) {
-			flush_buf(bufIndex + 1);
+			flush_buf((empty_bits == 8)? bufIndex : bufIndex + 1);
 		}		
 	}
 	
@@ -164,6 +268,56 @@ public class HuffmanEncoder implements ImageEncoder {
    		totalBytes = 0;
    	}
 	
+	// Finish the current restart interval and write the next RSTn marker
+	private void restart() throws Exception {
+		if(EOBRUN > 0)
+			emitEOBRUN();
+		
+		Arrays.fill(PREDICTION, 0);
+		int marker = 0xD0 + nextRestartNum;
+		nextRestartNum = (nextRestartNum + 1)&0x07;
+		
+		if(AC_FREQ != null)
+			return;
+		// Byte align with 1 bits and write out whatever we have
+		if(empty_bits > 0 && empty_bits < 8)
+			send_code_to_buffer(0x7f, empty_bits);
+		flush_buf((empty_bits == 8)? bufIndex : bufIndex + 1);
+		empty_bits = 8;
+		
+		os.write(0xFF);
+		os.write(marker);
+		totalBytes += 2;
+	}
+	
+	/**
+	 * Set the restart interval. Once set, {@link #startMCU()} must be called
+	 * before each MCU is encoded.
+	 * 
+	 * @param restartInterval number of MCUs in a restart interval, 0 for no restart markers
+	 */
+	public void setRestartInterval(int restartInterval) {
+		this.restartInterval = restartInterval;
+		this.restartsToGo = restartInterval;
+	}
+	
+	/**
+	 * Tell the encoder a new MCU is about to be encoded. A restart marker is
+	 * written if the current restart interval is over.
+	 * 
+	 * @throws Exception
+	 */
+	public void startMCU() throws Exception {
+		if(restartInterval == 0) return;
+		
+		if(restartsToGo == 0) {
+			restart();
+			restartsToGo = restartInterval;
+		}
+		
+		restartsToGo--;
+	}
+	
 	// Translate codes into bytes
     private void send_code_to_buffer(int code, int codeLen)throws Exception {
     	if(empty_bits == 0) {
@@ -212,6 +366,18 @@ public class HuffmanEncoder implements ImageEncoder {
     	}
 	}
 
+	/**
+	 * Gather symbol statistics instead of encoding. The frequencies are added
+	 * to the input arrays which are indexed by component id and then symbol.
+	 * 
+	 * @param DC_FREQ DC symbol frequencies, 257 entries for each component
+	 * @param AC_FREQ AC symbol frequencies, 257 entries for each component
+	 */
+	public void setStatistics(int[][] DC_FREQ, int[][] AC_FREQ) {
+		this.DC_FREQ = DC_FREQ;
+		this.AC_FREQ = AC_FREQ;
+	}
+	
     // Set custom encoding tables
 	public void setEncodingTables(int[][] DC_EHUFCO, int[][] DC_EHUFSI, int[][] AC_EHUFCO, int[][] AC_EHUFSI) {
 		this.DC_EHUFCO = DC_EHUFCO;
@@ -11,22 +11,28 @@
 
 package com.icafe4j.image.compression.huffman;
 
+import java.util.Arrays;
+
 /**
  * @author Wen Yu, yuwen_66@yahoo.com
  * @version 1.0 04/20/2007
  */
 public class HuffmanTbl {
 	private byte[] BITS;
-	private byte[] HUFFVAL;
+	byte[] HUFFVAL;
 	// Tables to be constructed from the above two tables
 	private int HUFFSIZE[] = new int[257];
 	private int HUFFCODE[] = new int[257];
 	private int EHUFCO[]   = new int[257];
 	private int EHUFSI[]   = new int[257];
-	// Decoder tables
-	private int MAXCODE[] = new int[16];
-	private int MINCODE[] = new int[16];
-	private int VALPTR[]  = new int[16];
+	// Decoder tables (package access to avoid cloning them for each symbol decoded by HuffmanDecoder)
+	int MAXCODE[] = new int[16];
+	int MINCODE[] = new int[16];
+	int VALPTR[]  = new int[16];
+	// Lookahead table: (code size<<8)|value for codes no longer than LOOKAHEAD bits, 0 otherwise
+	int LOOKUP[] = new int[1<<LOOKAHEAD];
+	
+	static final int LOOKAHEAD = 9;
 	//////////////////////////////////////
 	private int LASTK = 0;// no use for the decoder 
 
@@ -76,6 +82,21 @@ public class HuffmanTbl {
 		}
 	}
 	
+	// Build the lookahead table so that most of the codes could be decoded with a single table lookup
+	private void generate_lookup_table() {
+		Arrays.fill(LOOKUP, 0);
+		
+		for(int k = 0; k < LASTK; k++) {
+			int size = HUFFSIZE[k];
+			if(size > LOOKAHEAD) break; // Codes are sorted by size
+			int code = HUFFCODE[k]<<(LOOKAHEAD - size);
+			int count = 1<<(LOOKAHEAD - size);
+			int entry = (size<<8)|(HUFFVAL[k]&0xff);
+			for(int i = 0; i < count; i++)
+				LOOKUP[code + i] = entry;
+		}
+	}
+	
 	// Generation of table of Huffman code size (CCITT Rec. T.81(1993 E) Annex C, Page 51, Figure C.1) 
 	private void generate_size_table() {
 		int i = 1, j = 1, k = 0;
@@ -91,10 +112,103 @@ public class HuffmanTbl {
 		LASTK = k;//the last index of the node
 	}
 	
+	/**
+	 * Generate an optimal Huffman table with code lengths limited to 16 bits
+	 * for the input symbol frequencies (CCITT Rec. T.81(1992 E) Annex K.2).
+	 * 
+	 * @param FREQ frequencies of the symbols 0 to 255, more entries are ignored
+	 * @return a new HuffmanTbl with BITS and HUFFVAL set
+	 */
+	public static HuffmanTbl generateOptimalTable(int[] FREQ) {
+		final int MAX_CLEN = 32;
+		long[] freq = new long[257];
+		int[] CODESIZE = new int[257];
+		int[] OTHERS = new int[257];
+		int[] bits = new int[MAX_CLEN + 1];
+		
+		for(int i = 0; i < 256; i++)
+			freq[i] = FREQ[i];
+		// Reserve one code point so that no code consists of all 1 bits
+		freq[256] = 1;
+		Arrays.fill(OTHERS, -1);
+		// Figure K.1: find the code sizes
+		while(true) {
+			int V1 = -1, V2 = -1;
+			// The least frequent symbol, the larger value wins the tie
+			for(int i = 0; i < 257; i++) {
+				if(freq[i] != 0 && (V1 < 0 || freq[i] <= freq[V1]))
+					V1 = i;
+			}
+			// The next least frequent symbol
+			for(int i = 0; i < 257; i++) {
+				if(freq[i] != 0 && i != V1 && (V2 < 0 || freq[i] <= freq[V2]))
+					V2 = i;
+			}
+			
+			if(V2 < 0) break;
+			
+			freq[V1] += freq[V2];
+			freq[V2] = 0;
+			
+			CODESIZE[V1]++;
+			while(OTHERS[V1] >= 0) {
+				V1 = OTHERS[V1];
+				CODESIZE[V1]++;
+			}
+			
+			OTHERS[V1] = V2;
+			
+			CODESIZE[V2]++;
+			while(OTHERS[V2] >= 0) {
+				V2 = OTHERS[V2];
+				CODESIZE[V2]++;
+			}
+		}
+		// Figure K.2: count the number of codes of each size
+		for(int i = 0; i < 257; i++) {
+			if(CODESIZE[i] > 0) {
+				if(CODESIZE[i] > MAX_CLEN)
+					throw new IllegalStateException("Huffman code size table overflow");
+				bits[CODESIZE[i]]++;
+			}
+		}
+		// Figure K.3: limit the code lengths to 16 bits
+		for(int i = MAX_CLEN; i > 16; i--) {
+			while(bits[i] > 0) {
+				int j = i - 2;
+				while(bits[j] == 0) j--;
+				bits[i] -= 2;
+				bits[i - 1]++;
+				bits[j + 1] += 2;
+				bits[j]--;
+			}
+		}
+		// Remove the reserved code point from the longest codes
+		int i = 16;
+		while(bits[i] == 0) i--;
+		bits[i]--;
+		
+		byte[] BITS = new byte[16];
+		for(i = 1; i <= 16; i++)
+			BITS[i - 1] = (byte)bits[i];
+		// Figure K.4: sort the symbols by code size
+		int count = 0;
+		byte[] HUFFVAL = new byte[256];
+		for(i = 1; i <= MAX_CLEN; i++) {
+			for(int j = 0; j < 256; j++) {
+				if(CODESIZE[j] == i)
+					HUFFVAL[count++] = (byte)j;
+			}
+		}
+		
+		return new HuffmanTbl(BITS, Arrays.copyOf(HUFFVAL, count));
+	}
+	
 	public void generateDecoderTables()	{
 		generate_size_table();
 		generate_code_table();
 		generate_decoder_tables();
+		generate_lookup_table();
 	}
 	
 	public void generateEncoderTables()	{
@@ -103,6 +217,10 @@ public class HuffmanTbl {
 		order_codes();
 	}
 	
+	public byte[] getBitsTable() {
+		return BITS.clone();
+	}
+	
 	public int[] getCodeTable() {
 		return HUFFCODE.clone();
 	}
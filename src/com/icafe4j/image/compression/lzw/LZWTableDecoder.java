@@ -0,0 +1,312 @@
+/**
+ * COPYRIGHT (C) 2014-2019 WEN YU (YUWEN_66@YAHOO.COM) ALL RIGHTS RESERVED.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Any modifications to this file must keep this entire header intact.
+ */
+
+package com.icafe4j.image.compression.lzw;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.icafe4j.image.compression.ImageDecoder;
+import com.icafe4j.io.IOUtils;
+
+/**
+ * LZW decoder for GIF and TIFF images producing the same output as {@link LZWTreeDecoder}.
+ * <p>
+ * Instead of keeping prefix and suffix chains, the string table records where the
+ * string for each code was last written to the output and how long it is. A new code
+ * is the previous string followed by the first byte of the current one, which are
+ * already next to each other in the output, so every string is copied out in one go
+ * with System.arraycopy. Codes are read from a 32 bit buffer refilled a few bytes at a time.
+ * <p>
+ * See {@link LZWTreeDecoder} for the differences between GIF and TIFF LZW.
+ *
+ * @author agent
+ * @version 1.0 10/17/2026
+ */
+public class LZWTableDecoder implements ImageDecoder {
+	private static final int MAX_CODE = (1<<12);
+
+	// Where the string for each code was last written, counted in bytes since setInput(), and its length
+	private int[] stringOffset = new int[MAX_CODE + 1];
+	private int[] stringLength = new int[MAX_CODE + 1];
+
+	private int min_code_size;
+	private int clearCode;
+	// End of image for GIF or end of information for TIFF
+	private int endOfImage;
+	private int first_code_index;
+
+	private int codeLen;
+	private int codeIndex;
+	private int limit;
+
+	private int oldCode = -1;
+	private int oldOffset;
+	private int oldLength;
+	// Code read after the output was full, decoded by the next call
+	private int nextCode = -1;
+	private boolean finished;
+
+	// GIF data comes in sub-blocks from the stream
+	private InputStream is;
+	private byte[] block = new byte[255];
+	private int blockIndex;
+	private int blockEnd;
+	private boolean endOfBlocks;
+
+	// TIFF data comes in an array
+	private byte[] input;
+	private int inputIndex;
+	private int inputEnd;
+
+	private boolean isTIFF;// Taking care of the difference between GIF and TIFF.
+	private boolean isCodeBigEndian;
+
+	private int bitBuf;
+	private int bitCount;
+
+	// Output of the current call
+	private byte[] out;
+	private int outOffset;
+	// Position of out[outOffset] and of the next byte to write, counted in bytes since setInput()
+	private int callStart;
+	private int position;
+	// Strings of the current table are written from this position on
+	private int tableStart;
+	// Part of a string that didn't fit into the output of the previous call
+	private int pendingOffset;
+	private int pendingLength;
+	// Output of previous calls still referenced by the string table, starting from historyStart
+	private byte[] history = new byte[0];
+	private int historyStart;
+
+	public LZWTableDecoder(InputStream is, int min_code_size) {
+		if(min_code_size < 2 || min_code_size > 12)
+			throw new IllegalArgumentException("invalid min_code_size: " + min_code_size);
+		this.is = is;
+		this.min_code_size = min_code_size;
+		clearCode = (1<<min_code_size);
+		endOfImage = clearCode + 1;
+		first_code_index = endOfImage + 1;
+		isCodeBigEndian = true;
+		// Reset string table
+		clearStringTable();
+	}
+
+	public LZWTableDecoder(int min_code_size, boolean isTIFF) {
+		this(null, min_code_size);
+		this.isTIFF = isTIFF;
+	}
+
+	private void clearStringTable() {
+		codeLen = min_code_size + 1;
+		limit = (1<<codeLen) - 1;
+		codeIndex = first_code_index;
+		oldCode = -1;
+		tableStart = position;
+	}
+
+	public int decode(byte[] pix, int offset, int len) throws Exception {
+		out = pix;
+		outOffset = offset;
+		callStart = position;
+		int end = position + Math.min(len, pix.length - offset);
+
+		// Finish the string cut short by the previous call
+		if(pendingLength > 0) {
+			int n = Math.min(pendingLength, end - position);
+			copyString(pendingOffset, n);
+			pendingOffset += n;
+			pendingLength -= n;
+		}
+
+		while(!finished) {
+			int code;
+			if(nextCode >= 0) {
+				code = nextCode;
+				nextCode = -1;
+			} else {
+				code = readLZWCode();
+			}
+
+			if(code == clearCode) {
+				clearStringTable();
+				continue;
+			}
+			if(code == endOfImage) {
+				finished = true;
+				break;
+			}
+			if(position >= end) {
+				// Keep the code for the next call
+				nextCode = code;
+				break;
+			}
+
+			int dest = position;
+			int length;
+
+			if(code < clearCode) {
+				out[outOffset + dest - callStart] = (byte)code;
+				position++;
+				length = 1;
+			} else {
+				int source;
+				if(code < codeIndex) {
+					source = stringOffset[code];
+					length = stringLength[code];
+				} else if(oldCode >= 0) {
+					// The code being defined: the previous string followed by its own first byte
+					source = oldOffset;
+					length = oldLength + 1;
+				} else {
+					finished = true; // Broken data
+					break;
+				}
+				int n = Math.min(length, end - dest);
+				copyString(source, n);
+				if(n < length) {
+					pendingOffset = source + n;
+					pendingLength = length - n;
+				}
+			}
+
+			if(oldCode >= 0) {
+				// Previous string plus the first byte of this one which follows it in the output
+				stringOffset[codeIndex] = oldOffset;
+				stringLength[codeIndex] = oldLength + 1;
+				// Check boundary to deal with deferred clear code in LZW compression
+				if(codeIndex < MAX_CODE) codeIndex++;
+			}
+
+			if((codeIndex > (isTIFF && isCodeBigEndian? limit - 1 : limit)) && (codeLen < 12)) {
+				codeLen++;
+				limit = (1<<codeLen) - 1;
+			}
+
+			oldCode = code;
+			oldOffset = dest;
+			oldLength = length;
+		}
+
+		if(!finished || pendingLength > 0) keepHistory();
+
+		return position - callStart;
+	}
+
+	// Copy len bytes of a string written before to the output, the source may overlap the destination
+	private void copyString(int source, int len) {
+		while(len > 0) {
+			int n;
+			if(source < callStart) {
+				n = Math.min(len, callStart - source);
+				System.arraycopy(history, source - historyStart, out, outOffset + position - callStart, n);
+			} else {
+				n = Math.min(len, position - source);
+				System.arraycopy(out, outOffset + source - callStart, out, outOffset + position - callStart, n);
+			}
+			source += n;
+			position += n;
+			len -= n;
+		}
+	}
+
+	// The caller may reuse the output buffer, so save what the string table still refers to
+	private void keepHistory() {
+		int start = Math.max(tableStart, historyStart);
+		if(pendingLength > 0) start = Math.min(start, pendingOffset);
+		byte[] temp = new byte[position - start];
+		int fromHistory = Math.max(0, callStart - start);
+		if(fromHistory > 0)
+			System.arraycopy(history, start - historyStart, temp, 0, fromHistory);
+		System.arraycopy(out, outOffset + start + fromHistory - callStart, temp, fromHistory, temp.length - fromHistory);
+		history = temp;
+		historyStart = start;
+	}
+
+	private int readLZWCode() throws IOException {
+		if(bitCount < codeLen) {
+			fillBitBuffer();
+			if(bitCount < codeLen) return endOfImage;
+		}
+
+		int code;
+
+		if(isTIFF && isCodeBigEndian) {
+			code = (bitBuf>>>(bitCount - codeLen)) & ((1<<codeLen) - 1);
+		} else {
+			code = bitBuf & ((1<<codeLen) - 1);
+			bitBuf >>>= codeLen;
+		}
+		bitCount -= codeLen;
+
+		return code;
+	}
+
+	private void fillBitBuffer() throws IOException {
+		if(!isTIFF) { // GIF
+			while(bitCount <= 24) {
+				if(blockIndex >= blockEnd) {
+					// Only start a new image data sub-block when the current code needs it
+					if(bitCount >= codeLen || endOfBlocks) break;
+					int size = is.read();
+					if(size <= 0) {
+						endOfBlocks = true;
+						break;
+					}
+					IOUtils.readFully(is, block, 0, size);
+					blockIndex = 0;
+					blockEnd = size;
+				}
+				bitBuf |= (block[blockIndex++]&0xff)<<bitCount;
+				bitCount += 8;
+			}
+		} else if(isCodeBigEndian) {
+			// Bits already used fall off the top
+			while(bitCount <= 24 && inputIndex < inputEnd) {
+				bitBuf = (bitBuf<<8)|(input[inputIndex++]&0xff);
+				bitCount += 8;
+			}
+		} else {
+			// Different packing order, same as GIF
+			while(bitCount <= 24 && inputIndex < inputEnd) {
+				bitBuf |= (input[inputIndex++]&0xff)<<bitCount;
+				bitCount += 8;
+			}
+		}
+	}
+
+	public void setInput(byte[] input) {
+		setInput(input, 0, input.length);
+	}
+
+	public void setInput(byte[] input, int offset, int len) {
+		if(input[offset] == 0x00 && input[offset+1] == 0x01)
+			isCodeBigEndian = false;
+		else
+			isCodeBigEndian = true;
+		this.input = input;
+		this.inputIndex = offset;
+		this.inputEnd = offset + len;
+		// Must discard the remaining bits!!!
+		bitBuf = 0;
+		bitCount = 0;
+		// and the leftover!!!
+		position = 0;
+		pendingLength = 0;
+		nextCode = -1;
+		finished = false;
+		history = new byte[0];
+		historyStart = 0;
+		// Reset string table
+		clearStringTable();
+	}
+}
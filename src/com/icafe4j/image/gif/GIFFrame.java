@@ -7,6 +7,14 @@
  * http://www.eclipse.org/legal/epl-v10.html
  * 
  * Any modifications to this file must keep this entire header intact.
+ *
+ * Change History - most recent changes go on top of previous changes
+ *
+ * GIFFrame.java
+ *
+ * Who   Date       Description
+ * ====  =========  =================================================
+ * AG    17Oct2026  Added interlaced and local color table flags
  */
 
 package com.icafe4j.image.gif;
@@ -30,6 +38,9 @@ public class GIFFrame {
 	private int disposalMethod = DISPOSAL_UNSPECIFIED;
 	private int userInputFlag = USER_INPUT_NONE;
 	private int transparencyFlag = TRANSPARENCY_INDEX_NONE;
+	// Image descriptor flags, only set for frames read from a GIF
+	private boolean interlaced;
+	private boolean localColorTable;
 	
 	// The transparent color value in RRGGBB format.
 	// The highest order byte has no effect.
@@ -67,6 +78,10 @@ public class GIFFrame {
 	}
 	
 	public GIFFrame(BufferedImage frame, int leftPosition, int topPosition, int delay, int disposalMethod, int userInputFlag, int transparencyFlag, int transparentColor) {
+		this(frame, leftPosition, topPosition, delay, disposalMethod, userInputFlag, transparencyFlag, transparentColor, false, false);
+	}
+	
+	public GIFFrame(BufferedImage frame, int leftPosition, int topPosition, int delay, int disposalMethod, int userInputFlag, int transparencyFlag, int transparentColor, boolean interlaced, boolean localColorTable) {
 		if(frame == null) throw new IllegalArgumentException("Null input image");
 		if(disposalMethod < DISPOSAL_UNSPECIFIED || disposalMethod > DISPOSAL_TO_BE_DEFINED)
 			throw new IllegalArgumentException("Invalid disposal method: " + disposalMethod);
@@ -87,6 +102,8 @@ public class GIFFrame {
 		this.frameWidth = frame.getWidth();
 		this.frameHeight = frame.getHeight();
 		this.transparentColor = transparentColor;
+		this.interlaced = interlaced;
+		this.localColorTable = localColorTable;
 	}
 	
 	public int getDelay() {
@@ -128,4 +145,18 @@ public class GIFFrame {
 	public int getUserInputFlag() {
 		return userInputFlag;
 	}
+	
+	/**
+	 * @return true if the frame has a local color table instead of using the global one
+	 */
+	public boolean hasLocalColorTable() {
+		return localColorTable;
+	}
+	
+	/**
+	 * @return true if the frame image data is interlaced
+	 */
+	public boolean isInterlaced() {
+		return interlaced;
+	}
  }
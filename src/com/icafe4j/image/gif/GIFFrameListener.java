@@ -0,0 +1,48 @@
+/**
+ * COPYRIGHT (C) 2014-2019 WEN YU (YUWEN_66@YAHOO.COM) ALL RIGHTS RESERVED.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Any modifications to this file must keep this entire header intact.
+ */
+
+package com.icafe4j.image.gif;
+
+/**
+ * Receives the composited frames of a GIF image one at a time as they are decoded.
+ * <p>
+ * Every frame is handed over as a {@link GIFFrame} wrapping the same logical screen
+ * sized canvas, which is updated in place for the next frame. The canvas must not be
+ * modified. Copy it if the frame is to be kept.
+ *
+ * @author agent
+ * @version 1.0 10/17/2026
+ */
+public interface GIFFrameListener {
+	/**
+	 * Called once the logical screen descriptor is read and before any frame.
+	 *
+	 * @param logicalScreenWidth width of the logical screen
+	 * @param logicalScreenHeight height of the logical screen
+	 */
+	public void begin(int logicalScreenWidth, int logicalScreenHeight);
+
+	/**
+	 * Called for each frame after it is drawn upon the canvas and before the
+	 * canvas is disposed of according to the frame's disposal method.
+	 *
+	 * @param frameIndex zero based index of the frame
+	 * @param frame the canvas together with the position, delay, disposal method
+	 *        and transparency of the frame
+	 * @return true to go on with the next frame, false to stop reading
+	 */
+	public boolean frame(int frameIndex, GIFFrame frame);
+
+	/**
+	 * Called after the last frame or when reading is stopped.
+	 */
+	public void end();
+}
@@ -14,6 +14,8 @@
  *
  * Who   Date       Description
  * ====  =========  ====================================================
+ * AG    17Oct2026  Deprecated finishWrite(OutputStream) finishes the GIFWriter used for the stream
+ * AG    17Oct2026  Added finishWrite(GIFWriter, OutputStream) to flush held frames
  * WY    20Feb2017  Fix splitFrames() throws stream closed exception
  * WY    04Apr2016  Rewrite insertXMPApplicationBlock() to leverage GifXMP
  * WY    09Oct2015  Fixed regression bug with splitAnimatedGIF()
@@ -50,9 +52,11 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.WeakHashMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -90,6 +94,10 @@ public class GIFTweaker {
 	// Obtain a logger instance
 	private static final Logger LOGGER = LoggerFactory.getLogger(GIFTweaker.class);		
 	
+	// GIFWriter writing frame by frame to each OutputStream, so the deprecated finishWrite(OutputStream)
+	// can still write out the frames it holds. Weak keys drop the streams which are never finished.
+	private static final Map<OutputStream, GIFWriter> WRITERS = Collections.synchronizedMap(new WeakHashMap<OutputStream, GIFWriter>());
+	
 	// Data transfer object for multiple thread support
 	private static class DataTransferObject {
 		private byte[] header;	
@@ -175,12 +183,39 @@ public class GIFTweaker {
 	 * 
 	 * @param os OutputStream for the animated GIF
 	 * @throws Exception
+	 * 
+	 * @deprecated The frames must have been written through {@link #prepareForWrite
+	 * prepareForWrite} or {@link #writeFrame(GIFWriter, OutputStream, BufferedImage) writeFrame}
+	 * of this class for the GIFWriter to be found and its held frames written out.
+	 * Otherwise only the trailer is written. Use {@link #finishWrite(GIFWriter, OutputStream)
+	 * finishWrite} instead.
 	 */
-	public static void finishWrite(OutputStream os) throws Exception {	   	
+	@Deprecated
+	public static void finishWrite(OutputStream os) throws Exception {
+		GIFWriter writer = WRITERS.remove(os);
+		if(writer != null) {
+			// Frames held for frame delta or an ExecutorService go out before the trailer
+			writer.finishWrite(os);
+			return;
+		}
     	os.write(IMAGE_TRAILER);
 		os.close();    	
 	}
 	
+	/**
+	 * This is intended to be called after writing all the frames if we write
+	 * an animated GIF frame by frame. Any frame still held by the writer is
+	 * written out before the trailer.
+	 * 
+	 * @param writer GIFWriter used to write the frames
+	 * @param os OutputStream for the animated GIF
+	 * @throws Exception
+	 */
+	public static void finishWrite(GIFWriter writer, OutputStream os) throws Exception {
+		WRITERS.remove(os);
+		writer.finishWrite(os);
+	}
+	
 	public static void insertComments(InputStream is, OutputStream os, List<String> comments) throws IOException {
 		// Read and copy header and LSD
  		// Create a new data transfer object to hold data
@@ -275,6 +310,7 @@ public class GIFTweaker {
      */
 	public static void prepareForWrite(GIFWriter writer, OutputStream os, int logicalScreenWidth, int logicalScreenHeight) throws Exception {
 		writer.prepareForWrite(os, logicalScreenWidth, logicalScreenHeight);
+		WRITERS.put(os, writer);
 	}
 	
 	public static void insertXMPApplicationBlock(InputStream is, OutputStream os, String xmp) throws IOException {
@@ -680,14 +716,17 @@ public class GIFTweaker {
 	
 	public static void writeFrame(GIFWriter writer, OutputStream os, BufferedImage frame) throws Exception {
 		writer.writeFrame(os, frame);
+		WRITERS.put(os, writer);
 	}
 	
 	public static void writeFrame(GIFWriter writer, OutputStream os, BufferedImage frame, int delay) throws Exception {
 		writer.writeFrame(os, frame, delay);
+		WRITERS.put(os, writer);
 	}
 	
 	public static void writeFrame(GIFWriter writer, OutputStream os, GIFFrame frame) throws Exception {
 		writer.writeFrame(os, frame);
+		WRITERS.put(os, writer);
 	}
 	
 	private GIFTweaker() {}
@@ -48,6 +48,10 @@ public class SOFReader implements Reader {
 		read();
 	}
 	
+	public Marker getMarker() {
+		return segment.getMarker();
+	}
+	
 	public int getLength() {
 		return segment.getLength();
 	}
@@ -68,6 +72,11 @@ public class SOFReader implements Reader {
 		return numOfComponents;
 	}
 	
+	public boolean isProgressive() {
+		Marker marker = segment.getMarker();
+		return marker == Marker.SOF2 || marker == Marker.SOF6 || marker == Marker.SOF10 || marker == Marker.SOF14;
+	}
+	
 	public Component[] getComponents() {
 		return components.clone();
 	}
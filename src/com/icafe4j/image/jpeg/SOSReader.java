@@ -19,6 +19,8 @@ public class SOSReader implements Reader {
 	//
 	private Segment segment;
 	private SOFReader reader;
+	// Components included in this scan in the order they appear in the SOS segment
+	private Component[] scanComponents;
 	
 	int Ss, Se, Ah_Al, Ah, Al;
 	
@@ -50,6 +52,7 @@ public class SOSReader implements Reader {
 		
 		byte numOfComponents = data[count++];
 		Component[] components = reader.getComponents();		
+		scanComponents = new Component[numOfComponents];
 		
 		for(int i = 0; i < numOfComponents; i++) {
 			byte id = data[count++];
@@ -59,9 +62,13 @@ public class SOSReader implements Reader {
 				if(component.getId() == id) {					
 					component.setACTableNumber((byte)(tbl_no&0x0f));
 					component.setDCTableNumber((byte)((tbl_no>>4)&0x0f));
+					scanComponents[i] = component;
 					break;
 				}
 			}
+			
+			if(scanComponents[i] == null)
+				throw new IllegalArgumentException("Invalid component ID in SOS segment: " + id);
 		}
 		
 		//Start of spectral or predictor selection
@@ -75,6 +82,26 @@ public class SOSReader implements Reader {
 		Al = Ah_Al&0x0f;
 	}
 	
+	public int getAh() {
+		return Ah;
+	}
+	
+	public int getAl() {
+		return Al;
+	}
+	
+	public Component[] getComponents() {
+		return scanComponents.clone();
+	}
+	
+	public int getSe() {
+		return Se;
+	}
+	
+	public int getSs() {
+		return Ss;
+	}
+	
 	public void setSOFReader(SOFReader reader) {
 		this.reader = reader;
 	}
@@ -14,6 +14,7 @@
  *
  * Who   Date       Description
  * ====  =========  =====================================================================
+ * AG    17Oct2026  Read files through MappedFileRandomAccessInputStream
  * WY    07Apr2018  Added extractThumbnail(InputStream) to extract a single thumbnail
  * WY    06Apr2018  Added extractThumbnails(InputStream) to extract an array of thumbnails
  * WY    02Mar2017  Added insertMetadata(Collection<Metadata>, InputStream, OutputStream)
@@ -65,6 +66,7 @@ import com.icafe4j.image.tiff.TIFFTweaker;
 import com.icafe4j.image.util.IMGUtils;
 import com.icafe4j.io.FileCacheRandomAccessInputStream;
 import com.icafe4j.io.FileCacheRandomAccessOutputStream;
+import com.icafe4j.io.MappedFileRandomAccessInputStream;
 import com.icafe4j.io.PeekHeadInputStream;
 import com.icafe4j.io.RandomAccessInputStream;
 import com.icafe4j.io.RandomAccessOutputStream;
@@ -492,11 +494,13 @@ public abstract class Metadata implements MetadataReader, Iterable<MetadataEntry
 	public abstract Iterator<MetadataEntry> iterator();
 	
 	public static Map<MetadataType, Metadata> readMetadata(File image) throws IOException {
-		FileInputStream fin = new FileInputStream(image);
-		Map<MetadataType, Metadata> metadataMap = readMetadata(fin);
-		fin.close();
-		
-		return metadataMap; 
+		// Memory mapped so TIFF metadata is read in place instead of through a cache file
+		RandomAccessInputStream randIS = new MappedFileRandomAccessInputStream(image);
+		try {
+			return readMetadata(randIS);
+		} finally {
+			randIS.close();
+		}
 	}
 	
 	/**
@@ -518,9 +522,14 @@ public abstract class Metadata implements MetadataReader, Iterable<MetadataEntry
 				metadataMap = JPGTweaker.readMetadata(peekHeadInputStream);
 				break;
 			case TIFF:
-				RandomAccessInputStream randIS = new FileCacheRandomAccessInputStream(peekHeadInputStream);
-				metadataMap = TIFFTweaker.readMetadata(randIS);
-				randIS.shallowClose();
+				if(is instanceof RandomAccessInputStream) {
+					// Already seekable, TIFFTweaker reads the header from the start of the stream
+					metadataMap = TIFFTweaker.readMetadata((RandomAccessInputStream)is);
+				} else {
+					RandomAccessInputStream randIS = new FileCacheRandomAccessInputStream(peekHeadInputStream);
+					metadataMap = TIFFTweaker.readMetadata(randIS);
+					randIS.shallowClose();
+				}
 				break;
 			case PNG:
 				metadataMap = PNGTweaker.readMetadata(peekHeadInputStream);
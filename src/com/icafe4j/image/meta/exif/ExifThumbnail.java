@@ -93,7 +93,7 @@ public class ExifThumbnail extends Thumbnail {
 			if(compressedImage == null) throw new IllegalArgumentException("Expected compressed thumbnail data does not exist!");
 			thumbnailIFD.addField(new LongField(TiffTag.JPEG_INTERCHANGE_FORMAT.getValue(), new int[] {0})); // Placeholder
 			thumbnailIFD.addField(new LongField(TiffTag.JPEG_INTERCHANGE_FORMAT_LENGTH.getValue(), new int[] {compressedImage.length}));
-			offset = thumbnailIFD.write(randOS, offset);
+			offset = (int)thumbnailIFD.write(randOS, offset);
 			// This line is very important!!!
 			randOS.seek(offset);
 			randOS.write(getCompressedImage());
@@ -111,7 +111,7 @@ public class ExifThumbnail extends Thumbnail {
     		TiffField<?> stripByteCounts = list.get(0).getField(TiffTag.STRIP_BYTE_COUNTS);
     		if(stripByteCounts == null) 
     			stripByteCounts = list.get(0).getField(TiffTag.TILE_BYTE_COUNTS);
-    		offset = list.get(0).write(randOS, offset); // Write out the thumbnail IFD
+    		offset = (int)list.get(0).write(randOS, offset); // Write out the thumbnail IFD
     		int[] off = new int[0];;
     		if(stripOffset != null) { // Write out image data and update offset array
     			off = stripOffset.getDataAsLong();
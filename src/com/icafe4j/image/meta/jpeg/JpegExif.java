@@ -100,7 +100,7 @@ public class JpegExif extends Exif {
 			imageIFD.addField(new LongField(TiffTag.GPS_SUB_IFD.getValue(), new int[]{0})); // Place holder
 			imageIFD.addChild(TiffTag.GPS_SUB_IFD, gpsSubIFD);
 		}
-		int offset = imageIFD.write(randOS, FIRST_IFD_OFFSET);
+		int offset = (int)imageIFD.write(randOS, FIRST_IFD_OFFSET);
 		if(thumbnail != null && thumbnail.containsImage()) {
 			imageIFD.setNextIFDOffset(randOS, offset);
 			randOS.seek(offset); // Set the stream pointer to the correct position
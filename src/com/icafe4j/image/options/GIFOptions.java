@@ -12,6 +12,8 @@
  *
  * Who   Date       Description
  * ====  =========  =====================================================
+ * AG    17Oct2026  Added shared palette option for animated GIF
+ * AG    17Oct2026  Added inter-frame delta option for animated GIF
  * WY    18Aug2015  Removed similar fields and methods as GIFFrame class
  * WY    21Dec2014  Added similar fields and methods as GIFFrame class  
  */
@@ -21,7 +23,42 @@ package com.icafe4j.image.options;
 import com.icafe4j.image.ImageType;
 
 public class GIFOptions extends ImageOptions {
+	private boolean isApplyFrameDelta;
+	private boolean isApplySharedPalette;
+	
 	public ImageType getImageType() {
 		return ImageType.GIF;
-	}	
+	}
+	
+	public boolean isApplyFrameDelta() {
+		return isApplyFrameDelta;
+	}
+	
+	public boolean isApplySharedPalette() {
+		return isApplySharedPalette;
+	}
+	
+	/**
+	 * Set whether animated GIF frames are written as the difference from the previous
+	 * frame. Each frame is then cropped to the area that changed and the pixels left
+	 * unchanged within the area are made transparent. Disposal methods are chosen by
+	 * the writer so that the frames look the same as the ones given.
+	 * 
+	 * @param isApplyFrameDelta true to write the changed area of each frame only
+	 */
+	public void setApplyFrameDelta(boolean isApplyFrameDelta) {
+		this.isApplyFrameDelta = isApplyFrameDelta;
+	}
+	
+	/**
+	 * Set whether all the frames of an animated GIF share one global color palette
+	 * derived from a sample of the frames instead of having a local palette each.
+	 * This only applies when all the frames are given at once, frames written one
+	 * by one still get their own palettes.
+	 * 
+	 * @param isApplySharedPalette true to write a single global color palette
+	 */
+	public void setApplySharedPalette(boolean isApplySharedPalette) {
+		this.isApplySharedPalette = isApplySharedPalette;
+	}
 }
@@ -12,6 +12,7 @@
 package com.icafe4j.image.options;
 
 import com.icafe4j.image.ImageType;
+import com.icafe4j.image.jpeg.JPGConsts;
 import com.icafe4j.image.tiff.TiffFieldEnum.PhotoMetric;
 
 public class JPGOptions extends ImageOptions {
@@ -26,6 +27,14 @@ public class JPGOptions extends ImageOptions {
 	private int colorSpace = COLOR_SPACE_YCbCr;
 	private boolean isTiffFlavor;
 	private boolean writeICCProfile;
+	// Two-pass encoding with Huffman tables optimized for the image
+	private boolean optimizeCoding;
+	// Spectral selection progressive JPEG, requires optimized Huffman tables
+	private boolean progressive;
+	// Restart interval in MCUs, 0 means no restart markers
+	private int restartInterval;
+	// Chroma subsampling, only applies to YCbCr and YCCK color spaces
+	private int subsampling = JPGConsts.SUBSAMPLING_NONE;
 	
 	public int getColorSpace() {
 		return colorSpace;
@@ -39,10 +48,26 @@ public class JPGOptions extends ImageOptions {
 		return quality;
 	}
 	
+	public int getRestartInterval() {
+		return restartInterval;
+	}
+	
+	public int getSubsampling() {
+		return subsampling;
+	}
+	
 	public boolean includeTables() {
 		return includeTables;
 	}
 	
+	public boolean isOptimizeCoding() {
+		return optimizeCoding;
+	}
+	
+	public boolean isProgressive() {
+		return progressive;
+	}
+	
 	public boolean isTiffFlavor() {
 		return isTiffFlavor;
 	}
@@ -59,10 +84,50 @@ public class JPGOptions extends ImageOptions {
 		this.includeTables = includeTables;
 	}
 	
+	public void setOptimizeCoding(boolean optimizeCoding) {
+		this.optimizeCoding = optimizeCoding;
+	}
+	
+	/**
+	 * Write progressive JPEG (SOF2) using spectral selection. The Huffman
+	 * tables are always optimized for progressive JPEG since the standard
+	 * tables lack the end of band run codes.
+	 * 
+	 * @param progressive whether or not to write progressive JPEG
+	 */
+	public void setProgressive(boolean progressive) {
+		this.progressive = progressive;
+	}
+	
 	public void setQuality(int quality) {
 		this.quality = quality;
 	}
 	
+	/**
+	 * Set the number of MCUs between restart markers. When JPGWriter encodes
+	 * bands of the image in parallel, the interval is rounded down to whole
+	 * rows of MCUs.
+	 * 
+	 * @param restartInterval restart interval in MCUs (0 - 65535), 0 for no restart markers
+	 */
+	public void setRestartInterval(int restartInterval) {
+		if(restartInterval < 0 || restartInterval > 0xffff)
+			throw new IllegalArgumentException("Invalid restart interval: " + restartInterval);
+		this.restartInterval = restartInterval;
+	}
+	
+	/**
+	 * Set chroma subsampling for YCbCr and YCCK JPEG images.
+	 * 
+	 * @param subsampling one of JPGConsts.SUBSAMPLING_NONE, JPGConsts.SUBSAMPLING_422
+	 *        and JPGConsts.SUBSAMPLING_420
+	 */
+	public void setSubsampling(int subsampling) {
+		if(subsampling != JPGConsts.SUBSAMPLING_NONE && subsampling != JPGConsts.SUBSAMPLING_422 && subsampling != JPGConsts.SUBSAMPLING_420)
+			throw new IllegalArgumentException("Unsupported subsampling: " + subsampling);
+		this.subsampling = subsampling;
+	}
+	
 	public void setTiffFlavor(boolean isTiffFlavor) {
 		this.isTiffFlavor = isTiffFlavor;
 	}
@@ -15,15 +15,25 @@ import com.icafe4j.image.ImageType;
 import com.icafe4j.image.png.Filter;
 
 public class PNGOptions extends ImageOptions {
+	// Adaptive filter strategies
+	public static final int FILTER_STRATEGY_MSAD = 0; // Minimum sum of absolute differences
+	public static final int FILTER_STRATEGY_ENTROPY = 1; // Minimum entropy of the filtered bytes
+	public static final int FILTER_STRATEGY_BRUTE_FORCE = 2; // Smallest deflated size
 	//
 	private boolean isApplyAdaptiveFilter;
 	private int filterType = Filter.NONE;
 	private int compressionLevel = 4;
+	// How the filter is selected for each scan line if adaptive filter is applied
+	private int filterStrategy = FILTER_STRATEGY_MSAD;
 	
 	public int getCompressionLevel() {
 		return compressionLevel;
 	}
 	
+	public int getFilterStrategy() {
+		return filterStrategy;
+	}
+	
 	public int getFilterType() {
 		return filterType;
 	}
@@ -45,6 +55,21 @@ public class PNGOptions extends ImageOptions {
 			this.compressionLevel = compressionLevel;
 	}
 	
+	/**
+	 * Set how the filter of each scan line is selected when adaptive filter is applied.
+	 * MSAD is the fastest. ENTROPY usually compresses slightly better for little extra
+	 * cost. BRUTE_FORCE deflates the scan line with every filter and keeps the smallest
+	 * result, which is several times slower.
+	 * 
+	 * @param filterStrategy one of FILTER_STRATEGY_MSAD, FILTER_STRATEGY_ENTROPY and
+	 *        FILTER_STRATEGY_BRUTE_FORCE
+	 */
+	public void setFilterStrategy(int filterStrategy) {
+		if(filterStrategy < FILTER_STRATEGY_MSAD || filterStrategy > FILTER_STRATEGY_BRUTE_FORCE)
+			throw new IllegalArgumentException("Invalid filter strategy: " + filterStrategy);
+		this.filterStrategy = filterStrategy;
+	}
+	
 	public void setFilterType(int filterType) {
 		this.filterType = filterType;
 	}
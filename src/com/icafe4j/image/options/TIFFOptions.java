@@ -23,10 +23,15 @@ public class TIFFOptions extends ImageOptions {
 	private ByteOrder byteOrder = ByteOrder.BIG_ENDIAN;
 	private int defalteCompressionLevel = 4;
 	private boolean writeICCProfile;
+	private boolean isTiled;
+	private boolean isBigTIFF;
 	
 	private int jpegQuality = 90;
 	private int xResolution = 72;
 	private int yResolution = 72;
+	private int tileWidth = 256;
+	private int tileHeight = 256;
+	private int targetStripBytes;
 	
 	public TIFFOptions() {}
 	
@@ -41,7 +46,12 @@ public class TIFFOptions extends ImageOptions {
 		this.writeICCProfile = options.writeICCProfile;
 		this.jpegQuality = options.jpegQuality;
 		this.xResolution = options.xResolution;
-		this.yResolution = options.yResolution;		
+		this.yResolution = options.yResolution;
+		this.isTiled = options.isTiled;
+		this.tileWidth = options.tileWidth;
+		this.tileHeight = options.tileHeight;
+		this.targetStripBytes = options.targetStripBytes;
+		this.isBigTIFF = options.isBigTIFF;
 	}
 	
 	public ByteOrder getByteOrder() {
@@ -64,6 +74,23 @@ public class TIFFOptions extends ImageOptions {
 		return photoMetric;
 	}
 	
+	/**
+	 * Get the uncompressed size each strip is aimed at
+	 * 
+	 * @return target strip size in bytes or 0 if the writer picks the strip layout itself
+	 */
+	public int getTargetStripBytes() {
+		return targetStripBytes;
+	}
+	
+	public int getTileHeight() {
+		return tileHeight;
+	}
+	
+	public int getTileWidth() {
+		return tileWidth;
+	}
+	
 	public Compression getTiffCompression() {
 		return tiffCompression;
 	}
@@ -84,6 +111,14 @@ public class TIFFOptions extends ImageOptions {
 		return isApplyPredictor;
 	}
 	
+	public boolean isBigTIFF() {
+		return isBigTIFF;
+	}
+	
+	public boolean isTiled() {
+		return isTiled;
+	}
+	
 	public boolean writeICCProfile() {
 		return writeICCProfile;
 	}
@@ -92,6 +127,16 @@ public class TIFFOptions extends ImageOptions {
 		this.isApplyPredictor = isApplyPredictor;
 	}
 	
+	/**
+	 * Write BigTIFF (version 43) with 64 bit offsets instead of classic TIFF
+	 * which is limited to 4GB per file
+	 * 
+	 * @param isBigTIFF true to write BigTIFF
+	 */
+	public void setBigTIFF(boolean isBigTIFF) {
+		this.isBigTIFF = isBigTIFF;
+	}
+	
 	public void setByteOrder(ByteOrder byteOrder) {
 		this.byteOrder = byteOrder;
 	}
@@ -113,6 +158,42 @@ public class TIFFOptions extends ImageOptions {
 		this.resolutionUnit = resolutionUnit;
 	}
 	
+	/**
+	 * Set the uncompressed size of each strip. Rows are grouped into strips
+	 * of about this size. Ignored when writing tiles.
+	 * 
+	 * @param targetStripBytes target strip size in bytes or 0 to let the writer pick the strip layout
+	 * @throws IllegalArgumentException if targetStripBytes is negative
+	 */
+	public void setTargetStripBytes(int targetStripBytes) {
+		if(targetStripBytes < 0)
+			throw new IllegalArgumentException("Invalid target strip size: " + targetStripBytes);
+		this.targetStripBytes = targetStripBytes;
+	}
+	
+	/**
+	 * Write image data as tiles instead of strips
+	 * 
+	 * @param isTiled true to write tiles of the size set by {@link #setTileSize(int, int)}
+	 */
+	public void setTiled(boolean isTiled) {
+		this.isTiled = isTiled;
+	}
+	
+	/**
+	 * Set the tile size used when writing tiles. Default is 256x256.
+	 * 
+	 * @param tileWidth tile width, a positive multiple of 16
+	 * @param tileHeight tile height, a positive multiple of 16
+	 * @throws IllegalArgumentException if either value is not a positive multiple of 16
+	 */
+	public void setTileSize(int tileWidth, int tileHeight) {
+		if(tileWidth <= 0 || tileWidth%16 != 0 || tileHeight <= 0 || tileHeight%16 != 0)
+			throw new IllegalArgumentException("Tile size must be a positive multiple of 16: " + tileWidth + "x" + tileHeight);
+		this.tileWidth = tileWidth;
+		this.tileHeight = tileHeight;
+	}
+	
 	public void setTiffCompression(Compression tiffCompression) {
 		this.tiffCompression = tiffCompression;
 	}
@@ -0,0 +1,116 @@
+/**
+ * COPYRIGHT (C) 2014-2019 WEN YU (YUWEN_66@YAHOO.COM) ALL RIGHTS RESERVED.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Any modifications to this file must keep this entire header intact.
+ */
+
+package com.icafe4j.image.png;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.icafe4j.io.IOUtils;
+
+/**
+ * Presents the data of consecutive IDAT chunks as one continuous stream
+ * without merging them into memory first.
+ * <p>
+ * The underlying stream must be positioned at the start of the data field of
+ * the first IDAT chunk. Chunk CRCs are skipped. Once a chunk other than IDAT
+ * is met, this stream reports end of data and the length and type of that
+ * chunk can be retrieved by {@link #getNextChunkLength()} and
+ * {@link #getNextChunkType()}, leaving the underlying stream positioned at
+ * the start of its data field.
+ * <p>
+ * Closing this stream does not close the underlying stream.
+ *
+ * @author agent
+ * @version 1.0 10/17/2026
+ */
+public class IDATInputStream extends InputStream {
+	private InputStream is;
+	// Bytes left in the current IDAT chunk
+	private int remaining;
+	private boolean done;
+	// Header of the chunk following the last IDAT chunk
+	private int nextChunkLength;
+	private int nextChunkType;
+
+	public IDATInputStream(InputStream is, int firstChunkLength) {
+		this.is = is;
+		this.remaining = firstChunkLength;
+	}
+
+	public int available() throws IOException {
+		if(done) return 0;
+		return Math.min(remaining, is.available());
+	}
+
+	public void close() throws IOException {
+		// Leave the underlying stream open
+	}
+
+	/**
+	 * Skip whatever is left of the IDAT chunks.
+	 *
+	 * @throws IOException
+	 */
+	public void finish() throws IOException {
+		while(nextChunk()) {
+			IOUtils.skipFully(is, remaining);
+			remaining = 0;
+		}
+	}
+
+	public int getNextChunkLength() {
+		return nextChunkLength;
+	}
+
+	public int getNextChunkType() {
+		return nextChunkType;
+	}
+
+	// Move on to the next IDAT chunk if the current one is used up
+	private boolean nextChunk() throws IOException {
+		while(remaining == 0) {
+			if(done) return false;
+			IOUtils.readUnsignedIntMM(is); // CRC
+			int length = IOUtils.readIntMM(is);
+			int type = IOUtils.readIntMM(is);
+			if(type != ChunkType.IDAT.getValue()) {
+				nextChunkLength = length;
+				nextChunkType = type;
+				done = true;
+				return false;
+			}
+			remaining = length;
+		}
+
+		return true;
+	}
+
+	public int read() throws IOException {
+		if(!nextChunk()) return -1;
+		int b = is.read();
+		if(b == -1) throw new EOFException("Truncated IDAT chunk");
+		remaining--;
+
+		return b;
+	}
+
+	public int read(byte[] b, int off, int len) throws IOException {
+		if(len == 0) return 0;
+		if(!nextChunk()) return -1;
+		int n = is.read(b, off, Math.min(len, remaining));
+		if(n == -1) throw new EOFException("Truncated IDAT chunk");
+		remaining -= n;
+
+		return n;
+	}
+}
@@ -0,0 +1,52 @@
+/**
+ * COPYRIGHT (C) 2014-2019 WEN YU (YUWEN_66@YAHOO.COM) ALL RIGHTS RESERVED.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Any modifications to this file must keep this entire header intact.
+ */
+
+package com.icafe4j.image.png;
+
+/**
+ * Receives the defiltered scan lines of a PNG image as they are decoded.
+ * <p>
+ * Samples are delivered in PNG layout: big-endian for 16 bit depth, packed
+ * most significant bits first for bit depth less than 8 and without any gamma
+ * correction. The data array is reused for the next scan line and must not be
+ * modified. Copy the scan line if it is to be kept.
+ *
+ * @author agent
+ * @version 1.0 10/17/2026
+ */
+public interface ScanLineListener {
+	/**
+	 * Called once the image header is read and before any scan line.
+	 *
+	 * @param width image width
+	 * @param height image height
+	 * @param bitDepth bits per sample or per palette index
+	 * @param colorType PNG color type
+	 * @param interlaced true if the image is Adam7 interlaced
+	 */
+	public void begin(int width, int height, int bitDepth, ColorType colorType, boolean interlaced);
+
+	/**
+	 * Called for each decoded scan line.
+	 *
+	 * @param pass 0 for a non-interlaced image or Adam7 pass 1 to 7
+	 * @param row row index within the pass
+	 * @param data array holding the scan line
+	 * @param offset start of the scan line in data
+	 * @param length number of bytes in the scan line
+	 */
+	public void scanLine(int pass, int row, byte[] data, int offset, int length);
+
+	/**
+	 * Called after the last scan line.
+	 */
+	public void end();
+}
@@ -14,12 +14,20 @@
  *
  * Who   Date       Description
  * ====  =========  ====================================================
+ * AG    17Oct2026  Added Atkinson and Sierra Lite error diffusion
  * WY    12Sep2015  Initial creation
  */
 
 package com.icafe4j.image.quant;
 
+// Dither method supported by ICAFE
 public enum DitherMethod {
-	FLOYD_STEINBERG,
-	BAYER;
+	FLOYD_STEINBERG, // Error diffusion
+	BAYER, // Ordered dither
+	ATKINSON, // Error diffusion, only 3/4 of the error is spread
+	SIERRA_LITE; // Error diffusion to three neighbors
+	
+	public boolean isErrorDiffusion() {
+		return this != BAYER;
+	}
 }
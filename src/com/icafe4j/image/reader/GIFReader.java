@@ -14,6 +14,9 @@
  *
  * Who   Date       Description
  * ====  =========  =========================================================
+ * AG    17Oct2026  Frame parameters logged at debug level and kept in GIFFrame
+ * AG    17Oct2026  Added readFrames() to stream composited frames
+ * AG    17Oct2026  Decode with LZWTableDecoder
  * WY    14Oct2015  Fixed bug with transparent color
  * WY    08Oct2015  Removed frame specific methods
  * WY    08Oct2015  Added getGIFFrames()
@@ -35,19 +38,22 @@ import java.awt.image.BufferedImage;
 import java.awt.image.ColorModel;
 import java.awt.image.DataBuffer;
 import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
 import java.awt.image.IndexColorModel;
 import java.awt.image.Raster;
 import java.awt.image.WritableRaster;
 import java.io.*;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.icafe4j.image.compression.lzw.LZWTreeDecoder;
+import com.icafe4j.image.compression.lzw.LZWTableDecoder;
 import com.icafe4j.image.gif.GIFFrame;
+import com.icafe4j.image.gif.GIFFrameListener;
 import com.icafe4j.io.IOUtils;
 
 /** 
@@ -78,6 +84,8 @@ public class GIFReader extends ImageReader {
 	protected int colorsUsed;
 	protected int image_x;
 	protected int image_y;
+	protected boolean interlaced;
+	protected boolean localColorTable;
 
 	// To keep track of all the frames
 	private List<GIFFrame> gifFrames;
@@ -86,21 +94,25 @@ public class GIFReader extends ImageReader {
 	// BufferedImage with the width and height of the logical screen to draw frames upon
 	private BufferedImage baseImage;
 	
+	// Buffers reused from frame to frame by readFrames()
+	private byte[] decodeBuffer;
+	private byte[] interlaceBuffer;
+	
 	// Obtain a logger instance
 	private static final Logger LOGGER = LoggerFactory.getLogger(GIFReader.class);
 	
-	private byte[] decodeLZW(InputStream is) throws Exception {
+	private byte[] decodeLZW(InputStream is, boolean reuseBuffers) throws Exception {
 		int dimension = width*height;		
-		byte[] temp_ = new byte[dimension];
+		byte[] temp_ = reuseBuffers? decodeBuffer = ensureCapacity(decodeBuffer, dimension) : new byte[dimension];
 
 		int min_code_size = is.read();// The length of the root
-		LZWTreeDecoder decoder = new LZWTreeDecoder(is, min_code_size);
+		LZWTableDecoder decoder = new LZWTableDecoder(is, min_code_size);
 		decoder.decode(temp_, 0, dimension);
 		
 		return temp_;
 	}
    
-	private byte[] decodeLZWInterLaced(InputStream is) throws Exception	{
+	private byte[] decodeLZWInterLaced(InputStream is, boolean reuseBuffers) throws Exception	{
 		int index = 0;
 		int index2 = 0;
 		int passParam[] = {0,8,4,8,2,4,1,2};
@@ -112,10 +124,17 @@ public class GIFReader extends ImageReader {
 		int min_code_size = is.read();// The length of the root
 
 		int dimension = width*height;
-		byte[] buf = new byte[dimension];
-		byte[] temp_ = new byte[dimension];
+		byte[] buf;
+		byte[] temp_;
+		if(reuseBuffers) {
+			buf = interlaceBuffer = ensureCapacity(interlaceBuffer, dimension);
+			temp_ = decodeBuffer = ensureCapacity(decodeBuffer, dimension);
+		} else {
+			buf = new byte[dimension];
+			temp_ = new byte[dimension];
+		}
 
-		LZWTreeDecoder decoder = new LZWTreeDecoder(is, min_code_size);
+		LZWTableDecoder decoder = new LZWTableDecoder(is, min_code_size);
 		decoder.decode(buf, 0, dimension);
    
 		for (int pass=1;pass<5;pass++)
@@ -138,6 +157,53 @@ public class GIFReader extends ImageReader {
 		return temp_;
 	}
    
+	private static byte[] ensureCapacity(byte[] buf, int size) {
+		if(buf == null || buf.length < size)
+			return new byte[size];
+		return buf;
+	}
+	
+	/**
+	 * Draw the current frame upon the canvas. Transparent pixels and pixels
+	 * outside of the logical screen are left out.
+	 */
+	private void drawFrame(byte[] pixels, int[] canvas) {
+		int right = Math.min(image_x + width, logicalScreenWidth);
+		int bottom = Math.min(image_y + height, logicalScreenHeight);
+		int[] palette = rgbColorPalette;
+		
+		for(int y = image_y; y < bottom; y++) {
+			int src = (y - image_y)*width;
+			int dst = y*logicalScreenWidth + image_x;
+			for(int x = image_x; x < right; x++, src++, dst++) {
+				int index = pixels[src]&0xff;
+				if(index != transparent_color && index < palette.length)
+					canvas[dst] = palette[index]|0xff000000;
+			}
+		}
+	}
+	
+	/**
+	 * Copy the area of the current frame between the canvas and the restore buffer.
+	 * 
+	 * @param canvas logical screen pixels
+	 * @param previous restore buffer holding the area of the current frame
+	 * @param save true to copy from the canvas to the buffer, false for the other way
+	 */
+	private void copyFrameArea(int[] canvas, int[] previous, boolean save) {
+		int areaWidth = Math.min(image_x + width, logicalScreenWidth) - image_x;
+		int bottom = Math.min(image_y + height, logicalScreenHeight);
+		
+		if(areaWidth <= 0) return;
+		
+		for(int y = image_y, offset = 0; y < bottom; y++, offset += areaWidth) {
+			if(save)
+				System.arraycopy(canvas, y*logicalScreenWidth + image_x, previous, offset, areaWidth);
+			else
+				System.arraycopy(previous, offset, canvas, y*logicalScreenWidth + image_x, areaWidth);
+		}
+	}
+	
 	public Color getBackgroundColor() {
 		return backgroundColor;
 	}
@@ -169,7 +235,7 @@ public class GIFReader extends ImageReader {
 	 */
 	protected BufferedImage getFrameAsBufferedImage(InputStream is) throws Exception {
 		// Read frame into a byte array
-		byte[] pixels = readFrame(is);
+		byte[] pixels = readFrame(is, false);
 		if(pixels == null) return null;
 		//Create a BufferedImage
 		int[] off = {0};//band offset, we have only one band start at 0
@@ -299,7 +365,7 @@ public class GIFReader extends ImageReader {
 		return transparencyFlag == GIFFrame.TRANSPARENCY_INDEX_SET;
 	}
    
-	private byte[] readFrame(InputStream is) throws Exception {
+	private byte[] readFrame(InputStream is, boolean reuseBuffers) throws Exception {
 		// One time read of global scope data
 		if(gifHeader == null) {
 			if(!readGlobalScopeData(is)) return null;
@@ -313,7 +379,7 @@ public class GIFReader extends ImageReader {
 			image_separator = is.read();
 			    
 			if(image_separator == -1 || image_separator == 0x3b) { // End of stream 
-				LOGGER.info("End of stream!");
+				LOGGER.debug("End of stream!");
 				return null;
 			}
 			    
@@ -326,19 +392,13 @@ public class GIFReader extends ImageReader {
 					int packedFields = is.read();
 					// Determine the disposal method
 					disposalMethod = ((packedFields&0x1c)>>2);
-					LOGGER.info("Disposal method: {}", (disposalMethod == 0)?"UNSPECIFIED":
-						(disposalMethod == 1)?"LEAVE_AS_IS":(disposalMethod == 2)?"RESTORE_TO_BACKGROUND":
-							(disposalMethod == 3)?"RESTORE_TO_PREVIOUS":"TO_BE_DEFINED");
 					userInputFlag =  ((packedFields&0x02)>>1);
-					LOGGER.info("User input flag: {}", (userInputFlag == 0)?"INPUT_NONE":"INPUT_SET");
 					delay = IOUtils.readUnsignedShort(is);
-					LOGGER.info("Delay: {} miliseconds", delay*10);
 					// Read transparent color index
 					int transparent_color_index = is.read();
 					// Check for transparent color flag
 					if((packedFields&0x01) == 0x01){
 						transparencyFlag = GIFFrame.TRANSPARENCY_INDEX_SET;
-						LOGGER.info("transparent gif...");
 						transparent_color = transparent_color_index;
 					}					
 					len = is.read();// len=0, block terminator!					
@@ -354,33 +414,30 @@ public class GIFReader extends ImageReader {
 		} while(image_separator != 0x2c); // ","
 	
 		byte flags2 = readImageDescriptor(is);
-		   
-		boolean hasLocalColorMap = false;
+		
+		localColorTable = ((flags2&0x80) == 0x80);
+		interlaced = ((flags2&0x40) == 0x40);
 	
-		if((flags2&0x80) == 0x80) {
-			hasLocalColorMap = true;
+		if(localColorTable) {
 			// A local color map is present
-			LOGGER.info("local color map is present");
-	
 			bitsPerPixel = (flags2&0x07)+1;
 			colorsUsed = (1<<bitsPerPixel);
-	
-			LOGGER.info("{} color image", colorsUsed);
-	
 			readLocalPalette(is, colorsUsed);
-		}
-		   
-		if(!hasLocalColorMap) rgbColorPalette = globalColorPalette;
+		} else
+			rgbColorPalette = globalColorPalette;
+		
+		// This is called for every frame, don't build the message unless it is wanted
+		if(LOGGER.isDebugEnabled())
+			LOGGER.debug("Frame {}x{} at ({},{}), delay: {} miliseconds, disposal method: {}, user input: {}, transparent color index: {}, local color map: {}, interlaced: {}",
+				width, height, image_x, image_y, delay*10, disposalMethod, userInputFlag, transparent_color, localColorTable, interlaced);
 		   
 		if (transparencyFlag == GIFFrame.TRANSPARENCY_INDEX_SET && transparent_color < colorsUsed)
 			rgbColorPalette[transparent_color] &= 0x00ffffff;
 			
-		if((flags2&0x40) == 0x40) {
-			LOGGER.info("Interlaced gif image!"); 
-			return decodeLZWInterLaced(is);
-		}
+		if(interlaced)
+			return decodeLZWInterLaced(is, reuseBuffers);
 		
-		return decodeLZW(is);
+		return decodeLZW(is, reuseBuffers);
 	}
     
 	private void readGlobalPalette(InputStream is,int num_of_color) throws Exception {
@@ -436,15 +493,81 @@ public class GIFReader extends ImageReader {
 	public BufferedImage read(InputStream is) throws Exception {
 		frames = new ArrayList<BufferedImage>();
 		gifFrames = new ArrayList<GIFFrame>();
-		BufferedImage bi = null;
 		
-		while((bi = getFrameAsBufferedImageEx(is)) != null) {
-			gifFrames.add(new GIFFrame(bi, image_x, image_y, delay, disposalMethod, userInputFlag, transparencyFlag, transparent_color));
-			frames.add(bi);			
-		}
+		readFrames(is, new GIFFrameListener() {
+			public void begin(int logicalScreenWidth, int logicalScreenHeight) {}
+			
+			public boolean frame(int frameIndex, GIFFrame frame) {
+				// The canvas is reused for the next frame, keep a copy
+				BufferedImage canvas = frame.getFrame();
+				BufferedImage bi = new BufferedImage(canvas.getColorModel(), canvas.copyData(null), false, null);
+				gifFrames.add(new GIFFrame(bi, frame.getLeftPosition(), frame.getTopPosition(), frame.getDelay(), frame.getDisposalMethod(),
+						frame.getUserInputFlag(), frame.getTransparencyFlag(), frame.getTransparentColor(), frame.isInterlaced(), frame.hasLocalColorTable()));
+				frames.add(bi);
+				return true;
+			}
+			
+			public void end() {}
+		});
 		
 		return frames.get(0);
 	}
+	
+	/**
+	 * Decode the frames one at a time and hand each composited frame to the listener
+	 * as soon as it is ready. Unlike {@link #read(InputStream) read}, which keeps every
+	 * frame, only a single logical screen canvas and a restore buffer for the disposal
+	 * method "RESTORE_TO_PREVIOUS" are kept in memory no matter how many frames there are.
+	 * <p>
+	 * The frames are the same as those returned by {@link #getFrames() getFrames} after
+	 * {@link #read(InputStream) read}, but nothing is kept by this GIFReader.
+	 * 
+	 * @param is InputStream for the GIF/Animated GIF
+	 * @param listener GIFFrameListener to receive the frames
+	 * @throws Exception
+	 */
+	public void readFrames(InputStream is, GIFFrameListener listener) throws Exception {
+		if(listener == null) throw new IllegalArgumentException("Input listener is null");
+		// One time read of global scope data
+		if(gifHeader == null) {
+			if(!readGlobalScopeData(is)) return;
+		}
+		
+		listener.begin(logicalScreenWidth, logicalScreenHeight);
+		
+		BufferedImage canvas = new BufferedImage(logicalScreenWidth, logicalScreenHeight, BufferedImage.TYPE_INT_ARGB);
+		int[] canvasData = ((DataBufferInt)canvas.getRaster().getDataBuffer()).getData();
+		int[] previous = null;
+		int frameIndex = 0;
+		byte[] pixels = null;
+		
+		while((pixels = readFrame(is, true)) != null) {
+			if(disposalMethod == GIFFrame.DISPOSAL_RESTORE_TO_PREVIOUS) {
+				if(previous == null || previous.length < width*height)
+					previous = new int[width*height];
+				copyFrameArea(canvasData, previous, true);
+			}
+			
+			drawFrame(pixels, canvasData);
+			
+			GIFFrame frame = new GIFFrame(canvas, image_x, image_y, delay, disposalMethod, userInputFlag, transparencyFlag, transparent_color, interlaced, localColorTable);
+			if(!listener.frame(frameIndex++, frame)) break;
+			
+			// Check about disposal method to take action accordingly
+			if(disposalMethod == GIFFrame.DISPOSAL_RESTORE_TO_BACKGROUND) {
+				int right = Math.min(image_x + width, logicalScreenWidth);
+				int bottom = Math.min(image_y + height, logicalScreenHeight);
+				for(int y = image_y; y < bottom && image_x < right; y++)
+					Arrays.fill(canvasData, y*logicalScreenWidth + image_x, y*logicalScreenWidth + right, 0);
+			} else if(disposalMethod == GIFFrame.DISPOSAL_RESTORE_TO_PREVIOUS) {
+				copyFrameArea(canvasData, previous, false);
+			} else if(disposalMethod > GIFFrame.DISPOSAL_RESTORE_TO_PREVIOUS) { // To be defined
+				Arrays.fill(canvasData, 0);
+			}
+		}
+		
+		listener.end();
+	}
     
 	private byte readImageDescriptor(InputStream is) throws Exception {	 	
 		int nindex = 0;
@@ -483,6 +606,8 @@ public class GIFReader extends ImageReader {
 		image_y = 0;
 		width = 0;
 		height = 0;
+		interlaced = false;
+		localColorTable = false;
 		// End of fields reset
 	}
 	
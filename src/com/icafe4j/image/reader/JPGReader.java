@@ -14,6 +14,12 @@
  *
  * Who   Date       Description
  * ====  =========  =================================================
+ * AG    17Oct2026  Full size images always go to ImageIO, no copy of the input for scaled decoding
+ * AG    17Oct2026  Reset per image decoding state at the start of each read
+ * AG    17Oct2026  Made ImageIO the default again and left CMYK/YCCK to ImageIO
+ * AG    17Oct2026  Fixed reading APP2/APP13 segments shorter than their identifiers
+ * AG    17Oct2026  Added scaled decoding (1/2, 1/4, 1/8) using reduced size IDCT
+ * AG    17Oct2026  Added native baseline and progressive DCT decoding
  * WY    18Jun2019  Added code to read APP1
  * WY    18Jun2019  Added code to read APP2/APP13
  * WY    12Jan2016  Cleaned up stale code
@@ -21,33 +27,60 @@
 /** 
   * Decodes and shows images in JPEG format.
   *
-  * Current version is a baseline JFIF compatible one. It supports Adobe
-  * APP14 color transform - YCCK, CMYK, YCCK inverted. Progressive DCT
-  * is not supported!
+  * Full size images are decoded by the JDK ImageIO JPEG plugin. When a scale
+  * denominator is set, the native decoder decodes the image directly at the
+  * reduced size. It handles baseline, extended (8 bit precision) and progressive
+  * Huffman coded gray scale, YCbCr and RGB JPEG. Like ImageIO it leaves the
+  * embedded ICC profile of such images in the metadata without applying it.
+  * Four component CMYK and YCCK images are handed over to ImageIO which honors
+  * the Adobe APP14 flags and the embedded ICC profile. Arithmetic coding,
+  * lossless and hierarchical JPEG are not supported!
   *
   * @author Wen Yu, yuwen_66@yahoo.com
   * @version 1.0 04/23/2007
   */
 package com.icafe4j.image.reader;
 
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
 import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.io.SequenceInputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.stream.ImageInputStream;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.icafe4j.image.compression.UnsupportedCompressionException;
+import com.icafe4j.image.compression.huffman.HuffmanDecoder;
 import com.icafe4j.image.compression.huffman.HuffmanTbl;
 import com.icafe4j.image.jpeg.DHTReader;
 import com.icafe4j.image.jpeg.DQTReader;
 import com.icafe4j.image.jpeg.HTable;
+import com.icafe4j.image.jpeg.JPGConsts;
 import com.icafe4j.image.jpeg.Marker;
 import com.icafe4j.image.jpeg.QTable;
 import com.icafe4j.image.jpeg.SOFReader;
@@ -64,6 +97,7 @@ import com.icafe4j.image.meta.jpeg.JpegExif;
 import com.icafe4j.image.meta.jpeg.JpegXMP;
 import com.icafe4j.image.meta.xmp.XMP;
 import com.icafe4j.image.jpeg.Component;
+import com.icafe4j.image.util.DCT;
 import com.icafe4j.io.IOUtils;
 import com.icafe4j.string.StringUtils;
 import com.icafe4j.string.XMLUtils;
@@ -96,10 +130,71 @@ public class JPGReader extends ImageReader {
 	@SuppressWarnings("unused")
 	private Map<Integer, Component> components = new HashMap<Integer, Component>(4);
 	
+	// Scale denominator for reduced size decoding and the corresponding output block size
+	private int scale = 1;
+	private int blockSize = 8;
+	// Records the input up to the frame header for ImageIO to read it again
+	private ReplayInputStream replay;
+	// Set when the frame has four components which are left to ImageIO
+	private boolean cmykFrame;
+	
+	// Restart interval in MCUs defined by DRI, 0 means no restart marker
+	private int restart_interval;
+	// Adobe APP14 color transform, -1 means no Adobe APP14 segment found
+	private int adobe_transform = -1;
+	
+	// Frame decoding state
+	private SOFReader frame;
+	private Component[] frameComponents;
+	private int hmax;
+	private int vmax;
+	private int mcusPerLine;
+	private int mcusPerColumn;
+	// Number of blocks for each component padded to MCU boundary
+	private int[] blocksPerLine;
+	private int[] blocksPerColumn;
+	// Decoded samples for each component
+	private byte[][] planes;
+	// Quantized DCT coefficients kept for progressive JPEG
+	private short[][] coefficients;
+	// Scratch buffers reused for every single block
+	private int[] block = new int[64];
+	private int[] workspace = new int[64];
+	// DC predictions and end of band run length
+	private int[] pred = new int[4];
+	private int eobrun;
+	
+	// Scan decoding modes
+	private static final int BASELINE  = 0;
+	private static final int DC_FIRST  = 1;
+	private static final int DC_REFINE = 2;
+	private static final int AC_FIRST  = 3;
+	private static final int AC_REFINE = 4;
+	
+	private static final int[] ZIGZAG_TRAVERSE_ORDER = JPGConsts.getZigzagMatrix();
+	
+	// YCbCr to RGB conversion tables (CCIR 601-1 as used by JFIF) 
+	private static final int[] Cr_R = new int[256];
+	private static final int[] Cb_B = new int[256];
+	private static final int[] Cr_G = new int[256];
+	private static final int[] Cb_G = new int[256];
+	
+	static {
+		for(int i = 0; i < 256; i++) {
+			int x = i - 128;
+			Cr_R[i] = (int)Math.round(1.40200*x);
+			Cb_B[i] = (int)Math.round(1.77200*x);
+			Cr_G[i] = -(int)Math.round(0.71414*65536*x);
+			Cb_G[i] = -(int)Math.round(0.34414*65536*x) + 32768;
+		}
+	}
+	
 	// Obtain a logger instance
 	private static final Logger LOGGER = LoggerFactory.getLogger(JPGReader.class);
 	
 	public BufferedImage read1(InputStream is) throws Exception	{
+		resetState();
+		
 		boolean finished = false;
 		int length = 0;
 		short marker;
@@ -127,6 +222,14 @@ public class JPGReader extends ImageReader {
 					case JPG0:
 					case JPG13:
 				    case TEM: // The only stand alone marker besides SOI, EOI, and RSTn. 
+				    case RST0: // Stray RSTn outside of the entropy-coded data
+				    case RST1:
+				    case RST2:
+				    case RST3:
+				    case RST4:
+				    case RST5:
+				    case RST6:
+				    case RST7:
 						marker = IOUtils.readShortMM(is);
 						break;
 				    case PADDING:	
@@ -142,14 +245,30 @@ public class JPGReader extends ImageReader {
 				    	read_DHT(is);
 				    	marker = IOUtils.readShortMM(is);
 						break;
+				    case DRI:
+				    	read_DRI(is);
+				    	marker = IOUtils.readShortMM(is);
+				    	break;
 				    case SOS:
+				    	if(readers.isEmpty())
+				    		throw new IllegalArgumentException("Invalid JPEG image, SOS found before SOF!");
 				    	SOFReader reader = readers.get(readers.size() - 1);
 						marker = readSOS(is, reader);
 						break;
 				    case SOF0:
 	                case SOF1:
 	                case SOF2:
-	                	readers.add(readSOF(is, emarker));
+	                	if(!readers.isEmpty())
+	                		throw new UnsupportedCompressionException("Hierarchical JPEG is not supported by this decoder!");
+	                	SOFReader sofReader = readSOF(is, emarker);
+	                	if(sofReader.getNumOfComponents() == 4) { // CMYK or YCCK
+	                		cmykFrame = true;
+	                		return null;
+	                	}
+	                	if(replay != null)
+	                		replay.stopRecording();
+	                	readers.add(sofReader);
+	                	initFrame(sofReader);
 						marker = IOUtils.readShortMM(is);
 			           	break;
 				    case SOF3:
@@ -211,9 +330,34 @@ public class JPGReader extends ImageReader {
 			}
 		}
 		
-		return null;
+		if(frame == null) return null;
+		
+		if(frame.isProgressive())
+			finishProgressive();
+		
+		return createImage();
    	}
 	
+	// Clear everything left over from the image read before
+	private void resetState() {
+		metadataMap = new HashMap<MetadataType, Metadata>();
+		iccProfileStream = null;
+		eightBIMStream = null;
+		extendedXMP = null;
+		xmpGUID = "";
+		quant_tbl = new int[4][];
+		dc_hufftbl = new HuffmanTbl[4];
+		ac_hufftbl = new HuffmanTbl[4];
+		restart_interval = 0;
+		adobe_transform = -1;
+		cmykFrame = false;
+		frame = null;
+		frameComponents = null;
+		planes = null;
+		coefficients = null;
+		eobrun = 0;
+	}
+	
 	private void readAPP1(InputStream is) throws IOException {
 		int length = IOUtils.readUnsignedShortMM(is);
 		byte[] temp = new byte[length - 2];
@@ -252,26 +396,28 @@ public class JPGReader extends ImageReader {
 	}
 	
 	private void readAPP2(InputStream is) throws IOException {
-		int len = ICC_PROFILE_ID.length();
-		byte[] temp = new byte[len];
 		int length = IOUtils.readUnsignedShortMM(is);
+		int len = ICC_PROFILE_ID.length();
+		// A short segment may not even hold the whole identifier
+		byte[] temp = new byte[Math.max(Math.min(len, length - 2), 0)];
 		IOUtils.readFully(is, temp);
-		// ICC_PROFILE segment.
-		if (Arrays.equals(temp, ICC_PROFILE_ID.getBytes())) {
+		// ICC_PROFILE segment, the identifier is followed by two bytes of sequence number and count.
+		if (length - len - 2 >= 2 && Arrays.equals(temp, ICC_PROFILE_ID.getBytes())) {
 			temp = new byte[length - len - 2];
 		    IOUtils.readFully(is, temp);
 		    if(iccProfileStream == null)
 				iccProfileStream = new ByteArrayOutputStream();
 			iccProfileStream.write(ArrayUtils.subArray(temp, 2, length - len - 4));
 		} else {
-  			IOUtils.skipFully(is, length - len - 2);
+  			IOUtils.skipFully(is, Math.max(length - temp.length - 2, 0));
   		}
 	}
 	
 	private void readAPP13(InputStream is) throws IOException {
-		int len = PHOTOSHOP_IRB_ID.length();
-		byte[] temp = new byte[len];
 		int length = IOUtils.readUnsignedShortMM(is);
+		int len = PHOTOSHOP_IRB_ID.length();
+		// A short segment may not even hold the whole identifier
+		byte[] temp = new byte[Math.max(Math.min(len, length - 2), 0)];
 		IOUtils.readFully(is, temp);
 		if (Arrays.equals(temp, PHOTOSHOP_IRB_ID.getBytes())) {
 			temp = new byte[length - len - 2];
@@ -280,7 +426,7 @@ public class JPGReader extends ImageReader {
 				eightBIMStream = new ByteArrayOutputStream();
 			eightBIMStream.write(temp);
 		} else {
-  			IOUtils.skipFully(is, length - len - 2);
+  			IOUtils.skipFully(is, Math.max(length - temp.length - 2, 0));
   		}
 	}
 	
@@ -294,6 +440,7 @@ public class JPGReader extends ImageReader {
 			byte[] buf = ArrayUtils.subArray(data, 0, 5);
 			
 			if(Arrays.equals(buf, ADOBE_ID.getBytes())) {
+				adobe_transform = data[11]&0xff;
 				for (int i = 0, j = 5; i < 3; i++, j += 2) {
 					LOGGER.info("{}{}", app14Info[i], StringUtils.shortToHexStringMM(IOUtils.readShortMM(data, j)));
 				}
@@ -374,11 +521,15 @@ public class JPGReader extends ImageReader {
 		List<HTable> dcTables = reader.getDCTables();
 		List<HTable> acTables = reader.getACTables();
 		
-		for(HTable table : dcTables)
+		for(HTable table : dcTables) {
 			dc_hufftbl[table.getID()] = new HuffmanTbl(table.getBits(), table.getValues());
+			dc_hufftbl[table.getID()].generateDecoderTables();
+		}
 			
-		for(HTable table : acTables)
+		for(HTable table : acTables) {
 			ac_hufftbl[table.getID()] = new HuffmanTbl(table.getBits(), table.getValues());
+			ac_hufftbl[table.getID()].generateDecoderTables();
+		}
 		
 		LOGGER.debug("\n{}", hTablesToString(dcTables));
 		LOGGER.debug("\n{}", hTablesToString(acTables));
@@ -465,55 +616,415 @@ public class JPGReader extends ImageReader {
 		return sof.toString();
 	}
 	
-	// This method is very slow if not wrapped in some kind of cache stream but it works for multiple
-	// SOSs in case of progressive JPEG
+	// Read SOS segment and decode the entropy-coded data following it. Works for
+	// multiple SOSs in case of progressive JPEG. Returns the marker after the scan.
 	private short readSOS(InputStream is, SOFReader sofReader) throws IOException {
 		int len = IOUtils.readUnsignedShortMM(is);
 		byte buf[] = new byte[len - 2];
 		IOUtils.readFully(is, buf);
 		
 		Segment segment = new Segment(Marker.SOS, len, buf);
-		new SOSReader(segment, sofReader);
+		SOSReader sosReader = new SOSReader(segment, sofReader);
 		
 		// Actual image data follow.
-		int nextByte = 0;
-		short marker = 0;	
+		int marker = decodeScan(is, sosReader);
 		
-		while((nextByte = IOUtils.read(is)) != -1) {
-			if(nextByte == 0xff) {
-				nextByte = IOUtils.read(is);
-				
-				if (nextByte == -1) {
-					return Marker.EOI.getValue();
-				}								
-				
-				if (nextByte != 0x00) {
-					marker = (short)((0xff<<8)|nextByte);
-					
-					switch (Marker.fromShort(marker)) {										
-						case RST0:  
-						case RST1:
-						case RST2:
-						case RST3:
-						case RST4:
-						case RST5:
-						case RST6:
-						case RST7:
-							continue;
-						default:											
+		if (marker == -1 || Marker.fromShort((short)marker) == Marker.UNKNOWN) {
+			return Marker.EOI.getValue();
+		}
+		
+		return (short)marker;
+	}
+	
+	private void read_DRI(InputStream is) throws IOException {
+		int len = IOUtils.readUnsignedShortMM(is);
+		restart_interval = IOUtils.readUnsignedShortMM(is);
+		IOUtils.skipFully(is, len - 4);
+	}
+	
+	// Set up the sample and coefficient buffers for the frame
+	private void initFrame(SOFReader reader) throws IOException {
+		if(reader.getPrecision() != 8)
+			throw new UnsupportedCompressionException(reader.getPrecision() + " bit sample precision is not supported by this decoder!");
+		
+		frame = reader;
+		frameComponents = reader.getComponents();
+		width = reader.getFrameWidth();
+		height = reader.getFrameHeight();
+		
+		int numOfComponents = frameComponents.length;
+		
+		if(height == 0)
+			throw new UnsupportedCompressionException("DNL marker is not supported by this decoder!");
+		if(numOfComponents == 0 || numOfComponents > 4)
+			throw new IllegalArgumentException("Invalid number of components: " + numOfComponents);
+		
+		hmax = vmax = 1;
+		blockSize = 8/scale;
+		
+		for(Component component : frameComponents) {
+			hmax = Math.max(hmax, component.getHSampleFactor());
+			vmax = Math.max(vmax, component.getVSampleFactor());
+		}
+		
+		mcusPerLine = (width + 8*hmax - 1)/(8*hmax);
+		mcusPerColumn = (height + 8*vmax - 1)/(8*vmax);
+		
+		blocksPerLine = new int[numOfComponents];
+		blocksPerColumn = new int[numOfComponents];
+		planes = new byte[numOfComponents][];
+		coefficients = new short[numOfComponents][];
+		
+		for(int i = 0; i < numOfComponents; i++) {
+			blocksPerLine[i] = mcusPerLine*frameComponents[i].getHSampleFactor();
+			blocksPerColumn[i] = mcusPerColumn*frameComponents[i].getVSampleFactor();
+			// Progressive JPEG keeps the coefficients until all the scans are done
+			if(reader.isProgressive())
+				coefficients[i] = new short[blocksPerLine[i]*blocksPerColumn[i]*64];
+			else
+				planes[i] = new byte[blocksPerLine[i]*blocksPerColumn[i]*blockSize*blockSize];
+		}
+	}
+	
+	// Decode a single scan and return the marker following the entropy-coded data
+	private int decodeScan(InputStream is, SOSReader sosReader) throws IOException {
+		Component[] scanComponents = sosReader.getComponents();
+		int numOfComponents = scanComponents.length;
+		int[] index = new int[numOfComponents];
+		HuffmanTbl[] dcTables = new HuffmanTbl[numOfComponents];
+		HuffmanTbl[] acTables = new HuffmanTbl[numOfComponents];
+		
+		int Ss = sosReader.getSs();
+		int Se = sosReader.getSe();
+		int Ah = sosReader.getAh();
+		int Al = sosReader.getAl();
+		
+		int mode = BASELINE;
+		
+		if(frame.isProgressive())
+			mode = (Ss == 0)? ((Ah == 0)? DC_FIRST : DC_REFINE) : ((Ah == 0)? AC_FIRST : AC_REFINE);
+		
+		for(int i = 0; i < numOfComponents; i++) {
+			for(int j = 0; j < frameComponents.length; j++) {
+				if(frameComponents[j].getId() == scanComponents[i].getId()) {
+					index[i] = j;
+					break;
+				}
+			}
+			if(mode == BASELINE || mode == DC_FIRST)
+				dcTables[i] = dc_hufftbl[scanComponents[i].getDCTableNumber()];
+			if(mode == BASELINE || mode == AC_FIRST || mode == AC_REFINE)
+				acTables[i] = ac_hufftbl[scanComponents[i].getACTableNumber()];
+			if((mode == BASELINE || mode == DC_FIRST) && dcTables[i] == null 
+					|| (mode == BASELINE || mode == AC_FIRST || mode == AC_REFINE) && acTables[i] == null)
+				throw new IllegalArgumentException("Invalid JPEG image, Huffman table not defined!");
+			if(mode == BASELINE && quant_tbl[scanComponents[i].getQTableNumber()] == null)
+				throw new IllegalArgumentException("Invalid JPEG image, quantization table not defined!");
+		}
+		
+		HuffmanDecoder decoder = new HuffmanDecoder(is);
+		Arrays.fill(pred, 0);
+		eobrun = 0;
+		
+		if(numOfComponents == 1) { // Non-interleaved, MCU is a single block
+			int c = index[0];
+			Component component = frameComponents[c];
+			// Only blocks covering the component dimensions are coded
+			int componentWidth = (width*component.getHSampleFactor() + hmax - 1)/hmax;
+			int componentHeight = (height*component.getVSampleFactor() + vmax - 1)/vmax;
+			int blocksWide = (componentWidth + 7)/8;
+			int blocksHigh = (componentHeight + 7)/8;
+			int total = blocksWide*blocksHigh;
+			
+			for(int m = 0; m < total; m++) {
+				decodeBlock(decoder, mode, c, dcTables[0], acTables[0], m/blocksWide, m%blocksWide, Ss, Se, Al);
+				if(restart_interval > 0 && (m + 1)%restart_interval == 0 && m + 1 < total)
+					restart(decoder);
+			}
+		} else {
+			int total = mcusPerLine*mcusPerColumn;
+			
+			for(int m = 0; m < total; m++) {
+				int mcuRow = m/mcusPerLine;
+				int mcuCol = m%mcusPerLine;
+				for(int i = 0; i < numOfComponents; i++) {
+					int c = index[i];
+					int h = frameComponents[c].getHSampleFactor();
+					int v = frameComponents[c].getVSampleFactor();
+					for(int y = 0; y < v; y++) {
+						for(int x = 0; x < h; x++) {
+							decodeBlock(decoder, mode, c, dcTables[i], acTables[i], mcuRow*v + y, mcuCol*h + x, Ss, Se, Al);
+						}
 					}
+				}
+				if(restart_interval > 0 && (m + 1)%restart_interval == 0 && m + 1 < total)
+					restart(decoder);
+			}
+		}
+		
+		return decoder.getMarker();
+	}
+	
+	private void restart(HuffmanDecoder decoder) throws IOException {
+		int marker = decoder.restart();
+		
+		if(marker < 0xffd0 || marker > 0xffd7)
+			LOGGER.warn("Expected RSTn marker not found: {}", Integer.toHexString(marker));
+		
+		Arrays.fill(pred, 0);
+		eobrun = 0;
+	}
+	
+	private void decodeBlock(HuffmanDecoder decoder, int mode, int c, HuffmanTbl dcTable, HuffmanTbl acTable, int row, int col, int Ss, int Se, int Al) throws IOException {
+		if(mode == BASELINE) {
+			int stride = blocksPerLine[c]*blockSize;
+			decodeBaseline(decoder, c, dcTable, acTable, block);
+			inverseDCT(block, quant_tbl[frameComponents[c].getQTableNumber()], planes[c], (row*stride + col)*blockSize, stride);
+			Arrays.fill(block, 0);
+			return;
+		}
+		
+		short[] coef = coefficients[c];
+		int offset = (row*blocksPerLine[c] + col)<<6;
+		
+		switch(mode) {
+			case DC_FIRST:
+				int t = decoder.decode(dcTable);
+				pred[c] += decoder.receiveExtend(t);
+				coef[offset] = (short)(pred[c]<<Al);
+				break;
+			case DC_REFINE:
+				if(decoder.getBit() != 0)
+					coef[offset] |= (1<<Al);
+				break;
+			case AC_FIRST:
+				decodeACFirst(decoder, acTable, coef, offset, Ss, Se, Al);
+				break;
+			case AC_REFINE:
+				decodeACRefine(decoder, acTable, coef, offset, Ss, Se, Al);
+				break;
+			default:
+		}
+	}
+	
+	// CCITT Rec. T.81(1992 E) Annex F.2.2
+	private void decodeBaseline(HuffmanDecoder decoder, int c, HuffmanTbl dcTable, HuffmanTbl acTable, int[] ZZ) throws IOException {
+		int t = decoder.decode(dcTable);
+		pred[c] += decoder.receiveExtend(t);
+		ZZ[0] = pred[c];
+		
+		for(int K = 1; K < 64; K++) {
+			int RS = decoder.decode(acTable);
+			int SSSS = RS&0x0f;
+			int R = RS>>4;
+			
+			if(SSSS == 0) {
+				if(R != 15) break; // EOB
+				K += 15; // ZRL
+			} else {
+				K += R;
+				if(K > 63) break; // Corrupted data
+				ZZ[ZIGZAG_TRAVERSE_ORDER[K]] = decoder.receiveExtend(SSSS);
+			}
+		}
+	}
+	
+	// CCITT Rec. T.81(1992 E) Annex G.1.2.2
+	private void decodeACFirst(HuffmanDecoder decoder, HuffmanTbl acTable, short[] coef, int offset, int Ss, int Se, int Al) throws IOException {
+		if(eobrun > 0) {
+			eobrun--;
+			return;
+		}
+		
+		for(int K = Ss; K <= Se; K++) {
+			int RS = decoder.decode(acTable);
+			int SSSS = RS&0x0f;
+			int R = RS>>4;
+			
+			if(SSSS == 0) {
+				if(R < 15) { // EOBn
+					eobrun = (1<<R) - 1;
+					if(R > 0) eobrun += decoder.getBits(R);
 					break;
 				}
+				K += 15; // ZRL
+			} else {
+				K += R;
+				if(K > 63) break; // Corrupted data
+				coef[offset + ZIGZAG_TRAVERSE_ORDER[K]] = (short)(decoder.receiveExtend(SSSS)*(1<<Al));
 			}
 		}
+	}
+	
+	// CCITT Rec. T.81(1992 E) Annex G.1.2.3
+	private void decodeACRefine(HuffmanDecoder decoder, HuffmanTbl acTable, short[] coef, int offset, int Ss, int Se, int Al) throws IOException {
+		int p1 = 1<<Al;
+		int m1 = (-1)<<Al;
+		int K = Ss;
 		
-		if (nextByte == -1) {
-			return Marker.EOI.getValue();
+		if(eobrun <= 0) {
+			for(; K <= Se; K++) {
+				int RS = decoder.decode(acTable);
+				int SSSS = RS&0x0f;
+				int R = RS>>4;
+				int value = 0;
+				
+				if(SSSS != 0) { // SSSS should be 1
+					value = (decoder.getBit() != 0)? p1 : m1;
+				} else if(R != 15) {
+					eobrun = 1<<R;
+					if(R > 0) eobrun += decoder.getBits(R);
+					break;
+				} // Otherwise ZRL: skip 16 zero coefficients
+				// Advance over already nonzero coefficients appending correction bits to them
+				while(K <= Se) {
+					int z = offset + ZIGZAG_TRAVERSE_ORDER[K];
+					if(coef[z] != 0) {
+						refine(decoder, coef, z, p1, m1);
+					} else {
+						if(R == 0) break; // Reached target zero coefficient
+						R--;
+					}
+					K++;
+				}
+				if(value != 0 && K <= Se)
+					coef[offset + ZIGZAG_TRAVERSE_ORDER[K]] = (short)value;
+			}
 		}
-
-		if(Marker.fromShort(marker) == Marker.UNKNOWN) return Marker.EOI.getValue();
-
-		return marker;
+		
+		if(eobrun > 0) {
+			// Scan any remaining coefficient positions after the end of band
+			for(; K <= Se; K++) {
+				int z = offset + ZIGZAG_TRAVERSE_ORDER[K];
+				if(coef[z] != 0)
+					refine(decoder, coef, z, p1, m1);
+			}
+			eobrun--;
+		}
+	}
+	
+	private static void refine(HuffmanDecoder decoder, short[] coef, int z, int p1, int m1) throws IOException {
+		if(decoder.getBit() != 0 && (coef[z]&p1) == 0)
+			coef[z] += (coef[z] >= 0)? p1 : m1;
+	}
+	
+	// Inverse DCT all the coefficients once all the progressive scans are done
+	private void finishProgressive() {
+		for(int c = 0; c < frameComponents.length; c++) {
+			int[] qTable = quant_tbl[frameComponents[c].getQTableNumber()];
+			if(qTable == null)
+				throw new IllegalArgumentException("Invalid JPEG image, quantization table not defined!");
+			int stride = blocksPerLine[c]*blockSize;
+			short[] coef = coefficients[c];
+			planes[c] = new byte[blocksPerLine[c]*blocksPerColumn[c]*blockSize*blockSize];
+			for(int row = 0, offset = 0; row < blocksPerColumn[c]; row++) {
+				for(int col = 0; col < blocksPerLine[c]; col++, offset += 64) {
+					for(int k = 0; k < 64; k++)
+						block[k] = coef[offset + k];
+					inverseDCT(block, qTable, planes[c], (row*stride + col)*blockSize, stride);
+				}
+			}
+			// Release the coefficients as soon as possible
+			coefficients[c] = null;
+		}
+	}
+	
+	// Inverse DCT a block into an output area of blockSize x blockSize samples
+	private void inverseDCT(int[] coef, int[] qt, byte[] out, int offset, int stride) {
+		switch(blockSize) {
+			case 8:
+				DCT.inverseDCT(coef, qt, workspace, out, offset, stride);
+				break;
+			case 4:
+				DCT.inverseDCT4x4(coef, qt, workspace, out, offset, stride);
+				break;
+			case 2:
+				DCT.inverseDCT2x2(coef, qt, workspace, out, offset, stride);
+				break;
+			default:
+				DCT.inverseDCT1x1(coef, qt, out, offset);
+		}
+	}
+	
+	// Up-sample and color convert the component planes into a BufferedImage
+	private BufferedImage createImage() {
+		int numOfComponents = frameComponents.length;
+		// Output dimensions after scaling
+		width = (width + scale - 1)/scale;
+		height = (height + scale - 1)/scale;
+		
+		if(numOfComponents == 1) {
+			byte[] gray = new byte[width*height];
+			int stride = blocksPerLine[0]*blockSize;
+			for(int i = 0; i < height; i++)
+				System.arraycopy(planes[0], i*stride, gray, i*width, width);
+			DataBuffer db = new DataBufferByte(gray, gray.length);
+			WritableRaster raster = Raster.createInterleavedRaster(db, width, height, width, 1, new int[] {0}, null);
+			ColorModel cm = new ComponentColorModel(ColorSpace.getInstance(ColorSpace.CS_GRAY), false, false, Transparency.OPAQUE, DataBuffer.TYPE_BYTE);
+			
+			return new BufferedImage(cm, raster, false, null);
+		}
+		
+		if(numOfComponents != 3)
+			throw new UnsupportedOperationException("Unsupported number of components: " + numOfComponents);
+		
+		boolean ycc = !isRGB();
+		
+		int[] pixels = new int[width*height];
+		// Up-sampled scan line for each component
+		byte[][] lines = new byte[numOfComponents][width];
+		
+		for(int y = 0, index = 0; y < height; y++, index += width) {
+			for(int c = 0; c < numOfComponents; c++)
+				upsampleLine(c, y, lines[c]);
+			byte[] l0 = lines[0], l1 = lines[1], l2 = lines[2];
+			if(ycc) {
+				for(int x = 0; x < width; x++) {
+					int Y = l0[x]&0xff, Cb = l1[x]&0xff, Cr = l2[x]&0xff;
+					pixels[index + x] = (clamp(Y + Cr_R[Cr])<<16)|(clamp(Y + ((Cb_G[Cb] + Cr_G[Cr])>>16))<<8)|clamp(Y + Cb_B[Cb]);
+				}
+			} else {
+				for(int x = 0; x < width; x++)
+					pixels[index + x] = ((l0[x]&0xff)<<16)|((l1[x]&0xff)<<8)|(l2[x]&0xff);
+			}
+		}
+		
+		DataBuffer db = new DataBufferInt(pixels, pixels.length);
+		WritableRaster raster = Raster.createPackedRaster(db, width, height, width, new int[] {0x00ff0000, 0x0000ff00, 0x000000ff}, null);
+		ColorModel cm = new DirectColorModel(24, 0x00FF0000, 0x0000ff00, 0x000000ff);
+		
+		return new BufferedImage(cm, raster, false, null);
+	}
+	
+	private static int clamp(int value) {
+		return (value < 0)? 0 : ((value > 255)? 255 : value);
+	}
+	
+	// Replicate the samples of a component line to the full image width
+	private void upsampleLine(int c, int y, byte[] line) {
+		int h = frameComponents[c].getHSampleFactor();
+		int stride = blocksPerLine[c]*blockSize;
+		int offset = (y*frameComponents[c].getVSampleFactor()/vmax)*stride;
+		byte[] plane = planes[c];
+		
+		if(h == hmax) {
+			System.arraycopy(plane, offset, line, 0, width);
+		} else if(h<<1 == hmax) {
+			for(int x = 0; x < width; x += 2) {
+				line[x] = plane[offset++];
+				if(x + 1 < width) line[x + 1] = line[x];
+			}
+		} else {
+			for(int x = 0; x < width; x++)
+				line[x] = plane[offset + x*h/hmax];
+		}
+	}
+	
+	// Three component JPEG is RGB if Adobe APP14 says so or the component IDs are 'R', 'G', 'B'
+	private boolean isRGB() {
+		if(adobe_transform == 0) return true;
+		
+		return frameComponents[0].getId() == 'R' && frameComponents[1].getId() == 'G' && frameComponents[2].getId() == 'B';
 	}
 	
 	// Returns all the metadata as a map
@@ -521,9 +1032,114 @@ public class JPGReader extends ImageReader {
 		return metadataMap;
 	}
 	   
+	/**
+	 * Set the scale denominator for reduced size decoding. The image is decoded
+	 * directly at 1/scale of its full size by using a smaller inverse DCT for
+	 * each 8x8 block which avoids the work and memory of the full size image.
+	 * <p>
+	 * CMYK and YCCK images are read by ImageIO with source subsampling instead.
+	 * 
+	 * @param scale scale denominator - 1 (default), 2, 4, or 8
+	 */
+	public void setScaleDenominator(int scale) {
+		if(scale != 1 && scale != 2 && scale != 4 && scale != 8)
+			throw new IllegalArgumentException("Invalid scale denominator: " + scale);
+		this.scale = scale;
+	}
+	
+	public int getScaleDenominator() {
+		return scale;
+	}
+	
 	@Override
 	public BufferedImage read(InputStream is) throws Exception {
-		return javax.imageio.ImageIO.read(is);
-		//return read1(is);
+		// The native decoder is no faster than ImageIO at full size
+		if(scale == 1)
+			return ImageIO.read(is);
+		
+		replay = new ReplayInputStream(is);
+		
+		try {
+			// Let the entropy decoder read the data in chunks and push back what is beyond the scan
+			BufferedImage image = read1(new PushbackInputStream(new BufferedInputStream(replay), HuffmanDecoder.BUFFER_SIZE));
+			
+			if(cmykFrame)
+				return readImageIO(replay.replay());
+			
+			return image;
+		} finally {
+			replay = null;
+		}
+	}
+	
+	// Read the image with ImageIO, subsampled by the scale denominator
+	private BufferedImage readImageIO(InputStream is) throws IOException {
+		ImageInputStream iis = ImageIO.createImageInputStream(is);
+		Iterator<javax.imageio.ImageReader> readers = ImageIO.getImageReaders(iis);
+		
+		if(!readers.hasNext())
+			return null;
+		
+		javax.imageio.ImageReader reader = readers.next();
+		
+		try {
+			reader.setInput(iis, true, true);
+			ImageReadParam param = reader.getDefaultReadParam();
+			param.setSourceSubsampling(scale, scale, 0, 0);
+			return reader.read(0, param);
+		} finally {
+			reader.dispose();
+			iis.close();
+		}
+	}
+	
+	/**
+	 * Keeps a copy of the bytes read until recording is stopped, so a stream which
+	 * can't be reset can still be read again from the beginning.
+	 */
+	private static class ReplayInputStream extends FilterInputStream {
+		private ByteArrayOutputStream recorded = new ByteArrayOutputStream();
+		
+		ReplayInputStream(InputStream in) {
+			super(in);
+		}
+		
+		public int read() throws IOException {
+			int value = in.read();
+			if(value >= 0 && recorded != null)
+				recorded.write(value);
+			return value;
+		}
+		
+		public int read(byte[] b, int off, int len) throws IOException {
+			int count = in.read(b, off, len);
+			if(count > 0 && recorded != null)
+				recorded.write(b, off, count);
+			return count;
+		}
+		
+		public long skip(long n) throws IOException {
+			if(recorded == null)
+				return in.skip(n);
+			// Read what is skipped so it gets recorded as well
+			byte[] buf = new byte[(int)Math.min(n, 4096)];
+			long skipped = 0;
+			for(int count; skipped < n && (count = read(buf, 0, (int)Math.min(n - skipped, buf.length))) > 0;)
+				skipped += count;
+			return skipped;
+		}
+		
+		public boolean markSupported() {
+			return false;
+		}
+		
+		void stopRecording() {
+			recorded = null;
+		}
+		
+		// The recorded bytes followed by the rest of the underlying stream
+		InputStream replay() {
+			return new SequenceInputStream(new ByteArrayInputStream(recorded.toByteArray()), in);
+		}
 	}
 }
@@ -14,6 +14,7 @@
  *
  * Who   Date       Description
  * ====  =========  ===================================================
+ * AG    17Oct2026  Inflate IDAT chunks as they are read, added readScanLines()
  * WY    18Nov2015  Bug fix to fully skip the chunk if not interested
  * WY    25Dec2014  Added iCCP chunk support for RGB images 
  */
@@ -34,6 +35,7 @@ import java.awt.image.IndexColorModel;
 import java.awt.image.Raster;
 import java.awt.image.WritableRaster;
 import java.io.*;
+import java.util.zip.Inflater;
 import java.util.zip.InflaterInputStream;
 
 import org.slf4j.Logger;
@@ -43,7 +45,9 @@ import com.icafe4j.image.meta.icc.ICCProfile;
 import com.icafe4j.image.png.ChunkType;
 import com.icafe4j.image.png.ColorType;
 import com.icafe4j.image.png.Filter;
+import com.icafe4j.image.png.IDATInputStream;
 import com.icafe4j.image.png.PNGDescriptor;
+import com.icafe4j.image.png.ScanLineListener;
 import com.icafe4j.image.util.IMGUtils;
 import com.icafe4j.io.IOUtils;
 import com.icafe4j.util.ArrayUtils;
@@ -83,30 +87,45 @@ public class PNGReader extends ImageReader {
 	 private static final Logger LOGGER = LoggerFactory.getLogger(PNGReader.class);
 			
 	 private static void apply_defilter(InputStream bis, byte[] pixBytes, int height, int bytesPerPixel, int bytesPerScanLine) throws Exception {		 
-		 int filter_type = Filter.NONE;
-
 		 for (int j = 0, offset = 0; j < height; j++, offset += bytesPerScanLine) {
-              filter_type = bis.read();
+              int filter_type = bis.read();
               IOUtils.readFully(bis, pixBytes, offset, bytesPerScanLine);
-              // Do the filter
-              switch (filter_type) {
-		  		case Filter.NONE:
-		  			break;
-		  		case Filter.SUB:
-		  			Filter.defilter_sub(bytesPerPixel, bytesPerScanLine, pixBytes, offset);
-		  			break;
-		  		case Filter.UP:
-		  			Filter.defilter_up(bytesPerScanLine, pixBytes, offset);
-		  			break;
-		  		case Filter.AVERAGE:
-		  			Filter.defilter_average(bytesPerPixel, bytesPerScanLine, pixBytes, offset);
-		  			break;
-		  		case Filter.PAETH:
-		  			Filter.defilter_paeth(bytesPerPixel, bytesPerScanLine, pixBytes, offset);
-		  			break;
-		  		default:
-		  			break;
-              }                         
+              defilter(filter_type, pixBytes, offset, bytesPerPixel, bytesPerScanLine);
+		 }
+	 }
+	 
+	 // Defilter one scan line at a time, keeping only the previous and the current scan line in lines
+	 private static void apply_defilter(InputStream bis, ScanLineListener listener, int pass, byte[] lines, int height, int bytesPerPixel, int bytesPerScanLine) throws Exception {
+		 for (int j = 0; j < height; j++) {
+			 // The first scan line goes to the start of the buffer so that it has no upper line
+			 int offset = (j == 0)? 0 : bytesPerScanLine;
+			 int filter_type = bis.read();
+			 IOUtils.readFully(bis, lines, offset, bytesPerScanLine);
+			 defilter(filter_type, lines, offset, bytesPerPixel, bytesPerScanLine);
+			 listener.scanLine(pass, j, lines, offset, bytesPerScanLine);
+			 // Current scan line becomes the upper line of the next one
+			 if(offset != 0) System.arraycopy(lines, offset, lines, 0, bytesPerScanLine);
+		 }
+	 }
+	 
+	 private static void defilter(int filter_type, byte[] pixBytes, int offset, int bytesPerPixel, int bytesPerScanLine) {
+		 switch (filter_type) {
+		 	case Filter.NONE:
+		 		break;
+		 	case Filter.SUB:
+		 		Filter.defilter_sub(bytesPerPixel, bytesPerScanLine, pixBytes, offset);
+		 		break;
+		 	case Filter.UP:
+		 		Filter.defilter_up(bytesPerScanLine, pixBytes, offset);
+		 		break;
+		 	case Filter.AVERAGE:
+		 		Filter.defilter_average(bytesPerPixel, bytesPerScanLine, pixBytes, offset);
+		 		break;
+		 	case Filter.PAETH:
+		 		Filter.defilter_paeth(bytesPerPixel, bytesPerScanLine, pixBytes, offset);
+		 		break;
+		 	default:
+		 		break;
 		 }
 	 }
 	 
@@ -297,7 +316,7 @@ public class PNGReader extends ImageReader {
 			 gammaUShortTable[i] = (short)(Math.pow((double)i / (size - 1), decodingExponent) * (size - 1));
      }
 	 
-	 private byte[] deflateRGBPixels(byte[] compr_data, boolean fullAlpha) throws Exception {
+	 private byte[] deflateRGBPixels(InputStream bis, boolean fullAlpha) throws Exception {
 		 int bytesPerPixel = 0;
 		 byte[] pixBytes;
 			 
@@ -322,15 +341,13 @@ public class PNGReader extends ImageReader {
 		 
 		 // Now inflate the data.
 		 pixBytes = new byte[height * bytesPerScanLine];
-         // Wrap an InflaterInputStream with a bufferedInputStream to speed up reading
-		 BufferedInputStream bis = new BufferedInputStream(new InflaterInputStream(new ByteArrayInputStream(compr_data)));
         
 		 apply_defilter(bis, pixBytes, height, bytesPerPixel, bytesPerScanLine);
 		 
 		 return pixBytes;
 	 }
  	 
- 	 private short[] generate16BitGrayscaleInterlacedPixels(byte[] compr_data) throws Exception {
+ 	 private short[] generate16BitGrayscaleInterlacedPixels(InputStream bis) throws Exception {
  		 int bytesPerPixel = 0;
 		 byte[] pix_interlaced;
 		 int p_index = 0;
@@ -345,8 +362,6 @@ public class PNGReader extends ImageReader {
 		 } else
 			 spixels = new short[width*height];
 		  
-		 // Wrap an InflaterInputStream with a bufferedInputStream to speed up reading
-		 BufferedInputStream bis = new BufferedInputStream(new InflaterInputStream(new ByteArrayInputStream(compr_data)));
 		 // Decoding the image pass by pass. There are 7 passes for ADAM7 interlacing method. 
 		 for (int pass = 1; pass < 8; pass++) {
 			 if(!calculatePassVariables(pass)) continue;
@@ -387,7 +402,7 @@ public class PNGReader extends ImageReader {
 		 return spixels;	
 	 }
  	 
- 	 private short[] generate16BitGrayscalePixels(byte[] compr_data) throws Exception {
+ 	 private short[] generate16BitGrayscalePixels(InputStream bis) throws Exception {
  		 //
  		 int bytesPerPixel = 1;
 		 byte[] pixBytes;
@@ -396,8 +411,6 @@ public class PNGReader extends ImageReader {
 		 bytesPerScanLine = bytesPerPixel*width;
 		 // Now inflate the data.
 		 pixBytes = new byte[height * bytesPerScanLine];
-		 // Wrap an InflaterInputStream with a bufferedInputStream to speed up reading
-		 BufferedInputStream bis = new BufferedInputStream(new InflaterInputStream(new ByteArrayInputStream(compr_data)));
 
 		 apply_defilter(bis, pixBytes, height, bytesPerPixel, bytesPerScanLine);
 		 
@@ -422,7 +435,7 @@ public class PNGReader extends ImageReader {
 		 return ArrayUtils.toShortArray(pixBytes, true);
 	 }
  	 
- 	 private short[] generate16BitRGBInterlacedPixels(byte[] compr_data, boolean fullAlpha) throws Exception {
+ 	 private short[] generate16BitRGBInterlacedPixels(InputStream bis, boolean fullAlpha) throws Exception {
  		 int bytesPerPixel = 0;
 		 int p_index = 0;		 
 		 byte[] pix_interlaced;
@@ -449,8 +462,6 @@ public class PNGReader extends ImageReader {
 		 else
 			 spixels = new short[width*height*3];
 		 ////////////////////////////////////////////////////////////////////////////////////////////////
-		 // Wrap an InflaterInputStream with a bufferedInputStream to speed up reading
-	  	 BufferedInputStream bis = new BufferedInputStream(new InflaterInputStream(new ByteArrayInputStream(compr_data)));
 		 // Decoding the image pass by pass. There are 7 passes for ADAM7 interlacing method. 
 		 for (int pass = 1; pass < 8; pass++) {
 			 if(!calculatePassVariables(pass)) continue;
@@ -507,7 +518,7 @@ public class PNGReader extends ImageReader {
 		 return spixels;
 	 }
  	 
- 	 private short[] generate16BitRGBPixels(byte[] compr_data, boolean fullAlpha) throws Exception {
+ 	 private short[] generate16BitRGBPixels(InputStream bis, boolean fullAlpha) throws Exception {
 		 //
 		 int bytesPerPixel = 0;
 		 byte[] pixBytes;
@@ -522,8 +533,6 @@ public class PNGReader extends ImageReader {
 		 // Now inflate the data.
 		 pixBytes = new byte[height * bytesPerScanLine];
 		 
-         // Wrap an InflaterInputStream with a bufferedInputStream to speed up reading
-		 BufferedInputStream bis = new BufferedInputStream(new InflaterInputStream(new ByteArrayInputStream(compr_data)));
         
 		 apply_defilter(bis, pixBytes, height, bytesPerPixel, bytesPerScanLine);
 		 
@@ -554,7 +563,7 @@ public class PNGReader extends ImageReader {
 		 return spixels;		 
 	 }
  	
-	 private byte[] generate8BitRGBInterlacedPixels(byte[] compr_data, boolean fullAlpha) throws Exception {
+	 private byte[] generate8BitRGBInterlacedPixels(InputStream bis, boolean fullAlpha) throws Exception {
  		 int bytesPerPixel = 0;
 		 int p_index = 0;
 		 byte[] pix_interlaced;
@@ -567,8 +576,6 @@ public class PNGReader extends ImageReader {
 	
 		 if(fullAlpha || alpha != null) bpixels = new byte[width*height*4];
 		 ////////////////////////////////////////////////////////////////////////////////////////////////
-		 // Wrap an InflaterInputStream with a bufferedInputStream to speed up reading
-	  	 BufferedInputStream bis = new BufferedInputStream(new InflaterInputStream(new ByteArrayInputStream(compr_data)));
 		 // Decoding the image pass by pass. There are 7 passes for ADAM7 interlacing method. 
 		 for (int pass = 1; pass < 8; pass++) {
 			 if(!calculatePassVariables(pass)) continue;
@@ -613,8 +620,8 @@ public class PNGReader extends ImageReader {
 		 return bpixels;
 	 }
 
-	 private byte[] generate8BitRGBPixels(byte[] compr_data, boolean fullAlpha) throws Exception {				 
- 		 byte[] pixBytes = deflateRGBPixels(compr_data, fullAlpha);
+	 private byte[] generate8BitRGBPixels(InputStream bis, boolean fullAlpha) throws Exception {				 
+ 		 byte[] pixBytes = deflateRGBPixels(bis, fullAlpha);
  		 
  		 if(alpha == null)
  			 return pixBytes;
@@ -834,7 +841,7 @@ public class PNGReader extends ImageReader {
 		 return hasICCP;
 	 }
 
-	 private byte[] process_grayscaleAlphaImage(byte[] compr_data) throws Exception {
+	 private byte[] process_grayscaleAlphaImage(InputStream bis) throws Exception {
  		 //
  		 int bytesPerPixel = 0;
 		 byte[] pixBytes;
@@ -854,15 +861,13 @@ public class PNGReader extends ImageReader {
 		 
 		 // Now inflate the data.  		 
 		 pixBytes = new byte[height * bytesPerScanLine];
-		 // Wrap an InflaterInputStream with a bufferedInputStream to speed up reading
-		 BufferedInputStream bis = new BufferedInputStream(new InflaterInputStream(new ByteArrayInputStream(compr_data)));
        
 		 apply_defilter(bis, pixBytes, height, bytesPerPixel, bytesPerScanLine);	
 		 
 		 return pixBytes;
  	 }
 	 
-	 private byte[] process_grayscaleAlphaInterlacedImage(byte[] compr_data) throws Exception {
+	 private byte[] process_grayscaleAlphaInterlacedImage(InputStream bis) throws Exception {
  		 //
  		 int bytesPerPixel = 0;
 		 int p_index = 0;
@@ -883,8 +888,6 @@ public class PNGReader extends ImageReader {
 		 pixels = new byte[width*height*bytesPerPixel];
 		 
 		 ////////////////////////////////////////////////////////////////////////////////////////////////
-		 // Wrap an InflaterInputStream with a bufferedInputStream to speed up reading
-	  	 BufferedInputStream bis = new BufferedInputStream(new InflaterInputStream(new ByteArrayInputStream(compr_data)));
 		 // Decoding the image pass by pass. There are 7 passes for ADAM7 interlacing method. 
 		 for (int pass = 1; pass < 8; pass++) {				
 			 if(!calculatePassVariables(pass)) continue;
@@ -923,7 +926,7 @@ public class PNGReader extends ImageReader {
 		 return pixels;
  	 }
 	 
-	 private byte[] process_grayscaleImage(byte[] compr_data) throws Exception {
+	 private byte[] process_grayscaleImage(InputStream bis) throws Exception {
 		 //
  		 int bytesPerPixel = 1;
 		 int padding = 0;
@@ -954,8 +957,6 @@ public class PNGReader extends ImageReader {
 		 }
 		 // Now inflate the data.        
 		 pixBytes = new byte[height * bytesPerScanLine];
-		 // Wrap an InflaterInputStream with a bufferedInputStream to speed up reading
-		 BufferedInputStream bis = new BufferedInputStream(new InflaterInputStream(new ByteArrayInputStream(compr_data)));
 
 		 apply_defilter(bis, pixBytes, height, bytesPerPixel, bytesPerScanLine);
 		 
@@ -964,7 +965,7 @@ public class PNGReader extends ImageReader {
 		 return pixBytes;
 	 }
 	 
-	 private byte[] process_grayscaleInterlacedImage(byte[] compr_data) throws Exception {
+	 private byte[] process_grayscaleInterlacedImage(InputStream bis) throws Exception {
  		 int bytesPerPixel = 0;
 		 byte[] pix_interlaced;
 		 byte[] pixels;
@@ -993,8 +994,6 @@ public class PNGReader extends ImageReader {
 		 
 		 pixels = new byte[width*height*bytesPerPixel];
 		 
-		 // Wrap an InflaterInputStream with a bufferedInputStream to speed up reading
-		 BufferedInputStream bis = new BufferedInputStream(new InflaterInputStream(new ByteArrayInputStream(compr_data)));
 		 // Decoding the image pass by pass. There are 7 passes for ADAM7 interlacing method. 
 		 for (int pass = 1; pass < 8; pass++) {
 			 if(!calculatePassVariables(pass)) continue;
@@ -1014,8 +1013,48 @@ public class PNGReader extends ImageReader {
 		 return ArrayUtils.packByteArray(pixels, width, 0, bitsPerPixel, pixels.length);	
 	 }
 	 
+	 // Deliver the defiltered scan lines to the listener instead of creating a BufferedImage
+	 private void process_scanLines(InputStream bis, ScanLineListener listener) throws Exception {
+		 ColorType colorType = ColorType.fromInt(color_format);
+		 int samplesPerPixel = 1;
+		 
+		 switch (colorType) {
+		 	case TRUE_COLOR:
+		 		samplesPerPixel = 3;
+		 		break;
+		 	case GRAY_SCALE_WITH_ALPHA:
+		 		samplesPerPixel = 2;
+		 		break;
+		 	case TRUE_COLOR_WITH_ALPHA:
+		 		samplesPerPixel = 4;
+		 		break;
+		 	default:
+		 		break;
+		 }
+		 
+		 int bitsPerPixel = samplesPerPixel*this.bitsPerPixel;
+		 int bytesPerPixel = Math.max(1, bitsPerPixel>>>3);
+		 // Room for two full width scan lines
+		 byte[] lines = new byte[((width*bitsPerPixel + 7)>>>3)<<1];
+		 
+		 listener.begin(width, height, this.bitsPerPixel, colorType, interlace_method == ADAM7);
+		 
+		 if(interlace_method == ADAM7) {
+			 for (int pass = 1; pass < 8; pass++) {
+				 if(!calculatePassVariables(pass)) continue;
+				 bytesPerScanLine = (block_width*bitsPerPixel + 7)>>>3;
+				 apply_defilter(bis, listener, pass, lines, block_height, bytesPerPixel, bytesPerScanLine);
+			 }
+		 } else {
+			 bytesPerScanLine = (width*bitsPerPixel + 7)>>>3;
+			 apply_defilter(bis, listener, 0, lines, height, bytesPerPixel, bytesPerScanLine);
+		 }
+		 
+		 listener.end();
+	 }
+	 
 	 // Image data processing and BufferedImage generating module
-	 private BufferedImage process_IDAT(byte[] compr_data) throws Exception {	
+	 private BufferedImage process_IDAT(InputStream bis) throws Exception {	
 		 byte[] bpixels = null;
 		 short[] spixels = null;
 		 WritableRaster raster = null;
@@ -1030,9 +1069,9 @@ public class PNGReader extends ImageReader {
 			   //Create a BufferedImage			   			  
 			   if(bitsPerPixel == 16) {
 				   if(interlace_method==NON_INTERLACED) {
-					   spixels = generate16BitGrayscalePixels(compr_data);			   
+					   spixels = generate16BitGrayscalePixels(bis);			   
 				   } else if(interlace_method==ADAM7) {
-					   spixels = generate16BitGrayscaleInterlacedPixels(compr_data);
+					   spixels = generate16BitGrayscaleInterlacedPixels(bis);
 				   }				   
 				   if(hasGamma && renderingIntent == -1 && !hasICCP) {
 					   if(alpha != null)
@@ -1053,9 +1092,9 @@ public class PNGReader extends ImageReader {
 				   }
 			   } else {
 				   if(interlace_method==NON_INTERLACED) {
-					   bpixels = process_grayscaleImage(compr_data);			   
+					   bpixels = process_grayscaleImage(bis);			   
 				   } else if(interlace_method==ADAM7) {
-					   bpixels = process_grayscaleInterlacedImage(compr_data);
+					   bpixels = process_grayscaleInterlacedImage(bis);
 				   }
 				   db = new DataBufferByte(bpixels, bpixels.length);
 				   if(bitsPerPixel == 8) {			   
@@ -1071,9 +1110,9 @@ public class PNGReader extends ImageReader {
 			   return new BufferedImage(cm, raster, false, null);
 		   case GRAY_SCALE_WITH_ALPHA:
 			   if(interlace_method==NON_INTERLACED)
-				   bpixels = process_grayscaleAlphaImage(compr_data);
+				   bpixels = process_grayscaleAlphaImage(bis);
 			   else if(interlace_method==ADAM7)
-				   bpixels = process_grayscaleAlphaInterlacedImage(compr_data);
+				   bpixels = process_grayscaleAlphaInterlacedImage(bis);
 			   // Create a BufferedImage. WARNING: this create a custom type BufferedImage
 			   if(bitsPerPixel == 16) {
 				   spixels = ArrayUtils.toShortArray(bpixels, true);
@@ -1093,9 +1132,9 @@ public class PNGReader extends ImageReader {
 		   case TRUE_COLOR:
 			   if(bitsPerPixel == 16) {
 				   if(interlace_method==NON_INTERLACED)
-					   spixels = generate16BitRGBPixels(compr_data, false);
+					   spixels = generate16BitRGBPixels(bis, false);
 				   else {
-					   spixels = generate16BitRGBInterlacedPixels(compr_data, false);
+					   spixels = generate16BitRGBInterlacedPixels(bis, false);
 				   }					   
 				   if(hasGamma && renderingIntent == -1 && !hasICCP) {
 					   if(alpha != null)
@@ -1124,9 +1163,9 @@ public class PNGReader extends ImageReader {
 				   }					 
 			   } else {
 				   if(interlace_method==NON_INTERLACED)
-					   bpixels = generate8BitRGBPixels(compr_data, false);
+					   bpixels = generate8BitRGBPixels(bis, false);
 			       else if(interlace_method==ADAM7)
-			    	   bpixels = generate8BitRGBInterlacedPixels(compr_data, false);
+			    	   bpixels = generate8BitRGBInterlacedPixels(bis, false);
 				   if(hasGamma && renderingIntent == -1 && !hasICCP)
 						 correctGamma(bpixels, width, height, alpha != null);
 				   int[] off = {0, 1, 2}; //band offset, we have 3 bands
@@ -1153,9 +1192,9 @@ public class PNGReader extends ImageReader {
 		   case TRUE_COLOR_WITH_ALPHA:
 			   if(bitsPerPixel == 16) {
 				   if(interlace_method==NON_INTERLACED)
-					   spixels = generate16BitRGBPixels(compr_data, true);
+					   spixels = generate16BitRGBPixels(bis, true);
 				   else {
-					   spixels = generate16BitRGBInterlacedPixels(compr_data, true);
+					   spixels = generate16BitRGBInterlacedPixels(bis, true);
 				   }
 				   if(hasGamma && renderingIntent == -1 && !hasICCP) correctGamma(spixels, width, height, 3, 1);
 				   db = new DataBufferUShort(spixels, spixels.length);
@@ -1171,9 +1210,9 @@ public class PNGReader extends ImageReader {
 				   }
 			   } else {
 				   if(interlace_method==NON_INTERLACED)
-					   bpixels = generate8BitRGBPixels(compr_data, true);
+					   bpixels = generate8BitRGBPixels(bis, true);
 			       else if(interlace_method==ADAM7)
-			    	   bpixels = generate8BitRGBInterlacedPixels(compr_data, true);
+			    	   bpixels = generate8BitRGBInterlacedPixels(bis, true);
 				   if(hasGamma && renderingIntent == -1 && !hasICCP)
 						 correctGamma(bpixels, width, height, true); 
 				   //Create a BufferedImage
@@ -1194,9 +1233,9 @@ public class PNGReader extends ImageReader {
 		   case INDEX_COLOR:
 			   bpixels = null;
 			   if(interlace_method==NON_INTERLACED)
-				   bpixels = process_IndexedImage(compr_data);
+				   bpixels = process_IndexedImage(bis);
 		       else if(interlace_method==ADAM7)
-		    	   bpixels = process_IndexedInterlacedImage(compr_data);
+		    	   bpixels = process_IndexedInterlacedImage(bis);
 			   // Create BufferedImage
 			   db = new DataBufferByte(bpixels, bpixels.length);
 			   if(bitsPerPixel != 8) {
@@ -1217,19 +1256,17 @@ public class PNGReader extends ImageReader {
 		 return null;
 	 }
 	 
-	 private byte[] process_IndexedImage(byte[] compr_data) throws Exception {
+	 private byte[] process_IndexedImage(InputStream bis) throws Exception {
 		 bytesPerScanLine = getBytesPerScanLine(width);
 		 // Now inflate the data.        
 		 byte[] pixBytes = new byte[height * bytesPerScanLine];
-         // Wrap an InflaterInputStream with a bufferedInputStream to speed up reading
-		 BufferedInputStream bis = new BufferedInputStream(new InflaterInputStream(new ByteArrayInputStream(compr_data)));
 
 		 apply_defilter(bis, pixBytes, height, 1, bytesPerScanLine);
 		 
 		 return pixBytes;
   	 }
 	 
-	 private byte[] process_IndexedInterlacedImage(byte[] compr_data) throws Exception {
+	 private byte[] process_IndexedInterlacedImage(InputStream bis) throws Exception {
 		 int padding = 0;
 		 byte[] pix_interlaced;
 		 byte[] pixels = new byte[width*height];
@@ -1243,8 +1280,6 @@ public class PNGReader extends ImageReader {
 			default: 
 				LOGGER.error("... " + bitsPerPixel + " bit color depth is not valid for indexed image...");
 		 }
-		 // Wrap an InflaterInputStream with a bufferedInputStream to speed up reading
-		 BufferedInputStream bis = new BufferedInputStream(new InflaterInputStream(new ByteArrayInputStream(compr_data)));
 		 // Decoding the image pass by pass. There are 7 passes for ADAM7 interlacing method. 
 		 for (int pass = 1; pass < 8; pass++) {
 			 if(!calculatePassVariables(pass)) continue;
@@ -1263,12 +1298,29 @@ public class PNGReader extends ImageReader {
 	 }		
 	 
 	 public BufferedImage read(InputStream is) throws Exception {
+		 return read(is, null);
+	 }
+	 
+	 /**
+	  * Decode the image without creating a BufferedImage. The defiltered scan lines
+	  * are handed to the listener as soon as they are inflated, so besides the
+	  * decompression buffers only two scan lines are kept in memory.
+	  * 
+	  * @param is InputStream for the PNG image
+	  * @param listener ScanLineListener to receive the scan lines
+	  * @throws Exception
+	  */
+	 public void readScanLines(InputStream is, ScanLineListener listener) throws Exception {
+		 if(listener == null) throw new IllegalArgumentException("Input listener is null");
+		 read(is, listener);
+	 }
+	 
+	 private BufferedImage read(InputStream is, ScanLineListener listener) throws Exception {
 		 // Local variables for reading chunks
 		 int data_len = 0;
          int chunk_type = 0;
 		  
-         /** ByteArrayOutputStream to write compressed image data */
-         ByteArrayOutputStream compr_data = new ByteArrayOutputStream(65536);
+         BufferedImage image = null;
 	
          /** Read the 8 bytes signature */
          /** 
@@ -1351,9 +1403,14 @@ public class PNGReader extends ImageReader {
 		  LOGGER.info("--- END PNG IMAGE INFO ---");
 		  // End of dumping
 
+		  boolean pendingChunk = false; // Chunk header already read past the IDAT chunks
+		  
 		  while (true) {
-			  data_len = IOUtils.readIntMM(is);
-			  chunk_type = IOUtils.readIntMM(is);
+			  if(!pendingChunk) {
+				  data_len = IOUtils.readIntMM(is);
+				  chunk_type = IOUtils.readIntMM(is);
+			  }
+			  pendingChunk = false;
 			  //LOGGER.info("chunk type: 0x{}", Integer.toHexString(chunk_type));
 
 			  if (chunk_type == ChunkType.IEND.getValue())
@@ -1362,8 +1419,23 @@ public class PNGReader extends ImageReader {
 			  ChunkType chunk = ChunkType.fromInt(chunk_type);
 			
 			  switch (chunk) {
-			  	case IDAT: 
-			  		read_IDAT(is, data_len, compr_data);
+			  	case IDAT:
+			  		// Inflate and defilter the IDAT chunks as they are read
+			  		IDATInputStream idat = new IDATInputStream(is, data_len);
+			  		Inflater inflater = new Inflater();
+			  		try {
+			  			InputStream bis = new BufferedInputStream(new InflaterInputStream(idat, inflater, 8192));
+			  			if(listener != null)
+			  				process_scanLines(bis, listener);
+			  			else
+			  				image = process_IDAT(bis);
+			  		} finally {
+			  			inflater.end();
+			  		}
+			  		idat.finish();
+			  		data_len = idat.getNextChunkLength();
+			  		chunk_type = idat.getNextChunkType();
+			  		pendingChunk = true;
 			  		break;
 			  	case TRNS:
 			  		alpha = new byte[data_len];
@@ -1406,8 +1478,11 @@ public class PNGReader extends ImageReader {
 		  }
 	  
 		  is.close();
+		  
+		  if(image == null && listener == null)
+			  LOGGER.error("--- NO IMAGE DATA FOUND ---");
 
-		  return process_IDAT(compr_data.toByteArray());
+		  return image;
      }
 	 
 	 private void read_GAMMA(InputStream is, int data_len) throws Exception {
@@ -1424,13 +1499,6 @@ public class PNGReader extends ImageReader {
 		 IOUtils.readUnsignedIntMM(is);// CRC
 	 }
 	 
-	 private void read_IDAT(InputStream is, int data_len, ByteArrayOutputStream compr_data) throws Exception {
- 		 byte[] buf = new byte[data_len];
-		 IOUtils.readFully(is,buf,0,data_len);
-		 compr_data.write(buf, 0, data_len);
- 		 IOUtils.readUnsignedIntMM(is);// CRC
-	 }
-	 
 	 private boolean read_IHDR(InputStream is) throws Exception {
 		 /** 
 		  * Header layout
@@ -14,6 +14,16 @@
  *
  * Who   Date       Description
  * ====  =======    ============================================================
+ * AG    17Oct2026  Fixed region extraction of one pixel wide CMYK with extra samples
+ * AG    17Oct2026  Fixed YCbCr strips with rows per strip not a multiple of the vertical sampling
+ * AG    17Oct2026  Restore the position of a RandomAccessInputStream passed in
+ * AG    17Oct2026  Decode LZW with LZWTableDecoder
+ * AG    17Oct2026  Added support for CCITTFAX4 compression
+ * AG    17Oct2026  Read RandomAccessInputStream input in place
+ * AG    17Oct2026  Added concurrent strip and tile decompression
+ * AG    17Oct2026  Added BigTIFF support
+ * AG    17Oct2026  Fixed predictor with tiled images
+ * AG    17Oct2026  Added readRegion() to decode part of a page
  * WY    03Jan2018  Fix issue with fillOrder 2
  * WY    07Dec2017  Added support for CCITTRLE compression
  * WY    28Nov2017  Added gray-scale alpha support
@@ -41,6 +51,8 @@
 
 package com.icafe4j.image.reader;
 
+import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.Transparency;
 import java.awt.color.ColorSpace;
 import java.awt.color.ICC_ColorSpace;
@@ -62,10 +74,16 @@ import java.awt.image.Raster;
 import java.awt.image.SampleModel;
 import java.awt.image.WritableRaster;
 import java.io.*;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -76,8 +94,9 @@ import com.icafe4j.image.compression.ImageDecoder;
 import com.icafe4j.image.compression.UnsupportedCompressionException;
 import com.icafe4j.image.compression.ccitt.G31DDecoder;
 import com.icafe4j.image.compression.ccitt.G32DDecoder;
+import com.icafe4j.image.compression.ccitt.G42DDecoder;
 import com.icafe4j.image.compression.deflate.DeflateDecoder;
-import com.icafe4j.image.compression.lzw.LZWTreeDecoder;
+import com.icafe4j.image.compression.lzw.LZWTableDecoder;
 import com.icafe4j.image.compression.packbits.Packbits;
 import com.icafe4j.image.tiff.ASCIIField;
 import com.icafe4j.image.tiff.ByteField;
@@ -85,6 +104,7 @@ import com.icafe4j.image.tiff.DoubleField;
 import com.icafe4j.image.tiff.FieldType;
 import com.icafe4j.image.tiff.FloatField;
 import com.icafe4j.image.tiff.IFD;
+import com.icafe4j.image.tiff.Long8Field;
 import com.icafe4j.image.tiff.LongField;
 import com.icafe4j.image.tiff.RationalField;
 import com.icafe4j.image.tiff.ShortField;
@@ -92,6 +112,7 @@ import com.icafe4j.image.tiff.TIFFTweaker;
 import com.icafe4j.image.tiff.Tag;
 import com.icafe4j.image.tiff.TiffField;
 import com.icafe4j.image.tiff.TiffFieldEnum;
+import com.icafe4j.image.tiff.TiffFieldEnum.Compression;
 import com.icafe4j.image.tiff.TiffFieldEnum.PhotoMetric;
 import com.icafe4j.image.tiff.TiffTag;
 import com.icafe4j.image.tiff.UndefinedField;
@@ -106,15 +127,28 @@ import com.icafe4j.util.ArrayUtils;
 
 /** 
  * Decodes and shows TIFF images. 
+ * <p>
+ * Part of a page can be decoded by {@link #readRegion(InputStream, int, Rectangle, int)}
+ * which only reads and decompresses the strips or tiles intersecting the region.
+ * {@link #read(InputStream)} decodes all the pages, see {@link com.icafe4j.image.tiff.PageReader}
+ * to decode pages on demand.
  * 
  * @author Wen Yu, yuwen_66@yahoo.com
  * @version 1.0 03/09/2012  
  */
 public class TIFFReader extends ImageReader {
 	private RandomAccessInputStream randIS = null;
+	// Whether randIS was created by readIFDs() rather than passed in
+	private boolean ownStream;
+	// Position of a RandomAccessInputStream passed in, restored by closeStream()
+	private long callerPosition;
 	protected List<IFD> ifds;
 	private List<BufferedImage> frames;
 	private int endian = IOUtils.BIG_ENDIAN;
+	// Whether the input is BigTIFF with 64 bit offsets
+	private boolean bigTiff;
+	// Strips and tiles are decompressed concurrently if set
+	private ExecutorService executor;
 	private static final int[] redMask =   {0x00, 0x04, 0x30, 0x1c0, 0xf00};
 	private static final int[] greenMask = {0x00, 0x02, 0x0c, 0x038, 0x0f0};
 	private static final int[] blueMask =  {0x00, 0x01, 0x03, 0x007, 0x00f};	
@@ -136,6 +170,7 @@ public class TIFFReader extends ImageReader {
 	
 	private static int GROUP3OPT_2DENCODING = 1;
 	private static int GROUP3OPT_UNCOMPRESSED = 2;
+	private static int GROUP4OPT_UNCOMPRESSED = 2;
 
 	static {
 		for(int i = 0; i < 256; i++)
@@ -161,6 +196,22 @@ public class TIFFReader extends ImageReader {
 		return decodeStrippedTiff(ifd);
 	}
 	
+	// Decode the region of the page keeping every subsampling-th pixel and row
+	protected BufferedImage decode(IFD ifd, Rectangle region, int subsampling) throws Exception {
+		int imageWidth = ifd.getField(TiffTag.IMAGE_WIDTH).getDataAsLong()[0];
+		int imageHeight = ifd.getField(TiffTag.IMAGE_LENGTH).getDataAsLong()[0];
+		
+		Rectangle bounds = new Rectangle(0, 0, imageWidth, imageHeight);
+		region = (region == null)? bounds : region.intersection(bounds);
+		if(region.isEmpty()) throw new IllegalArgumentException("Region " + region + " lies outside of the image");
+		
+		Point origin = new Point();
+		BufferedImage image = decode(getRegionIFD(ifd, region, origin));
+		if(image == null) return null;
+		
+		return extractRegion(image, region.x - origin.x, region.y - origin.y, region.width, region.height, subsampling);
+	}
+	
 	private BufferedImage decodeStrippedTiff(IFD ifd) throws Exception {
 		// Grab some of the TIFF fields we are interested in
 		TiffField<?> f_compression = ifd.getField(TiffTag.COMPRESSION);
@@ -173,7 +224,7 @@ public class TIFFReader extends ImageReader {
 		TiffField<?> f_stripOffsets = ifd.getField(TiffTag.STRIP_OFFSETS);
 		TiffField<?> f_stripByteCounts = ifd.getField(TiffTag.STRIP_BYTE_COUNTS);
 		if(f_stripOffsets == null) throw new RuntimeException("Missing required field stripOffsets");
-		int[] stripOffsets = f_stripOffsets.getDataAsLong();
+		long[] stripOffsets = f_stripOffsets.getDataAsLong8();
 		int[] stripByteCounts = null;
 		if(f_stripByteCounts == null) {
 			if(stripOffsets.length == 1) {
@@ -292,7 +343,7 @@ public class TIFFReader extends ImageReader {
 						}
 						break;
 					case LZW:
-						decoder = new LZWTreeDecoder(8, true);
+						decoder = new LZWTableDecoder(8, true);
 						break;
 					case DEFLATE:
 					case DEFLATE_ADOBE:
@@ -307,21 +358,8 @@ public class TIFFReader extends ImageReader {
 						break;
 					default:
 				}
-				if(decoder != null) {
-					for(int i = 0; i < stripByteCounts.length; i++) {
-						byte[] temp = null;
-						randIS.seek(stripOffsets[i]);
-						if(stripByteCounts[i] == 0){
-							temp = IOUtils.readFully(randIS, 4096);
-						} else {
-							temp = new byte[stripByteCounts[i]];
-							randIS.readFully(temp);
-						}
-						decoder.setInput(temp);
-						int numOfBytes = decoder.decode(pixels, offset, stripBytes[i]);
-						offset += numOfBytes;
-					}
-				}
+				if(decoder != null)
+					offset = decodeStrips(decoder, compression, pixels, offset, stripOffsets, stripByteCounts, stripBytes, false);
 				//Create a BufferedImage
 				DataBuffer db = new DataBufferByte(pixels, pixels.length);
 				WritableRaster raster = null;
@@ -357,7 +395,7 @@ public class TIFFReader extends ImageReader {
 						}
 						break;
 					case LZW:
-						decoder = new LZWTreeDecoder(8, true);
+						decoder = new LZWTableDecoder(8, true);
 						break;
 					case DEFLATE:
 					case DEFLATE_ADOBE:
@@ -366,21 +404,8 @@ public class TIFFReader extends ImageReader {
 					default:
 						break;
 				}
-				if(decoder != null) {
-					for(int i = 0; i < stripByteCounts.length; i++) {
-						randIS.seek(stripOffsets[i]);
-						byte[] temp = null;
-						if(stripByteCounts[i] == 0){
-							temp = IOUtils.readFully(randIS, 4096);
-						} else {
-							temp = new byte[stripByteCounts[i]];
-							randIS.readFully(temp);
-						}
-						decoder.setInput(temp);
-						int numOfBytes = decoder.decode(pixels, offset, stripBytes[i]);							
-						offset += numOfBytes;
-					}
-				}
+				if(decoder != null)
+					offset = decodeStrips(decoder, compression, pixels, offset, stripOffsets, stripByteCounts, stripBytes, false);
 				// This also works with 4 samples per pixel data
 				if(predictor == 2 && planaryConfiguration == 1)
 					pixels = applyDePredictor(samplesPerPixel, pixels, imageWidth, imageHeight);
@@ -488,8 +513,6 @@ public class TIFFReader extends ImageReader {
 					lumaBlue = 1.0f*lumas[4]/lumas[5];
 				}
 											
-				int offsetY = 0;
-				
 				int bytesY = expandedImageWidth*expandedImageHeight;
 				pixels = new byte[bytesY*3];
 				
@@ -502,6 +525,8 @@ public class TIFFReader extends ImageReader {
 					int bytesPerUnitCr = 1;
 					int bytesPerDataUnit = bytesPerUnitY + bytesPerUnitCb + bytesPerUnitCr;
 					int dataUnitsPerWidth = expandedImageWidth/samplingFactor[0];					
+					// Each strip starts at a multiple of rowsPerStrip. When rowsPerStrip is not a multiple of
+					// the vertical sampling factor, the last row of data units in a strip is partly padding.
 					
 					switch(compression) {
 						case NONE:
@@ -515,7 +540,7 @@ public class TIFFReader extends ImageReader {
 								}
 								int numOfDataUnit = temp.length/bytesPerDataUnit;
 								
-								offsetY = upsampling(offsetY, numOfDataUnit, bytesPerUnitY, samplingFactor, referenceBlackY, referenceWhiteY, referenceBlackCb,
+								upsampling(i*rowsPerStrip, numOfDataUnit, bytesPerUnitY, samplingFactor, referenceBlackY, referenceWhiteY, referenceBlackCb,
 										referenceWhiteCb, referenceBlackCr, referenceWhiteCr, codingRangeY, codingRangeCbCr, lumaRed, lumaGreen, lumaBlue, temp,
 										pixels, expandedImageWidth, dataUnitsPerWidth);
 							}
@@ -531,13 +556,13 @@ public class TIFFReader extends ImageReader {
 									randIS.readFully(temp);
 								}
 								temp2 = new byte[stripBytes[i]];
-								decoder = new LZWTreeDecoder(8, true);
+								decoder = new LZWTableDecoder(8, true);
 								decoder.setInput(temp);
 								int numOfBytes = decoder.decode(temp2, 0, temp2.length);	
 								
 								int numOfDataUnit = numOfBytes/bytesPerDataUnit;
 								
-								offsetY = upsampling(offsetY, numOfDataUnit, bytesPerUnitY, samplingFactor, referenceBlackY, referenceWhiteY, referenceBlackCb,
+								upsampling(i*rowsPerStrip, numOfDataUnit, bytesPerUnitY, samplingFactor, referenceBlackY, referenceWhiteY, referenceBlackCb,
 										referenceWhiteCb, referenceBlackCr, referenceWhiteCr, codingRangeY, codingRangeCbCr, lumaRed, lumaGreen, lumaBlue, temp2,
 										pixels, expandedImageWidth, dataUnitsPerWidth);
 							}
@@ -559,7 +584,7 @@ public class TIFFReader extends ImageReader {
 								
 								int numOfDataUnit = numOfBytes/bytesPerDataUnit;
 								
-								offsetY = upsampling(offsetY, numOfDataUnit, bytesPerUnitY, samplingFactor, referenceBlackY, referenceWhiteY, referenceBlackCb,
+								upsampling(i*rowsPerStrip, numOfDataUnit, bytesPerUnitY, samplingFactor, referenceBlackY, referenceWhiteY, referenceBlackCb,
 										referenceWhiteCb, referenceBlackCr, referenceWhiteCr, codingRangeY, codingRangeCbCr, lumaRed, lumaGreen, lumaBlue, temp2,
 										pixels, expandedImageWidth, dataUnitsPerWidth);
 							}
@@ -681,7 +706,7 @@ public class TIFFReader extends ImageReader {
 						}
 						break;
 					case LZW:
-						decoder = new LZWTreeDecoder(8, true);
+						decoder = new LZWTableDecoder(8, true);
 						break;
 					case DEFLATE:
 					case DEFLATE_ADOBE:
@@ -691,20 +716,8 @@ public class TIFFReader extends ImageReader {
 				}				
 				if(decoder != null) {					
 					pixels = new byte[stripOffsets.length*stripBytes[0]];
-					for(int i = 0; i < stripByteCounts.length; i++) {
-						randIS.seek(stripOffsets[i]);
-						if(stripByteCounts[i] == 0){
-							temp = IOUtils.readFully(randIS, 4096);
-						} else {
-							temp = new byte[stripByteCounts[i]];
-							randIS.readFully(temp);
-						}
-						// Deals with LSB2MSB fill order (rare and erroneous)
-						if(fillOrder == 2) ArrayUtils.reverseBits(temp);
-						decoder.setInput(temp);
-						int numOfBytes = decoder.decode(pixels, offset, stripBytes[i]);							
-						offset += numOfBytes;
-					}
+					// Deals with LSB2MSB fill order (rare and erroneous)
+					offset = decodeStrips(decoder, compression, pixels, offset, stripOffsets, stripByteCounts, stripBytes, fillOrder == 2);
 				}
 				// This also works with 4 samples per pixel data				
 				if(predictor == 2) {
@@ -921,8 +934,16 @@ public class TIFFReader extends ImageReader {
 							decoder = new G32DDecoder(imageWidth, rowsPerStrip, true); // 1D encoding, need to take care of fill bit							
 						}
 						break;
+					case CCITTFAX4:
+						TiffField<?> f_t6Options = ifd.getField(TiffTag.T6_OPTIONS);
+						int t6Options = 0;
+						if(f_t6Options != null) t6Options = f_t6Options.getDataAsLong()[0];
+						if ((t6Options & GROUP4OPT_UNCOMPRESSED) == GROUP4OPT_UNCOMPRESSED)
+							throw new UnsupportedCompressionException("Group 4 Uncompressed mode is not supported");
+						decoder = new G42DDecoder(imageWidth, rowsPerStrip);
+						break;
 					case LZW:
-						decoder = new LZWTreeDecoder(8, true);
+						decoder = new LZWTableDecoder(8, true);
 						break;
 					case DEFLATE:
 					case DEFLATE_ADOBE:
@@ -937,22 +958,8 @@ public class TIFFReader extends ImageReader {
 						break;
 					default:
 				}
-				if(decoder != null) {
-					for(int i = 0; i < stripByteCounts.length; i++) {
-						randIS.seek(stripOffsets[i]);
-						if(stripByteCounts[i] == 0){
-							temp = IOUtils.readFully(randIS, 4096);
-						} else {
-							temp = new byte[stripByteCounts[i]];
-							randIS.readFully(temp);
-						}
-						// Deals with LSB2MSB fill order (rare and erroneous)
-						if(fillOrder == 2) ArrayUtils.reverseBits(temp);
-						decoder.setInput(temp);
-						int numOfBytes = decoder.decode(pixels, offset, stripBytes[i]);
-						offset += numOfBytes;
-					}
-				}
+				if(decoder != null) // Deals with LSB2MSB fill order (rare and erroneous)
+					offset = decodeStrips(decoder, compression, pixels, offset, stripOffsets, stripByteCounts, stripBytes, fillOrder == 2);
 				
 				//Create a BufferedImage
 				if(bitsPerSample <= 8) {
@@ -1010,7 +1017,7 @@ public class TIFFReader extends ImageReader {
 		TiffField<?> f_tileOffsets = ifd.getField(TiffTag.TILE_OFFSETS);
 		if(f_tileOffsets == null) f_tileOffsets = ifd.getField(TiffTag.STRIP_OFFSETS);
 		if(f_tileOffsets == null) throw new RuntimeException("Missing required field tileOffsets");
-		int[] tileOffsets = f_tileOffsets.getDataAsLong();
+		long[] tileOffsets = f_tileOffsets.getDataAsLong8();
 		TiffField<?> f_tileByteCounts = ifd.getField(TiffTag.TILE_BYTE_COUNTS);
 		if(f_tileByteCounts == null) f_tileByteCounts = ifd.getField(TiffTag.STRIP_BYTE_COUNTS);
 		int[] tileByteCounts = null;
@@ -1163,7 +1170,7 @@ public class TIFFReader extends ImageReader {
 						}
 						break;
 					case LZW:
-						decoder = new LZWTreeDecoder(8, true);
+						decoder = new LZWTableDecoder(8, true);
 						break;
 					case DEFLATE:
 					case DEFLATE_ADOBE:
@@ -1171,27 +1178,8 @@ public class TIFFReader extends ImageReader {
 						break;
 					default:
 				}
-				if(decoder != null) {
-					for(int i = 0; i < tileByteCounts.length; i++) {
-						byte[] temp = new byte[tileByteCounts[i]];
-						byte[] temp2 = new byte[bytes2Read];
-						randIS.seek(tileOffsets[i]);
-						randIS.readFully(temp);
-						decoder.setInput(temp);
-						decoder.decode(temp2, 0, bytes2Read);
-						if(bitsPerSample == 16) {
-							raster.setDataElements(xoff, yoff, tileWidth, tileLength, ArrayUtils.toShortArray(temp2, endian == IOUtils.BIG_ENDIAN));
-						} else
-							raster.setDataElements(xoff, yoff, tileWidth, tileLength, temp2);
-						xoff += tileWidth;
-						tileCounter++;
-						if(tileCounter >= tilesAcross) {
-							xoff = 0;
-							yoff += tileLength;
-							tileCounter = 0;
-						}					
-					}
-				}
+				if(decoder != null)
+					decodeTiles(decoder, compression, tileOffsets, tileByteCounts, bytes2Read, raster, tileWidth, tileLength, tilesAcross, bitsPerSample, 0);
 							   
 				return new BufferedImage(cm, raster, false, null).getSubimage(0, 0, imageWidth, imageHeight);
 			case RGB:
@@ -1383,7 +1371,7 @@ public class TIFFReader extends ImageReader {
 						}
 						break;
 					case LZW:
-						decoder = new LZWTreeDecoder(8, true);
+						decoder = new LZWTableDecoder(8, true);
 						break;
 					case DEFLATE:
 					case DEFLATE_ADOBE:
@@ -1391,30 +1379,9 @@ public class TIFFReader extends ImageReader {
 						break;
 					default:
 				}
-				if(decoder != null) {					
-					for(int i = 0; i < tileByteCounts.length; i++) {
-						byte[] temp = new byte[tileByteCounts[i]];
-						byte[] temp2 = new byte[bytes2Read];
-						randIS.seek(tileOffsets[i]);
-						randIS.readFully(temp);
-						decoder.setInput(temp);
-						decoder.decode(temp2, 0, bytes2Read);
-						if(bitsPerSample == 16) {
-							raster.setDataElements(xoff, yoff, tileWidth, tileLength, ArrayUtils.toShortArray(temp2, endian == IOUtils.BIG_ENDIAN));
-						} else
-							raster.setDataElements(xoff, yoff, tileWidth, tileLength, temp2);
-						xoff += tileWidth;
-						tileCounter++;
-						if(tileCounter >= tilesAcross) {
-							xoff = 0;
-							yoff += tileLength;
-							tileCounter = 0;
-						}
-					}
-				}
-				// This also works with 4 samples per pixel data
-				if(predictor == 2 && planaryConfiguration == 1 && bitsPerPixel == 8)
-					pixels = applyDePredictor(samplesPerPixel, pixels, imageWidth, imageHeight);
+				if(decoder != null) // Each tile is predicted on its own
+					decodeTiles(decoder, compression, tileOffsets, tileByteCounts, bytes2Read, raster, tileWidth, tileLength, tilesAcross, bitsPerSample,
+							(predictor == 2 && planaryConfiguration == 1 && bitsPerSample == 8)? samplesPerPixel : 0);
 			
 				return new BufferedImage(cm, raster, false, null).getSubimage(0, 0, imageWidth, imageHeight);
 			default:
@@ -1463,12 +1430,51 @@ public class TIFFReader extends ImageReader {
 				frames.add(frame);
 		}
 		
-		randIS.shallowClose();
+		closeStream();
 		if(frames.size() > 0)
 			return frames.get(0);
 		return null;
 	}
 	
+	/**
+	 * Decode part of a page. Only the strips or tiles intersecting the region are read and
+	 * decompressed, so the work done is proportional to the size of the region rather than
+	 * to the size of the page. For stripped images, whole rows of the strips are decoded.
+	 * 
+	 * @param is InputStream for the TIFF image
+	 * @param pageIndex zero based index of the page
+	 * @param sourceRegion region of the page to decode, null for the whole page
+	 * @param subsampling keep every subsampling-th pixel and row of the region, 1 to keep all
+	 * @return the decoded region or null if the page could not be decoded
+	 * @throws Exception
+	 */
+	public BufferedImage readRegion(InputStream is, int pageIndex, Rectangle sourceRegion, int subsampling) throws Exception {
+		if(subsampling < 1) throw new IllegalArgumentException("Invalid subsampling: " + subsampling);
+		
+		if(!readIFDs(is)) return null;
+		
+		try {
+			if(pageIndex < 0 || pageIndex >= ifds.size())
+				throw new IllegalArgumentException("Page index " + pageIndex + " out of bounds");
+			return decode(ifds.get(pageIndex), sourceRegion, subsampling);
+		} finally {
+			closeStream();
+		}
+	}
+	
+	/**
+	 * Set the executor used to decompress LZW or DEFLATE compressed strips and tiles
+	 * concurrently, for example a {@link java.util.concurrent.ForkJoinPool}. The compressed
+	 * data is still read in turn from the stream while each strip or tile is decompressed
+	 * into its own area of the image. Set to null to decompress on the calling thread.
+	 * The executor is not shut down by this reader.
+	 * 
+	 * @param executor ExecutorService to run the decompression tasks
+	 */
+	public void setExecutorService(ExecutorService executor) {
+		this.executor = executor;
+	}
+	
 	private boolean readHeader(RandomAccessInputStream randIS) throws IOException {
 		// First 2 bytes determine the byte order of the file
 		endian = randIS.readShort();
@@ -1486,8 +1492,17 @@ public class TIFFReader extends ImageReader {
 		
 		// Read TIFF identifier
 		short tiff_id = randIS.readShort();
-		  
-		if(tiff_id!=0x2a) { //"*" 42 decimal
+		
+		bigTiff = (tiff_id == 0x2b); //"+" 43 decimal
+		
+		if(bigTiff) {
+			// Byte size of offsets followed by a reserved short
+			if(randIS.readShort() != 8 || randIS.readShort() != 0) {
+				LOGGER.error("Error: invalid BigTIFF header");
+				return false;
+			}
+			LOGGER.info("BigTIFF with 64 bit offsets");
+		} else if(tiff_id!=0x2a) { //"*" 42 decimal
 			LOGGER.error("Error: invalid tiff identifier");
 			return false;
 		}
@@ -1495,13 +1510,16 @@ public class TIFFReader extends ImageReader {
 		return true;
 	}
 	 
-	private int readIFD(int id, int offset) throws IOException {
+	private long readIFD(int id, long offset) throws IOException {
 		IFD tiffIFD = new IFD();
+		tiffIFD.setBigTIFF(bigTiff);
+		// Size of the value/offset part of a field: 4 for classic TIFF and 8 for BigTIFF
+		int offsetSize = bigTiff? 8 : 4;
 		LOGGER.info("IFD {} offset: byte {}", id, offset);
 		randIS.seek(offset);
-		int no_of_fields = randIS.readShort();
+		int no_of_fields = bigTiff? (int)randIS.readLong() : randIS.readShort();
 		LOGGER.info("Total number of fields for IFD {}: {}", id, no_of_fields);
-		offset += 2;
+		offset += (bigTiff? 8 : 2);
 		
 		for (int i = 0;i < no_of_fields; i++) {
 			LOGGER.info("TiffField {} =>", i);
@@ -1519,155 +1537,129 @@ public class TIFFReader extends ImageReader {
 			LOGGER.info("Data type: {}", ftype);
 			offset += 2;
 			randIS.seek(offset);
-			int field_length = randIS.readInt();
+			int field_length = bigTiff? (int)randIS.readLong() : randIS.readInt();
 			LOGGER.info("TiffField length: {}", field_length);
-			offset += 4;
+			offset += offsetSize;
+			// Data no longer than the value/offset part is stored inline, otherwise it is pointed to
+			long dataOffset = offset;
+			if((long)field_length*ftype.getSize() > offsetSize) {
+				randIS.seek(offset);
+				dataOffset = bigTiff? randIS.readLong() : randIS.readInt()&0xffffffffL;
+			}
+			offset += offsetSize;
 			////// Try to read actual data.
+			randIS.seek(dataOffset);
 			switch (ftype) {
 				case BYTE:
 				case UNDEFINED:
 					byte[] data = new byte[field_length];
-					if(field_length <= 4) {
-						randIS.seek(offset);
-						randIS.readFully(data, 0, field_length);					   
-					} else {
-						randIS.seek(offset);
-						randIS.seek(randIS.readInt());
-						randIS.readFully(data, 0, field_length);
-					}
+					randIS.readFully(data, 0, field_length);
 					LOGGER.info("TiffField value: {}", StringUtils.byteArrayToHexString(data, 0, 10));
-					offset += 4;					
 					tiffIFD.addField((ftype == FieldType.BYTE)?new ByteField(tag, data):
 						new UndefinedField(tag, data));
 					break;
 				case ASCII:
 					data = new byte[field_length];
-					if(field_length <= 4) {
-						randIS.seek(offset);
-						randIS.readFully(data, 0, field_length);
-					} else {
-						randIS.seek(offset);
-						randIS.seek(randIS.readInt());
-						randIS.readFully(data, 0, field_length);
-					}
+					randIS.readFully(data, 0, field_length);
 					if(data.length>0)
 					  LOGGER.info("TiffField value: {}", new String(data, 0, data.length-1).trim());
-					offset += 4;	
 					tiffIFD.addField(new ASCIIField(tag, new String(data, 0, data.length)));
 			        break;
 				case SHORT:
 					short[] sdata = new short[field_length];
-					if(field_length == 1) {
-					  randIS.seek(offset);
-					  sdata[0] = randIS.readShort();
-					  offset += 4;
-					} else if (field_length == 2) {
-						randIS.seek(offset);
-						sdata[0] = randIS.readShort();
-						offset += 2;
-						randIS.seek(offset);
-						sdata[1] = randIS.readShort();
-						offset += 2;
-					} else {
-						randIS.seek(offset);
-						int toOffset = randIS.readInt();
-						offset += 4;
-						for (int j=0;j<field_length; j++){
-							randIS.seek(toOffset);
-							sdata[j] = randIS.readShort();
-							toOffset += 2;
-						}
-					}	
+					for (int j=0;j<field_length; j++)
+						sdata[j] = randIS.readShort();
 					tiffIFD.addField(new ShortField(tag, sdata));
 					LOGGER.info("TiffField value: {}", StringUtils.shortArrayToString(sdata, 0, 10, true));
 					break;
 				case LONG:
 					int[] ldata = new int[field_length];
-					if(field_length == 1) {
-						randIS.seek(offset);
-						ldata[0] = randIS.readInt();
-						offset += 4;
-					} else {
-						randIS.seek(offset);
-						int toOffset = randIS.readInt();
-						offset += 4;
-						for (int j=0;j<field_length; j++){
-							randIS.seek(toOffset);
-							ldata[j] = randIS.readInt();
-							toOffset += 4;
-						}
-					}	
+					for (int j=0;j<field_length; j++)
+						ldata[j] = randIS.readInt();
 					LOGGER.info("TiffField value: {}", StringUtils.longArrayToString(ldata, 0, 10, true));
 					tiffIFD.addField(new LongField(tag, ldata));
 					break;
+				case LONG8:
+					long[] l8data = new long[field_length];
+					for (int j=0;j<field_length; j++)
+						l8data[j] = randIS.readLong();
+					LOGGER.info("TiffField value: {}", StringUtils.long8ArrayToString(l8data, 0, 10));
+					tiffIFD.addField(new Long8Field(tag, l8data));
+					break;
 				case RATIONAL:
 					int len = 2*field_length;
 					ldata = new int[len];	
-					randIS.seek(offset);
-					int toOffset = randIS.readInt();
-					offset += 4;					
-					for (int j=0;j<len; j+=2) {
-						randIS.seek(toOffset);
+					for (int j=0;j<len; j++)
 						ldata[j] = randIS.readInt();
-						toOffset += 4;
-						randIS.seek(toOffset);
-						ldata[j+1] = randIS.readInt();
-						toOffset += 4;
-					}	
 					tiffIFD.addField(new RationalField(tag, ldata));
 					LOGGER.info("TiffField value: {}", StringUtils.rationalArrayToString(ldata, true));
 					break;
 				case FLOAT:
 					float[] fdata = new float[field_length];
-					if(field_length == 1) {
-						randIS.seek(offset);
-						fdata[0] = randIS.readFloat();
-						offset += 4;
-					} else {
-						randIS.seek(offset);
-						toOffset = randIS.readInt();
-						offset += 4;
-						for (int j=0;j<field_length; j++) {
-							randIS.seek(toOffset);
-							fdata[j] = randIS.readFloat();
-							toOffset += 4;
-						}
-					}
+					for (int j=0;j<field_length; j++)
+						fdata[j] = randIS.readFloat();
 					tiffIFD.addField(new FloatField(tag, fdata));
 					LOGGER.info("TiffField value: {}", Arrays.toString(fdata));			
 					break;
 				case DOUBLE:
 					double[] ddata = new double[field_length];
-					randIS.seek(offset);
-					toOffset = randIS.readInt();
-					offset += 4;
-					for (int j=0;j<field_length; j++) {
-						randIS.seek(toOffset);
+					for (int j=0;j<field_length; j++)
 						ddata[j] = randIS.readDouble();
-						toOffset += 8;
-					}
 					tiffIFD.addField(new DoubleField(tag, ddata));
 					LOGGER.info("Field value: {}", Arrays.toString(ddata));						
 					break;
 				default:
-					offset += 4;
 					break;					
 			  }	
 		}
 		ifds.add(tiffIFD);
 		LOGGER.info("********************************");
 		randIS.seek(offset);
-		return randIS.readInt();
+		return bigTiff? randIS.readLong() : randIS.readInt()&0xffffffffL;
 	}
 	
+	// Release the stream opened by readIFDs(), the InputStream passed to it is left open
+	// and a RandomAccessInputStream passed in is put back where the caller left it
+	protected void closeStream() throws IOException {
+		if(randIS == null) return;
+		if(ownStream)
+			randIS.shallowClose();
+		else
+			randIS.seek(callerPosition);
+		randIS = null;
+	}
+	
+	/**
+	 * Read the header and the IFDs of all the pages.
+	 * <p>
+	 * A {@link RandomAccessInputStream} is read in place. The TIFF has to start at
+	 * position 0 of it since the offsets are taken from there, whatever the current
+	 * position is. The position is restored by {@link #closeStream()}.
+	 * 
+	 * @param is InputStream for the TIFF image
+	 * @return false if the input is not a TIFF image
+	 * @throws Exception
+	 */
 	protected boolean readIFDs(InputStream is) throws Exception {
-		// Wrap the input stream with RandomInputStream
-		randIS = new FileCacheRandomAccessInputStream(is, bufLen);
-		if(!readHeader(randIS)) return false;
+		if(is instanceof RandomAccessInputStream) {
+			// Already seekable, for example a MappedFileRandomAccessInputStream, no need to cache it again
+			randIS = (RandomAccessInputStream)is;
+			callerPosition = randIS.getStreamPointer();
+			randIS.seek(0);
+			ownStream = false;
+		} else {
+			// Wrap the input stream with RandomInputStream
+			randIS = new FileCacheRandomAccessInputStream(is, bufLen);
+			ownStream = true;
+		}
+		if(!readHeader(randIS)) {
+			closeStream();
+			return false;
+		}
 		
 		ifds = new ArrayList<IFD>();
 		
-		int offset = randIS.readInt();
+		long offset = bigTiff? randIS.readLong() : randIS.readInt()&0xffffffffL;
 		int ifd = 0;
 		
 		while (offset != 0)	{
@@ -1682,6 +1674,130 @@ public class TIFFReader extends ImageReader {
 		return true;
 	}
 	
+	// Copy the region out of the decoded image keeping every subsampling-th pixel and row
+	private static BufferedImage extractRegion(BufferedImage image, int x, int y, int width, int height, int subsampling) {
+		Raster src = image.getRaster();
+		if(x == 0 && y == 0 && width == src.getWidth() && height == src.getHeight() && subsampling == 1)
+			return image;
+		
+		int dstWidth = (width + subsampling - 1)/subsampling;
+		int dstHeight = (height + subsampling - 1)/subsampling;
+		WritableRaster dst = createCompatibleRaster(src, dstWidth, dstHeight);
+		
+		if(subsampling == 1) {
+			dst.setDataElements(0, 0, src.createChild(x, y, width, height, 0, 0, null));
+		} else {
+			Object pixel = null;
+			for(int j = 0, srcY = y; j < dstHeight; j++, srcY += subsampling) {
+				for(int i = 0, srcX = x; i < dstWidth; i++, srcX += subsampling) {
+					pixel = src.getDataElements(srcX, srcY, pixel);
+					dst.setDataElements(i, j, pixel);
+				}
+			}
+		}
+		
+		return new BufferedImage(image.getColorModel(), dst, image.isAlphaPremultiplied(), null);
+	}
+	
+	// Raster.createCompatibleWritableRaster() fails for pixel interleaved rasters with more samples per pixel
+	// than bands, such as CMYK with extra alpha samples, when the region is only one pixel wide: the data
+	// buffer is sized by the bands actually used which leaves it shorter than the pixel stride.
+	private static WritableRaster createCompatibleRaster(Raster src, int width, int height) {
+		SampleModel sampleModel = src.getSampleModel();
+		int dataType = sampleModel.getDataType();
+		if(!(sampleModel instanceof PixelInterleavedSampleModel) || (dataType != DataBuffer.TYPE_BYTE && dataType != DataBuffer.TYPE_USHORT))
+			return src.createCompatibleWritableRaster(width, height);
+		
+		int pixelStride = ((PixelInterleavedSampleModel)sampleModel).getPixelStride();
+		int size = pixelStride*width*height;
+		DataBuffer db = (dataType == DataBuffer.TYPE_BYTE)? new DataBufferByte(size) : new DataBufferUShort(size);
+		
+		return Raster.createWritableRaster(new PixelInterleavedSampleModel(dataType, width, height, pixelStride,
+				pixelStride*width, ((PixelInterleavedSampleModel)sampleModel).getBandOffsets()), db, null);
+	}
+	
+	// Create an IFD which only refers to the strips or tiles intersecting the region. The position of
+	// the first strip or tile in the page is returned through origin. If the strips or tiles can not be
+	// picked out, the original IFD is returned with origin set to (0, 0).
+	private static IFD getRegionIFD(IFD ifd, Rectangle region, Point origin) {
+		TiffField<?> f_compression = ifd.getField(TiffTag.COMPRESSION);
+		if(f_compression != null && f_compression.getDataAsLong()[0] == TiffFieldEnum.Compression.OLD_JPG.getValue())
+			return ifd; // Old-style JPEG may be stored as a single JPEG stream
+		
+		int imageWidth = ifd.getField(TiffTag.IMAGE_WIDTH).getDataAsLong()[0];
+		int imageHeight = ifd.getField(TiffTag.IMAGE_LENGTH).getDataAsLong()[0];
+		
+		int planes = 1;
+		TiffField<?> f_planaryConfiguration = ifd.getField(TiffTag.PLANAR_CONFIGURATTION);
+		if(f_planaryConfiguration != null && f_planaryConfiguration.getDataAsLong()[0] == 2) {
+			TiffField<?> f_samplesPerPixel = ifd.getField(TiffTag.SAMPLES_PER_PIXEL);
+			if(f_samplesPerPixel != null) planes = f_samplesPerPixel.getDataAsLong()[0];
+		}
+		
+		TiffField<?> f_tileWidth = ifd.getField(TiffTag.TILE_WIDTH);
+		TiffField<?> f_tileLength = ifd.getField(TiffTag.TILE_LENGTH);
+		boolean tiled = (f_tileWidth != null && f_tileLength != null);
+		
+		// Tiles may also be found under the strip tags
+		Tag offsetsTag = (tiled && ifd.getField(TiffTag.TILE_OFFSETS) != null)? TiffTag.TILE_OFFSETS : TiffTag.STRIP_OFFSETS;
+		Tag byteCountsTag = (tiled && ifd.getField(TiffTag.TILE_BYTE_COUNTS) != null)? TiffTag.TILE_BYTE_COUNTS : TiffTag.STRIP_BYTE_COUNTS;
+		TiffField<?> f_offsets = ifd.getField(offsetsTag);
+		TiffField<?> f_byteCounts = ifd.getField(byteCountsTag);
+		if(f_offsets == null || f_byteCounts == null) return ifd;
+		
+		long[] offsets = f_offsets.getDataAsLong8();
+		int[] byteCounts = f_byteCounts.getDataAsLong();
+		
+		// Strips are tiles as wide as the image
+		int tileWidth = imageWidth;
+		int tileLength = imageHeight;
+		
+		if(tiled) {
+			tileWidth = f_tileWidth.getDataAsLong()[0];
+			tileLength = f_tileLength.getDataAsLong()[0];
+		} else {
+			TiffField<?> f_rowsPerStrip = ifd.getField(TiffTag.ROWS_PER_STRIP);
+			if(f_rowsPerStrip != null) tileLength = f_rowsPerStrip.getDataAsLong()[0];
+			if(tileLength <= 0 || tileLength > imageHeight) tileLength = imageHeight;
+		}
+		
+		int tilesAcross = (imageWidth + tileWidth - 1)/tileWidth;
+		int tilesDown = (imageHeight + tileLength - 1)/tileLength;
+		int tilesPerImage = tilesAcross*tilesDown;
+		
+		if(offsets.length < planes*tilesPerImage || byteCounts.length < offsets.length) return ifd;
+		
+		int firstColumn = region.x/tileWidth;
+		int lastColumn = (region.x + region.width - 1)/tileWidth;
+		int firstRow = region.y/tileLength;
+		int lastRow = (region.y + region.height - 1)/tileLength;
+		int columns = lastColumn - firstColumn + 1;
+		int rows = lastRow - firstRow + 1;
+		
+		long[] newOffsets = new long[planes*rows*columns];
+		int[] newByteCounts = new int[newOffsets.length];
+		
+		for(int plane = 0, k = 0; plane < planes; plane++) {
+			for(int row = firstRow; row <= lastRow; row++) {
+				for(int column = firstColumn, index = plane*tilesPerImage + row*tilesAcross + firstColumn; column <= lastColumn; column++, index++, k++) {
+					newOffsets[k] = offsets[index];
+					newByteCounts[k] = byteCounts[index];
+				}
+			}
+		}
+		
+		IFD part = new IFD();
+		part.addFields(ifd.getFields());
+		part.addField(new Long8Field(offsetsTag.getValue(), newOffsets));
+		part.addField(new LongField(byteCountsTag.getValue(), newByteCounts));
+		part.addField(new LongField(TiffTag.IMAGE_WIDTH.getValue(), new int[] {Math.min(imageWidth, (lastColumn + 1)*tileWidth) - firstColumn*tileWidth}));
+		part.addField(new LongField(TiffTag.IMAGE_LENGTH.getValue(), new int[] {Math.min(imageHeight, (lastRow + 1)*tileLength) - firstRow*tileLength}));
+		
+		origin.setLocation(firstColumn*tileWidth, firstRow*tileLength);
+		
+		return part;
+	}
+	
 	// De-predictor for PLANARY_CONFIGURATION value 1
 	private static byte[] applyDePredictor(int numOfSamples, byte[] input, int imageWidth, int imageHeight) {
 		for(int i = 0, inc = numOfSamples*imageWidth, maxVal = inc - numOfSamples, minVal = numOfSamples; i <= imageHeight - 1; maxVal += inc, minVal += inc, i++) {
@@ -1716,8 +1832,127 @@ public class TIFFReader extends ImageReader {
 		return input;
 	}
 	
+	// Read the compressed strips or tiles in turn and decompress them concurrently on the executor.
+	// The number of blocks read ahead of the oldest one still being decompressed is limited.
+	private void decodeBlocks(Compression compression, long[] offsets, int[] byteCounts, boolean reverseBits, final BlockDecoder blockDecoder) throws Exception {
+		int window = Runtime.getRuntime().availableProcessors()*2;
+		Queue<Future<Void>> futures = new ArrayDeque<Future<Void>>();
+		
+		try {
+			for(int i = 0; i < offsets.length; i++) {
+				if(futures.size() >= window)
+					waitFor(futures.remove());
+				final int index = i;
+				final byte[] input = readBlock(offsets[i], byteCounts[i]);
+				if(reverseBits) ArrayUtils.reverseBits(input);
+				final ImageDecoder decoder = (compression == Compression.LZW)? new LZWTableDecoder(8, true) : new DeflateDecoder();
+				futures.add(executor.submit(new Callable<Void>() {
+					public Void call() throws Exception {
+						decoder.setInput(input);
+						blockDecoder.decode(index, decoder);
+						return null;
+					}
+				}));
+			}
+			while(!futures.isEmpty())
+				waitFor(futures.remove());
+		} finally {
+			for(Future<Void> future : futures)
+				future.cancel(true);
+		}
+	}
+	
+	// Decompress the strips into pixels starting at offset and return the offset past the last strip
+	private int decodeStrips(ImageDecoder decoder, Compression compression, final byte[] pixels, int offset, long[] stripOffsets, int[] stripByteCounts, final int[] stripBytes, boolean reverseBits) throws Exception {
+		if(isConcurrent(compression, stripOffsets.length)) {
+			// Each strip goes to its own place whether or not the previous ones are complete
+			final int[] starts = new int[stripBytes.length];
+			for(int i = 0; i < stripBytes.length; i++) {
+				starts[i] = offset;
+				offset += stripBytes[i];
+			}
+			decodeBlocks(compression, stripOffsets, stripByteCounts, reverseBits, new BlockDecoder() {
+				public void decode(int index, ImageDecoder decoder) throws Exception {
+					decoder.decode(pixels, starts[index], stripBytes[index]);
+				}
+			});
+			return offset;
+		}
+		
+		for(int i = 0; i < stripByteCounts.length; i++) {
+			byte[] temp = readBlock(stripOffsets[i], stripByteCounts[i]);
+			if(reverseBits) ArrayUtils.reverseBits(temp);
+			decoder.setInput(temp);
+			int numOfBytes = decoder.decode(pixels, offset, stripBytes[i]);
+			offset += numOfBytes;
+		}
+		
+		return offset;
+	}
+	
+	// Decompress the tiles into their places in the raster. Tiles are predicted separately if predictorSamples is not zero
+	private void decodeTiles(ImageDecoder decoder, Compression compression, long[] tileOffsets, int[] tileByteCounts, final int bytes2Read, final WritableRaster raster,
+			final int tileWidth, final int tileLength, final int tilesAcross, final int bitsPerSample, final int predictorSamples) throws Exception {
+		BlockDecoder tileDecoder = new BlockDecoder() {
+			public void decode(int index, ImageDecoder decoder) throws Exception {
+				byte[] temp2 = new byte[bytes2Read];
+				decoder.decode(temp2, 0, bytes2Read);
+				if(predictorSamples > 0)
+					applyDePredictor(predictorSamples, temp2, tileWidth, tileLength);
+				int xoff = (index%tilesAcross)*tileWidth;
+				int yoff = (index/tilesAcross)*tileLength;
+				// Tiles cover disjoint areas of the raster
+				if(bitsPerSample == 16) {
+					raster.setDataElements(xoff, yoff, tileWidth, tileLength, ArrayUtils.toShortArray(temp2, endian == IOUtils.BIG_ENDIAN));
+				} else
+					raster.setDataElements(xoff, yoff, tileWidth, tileLength, temp2);
+			}
+		};
+		
+		if(isConcurrent(compression, tileOffsets.length)) {
+			decodeBlocks(compression, tileOffsets, tileByteCounts, false, tileDecoder);
+			return;
+		}
+		
+		for(int i = 0; i < tileByteCounts.length; i++) {
+			decoder.setInput(readBlock(tileOffsets[i], tileByteCounts[i]));
+			tileDecoder.decode(i, decoder);
+		}
+	}
+	
+	// Only LZW and DEFLATE compressed images with more than one strip or tile are decompressed concurrently
+	private boolean isConcurrent(Compression compression, int numOfBlocks) {
+		if(executor == null || numOfBlocks < 2) return false;
+		
+		return compression == Compression.LZW || compression == Compression.DEFLATE || compression == Compression.DEFLATE_ADOBE;
+	}
+	
+	// Read a compressed strip or tile, a zero byte count means everything to the end of the stream
+	private byte[] readBlock(long offset, int byteCount) throws IOException {
+		randIS.seek(offset);
+		
+		if(byteCount == 0)
+			return IOUtils.readFully(randIS, 4096);
+		
+		byte[] temp = new byte[byteCount];
+		randIS.readFully(temp);
+		
+		return temp;
+	}
+	
+	private static void waitFor(Future<Void> future) throws Exception {
+		try {
+			future.get();
+		} catch(ExecutionException ex) {
+			Throwable cause = ex.getCause();
+			if(cause instanceof Exception)
+				throw (Exception)cause;
+			throw ex;
+		}
+	}
+	
 	// Unpack PACKBITS encoded strips
-	private void unpackStrip(byte[] pixels, int offset, int bytes2Read, int stripOffset, int stripByteCount) throws IOException {
+	private void unpackStrip(byte[] pixels, int offset, int bytes2Read, long stripOffset, int stripByteCount) throws IOException {
 		randIS.seek(stripOffset);
 		byte[] temp = null;
 		if(stripByteCount == 0) {
@@ -1789,4 +2024,9 @@ public class TIFFReader extends ImageReader {
 		
 		return offsetY;
 	}	
+	
+	// Decompresses one strip or tile with a decoder whose input is already set
+	private interface BlockDecoder {
+		public void decode(int index, ImageDecoder decoder) throws Exception;
+	}
 }
@@ -60,4 +60,8 @@ public final class ASCIIField extends TiffField<String> {
 		}		
 		return toOffset;
 	}
+	
+	protected void writeValues(RandomAccessOutputStream os) throws IOException {
+		os.write(data.getBytes("UTF-8"));
+	}
 }
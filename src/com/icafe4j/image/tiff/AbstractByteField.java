@@ -47,4 +47,8 @@ public abstract class AbstractByteField extends TiffField<byte[]> {
 		}
 		return toOffset;
 	}
+	
+	protected void writeValues(RandomAccessOutputStream os) throws IOException {
+		os.write(data);
+	}
 }
@@ -0,0 +1,62 @@
+/**
+ * COPYRIGHT (C) 2014-2019 WEN YU (YUWEN_66@YAHOO.COM) ALL RIGHTS RESERVED.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Any modifications to this file must keep this entire header intact.
+ */
+
+package com.icafe4j.image.tiff;
+
+import java.io.IOException;
+
+import com.icafe4j.io.RandomAccessOutputStream;
+import com.icafe4j.string.StringUtils;
+
+/**
+ * Base class for BigTIFF 64 bit field types. These types are not allowed in classic TIFF.
+ * 
+ * @author agent
+ * @version 1.0 10/17/2026
+ */
+public abstract class AbstractLong8Field extends TiffField<long[]> {
+
+	public AbstractLong8Field(short tag, FieldType fieldType, long[] data) {
+		super(tag, fieldType, data.length);	
+		this.data = data;
+	}
+	
+	public long[] getData() {
+		return data.clone();
+	}
+	
+	/** Values are truncated to 32 bit */
+	public int[] getDataAsLong() {
+		int[] values = new int[data.length];
+		
+		for(int i = 0; i < data.length; i++)
+			values[i] = (int)data[i];
+		
+		return values;
+	}
+	
+	public long[] getDataAsLong8() {
+		return getData();
+	}
+	
+	public String getDataAsString() {
+		return StringUtils.long8ArrayToString(data, 0, TiffField.MAX_STRING_REPR_LEN);
+	}
+	
+	protected int writeData(RandomAccessOutputStream os, int toOffset) throws IOException {
+		throw new UnsupportedOperationException(getType() + " field type is only supported by BigTIFF");
+	}
+	
+	protected void writeValues(RandomAccessOutputStream os) throws IOException {
+		for (long value : data)
+			os.writeLong(value);
+	}
+}
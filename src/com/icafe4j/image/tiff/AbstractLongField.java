@@ -47,4 +47,9 @@ public abstract class AbstractLongField extends TiffField<int[]> {
 		}
 		return toOffset;
 	}
+	
+	protected void writeValues(RandomAccessOutputStream os) throws IOException {
+		for (int value : data)
+			os.writeInt(value);
+	}
 }
@@ -43,4 +43,9 @@ public abstract class AbstractRationalField extends TiffField<int[]> {
 		
 		return toOffset;
 	}
+	
+	protected void writeValues(RandomAccessOutputStream os) throws IOException {
+		for (int value : data)
+			os.writeInt(value);
+	}
 }
@@ -45,4 +45,9 @@ public abstract class AbstractShortField extends TiffField<short[]> {
 		}
 		return toOffset;
 	}
+	
+	protected void writeValues(RandomAccessOutputStream os) throws IOException {
+		for (short value : data)
+			os.writeShort(value);
+	}
 }
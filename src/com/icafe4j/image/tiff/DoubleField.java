@@ -52,4 +52,9 @@ public class DoubleField extends TiffField<double[]> {
 		
 		return toOffset;
 	}
+	
+	protected void writeValues(RandomAccessOutputStream os) throws IOException {
+		for (double value : data)
+			os.writeDouble(value);
+	}
 }
@@ -35,6 +35,10 @@ public enum FieldType {
 	FLOAT("Float", (short)0x000b),
 	DOUBLE("Double", (short)0x000c),
 	IFD("IFD", (short)0x000d),
+	// BigTIFF 64 bit types
+	LONG8("Long8", (short)0x0010),
+	SLONG8("SLong8", (short)0x0011),
+	IFD8("IFD8", (short)0x0012),
 	// There two are not actually TIFF defined field type, internally they TIFF BYTE fields
 	WINDOWSXP("WindowsXP", (short)0x000e),
 	EXIF_MAKERNOTE("ExifMakernote", (short)0x000f),
@@ -95,6 +99,18 @@ public enum FieldType {
     				}
     			}
     			break;
+    		case LONG8:
+    		case SLONG8:
+    			if(typeClass == long[].class) {
+    				long[] longData = (long[])data;
+    				if(longData.length > 0) {
+    					if(type == FieldType.LONG8)
+    						retValue = new Long8Field(tag.getValue(), longData);
+    					else
+    						retValue = new SLong8Field(tag.getValue(), longData);
+    				}
+    			}
+    			break;
     		case RATIONAL:
     		case SRATIONAL:
     			if(typeClass == int[].class) {
@@ -129,6 +145,33 @@ public enum FieldType {
 		return name;
 	}
 	
+	/**
+	 * Get the number of bytes taken by a single value of this type
+	 * 
+	 * @return size in bytes of one value
+	 */
+	public int getSize() {
+		switch(this) {
+			case SHORT:
+			case SSHORT:
+				return 2;
+			case LONG:
+			case SLONG:
+			case FLOAT:
+			case IFD:
+				return 4;
+			case RATIONAL:
+			case SRATIONAL:
+			case DOUBLE:
+			case LONG8:
+			case SLONG8:
+			case IFD8:
+				return 8;
+			default:
+				return 1;
+		}
+	}
+	
 	public short getValue() {
 		return value;
 	}
@@ -186,6 +229,13 @@ public enum FieldType {
     				if(intData.length > 0) retValue = true;    				
     			}
     			break;
+    		case LONG8:
+    		case SLONG8:
+    			if(typeClass == long[].class) {
+    				long[] longData = (long[])data;
+    				if(longData.length > 0) retValue = true;
+    			}
+    			break;
     		case RATIONAL:
     		case SRATIONAL:
     			if(typeClass == int[].class) {
@@ -53,4 +53,9 @@ public class FloatField extends TiffField<float[]> {
 		}
 		return toOffset;
 	}
+	
+	protected void writeValues(RandomAccessOutputStream os) throws IOException {
+		for (float value : data)
+			os.writeFloat(value);
+	}
 }
@@ -14,6 +14,7 @@
  *
  * Who   Date       Description
  * ====  =========  =======================================================================
+ * AG    17Oct2026  Added BigTIFF support with 64 bit offsets
  * WY    15Dec2014  Added removeChild() method
  * WY    24Nov2014  Added getChild() method
  * WY    02Apr2014  Added setNextIFDOffset() to work with the case of non-contiguous IFDs
@@ -50,9 +51,12 @@ public final class IFD {
 	/** Create a fields map to hold all of the fields for this IFD */
 	private Map<Short, TiffField<?>> tiffFields = new HashMap<Short, TiffField<?>>();
 
-	private int endOffset;
+	private long endOffset;
 	
-	private int startOffset;
+	private long startOffset;
+	
+	// Whether this IFD is read from or to be written as BigTIFF
+	private boolean bigTiff;
 	
 	public IFD() {}
 	
@@ -63,6 +67,7 @@ public final class IFD {
 		this.tiffFields = Collections.unmodifiableMap(other.tiffFields);
 		this.startOffset = other.startOffset;
 		this.endOffset = other.endOffset;
+		this.bigTiff = other.bigTiff;
 	}
 	
 	public void addChild(Tag tag, IFD child) {
@@ -87,7 +92,7 @@ public final class IFD {
 		return Collections.unmodifiableMap(children);
 	}
 	
-	public int getEndOffset() {
+	public long getEndOffset() {
 		return endOffset;
 	}
 	
@@ -127,10 +132,14 @@ public final class IFD {
 		return tiffFields.size();
 	}
 	
-	public int getStartOffset() {
+	public long getStartOffset() {
 		return startOffset;
 	}
 	
+	public boolean isBigTIFF() {
+		return bigTiff;
+	}
+	
 	/** Remove all the entries from the IDF fields map */
 	public void removeAllFields() {
 		tiffFields.clear();
@@ -145,6 +154,19 @@ public final class IFD {
 		return tiffFields.remove(tag.getValue());
 	}
 	
+	/**
+	 * Write this IFD and its children, if any, as BigTIFF directories with 8 byte
+	 * entry count, 20 byte entries and 8 byte next IFD offset.
+	 * 
+	 * @param bigTiff true to write BigTIFF directories
+	 */
+	public void setBigTIFF(boolean bigTiff) {
+		this.bigTiff = bigTiff;
+		
+		for(IFD child : children.values())
+			child.setBigTIFF(bigTiff);
+	}
+	
 	/**
 	 * Set the next IFD offset pointer
 	 * <p>
@@ -155,9 +177,21 @@ public final class IFD {
 	 * @param nextOffset next IFD offset value
 	 * @throws IOException
 	 */
-	public void setNextIFDOffset(RandomAccessOutputStream os, int nextOffset) throws IOException {
-		os.seek(endOffset - 4);
-		os.writeInt(nextOffset);
+	public void setNextIFDOffset(RandomAccessOutputStream os, long nextOffset) throws IOException {
+		if(bigTiff) {
+			os.seek(endOffset - 8);
+			os.writeLong(nextOffset);
+		} else {
+			os.seek(endOffset - 4);
+			os.writeInt(checkClassicOffset(nextOffset));
+		}
+	}
+	
+	// Classic TIFF offsets are unsigned 32 bit
+	private static int checkClassicOffset(long offset) {
+		if(offset > 0xffffffffL)
+			throw new RuntimeException("Offset " + offset + " exceeds the 4GB limit of classic TIFF, write BigTIFF instead");
+		return (int)offset;
 	}
 	
 	/** Write this IFD and all the children, if any, to the output stream
@@ -167,8 +201,11 @@ public final class IFD {
 	 * 
 	 * @throws IOException
 	 */
-	public int write(RandomAccessOutputStream os, int offset) throws IOException {
-		startOffset = offset;
+	public long write(RandomAccessOutputStream os, long offset) throws IOException {
+		if(bigTiff)
+			return writeBigTIFF(os, offset);
+		
+		startOffset = checkClassicOffset(offset);
 		// Write this IFD and its children, if any, to the RandomAccessOutputStream
 		List<TiffField<?>> list = new ArrayList<TiffField<?>>(tiffFields.values());
 		// Make sure tiffFields are in incremental order.
@@ -178,12 +215,12 @@ public final class IFD {
 		offset += 2;
 		endOffset = offset + list.size() * 12 + 4;			
 		// The first available offset to write tiffFields. 
-		int toOffset = endOffset;
+		long toOffset = endOffset;
 		os.seek(offset); // Set first field offset.
 				
 		for (TiffField<?> tiffField : list)
 		{
-			toOffset = tiffField.write(os, toOffset);
+			toOffset = tiffField.write(os, checkClassicOffset(toOffset));
 			offset += 12; // Move to next field. Each field is of fixed length 12.
 			os.seek(offset); // Reset position to next directory field.
 		}
@@ -202,9 +239,9 @@ public final class IFD {
 			    // Update parent field if present, otherwise skip
 			    TiffField<?> tiffField = this.getField(key);
 			    if(tiffField != null) {
-			    	int dataPos = tiffField.getDataOffset();
+			    	long dataPos = tiffField.getDataOffset();
 					os.seek(dataPos);
-					os.writeInt(toOffset);
+					os.writeInt(checkClassicOffset(toOffset));
 					os.seek(toOffset);
 					toOffset = value.write(os, toOffset);
 			    }
@@ -213,4 +250,48 @@ public final class IFD {
 			
 		return toOffset;
 	}
+	
+	// Write this IFD and all the children, if any, as BigTIFF directories
+	private long writeBigTIFF(RandomAccessOutputStream os, long offset) throws IOException {
+		startOffset = offset;
+		// Sub IFD pointers are written as IFD8 fields which are updated once the children are written
+		Map<Tag, TiffField<?>> pointers = new HashMap<Tag, TiffField<?>>();
+		Map<Short, TiffField<?>> fields = new HashMap<Short, TiffField<?>>(tiffFields);
+		for (Tag key : children.keySet()) {
+			if(fields.containsKey(key.getValue())) {
+				TiffField<?> pointer = new IFD8Field(key.getValue(), new long[]{0});
+				fields.put(key.getValue(), pointer);
+				pointers.put(key, pointer);
+			}
+		}
+		List<TiffField<?>> list = new ArrayList<TiffField<?>>(fields.values());
+		// Make sure tiffFields are in incremental order.
+		Collections.sort(list);
+		os.seek(offset);
+		os.writeLong(list.size());
+		offset += 8;
+		endOffset = offset + list.size() * 20 + 8;
+		// The first available offset to write tiffFields. 
+		long toOffset = endOffset;
+		os.seek(offset); // Set first field offset.
+		
+		for (TiffField<?> tiffField : list) {
+			toOffset = tiffField.writeBigTIFF(os, toOffset);
+			offset += 20; // Move to next field. Each field is of fixed length 20.
+			os.seek(offset); // Reset position to next directory field.
+		}
+		
+		os.seek(offset);
+		os.writeLong(0); // Set next IFD offset to default 0
+		
+		// Write sub IFDs if any
+		for (Map.Entry<Tag, TiffField<?>> entry : pointers.entrySet()) {
+			os.seek(entry.getValue().getDataOffset());
+			os.writeLong(toOffset);
+			os.seek(toOffset);
+			toOffset = children.get(entry.getKey()).writeBigTIFF(os, toOffset);
+		}
+		
+		return toOffset;
+	}
 }
@@ -0,0 +1,25 @@
+/**
+ * COPYRIGHT (C) 2014-2019 WEN YU (YUWEN_66@YAHOO.COM) ALL RIGHTS RESERVED.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Any modifications to this file must keep this entire header intact.
+ */
+
+package com.icafe4j.image.tiff;
+
+/**
+ * BigTIFF Long8 type field.
+ * 
+ * @author agent
+ * @version 1.0 10/17/2026
+ */
+public final class Long8Field extends AbstractLong8Field {
+
+	public Long8Field(short tag, long[] data) {
+		super(tag, FieldType.LONG8, data);
+	}
+}
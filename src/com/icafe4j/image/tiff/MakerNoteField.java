@@ -41,4 +41,8 @@ public class MakerNoteField extends TiffField<byte[]> {
 		}
 		return toOffset;
 	}
+	
+	protected void writeValues(RandomAccessOutputStream os) throws IOException {
+		os.write(data);
+	}
 }
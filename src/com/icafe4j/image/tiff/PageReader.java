@@ -14,29 +14,117 @@
  *
  * Who   Date       Description
  * ====  =========  ====================================================
+ * AG    17Oct2026  Added random access to pages with a cache of decoded pages
  * WY    28May2018  Initial creation
  */
 
 package com.icafe4j.image.tiff;
 
 import java.awt.image.BufferedImage;
+import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Map;
+
 import com.icafe4j.image.reader.TIFFReader;
+import com.icafe4j.util.LRUCache;
 
-//Helper class to read TIFF pages one at a time
+/**
+ * Helper class to read TIFF pages one at a time.
+ * <p>
+ * Only the IFDs are read when the image is opened. A page is decoded the first time
+ * it is asked for and the most recently used pages are optionally kept in a cache.
+ * <pre>
+ * PageReader reader = new PageReader(2);
+ * int pageCount = reader.open(is);
+ * BufferedImage page = reader.getPage(3);
+ * ...
+ * reader.close();
+ * </pre>
+ */
 public class PageReader extends TIFFReader {	
 	private int cursor;
+	private int cacheSize;
+	private Map<Integer, BufferedImage> cache;
+	
+	public PageReader() {
+		this(0);
+	}
+	
+	/**
+	 * @param cacheSize maximum number of decoded pages to keep, 0 to keep none
+	 */
+	public PageReader(int cacheSize) {
+		if(cacheSize < 0) throw new IllegalArgumentException("Invalid cache size: " + cacheSize);
+		this.cacheSize = cacheSize;
+	}
+	
+	/**
+	 * Release the cached pages and the stream. The InputStream passed to
+	 * {@link #open} is not closed.
+	 * 
+	 * @throws IOException
+	 */
+	public void close() throws IOException {
+		if(cache != null) cache.clear();
+		closeStream();
+	}
 	
 	public BufferedImage getNextPage(InputStream is) throws Exception {
 		// One time reading of all the IFDs into a list
-		if(ifds == null) readIFDs(is);
+		if(ifds == null) open(is);
 		
 		if(cursor < ifds.size())
-			return decode(ifds.get(cursor++));
+			return getPage(cursor++);
 		
 		return null;
 	}
 	
+	/**
+	 * Decode a page of the image opened by {@link #open} unless it is in the cache.
+	 * 
+	 * @param index zero based index of the page
+	 * @return the decoded page or null if the page could not be decoded
+	 * @throws Exception
+	 */
+	public BufferedImage getPage(int index) throws Exception {
+		if(ifds == null) throw new IllegalStateException("No image has been opened");
+		if(index < 0 || index >= ifds.size())
+			throw new IllegalArgumentException("Page index " + index + " out of bounds");
+		
+		BufferedImage page = (cache != null)? cache.get(index) : null;
+		
+		if(page == null) {
+			page = decode(ifds.get(index));
+			if(page != null && cache != null)
+				cache.put(index, page);
+		}
+		
+		return page;
+	}
+	
+	public int getPageCount() {
+		return (ifds == null)? 0 : ifds.size();
+	}
+	
+	/**
+	 * Read the IFDs of all the pages without decoding any of them.
+	 * 
+	 * @param is InputStream for the TIFF image, it must be kept open until the pages are read
+	 * @return the number of pages
+	 * @throws Exception
+	 */
+	public int open(InputStream is) throws Exception {
+		if(ifds != null) close();
+		if(!readIFDs(is))
+			ifds = new ArrayList<IFD>();
+		
+		cursor = 0;
+		cache = (cacheSize > 0)? new LRUCache<Integer, BufferedImage>(cacheSize, false) : null;
+		
+		return ifds.size();
+	}
+	
 	public BufferedImage read(InputStream is) throws Exception {
 		return null; // NOOP
 	}
@@ -14,6 +14,8 @@
  *
  * Who   Date       Description
  * ====  =========  ===================================================================
+ * AG    17Oct2026  Decode LZW with LZWTableDecoder
+ * AG    17Oct2026  Added BigTIFF read and write support
  * WY    21Jun2019  Added code for removeMetadata to return the removed metadata as a map
  * WY    04May2019  Write IPTC to normal TIFF IPTC tag instead of PhotoShop IRB block
  * WY    09Aug2018  Add prepareForWrite(RandomAccessOutputStream, ByteOrder)
@@ -121,7 +123,7 @@ import com.icafe4j.image.compression.ImageDecoder;
 import com.icafe4j.image.compression.ImageEncoder;
 import com.icafe4j.image.compression.deflate.DeflateDecoder;
 import com.icafe4j.image.compression.deflate.DeflateEncoder;
-import com.icafe4j.image.compression.lzw.LZWTreeDecoder;
+import com.icafe4j.image.compression.lzw.LZWTableDecoder;
 import com.icafe4j.image.compression.lzw.LZWTreeEncoder;
 import com.icafe4j.image.compression.packbits.Packbits;
 import com.icafe4j.image.jpeg.Marker;
@@ -200,18 +202,16 @@ public class TIFFTweaker {
 	public static void copyCat(RandomAccessInputStream rin, RandomAccessOutputStream rout) throws IOException {
 		List<IFD> list = new ArrayList<IFD>();
 	   
-		int offset = copyHeader(rin, rout);
+		long offset = copyHeader(rin, rout);
 		
-		int writeOffset = FIRST_WRITE_OFFSET;
+		long writeOffset = firstWriteOffset(list);
 		// Read the IFDs into a list first
 		readIFDs(list, offset, rin);
 		offset = copyPages(list, writeOffset, rin, rout);
-		int firstIFDOffset = list.get(0).getStartOffset();	
-
-		writeToStream(rout, firstIFDOffset);
+		writeToStream(rout, list.get(0));
 	}
 	
-	private static int copyHeader(RandomAccessInputStream rin, RandomAccessOutputStream rout) throws IOException {		
+	private static long copyHeader(RandomAccessInputStream rin, RandomAccessOutputStream rout) throws IOException {		
 		rin.seek(STREAM_HEAD);
 		// First 2 bytes determine the byte order of the file, "MM" or "II"
 	    short endian = rin.readShort();
@@ -233,16 +233,16 @@ public class TIFFTweaker {
 		rin.seek(0x02);
 		short tiff_id = rin.readShort();
 		
-		if(tiff_id != 0x2a) { //"*" 42 decimal
+		if(tiff_id != 0x2a && tiff_id != 0x2b) { //"*" 42 decimal or "+" 43 decimal for BigTIFF
 		   rin.close();
 		   rout.close();
 		   throw new RuntimeException("Invalid TIFF identifier");
 		}
 		
 		rout.writeShort(tiff_id);
-		rin.seek(OFFSET_TO_WRITE_FIRST_IFD_OFFSET);
+		// The rest of the header is written by writeToStream() once the first IFD offset is known
 		
-		return rin.readInt();
+		return readHeader(rin);
 	}
 	
 	private static Collection<IPTCDataSet> copyIPTCDataSet(Collection<IPTCDataSet> iptcs, byte[] data) throws IOException {
@@ -412,8 +412,8 @@ public class TIFFTweaker {
 	 * 
 	 * @return the position where to write the IFD for the current image page
 	 */
-	private static int copyPageData(IFD ifd, int offset, RandomAccessInputStream rin, RandomAccessOutputStream rout) throws IOException {
-		int writeOffset = offset; // We copy the offset to a local variable to keep the original value
+	private static long copyPageData(IFD ifd, long offset, RandomAccessInputStream rin, RandomAccessOutputStream rout) throws IOException {
+		long writeOffset = offset; // We copy the offset to a local variable to keep the original value
 		int writeByteCount = 0; // To fix JPEG data double copy issue
 		
 		// Move stream pointer to the right place
@@ -435,8 +435,8 @@ public class TIFFTweaker {
 		 */
 		if(stripOffSets != null) { 
 			int[] counts = stripByteCounts.getDataAsLong();		
-			int[] off = stripOffSets.getDataAsLong();
-			int[] temp = new int[off.length];
+			long[] off = stripOffSets.getDataAsLong8();
+			long[] temp = new long[off.length];
 			
 			TiffField<?> tiffField = ifd.getField(TiffTag.COMPRESSION);
 			
@@ -477,10 +477,9 @@ public class TIFFTweaker {
 				writeOffset += buf.length;
 			}
 						
-			if(ifd.getField(TiffTag.STRIP_BYTE_COUNTS) != null)
-				ifd.addField(new LongField(TiffTag.STRIP_OFFSETS.getValue(), temp));
-			else
-				ifd.addField(new LongField(TiffTag.TILE_OFFSETS.getValue(), temp));		
+			short offsetsTag = (ifd.getField(TiffTag.STRIP_BYTE_COUNTS) != null)? TiffTag.STRIP_OFFSETS.getValue() : TiffTag.TILE_OFFSETS.getValue();
+			
+			ifd.addField(createOffsetsField(ifd, offsetsTag, temp));
 		}
 		
 		// Add software field.
@@ -503,15 +502,15 @@ public class TIFFTweaker {
 						ifd.addField(jpegIFByteCount);
 					} else {
 						long startOffset = rout.getStreamPointer();					
-						copyJpegIFByteCount(rin, rout, jpegIFOffset.getDataAsLong()[0], writeOffset);
+						copyJpegIFByteCount(rin, rout, jpegIFOffset.getDataAsLong()[0], (int)writeOffset);
 						long endOffset = rout.getStreamPointer();
 						ifd.addField(new LongField(TiffTag.JPEG_INTERCHANGE_FORMAT_LENGTH.getValue(), new int[]{(int)(endOffset - startOffset)}));
 					}
-					jpegIFOffset = new LongField(TiffTag.JPEG_INTERCHANGE_FORMAT.getValue(), new int[]{writeOffset});
+					jpegIFOffset = new LongField(TiffTag.JPEG_INTERCHANGE_FORMAT.getValue(), new int[]{(int)writeOffset});
 					ifd.addField(jpegIFOffset);
 				} catch (EOFException ex) {;};
 			} else { // To fix the issue of double copy the JPEG data, we can safely re-assign the pointers.
-				ifd.addField(new LongField(TiffTag.JPEG_INTERCHANGE_FORMAT.getValue(), new int[]{offset}));
+				ifd.addField(new LongField(TiffTag.JPEG_INTERCHANGE_FORMAT.getValue(), new int[]{(int)offset}));
 				ifd.addField(new LongField(TiffTag.JPEG_INTERCHANGE_FORMAT_LENGTH.getValue(), new int[]{writeByteCount}));
 			}
 		}		
@@ -542,8 +541,24 @@ public class TIFFTweaker {
 		return (int)rout.getStreamPointer();	
 	}
 	
+	// Create STRIP_OFFSETS or TILE_OFFSETS field of the type matching the IFD format
+	private static TiffField<?> createOffsetsField(IFD ifd, short tag, long[] offsets) {
+		if(ifd.isBigTIFF())
+			return new Long8Field(tag, offsets);
+		
+		int[] intOffsets = new int[offsets.length];
+		
+		for(int i = 0; i < offsets.length; i++) {
+			if(offsets[i] > 0xffffffffL)
+				throw new RuntimeException("Image data exceeds the 4GB limit of classic TIFF");
+			intOffsets[i] = (int)offsets[i];
+		}
+		
+		return new LongField(tag, intOffsets);
+	}
+	
 	// Copy a list of IFD and associated image data if any
-	private static int copyPages(List<IFD> list, int writeOffset, RandomAccessInputStream rin, RandomAccessOutputStream rout) throws IOException {
+	private static long copyPages(List<IFD> list, long writeOffset, RandomAccessInputStream rin, RandomAccessOutputStream rout) throws IOException {
 		// Write the first page data
 		writeOffset = copyPageData(list.get(0), writeOffset, rin, rout);
 		// Then write the first IFD
@@ -569,7 +584,7 @@ public class TIFFTweaker {
 	 */
 	public static byte[] extractICCProfile(int pageNumber, RandomAccessInputStream rin) throws Exception {
 		// Read pass image header
-		int offset = readHeader(rin);
+		long offset = readHeader(rin);
 		// Read the IFDs into a list first
 		List<IFD> ifds = new ArrayList<IFD>();
 		readIFDs(ifds, offset, rin);
@@ -592,7 +607,7 @@ public class TIFFTweaker {
 	
 	public static IRBThumbnail extractThumbnail(int pageNumber, RandomAccessInputStream rin) throws IOException {
 		// Read pass image header
-		int offset = readHeader(rin);
+		long offset = readHeader(rin);
 		// Read the IFDs into a list first
 		List<IFD> ifds = new ArrayList<IFD>();
 		readIFDs(ifds, offset, rin);
@@ -652,7 +667,7 @@ public class TIFFTweaker {
 	public static void finishInsert(RandomAccessOutputStream rout, List<IFD> list) throws IOException {
 		// Reset pageNumber and total pages
 		for(int i = 0; i < list.size(); i++) {
-			int offset = list.get(i).getField(TiffTag.PAGE_NUMBER).getDataOffset();
+			long offset = list.get(i).getField(TiffTag.PAGE_NUMBER).getDataOffset();
 			rout.seek(offset);
 			rout.writeShort((short)i); // Update page number for this page
 			rout.writeShort((short)list.size()); // Update total page number
@@ -661,9 +676,7 @@ public class TIFFTweaker {
 		for(int i = 0; i < list.size() - 1; i++)
 			list.get(i).setNextIFDOffset(rout, list.get(i+1).getStartOffset());
 				
-		int firstIFDOffset = list.get(0).getStartOffset();
-
-		writeToStream(rout, firstIFDOffset);
+		writeToStream(rout, list.get(0));
 	}
 	
 	public static void finishWrite(RandomAccessOutputStream rout, List<IFD> list) throws IOException {
@@ -993,7 +1006,7 @@ public class TIFFTweaker {
 	}
 		
 	public static void insertComments(List<String> comments, int pageNumber, RandomAccessInputStream rin, RandomAccessOutputStream rout) throws IOException {
-		int offset = copyHeader(rin, rout);
+		long offset = copyHeader(rin, rout);
 		// Read the IFDs into a list first
 		List<IFD> ifds = new ArrayList<IFD>();
 		readIFDs(ifds, offset, rin);
@@ -1013,11 +1026,9 @@ public class TIFFTweaker {
 		
 		workingPage.addField(new ASCIIField(TiffTag.IMAGE_DESCRIPTION.getValue(), commentsBuilder.toString()));
 		
-		int writeOffset = FIRST_WRITE_OFFSET;
+		long writeOffset = firstWriteOffset(ifds);
 		writeOffset = copyPages(ifds, writeOffset, rin, rout);
-		int firstIFDOffset = ifds.get(0).getStartOffset();	
-
-		writeToStream(rout, firstIFDOffset);	
+		writeToStream(rout, ifds.get(0));	
 	}
 	
 	public static void insertExif(RandomAccessInputStream rin, RandomAccessOutputStream rout, Exif exif, boolean update) throws IOException {
@@ -1035,7 +1046,7 @@ public class TIFFTweaker {
 	 * @throws Exception
 	 */
 	public static void insertExif(RandomAccessInputStream rin, RandomAccessOutputStream rout, Exif exif, int pageNumber, boolean update) throws IOException {
-		int offset = copyHeader(rin, rout);
+		long offset = copyHeader(rin, rout);
 		// Read the IFDs into a list first
 		List<IFD> ifds = new ArrayList<IFD>();
 		readIFDs(ifds, offset, rin);
@@ -1090,12 +1101,10 @@ public class TIFFTweaker {
 			imageIFD.addChild(TiffTag.GPS_SUB_IFD, newGpsSubIFD);		
 		}
 		
-		int writeOffset = FIRST_WRITE_OFFSET;
+		long writeOffset = firstWriteOffset(ifds);
 		// Copy pages
 		writeOffset = copyPages(ifds, writeOffset, rin, rout);
-		int firstIFDOffset = ifds.get(0).getStartOffset();
-
-		writeToStream(rout, firstIFDOffset);
+		writeToStream(rout, ifds.get(0));
 	}
 	
 	/**
@@ -1108,7 +1117,7 @@ public class TIFFTweaker {
 	 * @throws Exception
 	 */
 	public static void insertICCProfile(byte[] icc_profile, int pageNumber, RandomAccessInputStream rin, RandomAccessOutputStream rout) throws IOException {
-		int offset = copyHeader(rin, rout);
+		long offset = copyHeader(rin, rout);
 		// Read the IFDs into a list first
 		List<IFD> ifds = new ArrayList<IFD>();
 		readIFDs(ifds, offset, rin);
@@ -1119,11 +1128,9 @@ public class TIFFTweaker {
 		IFD workingPage = ifds.get(pageNumber);
 		workingPage.addField(new UndefinedField(TiffTag.ICC_PROFILE.getValue(), icc_profile));
 
-		int writeOffset = FIRST_WRITE_OFFSET;
+		long writeOffset = firstWriteOffset(ifds);
 		writeOffset = copyPages(ifds, writeOffset, rin, rout);
-		int firstIFDOffset = ifds.get(0).getStartOffset();	
-
-		writeToStream(rout, firstIFDOffset);	
+		writeToStream(rout, ifds.get(0));	
 	}
 	
 	public static void insertICCProfile(ICC_Profile icc_profile, RandomAccessInputStream rin, RandomAccessOutputStream rout) throws IOException {
@@ -1170,7 +1177,7 @@ public class TIFFTweaker {
 	 * @throws IOException
 	 */
 	public static void insertIPTC(RandomAccessInputStream rin, RandomAccessOutputStream rout, int pageNumber, Collection<IPTCDataSet> iptcs, boolean update) throws IOException {
-		int offset = copyHeader(rin, rout);
+		long offset = copyHeader(rin, rout);
 		// Read the IFDs into a list first
 		List<IFD> ifds = new ArrayList<IFD>();
 		readIFDs(ifds, offset, rin);
@@ -1232,11 +1239,9 @@ public class TIFFTweaker {
 		// Add IPTC to regular IPTC tag field
 		workingPage.addField(new UndefinedField(TiffTag.IPTC.getValue(), bout.toByteArray()));
 
-		int writeOffset = FIRST_WRITE_OFFSET;
+		long writeOffset = firstWriteOffset(ifds);
 		writeOffset = copyPages(ifds, writeOffset, rin, rout);
-		int firstIFDOffset = ifds.get(0).getStartOffset();	
-
-		writeToStream(rout, firstIFDOffset);	
+		writeToStream(rout, ifds.get(0));	
 	}
 	
 	public static void insertIRB(RandomAccessInputStream rin, RandomAccessOutputStream rout, Collection<_8BIM> bims, boolean update) throws IOException {
@@ -1244,7 +1249,7 @@ public class TIFFTweaker {
 	}
 	
 	public static void insertIRB(RandomAccessInputStream rin, RandomAccessOutputStream rout, int pageNumber, Collection<_8BIM> bims, boolean update) throws IOException {
-		int offset = copyHeader(rin, rout);
+		long offset = copyHeader(rin, rout);
 		// Read the IFDs into a list first
 		List<IFD> ifds = new ArrayList<IFD>();
 		readIFDs(ifds, offset, rin);
@@ -1277,11 +1282,9 @@ public class TIFFTweaker {
 		
 		workingPage.addField(new UndefinedField(TiffTag.PHOTOSHOP.getValue(), bout.toByteArray()));
 
-		int writeOffset = FIRST_WRITE_OFFSET;
+		long writeOffset = firstWriteOffset(ifds);
 		writeOffset = copyPages(ifds, writeOffset, rin, rout);
-		int firstIFDOffset = ifds.get(0).getStartOffset();	
-
-		writeToStream(rout, firstIFDOffset);	
+		writeToStream(rout, ifds.get(0));	
 	}
 	
 	public static void insertMetadata(RandomAccessInputStream rin, RandomAccessOutputStream rout, Collection<Metadata> metadata) throws IOException {
@@ -1298,7 +1301,7 @@ public class TIFFTweaker {
 	 * @throws Exception
 	 */	
 	public static void insertMetadata(RandomAccessInputStream rin, RandomAccessOutputStream rout, int pageNumber, Collection<Metadata> metadata) throws IOException {
-		int offset = copyHeader(rin, rout);
+		long offset = copyHeader(rin, rout);
 		// Read the IFDs into a list first
 		List<IFD> ifds = new ArrayList<IFD>();
 		readIFDs(ifds, offset, rin);
@@ -1420,9 +1423,7 @@ public class TIFFTweaker {
 		}		
 		
 		offset = copyPages(ifds, offset, rin, rout);
-		int firstIFDOffset = ifds.get(0).getStartOffset();	
-
-		writeToStream(rout, firstIFDOffset);	
+		writeToStream(rout, ifds.get(0));	
 	}
 	
 	/**
@@ -1436,7 +1437,7 @@ public class TIFFTweaker {
 	 * RandomAccessInputStream rin = new FileCacheRandomAccessInputStream(new FileInputStream("in.tif"));
 	 * RandomAccessOutputStream rout = new FileCacheRandomAccessOutputStream(new FileOuputStream("out.tif"));
 	 * BufferedImage bi = getBufferedImageSomeWay();
-	 * int offset = TIFFTweaker.prepareForInsert(rin, rout, list);
+	 * long offset = TIFFTweaker.prepareForInsert(rin, rout, list);
 	 * TIFFWriter writer = new TIFFWriter();
 	 * offset = TIFFTweaker.insertPage(bi, pageNumber, rout, list, offset, writer);
 	 * //keep inserting pages until finish, then call
@@ -1454,13 +1455,16 @@ public class TIFFTweaker {
 	 * 
 	 * @return stream offset after inserting this page
 	 */
-	public static int insertPage(BufferedImage image, int pageNumber, RandomAccessOutputStream rout, List<IFD> ifds, int writeOffset, TIFFWriter writer) throws IOException {
+	public static long insertPage(BufferedImage image, int pageNumber, RandomAccessOutputStream rout, List<IFD> ifds, long writeOffset, TIFFWriter writer) throws IOException {
 		// Sanity check
 		if(pageNumber < 0) pageNumber = 0;
 		else if(pageNumber > ifds.size()) pageNumber = ifds.size();		
 		
 		try {
-			writeOffset = writer.writePage(image, pageNumber, ifds.size(), rout, writeOffset);
+			if(ifds.isEmpty())
+				writeOffset = writer.writePage(image, pageNumber, ifds.size(), rout, writeOffset);
+			else // Keep the format of the existing pages
+				writeOffset = writer.writePage(image, pageNumber, ifds.size(), rout, writeOffset, ifds.get(0).isBigTIFF());
 			ifds.add(pageNumber, writer.getIFD());
 		} catch (Exception e) { // Log and throw RuntimeException
 			LOGGER.error("Failed inserting page " + pageNumber, e);
@@ -1470,7 +1474,7 @@ public class TIFFTweaker {
 		return writeOffset;
 	}
 	
-	public static int insertPage(ImageFrame page, int pageNumber, RandomAccessOutputStream rout, List<IFD> ifds, int writeOffset, TIFFWriter writer) throws IOException {
+	public static long insertPage(ImageFrame page, int pageNumber, RandomAccessOutputStream rout, List<IFD> ifds, long writeOffset, TIFFWriter writer) throws IOException {
 		BufferedImage image = page.getFrame();
 		writer.setImageParam(page.getFrameParam());
 		
@@ -1495,7 +1499,7 @@ public class TIFFTweaker {
 	 */	
 	public static void insertPages(RandomAccessInputStream rin, RandomAccessOutputStream rout, int pageNumber, ImageFrame ... frames) throws IOException {
 		rin.seek(STREAM_HEAD);
-		int offset = copyHeader(rin, rout);
+		long offset = copyHeader(rin, rout);
 		
 		List<IFD> list = new ArrayList<IFD>();
 		List<IFD> insertedList = new ArrayList<IFD>(frames.length);
@@ -1510,7 +1514,7 @@ public class TIFFTweaker {
 		
 		int maxPageNumber = list.size() + frames.length;
 		
-		int writeOffset = FIRST_WRITE_OFFSET;
+		long writeOffset = firstWriteOffset(list);
 		
 		TIFFWriter writer = new TIFFWriter(); 
 		
@@ -1519,7 +1523,7 @@ public class TIFFTweaker {
 			ImageParam param = frames[i].getFrameParam();			
 			try {
 				writer.setImageParam(param);
-				writeOffset = writer.writePage(frame, pageNumber++, maxPageNumber, rout, writeOffset);
+				writeOffset = writer.writePage(frame, pageNumber++, maxPageNumber, rout, writeOffset, list.get(0).isBigTIFF());
 				insertedList.add(writer.getIFD());
 			} catch (Exception e) {
 				LOGGER.error("Failed inserting page " + pageNumber, e);
@@ -1557,15 +1561,11 @@ public class TIFFTweaker {
 		if(minPageNumber != list.size()) // Link the last inserted image with the old next one
 			insertedList.get(insertedList.size() - 1).setNextIFDOffset(rout, list.get(minPageNumber).getStartOffset());
 		
-		int firstIFDOffset = 0;
-			
 		if(minPageNumber == 0) {
-			firstIFDOffset = insertedList.get(0).getStartOffset();			
+			writeToStream(rout, insertedList.get(0));			
 		} else {
-			firstIFDOffset = list.get(0).getStartOffset();
+			writeToStream(rout, list.get(0));
 		}
-		
-		writeToStream(rout, firstIFDOffset);
 	}
 	
 	/**
@@ -1583,7 +1583,7 @@ public class TIFFTweaker {
 	 */
 	public static void insertPages(RandomAccessInputStream rin, RandomAccessOutputStream rout, int pageNumber, ImageParam[] imageParam, BufferedImage... images) throws IOException {
 		rin.seek(STREAM_HEAD);
-		int offset = copyHeader(rin, rout);
+		long offset = copyHeader(rin, rout);
 		
 		List<IFD> list = new ArrayList<IFD>();
 		List<IFD> insertedList = new ArrayList<IFD>(images.length);
@@ -1598,7 +1598,7 @@ public class TIFFTweaker {
 		
 		int maxPageNumber = list.size() + images.length;
 		
-		int writeOffset = FIRST_WRITE_OFFSET;
+		long writeOffset = firstWriteOffset(list);
 		
 		ImageParam[] param = null;
 		
@@ -1618,7 +1618,7 @@ public class TIFFTweaker {
 		for(int i = 0; i < images.length; i++) {
 			try {
 				writer.setImageParam(param[i]);
-				writeOffset = writer.writePage(images[i], pageNumber++, maxPageNumber, rout, writeOffset);
+				writeOffset = writer.writePage(images[i], pageNumber++, maxPageNumber, rout, writeOffset, list.get(0).isBigTIFF());
 				insertedList.add(writer.getIFD());
 			} catch (Exception e) {
 				LOGGER.error("Failed inserting page " + pageNumber, e);
@@ -1656,15 +1656,11 @@ public class TIFFTweaker {
 		if(minPageNumber != list.size()) // Link the last inserted image with the old next one
 			insertedList.get(insertedList.size() - 1).setNextIFDOffset(rout, list.get(minPageNumber).getStartOffset());
 		
-		int firstIFDOffset = 0;
-			
 		if(minPageNumber == 0) {
-			firstIFDOffset = insertedList.get(0).getStartOffset();			
+			writeToStream(rout, insertedList.get(0));			
 		} else {
-			firstIFDOffset = list.get(0).getStartOffset();
+			writeToStream(rout, list.get(0));
 		}
-		
-		writeToStream(rout, firstIFDOffset);
 	}
 	
 	/**
@@ -1729,7 +1725,7 @@ public class TIFFTweaker {
 	 */
 	public static void insertTiffImage(RandomAccessInputStream original, RandomAccessInputStream toBeInserted, int pageNumber, RandomAccessOutputStream output) throws IOException {
 		List<IFD> ifds1 = new ArrayList<IFD>();
-		int offset1 = copyHeader(original, output);
+		long offset1 = copyHeader(original, output);
 		// Read IFDs for the first image
 		readIFDs(ifds1, offset1, original);
 		// Sanity check
@@ -1741,10 +1737,12 @@ public class TIFFTweaker {
 			// Place holder, to be updated afterwards
 			ifds1.get(i).addField(new ShortField(TiffTag.PAGE_NUMBER.getValue(), new short[]{0, 0}));
 		}
-		int offset = copyPages(ifds1, FIRST_WRITE_OFFSET, original, output);
+		long offset = copyPages(ifds1, firstWriteOffset(ifds1), original, output);
 		short writeEndian = output.getEndian();
 		List<IFD> ifds2 = new ArrayList<IFD>();
 		readIFDs(ifds2, toBeInserted);
+		// Write in the format of the first image
+		setBigTIFF(ifds2, ifds1.get(0).isBigTIFF());
 		for(int j = 0; j < ifds2.size(); j++) {
 			ifds2.get(j).removeField(TiffTag.PAGE_NUMBER);
 			// Place holder, to be updated afterwards
@@ -1787,8 +1785,8 @@ public class TIFFTweaker {
 					 */
 					if(stripOffSets != null) { 
 						int[] counts = stripByteCounts.getDataAsLong();		
-						int[] off = stripOffSets.getDataAsLong();
-						int[] temp = new int[off.length];
+						long[] off = stripOffSets.getDataAsLong8();
+						long[] temp = new long[off.length];
 								
 						int[] uncompressedStripByteCounts = getUncompressedStripByteCounts(currIFD, off.length);
 								
@@ -1816,7 +1814,7 @@ public class TIFFTweaker {
 						// Need to uncompress the data, reorder the byte sequence, and compress the data again
 						switch(compression) { // Predictor seems to work for LZW, DEFLATE as is! Need more test though!
 							case LZW: // Tested
-								decoder = new LZWTreeDecoder(8, true);
+								decoder = new LZWTableDecoder(8, true);
 								encoder = new LZWTreeEncoder(output, 8, 4096, null); // 4K buffer	
 								break;
 							case DEFLATE:
@@ -1902,9 +1900,9 @@ public class TIFFTweaker {
 							}
 						}
 						if(currIFD.getField(TiffTag.STRIP_BYTE_COUNTS) != null)
-							stripOffSets = new LongField(TiffTag.STRIP_OFFSETS.getValue(), temp);
+							stripOffSets = createOffsetsField(currIFD, TiffTag.STRIP_OFFSETS.getValue(), temp);
 						else
-							stripOffSets = new LongField(TiffTag.TILE_OFFSETS.getValue(), temp);		
+							stripOffSets = createOffsetsField(currIFD, TiffTag.TILE_OFFSETS.getValue(), temp);
 						currIFD.addField(stripOffSets);		
 					} else { // Just copy since in this case TIFF viewers tend to think the data is always in TIFF LZW packing format
 						offset = copyPageData(currIFD, offset, toBeInserted, output);
@@ -1942,10 +1940,10 @@ public class TIFFTweaker {
 			output.writeShort((short)i); // Update page number for this page
 			output.writeShort((short)maxPageNumber); // Update total page number
 		}			
-		// Figure out the first IFD offset
-		int firstIFDOffset = newList.get(0).getStartOffset();
+		// Figure out the first IFD
+		IFD firstIFD = newList.get(0);
 		// And write the IFDs
-		writeToStream(output, firstIFDOffset); // DONE!	
+		writeToStream(output, firstIFD); // DONE!	
 	}
 	
 	public static void insertXMP(XMP xmp, RandomAccessInputStream rin, RandomAccessOutputStream rout) throws IOException {
@@ -1969,7 +1967,7 @@ public class TIFFTweaker {
 	 * @throws IOException
 	 */
 	public static void insertXMP(byte[] xmp, int pageNumber, RandomAccessInputStream rin, RandomAccessOutputStream rout) throws IOException {
-		int offset = copyHeader(rin, rout);
+		long offset = copyHeader(rin, rout);
 		// Read the IFDs into a list first
 		List<IFD> ifds = new ArrayList<IFD>();
 		readIFDs(ifds, offset, rin);
@@ -1980,11 +1978,9 @@ public class TIFFTweaker {
 		IFD workingPage = ifds.get(pageNumber);
 		workingPage.addField(new UndefinedField(TiffTag.XMP.getValue(), xmp));
 
-		int writeOffset = FIRST_WRITE_OFFSET;
+		long writeOffset = firstWriteOffset(ifds);
 		writeOffset = copyPages(ifds, writeOffset, rin, rout);
-		int firstIFDOffset = ifds.get(0).getStartOffset();	
-
-		writeToStream(rout, firstIFDOffset);	
+		writeToStream(rout, ifds.get(0));	
 	}
 	
 	public static void insertXMP(String xmp, RandomAccessInputStream rin, RandomAccessOutputStream rout) throws IOException {
@@ -1999,7 +1995,7 @@ public class TIFFTweaker {
 		if(adaptor.hasNext()) {
 			RandomAccessInputStream image1 = adaptor.next();
 			List<IFD> ifds1 = new ArrayList<IFD>();
-			int offset1 = copyHeader(image1, merged);
+			long offset1 = copyHeader(image1, merged);
 			// Read IFDs for the first image
 			readIFDs(ifds1, offset1, image1);
 			for(int i = 0; i < ifds1.size(); i++) {
@@ -2007,7 +2003,7 @@ public class TIFFTweaker {
 				// Place holder, to be updated afterwards
 				ifds1.get(i).addField(new ShortField(TiffTag.PAGE_NUMBER.getValue(), new short[]{0, 0}));
 			}
-			int offset = copyPages(ifds1, FIRST_WRITE_OFFSET, image1, merged);
+			long offset = copyPages(ifds1, firstWriteOffset(ifds1), image1, merged);
 			// Release resources
 			image1.close();
 			short writeEndian = merged.getEndian();
@@ -2015,6 +2011,8 @@ public class TIFFTweaker {
 				List<IFD> ifds2 = new ArrayList<IFD>();
 				RandomAccessInputStream image2 = adaptor.next(); 
 				readIFDs(ifds2, image2);
+				// Write in the format of the first image
+				setBigTIFF(ifds2, ifds1.get(0).isBigTIFF());
 				for(int j = 0; j < ifds2.size(); j++) {
 					ifds2.get(j).removeField(TiffTag.PAGE_NUMBER);
 					// Place holder, to be updated afterwards
@@ -2056,8 +2054,8 @@ public class TIFFTweaker {
 							 */
 							if(stripOffSets != null) { 
 								int[] counts = stripByteCounts.getDataAsLong();		
-								int[] off = stripOffSets.getDataAsLong();
-								int[] temp = new int[off.length];
+								long[] off = stripOffSets.getDataAsLong8();
+								long[] temp = new long[off.length];
 								
 								int[] uncompressedStripByteCounts = getUncompressedStripByteCounts(currIFD, off.length);
 								
@@ -2085,7 +2083,7 @@ public class TIFFTweaker {
 								// Need to uncompress the data, reorder the byte sequence, and compress the data again
 								switch(compression) { // Predictor seems to work for LZW, DEFLATE as is! Need more test though!
 									case LZW: // Tested
-										decoder = new LZWTreeDecoder(8, true);
+										decoder = new LZWTableDecoder(8, true);
 										encoder = new LZWTreeEncoder(merged, 8, 4096, null); // 4K buffer	
 										break;
 									case DEFLATE:
@@ -2171,9 +2169,9 @@ public class TIFFTweaker {
 									}
 								}
 								if(currIFD.getField(TiffTag.STRIP_BYTE_COUNTS) != null)
-									stripOffSets = new LongField(TiffTag.STRIP_OFFSETS.getValue(), temp);
+									stripOffSets = createOffsetsField(currIFD, TiffTag.STRIP_OFFSETS.getValue(), temp);
 								else
-									stripOffSets = new LongField(TiffTag.TILE_OFFSETS.getValue(), temp);		
+									stripOffSets = createOffsetsField(currIFD, TiffTag.TILE_OFFSETS.getValue(), temp);
 								currIFD.addField(stripOffSets);		
 							}
 						} else { // Just copy since in this case TIFF viewers tend to think the data is always in TIFF LZW packing format
@@ -2203,10 +2201,10 @@ public class TIFFTweaker {
 					merged.writeShort((short)i); // Update page number for this page
 					merged.writeShort((short)maxPageNumber); // Update total page number
 				}			
-				// Figure out the first IFD offset
-				int firstIFDOffset = ifds1.get(0).getStartOffset();
+				// Figure out the first IFD
+				IFD firstIFD = ifds1.get(0);
 				// And write the IFDs
-				writeToStream(merged, firstIFDOffset); // DONE!
+				writeToStream(merged, firstIFD); // DONE!
 			}
 		}
 	}
@@ -2226,13 +2224,15 @@ public class TIFFTweaker {
 	 * @throws IOException
 	 */
 	public static void mergeTiffImages(RandomAccessInputStream image1, RandomAccessInputStream image2, RandomAccessOutputStream merged) throws IOException {
-		int offset1 = copyHeader(image1, merged);
-		int offset2 = readHeader(image2);
+		long offset1 = copyHeader(image1, merged);
+		long offset2 = readHeader(image2);
 		// Read IFDs
 		List<IFD> ifds1 = new ArrayList<IFD>();
 		List<IFD> ifds2 = new ArrayList<IFD>();
 		readIFDs(ifds1, offset1, image1);
 		readIFDs(ifds2, offset2, image2);
+		// Write in the format of the first image
+		setBigTIFF(ifds2, ifds1.get(0).isBigTIFF());
 		int maxPageNumber = ifds1.size() + ifds2.size();
 		// Reset pageNumber
 		for(int i = 0; i < ifds1.size(); i++) {
@@ -2243,14 +2243,14 @@ public class TIFFTweaker {
 			ifds2.get(i).removeField(TiffTag.PAGE_NUMBER);
 			ifds2.get(i).addField(new ShortField(TiffTag.PAGE_NUMBER.getValue(), new short[]{(short)(i+ifds1.size()), (short)maxPageNumber}));
 		}		
-		int offset = copyPages(ifds1, FIRST_WRITE_OFFSET, image1, merged);
+		long offset = copyPages(ifds1, firstWriteOffset(ifds1), image1, merged);
 		offset = copyPages(ifds2, offset, image2, merged);
 		// Link the two IFDs
 		ifds1.get(ifds1.size() - 1).setNextIFDOffset(merged, ifds2.get(0).getStartOffset());
-		// Figure out the first IFD offset
-		int firstIFDOffset = ifds1.get(0).getStartOffset();
+		// Figure out the first IFD
+		IFD firstIFD = ifds1.get(0);
 		// And write the IFDs
-		writeToStream(merged, firstIFDOffset); // DONE!
+		writeToStream(merged, firstIFD); // DONE!
 	}
 	
 	/**
@@ -2271,7 +2271,7 @@ public class TIFFTweaker {
 			FileInputStream fis1 = new FileInputStream(images[0]);
 			RandomAccessInputStream image1 = new FileCacheRandomAccessInputStream(fis1);
 			List<IFD> ifds1 = new ArrayList<IFD>();
-			int offset1 = copyHeader(image1, merged);
+			long offset1 = copyHeader(image1, merged);
 			// Read IFDs for the first image
 			readIFDs(ifds1, offset1, image1);
 			for(int i = 0; i < ifds1.size(); i++) {
@@ -2279,7 +2279,7 @@ public class TIFFTweaker {
 				// Place holder, to be updated afterwards
 				ifds1.get(i).addField(new ShortField(TiffTag.PAGE_NUMBER.getValue(), new short[]{0, 0}));
 			}
-			int offset = copyPages(ifds1, FIRST_WRITE_OFFSET, image1, merged);
+			long offset = copyPages(ifds1, firstWriteOffset(ifds1), image1, merged);
 			// Release resources
 			image1.close();
 			for(int i = 1; i < images.length; i++) {
@@ -2287,6 +2287,8 @@ public class TIFFTweaker {
 				FileInputStream fis2 = new FileInputStream(images[i]);
 				RandomAccessInputStream image2 = new FileCacheRandomAccessInputStream(fis2); 
 				readIFDs(ifds2, image2);
+				// Write in the format of the first image
+				setBigTIFF(ifds2, ifds1.get(0).isBigTIFF());
 				for(int j = 0; j < ifds2.size(); j++) {
 					ifds2.get(j).removeField(TiffTag.PAGE_NUMBER);
 					// Place holder, to be updated afterwards
@@ -2307,10 +2309,10 @@ public class TIFFTweaker {
 				merged.writeShort((short)i); // Update page number for this page
 				merged.writeShort((short)maxPageNumber); // Update total page number
 			}			
-			// Figure out the first IFD offset
-			int firstIFDOffset = ifds1.get(0).getStartOffset();
+			// Figure out the first IFD
+			IFD firstIFD = ifds1.get(0);
 			// And write the IFDs
-			writeToStream(merged, firstIFDOffset); // DONE!
+			writeToStream(merged, firstIFD); // DONE!
 		}
 	}
 	
@@ -2348,8 +2350,8 @@ public class TIFFTweaker {
 	 * @return the offset to insert first page
 	 * @throws IOException
 	 */
-	public static int prepareForInsert(RandomAccessInputStream rin, RandomAccessOutputStream rout, List<IFD> ifds) throws IOException {
-		int offset = copyHeader(rin, rout);
+	public static long prepareForInsert(RandomAccessInputStream rin, RandomAccessOutputStream rout, List<IFD> ifds) throws IOException {
+		long offset = copyHeader(rin, rout);
 		// Read the IFDs into a list first
 		readIFDs(ifds, offset, rin);
 		if(ifds.size() == 1) { // Make the original image one page of the new multiple page TIFF
@@ -2362,7 +2364,7 @@ public class TIFFTweaker {
 			// Place holder, to be updated later
 			ifds.get(i).addField(new ShortField(TiffTag.PAGE_NUMBER.getValue(), new short[]{0, 0}));
 		}
-		int writeOffset = FIRST_WRITE_OFFSET;
+		long writeOffset = firstWriteOffset(ifds);
 		// Copy pages
 		writeOffset = copyPages(ifds, writeOffset, rin, rout);
 		
@@ -2376,7 +2378,7 @@ public class TIFFTweaker {
 	 * @return the offset to write first page
 	 * @throws IOException
 	 */
-	public static int prepareForWrite(RandomAccessOutputStream rout) throws IOException {
+	public static long prepareForWrite(RandomAccessOutputStream rout) throws IOException {
 		return prepareForWrite(rout, ByteOrder.BIG_ENDIAN);
 	}
 	
@@ -2388,14 +2390,29 @@ public class TIFFTweaker {
 	 * @return the offset to write first page
 	 * @throws IOException
 	 */
-	public static int prepareForWrite(RandomAccessOutputStream rout, ByteOrder byteOrder) throws IOException {
+	public static long prepareForWrite(RandomAccessOutputStream rout, ByteOrder byteOrder) throws IOException {
+		return prepareForWrite(rout, byteOrder, false);
+	}
+	
+	/**
+	 * Write TIFF or BigTIFF header and get ready for writing pages one at a time
+	 * <p>
+	 * The pages of a BigTIFF should be written by a TIFFWriter with {@link TIFFOptions#setBigTIFF(boolean) BigTIFF} option
+	 * 
+	 * @param rout RandomAccessOutputStream for the output TIFF
+	 * @param byteOrder ByteOrder for the output TIFF
+	 * @param bigTiff true to write BigTIFF with 64 bit offsets
+	 * @return the offset to write first page
+	 * @throws IOException
+	 */
+	public static long prepareForWrite(RandomAccessOutputStream rout, ByteOrder byteOrder, boolean bigTiff) throws IOException {
 		if(byteOrder == null) throw new IllegalArgumentException("Input ByteOrder is null");
 		if(byteOrder == ByteOrder.BIG_ENDIAN) {
 			rout.setWriteStrategy(WriteStrategyMM.getInstance());
 		} else {
 			rout.setWriteStrategy(WriteStrategyII.getInstance());
 		}
-		return writeHeader(rout);
+		return writeHeader(rout, bigTiff);
 	}
 	
 	public static void printIFDs(Collection<IFD> list, String indent) {
@@ -2492,7 +2509,7 @@ public class TIFFTweaker {
 		}		
 	}
 	
-	private static int readHeader(RandomAccessInputStream rin) throws IOException {
+	private static long readHeader(RandomAccessInputStream rin) throws IOException {
 		int offset = 0;
 	    // First 2 bytes determine the byte order of the file
 		rin.seek(STREAM_HEAD);
@@ -2514,23 +2531,39 @@ public class TIFFTweaker {
 		short tiff_id = rin.readShort();
 		offset +=2;
 		
+		if(tiff_id == 0x2b) { // "+" 43 decimal - BigTIFF
+			rin.seek(offset);
+			short bytesize = rin.readShort();
+			short reserved = rin.readShort();
+			if(bytesize != 8 || reserved != 0) {
+				rin.close();
+				throw new RuntimeException("Invalid BigTIFF header");
+			}
+			return rin.readLong();
+		}
+		
 		if(tiff_id!=0x2a) { //"*" 42 decimal
 			rin.close();
 			throw new RuntimeException("Invalid TIFF identifier");
 		}
 		
 		rin.seek(offset);
-		offset = rin.readInt();
 			
-		return offset;
+		return rin.readInt()&0xffffffffL;
+	}
+	
+	// Check the TIFF identifier of the stream for BigTIFF
+	private static boolean isBigTIFF(RandomAccessInputStream rin) throws IOException {
+		rin.seek(STREAM_HEAD + 2);
+		return rin.readShort() == 0x2b;
 	}
 	
 	// Read IFD without header
 	public static int readIFD(RandomAccessInputStream rin, List<IFD> list, Class<? extends Tag> tagClass) throws IOException {
-		return readIFD(rin, list, 0, tagClass, null, null);
+		return (int)readIFD(rin, list, 0, tagClass, null, null, false);
 	}
 	
-	private static int readIFD(RandomAccessInputStream rin, List<IFD> list, int offset, Class<? extends Tag> tagClass, IFD parent, Tag parentTag) throws IOException {	
+	private static long readIFD(RandomAccessInputStream rin, List<IFD> list, long offset, Class<? extends Tag> tagClass, IFD parent, Tag parentTag, boolean bigTiff) throws IOException {	
 		// Use reflection to invoke fromShort(short) method
 		Method method = null;
 		try {
@@ -2540,10 +2573,13 @@ public class TIFFTweaker {
 		} catch (SecurityException e) {
 			throw new RuntimeException("Current security doesn't allow this operation");
 		}
+		// Size of the value/offset part of a field: 4 for classic TIFF and 8 for BigTIFF
+		int offsetSize = bigTiff? 8 : 4;
 		IFD tiffIFD = new IFD();
+		tiffIFD.setBigTIFF(bigTiff);
 		rin.seek(offset);
-		int no_of_fields = rin.readShort();
-		offset += 2;
+		int no_of_fields = bigTiff? (int)rin.readLong() : rin.readShort();
+		offset += (bigTiff? 8 : 2);
 		
 		for (int i = 0; i < no_of_fields; i++) {
 			rin.seek(offset);
@@ -2564,21 +2600,23 @@ public class TIFFTweaker {
 			FieldType ftype = FieldType.fromShort(type);
 			offset += 2;
 			rin.seek(offset);
-			int field_length = rin.readInt();
-			offset += 4;
+			int field_length = bigTiff? (int)rin.readLong() : rin.readInt();
+			offset += offsetSize;
+			// Data no longer than the value/offset part is stored inline, otherwise it is pointed to
+			long dataOffset = offset;
+			if((long)field_length*ftype.getSize() > offsetSize) {
+				rin.seek(offset);
+				dataOffset = bigTiff? rin.readLong() : rin.readInt()&0xffffffffL;
+			}
+			offset += offsetSize;
 			////// Try to read actual data.
+			rin.seek(dataOffset);
 			switch (ftype) {
 				case BYTE:
 				case SBYTE:
 				case UNDEFINED:
 					byte[] data = new byte[field_length];
-					rin.seek(offset);
-					if(field_length <= 4) {						
-						rin.readFully(data, 0, field_length);					   
-					} else {
-						rin.seek(rin.readInt());
-						rin.readFully(data, 0, field_length);
-					}					
+					rin.readFully(data, 0, field_length);
 					TiffField<byte[]> byteField = null;
 					if(ftype == FieldType.BYTE) {
 						byteField = new ByteField(tag, data);
@@ -2591,47 +2629,18 @@ public class TIFFTweaker {
 							byteField = new UndefinedField(tag, data);
 					}
 					tiffIFD.addField(byteField);
-					offset += 4;					
 					break;
 				case ASCII:
 					data = new byte[field_length];
-					if(field_length <= 4) {
-						rin.seek(offset);
-						rin.readFully(data, 0, field_length);
-					}						
-					else {
-						rin.seek(offset);
-						rin.seek(rin.readInt());
-						rin.readFully(data, 0, field_length);
-					}
+					rin.readFully(data, 0, field_length);
 					TiffField<String> ascIIField = new ASCIIField(tag, new String(data, "UTF-8"));
 					tiffIFD.addField(ascIIField);
-					offset += 4;	
 					break;
 				case SHORT:
 				case SSHORT:
 					short[] sdata = new short[field_length];
-					if(field_length == 1) {
-					  rin.seek(offset);
-					  sdata[0] = rin.readShort();
-					  offset += 4;
-					} else if (field_length == 2) {
-						rin.seek(offset);
-						sdata[0] = rin.readShort();
-						offset += 2;
-						rin.seek(offset);
-						sdata[1] = rin.readShort();
-						offset += 2;
-					} else {
-						rin.seek(offset);
-						int toOffset = rin.readInt();
-						offset += 4;
-						for (int j = 0; j  <field_length; j++) {
-							rin.seek(toOffset);
-							sdata[j] = rin.readShort();
-							toOffset += 2;
-						}
-					}
+					for (int j = 0; j < field_length; j++)
+						sdata[j] = rin.readShort();
 					TiffField<short[]> shortField = null;
 					if(ftype == FieldType.SSHORT) {
 						shortField = new SShortField(tag, sdata);
@@ -2643,20 +2652,8 @@ public class TIFFTweaker {
 				case LONG:
 				case SLONG:
 					int[] ldata = new int[field_length];
-					if(field_length == 1) {
-					  rin.seek(offset);
-					  ldata[0] = rin.readInt();
-					  offset += 4;
-					} else {
-						rin.seek(offset);
-						int toOffset = rin.readInt();
-						offset += 4;
-						for (int j=0;j<field_length; j++){
-							rin.seek(toOffset);
-							ldata[j] = rin.readInt();
-							toOffset += 4;
-						}
-					}
+					for (int j = 0; j < field_length; j++)
+						ldata[j] = rin.readInt();
 					TiffField<int[]> longField = null;
 					if(ftype == FieldType.SLONG) {
 						longField = new SLongField(tag, ldata);
@@ -2664,69 +2661,34 @@ public class TIFFTweaker {
 						longField = new LongField(tag, ldata);
 					}
 					tiffIFD.addField(longField);
-					
-					if ((ftag == TiffTag.EXIF_SUB_IFD) && (ldata[0]!= 0)) {
-						try { // If something bad happens, we skip the sub IFD
-							readIFD(rin, null, ldata[0], ExifTag.class, tiffIFD, TiffTag.EXIF_SUB_IFD);
-						} catch(Exception e) {
-							tiffIFD.removeField(TiffTag.EXIF_SUB_IFD);
-							LOGGER.error("Unable to read TiffTag.EXIF_SUB_IFD", e);
-						}
-					} else if ((ftag == TiffTag.GPS_SUB_IFD) && (ldata[0] != 0)) {
-						try {
-							readIFD(rin, null, ldata[0], GPSTag.class, tiffIFD, TiffTag.GPS_SUB_IFD);
-						} catch(Exception e) {
-							tiffIFD.removeField(TiffTag.GPS_SUB_IFD);
-							LOGGER.error("Unable to read TiffTag.GPS_SUB_IFD", e);
-						}
-					} else if((ftag == ExifTag.EXIF_INTEROPERABILITY_OFFSET) && (ldata[0] != 0)) {
-						try {
-							readIFD(rin, null, ldata[0], InteropTag.class, tiffIFD, ExifTag.EXIF_INTEROPERABILITY_OFFSET);
-						} catch(Exception e) {
-							tiffIFD.removeField(ExifTag.EXIF_INTEROPERABILITY_OFFSET);
-							LOGGER.error("Unable to read ExifTag.EXIF_INTEROPERABILITY_OFFSET", e);
-						}
-					} else if (ftag == TiffTag.SUB_IFDS) {						
-						for(int ifd = 0; ifd < ldata.length; ifd++) {
-							try {
-								readIFD(rin, null, ldata[0], TiffTag.class, tiffIFD, TiffTag.SUB_IFDS);
-							} catch(Exception e) {
-								tiffIFD.removeField(TiffTag.SUB_IFDS);
-								LOGGER.error("Unable to read TiffTag.SUB_IFDS", e);
-							}
-						}
+					readSubIFD(rin, tiffIFD, ftag, longField.getDataAsLong8(), bigTiff);
+					break;
+				case LONG8:
+				case SLONG8:
+					long[] l8data = new long[field_length];
+					for (int j = 0; j < field_length; j++)
+						l8data[j] = rin.readLong();
+					TiffField<long[]> long8Field = null;
+					if(ftype == FieldType.SLONG8) {
+						long8Field = new SLong8Field(tag, l8data);
+					} else {
+						long8Field = new Long8Field(tag, l8data);
 					}
+					tiffIFD.addField(long8Field);
+					readSubIFD(rin, tiffIFD, ftag, l8data, bigTiff);
 					break;
 				case FLOAT:
 					float[] fdata = new float[field_length];
-					if(field_length == 1) {
-					  rin.seek(offset);
-					  fdata[0] = rin.readFloat();
-					  offset += 4;
-					} else {
-						rin.seek(offset);
-						int toOffset = rin.readInt();
-						offset += 4;
-						for (int j=0;j<field_length; j++) {
-							rin.seek(toOffset);
-							fdata[j] = rin.readFloat();
-							toOffset += 4;
-						}
-					}
+					for (int j = 0; j < field_length; j++)
+						fdata[j] = rin.readFloat();
 					TiffField<float[]> floatField = new FloatField(tag, fdata);
 					tiffIFD.addField(floatField);
 					
 					break;
 				case DOUBLE:
 					double[] ddata = new double[field_length];
-					rin.seek(offset);
-					int toOffset = rin.readInt();
-					offset += 4;
-					for (int j=0;j<field_length; j++) {
-						rin.seek(toOffset);
+					for (int j = 0; j < field_length; j++)
 						ddata[j] = rin.readDouble();
-						toOffset += 8;
-					}
 					TiffField<double[]> doubleField = new DoubleField(tag, ddata);
 					tiffIFD.addField(doubleField);
 					
@@ -2735,17 +2697,8 @@ public class TIFFTweaker {
 				case SRATIONAL:
 					int len = 2*field_length;
 					ldata = new int[len];	
-					rin.seek(offset);
-					toOffset = rin.readInt();
-					offset += 4;					
-					for (int j=0;j<len; j+=2){
-						rin.seek(toOffset);
+					for (int j = 0; j < len; j++)
 						ldata[j] = rin.readInt();
-						toOffset += 4;
-						rin.seek(toOffset);
-						ldata[j+1] = rin.readInt();
-						toOffset += 4;
-					}
 					TiffField<int[]> rationalField = null;
 					if(ftype == FieldType.SRATIONAL) {
 						rationalField = new SRationalField(tag, ldata);
@@ -2757,30 +2710,24 @@ public class TIFFTweaker {
 					break;
 				case IFD:
 					ldata = new int[field_length];
-					if(field_length == 1) {
-					  rin.seek(offset);
-					  ldata[0] = rin.readInt();
-					  offset += 4;
-					} else {
-						rin.seek(offset);
-						toOffset = rin.readInt();
-						offset += 4;
-						for (int j=0;j<field_length; j++) {
-							rin.seek(toOffset);
-							ldata[j] = rin.readInt();
-							toOffset += 4;
-						}
-					}
+					for (int j = 0; j < field_length; j++)
+						ldata[j] = rin.readInt();
 					TiffField<int[]> ifdField = new IFDField(tag, ldata);
 					tiffIFD.addField(ifdField);
-					for(int ifd = 0; ifd < ldata.length; ifd++) {
-						readIFD(rin, null, ldata[0], TiffTag.class, tiffIFD, TiffTag.SUB_IFDS);
-					}
+					readIFD(rin, null, ldata[0]&0xffffffffL, TiffTag.class, tiffIFD, TiffTag.SUB_IFDS, bigTiff);
 								
+					break;
+				case IFD8:
+					l8data = new long[field_length];
+					for (int j = 0; j < field_length; j++)
+						l8data[j] = rin.readLong();
+					TiffField<long[]> ifd8Field = new IFD8Field(tag, l8data);
+					tiffIFD.addField(ifd8Field);
+					readIFD(rin, null, l8data[0], TiffTag.class, tiffIFD, TiffTag.SUB_IFDS, bigTiff);
+					
 					break;
 				default:
 					LOGGER.info("Unknown field type: value " + type);
-					offset += 4;
 					break;					
 			}
 		}
@@ -2791,18 +2738,36 @@ public class TIFFTweaker {
 			list.add(tiffIFD);
 		rin.seek(offset);
 		
-		return rin.readInt();
+		return bigTiff? rin.readLong() : rin.readInt()&0xffffffffL;
 	}
 	
-	private static void readIFDs(List<IFD> list, int offset, RandomAccessInputStream rin) throws IOException {
+	private static void readIFDs(List<IFD> list, long offset, RandomAccessInputStream rin) throws IOException {
+		boolean bigTiff = isBigTIFF(rin);
 		// Read the IFDs into a list first	
 		while (offset != 0) {
-			offset = readIFD(rin, list, offset, TiffTag.class, null, null);
+			offset = readIFD(rin, list, offset, TiffTag.class, null, null, bigTiff);
+		}
+	}
+	
+	// Read the sub IFD pointed to by a LONG or LONG8 field if any
+	private static void readSubIFD(RandomAccessInputStream rin, IFD tiffIFD, Tag ftag, long[] offsets, boolean bigTiff) throws IOException {
+		if(offsets.length == 0 || offsets[0] == 0) return;
+		Class<? extends Tag> tagClass = null;
+		if (ftag == TiffTag.EXIF_SUB_IFD) tagClass = ExifTag.class;
+		else if (ftag == TiffTag.GPS_SUB_IFD) tagClass = GPSTag.class;
+		else if (ftag == ExifTag.EXIF_INTEROPERABILITY_OFFSET) tagClass = InteropTag.class;
+		else if (ftag == TiffTag.SUB_IFDS) tagClass = TiffTag.class;
+		else return;
+		try { // If something bad happens, we skip the sub IFD
+			readIFD(rin, null, offsets[0], tagClass, tiffIFD, ftag, bigTiff);
+		} catch(Exception e) {
+			tiffIFD.removeField(ftag);
+			LOGGER.error("Unable to read sub IFD " + ftag, e);
 		}
 	}
 	
 	public static void readIFDs(List<IFD> list, RandomAccessInputStream rin) throws IOException {
-		int offset = readHeader(rin);
+		long offset = readHeader(rin);
 		readIFDs(list, offset, rin);
 	}
 	
@@ -2812,7 +2777,7 @@ public class TIFFTweaker {
 	
 	public static Map<MetadataType, Metadata> readMetadata(RandomAccessInputStream rin, int pageNumber) throws IOException	{
 		Map<MetadataType, Metadata> metadataMap = new HashMap<MetadataType, Metadata>();
-		int offset = readHeader(rin);
+		long offset = readHeader(rin);
 		List<IFD> ifds = new ArrayList<IFD>();
 		readIFDs(ifds, offset, rin);
 		
@@ -2915,7 +2880,7 @@ public class TIFFTweaker {
 	 * @return A map of the removed metadata
 	 */
 	public static Map<MetadataType, Metadata> removeMetadata(Set<MetadataType> metadataTypes, int pageNumber, RandomAccessInputStream rin, RandomAccessOutputStream rout) throws IOException {
-		int offset = copyHeader(rin, rout);
+		long offset = copyHeader(rin, rout);
 		// Read the IFDs into a list first
 		List<IFD> ifds = new ArrayList<IFD>();
 		readIFDs(ifds, offset, rin);
@@ -3010,11 +2975,9 @@ public class TIFFTweaker {
 			}
 		}
 
-		int writeOffset = FIRST_WRITE_OFFSET;
+		long writeOffset = firstWriteOffset(ifds);
 		writeOffset = copyPages(ifds, writeOffset, rin, rout);
-		int firstIFDOffset = ifds.get(0).getStartOffset();	
-
-		writeToStream(rout, firstIFDOffset);
+		writeToStream(rout, ifds.get(0));
 		
 		return metadataMap;
 	}
@@ -3072,7 +3035,7 @@ public class TIFFTweaker {
 		
 		List<IFD> list = new ArrayList<IFD>();
 	  
-		int offset = copyHeader(rin, rout);
+		long offset = copyHeader(rin, rout);
 		
 		// Step 1: read the IFDs into a list first
 		readIFDs(list, offset, rin);		
@@ -3095,11 +3058,9 @@ public class TIFFTweaker {
 		// End of removing pages		
 		// Step 3: copy the remaining pages
 		// 0x08 is the first write offset
-		int writeOffset = FIRST_WRITE_OFFSET;
+		long writeOffset = firstWriteOffset(list);
 		offset = copyPages(list, writeOffset, rin, rout);
-		int firstIFDOffset = list.get(0).getStartOffset();
-
-		writeToStream(rout, firstIFDOffset);
+		writeToStream(rout, list.get(0));
 		
 		return pagesRemoved;
 	}
@@ -3116,7 +3077,7 @@ public class TIFFTweaker {
 	public static int removePages(RandomAccessInputStream rin, RandomAccessOutputStream rout, int... pages) throws IOException {
 		List<IFD> list = new ArrayList<IFD>();
 				  
-		int offset = copyHeader(rin, rout);
+		long offset = copyHeader(rin, rout);
 		
 		// Step 1: read the IFDs into a list first
 		readIFDs(list, offset, rin);
@@ -3139,11 +3100,9 @@ public class TIFFTweaker {
 		}
 		// Step 3: copy the remaining pages
 		// 0x08 is the first write offset
-		int writeOffset = FIRST_WRITE_OFFSET; 
+		long writeOffset = firstWriteOffset(list); 
 		offset = copyPages(list, writeOffset, rin, rout);
-		int firstIFDOffset = list.get(0).getStartOffset();
-
-		writeToStream(rout, firstIFDOffset);
+		writeToStream(rout, list.get(0));
 			
 		return pagesRemoved;
 	}
@@ -3156,7 +3115,7 @@ public class TIFFTweaker {
 		
 		List<IFD> list = new ArrayList<IFD>();
 	  
-		int offset = copyHeader(rin, rout);
+		long offset = copyHeader(rin, rout);
 		
 		// Step 1: read the IFDs into a list first
 		readIFDs(list, offset, rin);		
@@ -3181,11 +3140,9 @@ public class TIFFTweaker {
 		// End of removing pages		
 		// Step 3: copy the remaining pages
 		// 0x08 is the first write offset
-		int writeOffset = FIRST_WRITE_OFFSET;
+		long writeOffset = firstWriteOffset(list);
 		offset = copyPages(list, writeOffset, rin, rout);
-		int firstIFDOffset = list.get(0).getStartOffset();
-		
-		writeToStream(rout, firstIFDOffset);
+		writeToStream(rout, list.get(0));
 		
 		return pagesRetained;
 	}
@@ -3194,7 +3151,7 @@ public class TIFFTweaker {
 	public static int retainPages(RandomAccessInputStream rin, RandomAccessOutputStream rout, int... pages) throws IOException {
 		List<IFD> list = new ArrayList<IFD>();
 	  
-		int offset = copyHeader(rin, rout);
+		long offset = copyHeader(rin, rout);
 		// Step 1: read the IFDs into a list first
 		readIFDs(list, offset, rin);		
 		// Step 2: remove pages from a multiple page TIFF
@@ -3217,11 +3174,9 @@ public class TIFFTweaker {
 		}
 		// Step 3: copy the remaining pages
 		// 0x08 is the first write offset
-		int writeOffset = FIRST_WRITE_OFFSET;
+		long writeOffset = firstWriteOffset(list);
 		offset = copyPages(list, writeOffset, rin, rout);
-		int firstIFDOffset = list.get(0).getStartOffset();
-		
-		writeToStream(rout, firstIFDOffset);
+		writeToStream(rout, list.get(0));
 		
 		return pagesRetained;
 	}
@@ -3239,7 +3194,7 @@ public class TIFFTweaker {
  		if(endian == IOUtils.LITTLE_ENDIAN)
  		    writeStrategy = WriteStrategyII.getInstance();
         rin.seek(STREAM_HEAD);
-        int offset = readHeader(rin);
+        long offset = readHeader(rin);
         readIFDs(list, offset, rin);
         for (int i = 0; i < list.size(); i++) {
             //To read image into byte array
@@ -3247,17 +3202,16 @@ public class TIFFTweaker {
             RandomAccessOutputStream rout = new MemoryCacheRandomAccessOutputStream(baos);
             rout.setWriteStrategy(writeStrategy);
             // Write TIFF header
-            int writeOffset = writeHeader(rout);
+            long writeOffset = writeHeader(rout, list.get(i).isBigTIFF());
             // Write page data
             writeOffset = copyPageData(list.get(i), writeOffset, rin, rout);
-            int firstIFDOffset = writeOffset;
             // Write IFD
             if (list.get(i).removeField(TiffTag.SUBFILE_TYPE) == null)
                 list.get(i).removeField(TiffTag.NEW_SUBFILE_TYPE);
             list.get(i).removeField(TiffTag.PAGE_NUMBER);
             list.get(i).addField(new ShortField(TiffTag.SUBFILE_TYPE.getValue(), new short[]{1}));
             writeOffset = list.get(i).write(rout, writeOffset);
-            writeToStream(rout, firstIFDOffset);
+            writeToStream(rout, list.get(i));
             rout.close();
             //Convert to byte array
             byte[] byteData = baos.toByteArray();
@@ -3281,7 +3235,7 @@ public class TIFFTweaker {
 		if(endian == IOUtils.LITTLE_ENDIAN)
 		    writeStrategy = WriteStrategyII.getInstance();
 		rin.seek(STREAM_HEAD);
-		int offset = readHeader(rin);
+		long offset = readHeader(rin);
 		readIFDs(list, offset, rin);
 		
 		String fileNamePrefix = "page_#";
@@ -3291,17 +3245,16 @@ public class TIFFTweaker {
 			RandomAccessOutputStream rout = new FileCacheRandomAccessOutputStream(new FileOutputStream(fileNamePrefix + i + ".tif"));
 			rout.setWriteStrategy(writeStrategy);
 			// Write TIFF header
-			int writeOffset = writeHeader(rout);
+			long writeOffset = writeHeader(rout, list.get(i).isBigTIFF());
 			// Write page data
 			writeOffset = copyPageData(list.get(i), writeOffset, rin, rout);
-			int firstIFDOffset = writeOffset;
 			// Write IFD
 			if(list.get(i).removeField(TiffTag.SUBFILE_TYPE) == null)
 				list.get(i).removeField(TiffTag.NEW_SUBFILE_TYPE);
 			list.get(i).removeField(TiffTag.PAGE_NUMBER);
 			list.get(i).addField(new ShortField(TiffTag.SUBFILE_TYPE.getValue(), new short[]{1}));
 			writeOffset = list.get(i).write(rout, writeOffset);
-			writeToStream(rout, firstIFDOffset);
+			writeToStream(rout, list.get(i));
 			rout.close();
 		}
 	}
@@ -3325,7 +3278,7 @@ public class TIFFTweaker {
 		if(endian == IOUtils.LITTLE_ENDIAN)
 		    writeStrategy = WriteStrategyII.getInstance();
 		rin.seek(STREAM_HEAD);
-		int offset = readHeader(rin);
+		long offset = readHeader(rin);
 		readIFDs(list, offset, rin);
 		
 		String fileNamePrefix = "image_#";
@@ -3342,15 +3295,13 @@ public class TIFFTweaker {
 			RandomAccessOutputStream rout = new FileCacheRandomAccessOutputStream(new FileOutputStream(fileNamePrefix + i + ".tif"));
 			rout.setWriteStrategy(writeStrategy);
 			// Write TIFF header
-			int writeOffset = writeHeader(rout);
+			long writeOffset = writeHeader(rout, list.get(fromIndex).isBigTIFF());
 			// Write page data
 						
 			for(int j = 0; j < size; j++) {
 				writeOffset = copyPageData(list.get(fromIndex + j), writeOffset, rin, rout);
 			}
 			
-			int firstIFDOffset = writeOffset;
-			
 			// Write IFDs
 			for(int k = 0; k < size; k++) {
 				if(list.get(fromIndex + k).removeField(TiffTag.SUBFILE_TYPE) == null)
@@ -3366,7 +3317,7 @@ public class TIFFTweaker {
 				list.get(fromIndex + l).setNextIFDOffset(rout, list.get(fromIndex + l + 1).getStartOffset());				
 			}
 			
-			writeToStream(rout, firstIFDOffset);
+			writeToStream(rout, list.get(fromIndex));
 			
 			rout.close();
 			// Reset fromIndex
@@ -3377,15 +3328,13 @@ public class TIFFTweaker {
 			RandomAccessOutputStream rout = new FileCacheRandomAccessOutputStream(new FileOutputStream(fileNamePrefix + partition + ".tif"));
 			rout.setWriteStrategy(writeStrategy);
 			// Write TIFF header
-			int writeOffset = writeHeader(rout);
+			long writeOffset = writeHeader(rout, list.get(fromIndex).isBigTIFF());
 			// Write page data
 						
 			for(int j = 0; j < leftOver; j++) {
 				writeOffset = copyPageData(list.get(fromIndex + j), writeOffset, rin, rout);
 			}
 			
-			int firstIFDOffset = writeOffset;
-			
 			// Write IFDs
 			for(int k = 0; k < leftOver; k++) {
 				if(list.get(fromIndex + k).removeField(TiffTag.SUBFILE_TYPE) == null)
@@ -3401,7 +3350,7 @@ public class TIFFTweaker {
 				list.get(fromIndex + l).setNextIFDOffset(rout, list.get(fromIndex + l + 1).getStartOffset());				
 			}
 			
-			writeToStream(rout, firstIFDOffset);
+			writeToStream(rout, list.get(fromIndex));
 			
 			rout.close();
 		}
@@ -3426,7 +3375,7 @@ public class TIFFTweaker {
 		if(endian == IOUtils.LITTLE_ENDIAN)
 		    writeStrategy = WriteStrategyII.getInstance();
 		rin.seek(STREAM_HEAD);
-		int offset = readHeader(rin);
+		long offset = readHeader(rin);
 		readIFDs(list, offset, rin);
 		
 		if(list.size() <= size) return; // No need to do anything
@@ -3442,15 +3391,13 @@ public class TIFFTweaker {
 			RandomAccessOutputStream rout = new FileCacheRandomAccessOutputStream(baos);
 			rout.setWriteStrategy(writeStrategy);
 			// Write TIFF header
-			int writeOffset = writeHeader(rout);
+			long writeOffset = writeHeader(rout, list.get(fromIndex).isBigTIFF());
 			// Write page data
 						
 			for(int j = 0; j < size; j++) {
 				writeOffset = copyPageData(list.get(fromIndex + j), writeOffset, rin, rout);
 			}
 			
-			int firstIFDOffset = writeOffset;
-			
 			// Write IFDs
 			for(int k = 0; k < size; k++) {
 				if(list.get(fromIndex + k).removeField(TiffTag.SUBFILE_TYPE) == null)
@@ -3466,7 +3413,7 @@ public class TIFFTweaker {
 				list.get(fromIndex + l).setNextIFDOffset(rout, list.get(fromIndex + l + 1).getStartOffset());				
 			}
 			
-			writeToStream(rout, firstIFDOffset);
+			writeToStream(rout, list.get(fromIndex));
 			
 			rout.close();
 			
@@ -3485,15 +3432,13 @@ public class TIFFTweaker {
 			RandomAccessOutputStream rout = new FileCacheRandomAccessOutputStream(baos);
 			rout.setWriteStrategy(writeStrategy);
 			// Write TIFF header
-			int writeOffset = writeHeader(rout);
+			long writeOffset = writeHeader(rout, list.get(fromIndex).isBigTIFF());
 			// Write page data
 						
 			for(int j = 0; j < leftOver; j++) {
 				writeOffset = copyPageData(list.get(fromIndex + j), writeOffset, rin, rout);
 			}
 			
-			int firstIFDOffset = writeOffset;
-			
 			// Write IFDs
 			for(int k = 0; k < leftOver; k++) {
 				if(list.get(fromIndex + k).removeField(TiffTag.SUBFILE_TYPE) == null)
@@ -3509,7 +3454,7 @@ public class TIFFTweaker {
 				list.get(fromIndex + l).setNextIFDOffset(rout, list.get(fromIndex + l + 1).getStartOffset());				
 			}
 			
-			writeToStream(rout, firstIFDOffset);
+			writeToStream(rout, list.get(fromIndex));
 			
 			rout.close();
 			
@@ -3522,19 +3467,21 @@ public class TIFFTweaker {
 	
 	public static void write(TIFFImage tiffImage, RandomAccessOutputStream rout) throws IOException {
 		RandomAccessInputStream rin = tiffImage.getInputStream();
-		int offset = writeHeader(rout);
+		long offset = writeHeader(rout, tiffImage.getIFDs().get(0).isBigTIFF());
 		offset = copyPages(tiffImage.getIFDs(), offset, rin, rout);
-		int firstIFDOffset = tiffImage.getIFDs().get(0).getStartOffset();	
-	 
-		writeToStream(rout, firstIFDOffset);
+		writeToStream(rout, tiffImage.getIFDs().get(0));
 	}
 	
 	// Return stream offset where to write actual image data or IFD	
-	private static int writeHeader(RandomAccessOutputStream rout) throws IOException {
+	private static long writeHeader(RandomAccessOutputStream rout, boolean bigTiff) throws IOException {
 		// Write byte order
 		short endian = rout.getEndian();
 		rout.writeShort(endian);		
 		// Write TIFF identifier
+		if(bigTiff) {
+			rout.writeShort(0x2b);
+			return BIGTIFF_FIRST_WRITE_OFFSET;
+		}
 		rout.writeShort(0x2a);
 		
 		return FIRST_WRITE_OFFSET;
@@ -3557,6 +3504,8 @@ public class TIFFTweaker {
 		if(frames == null || frames.length == 0) throw new IllegalArgumentException("Input ImageFrame array is null or empty");
 		// Grab ByteOrder from the first ImageFrame
 		ImageParam param = frames[0].getFrameParam();
+		// BigTIFF or classic TIFF is also decided by the first ImageFrame
+		boolean bigTiff = false;
 		if(param != null) {
 			TIFFOptions options = (TIFFOptions)param.getImageOptions();	
 			// Set ByteOrder
@@ -3567,10 +3516,11 @@ public class TIFFTweaker {
 				} else {
 					rout.setWriteStrategy(WriteStrategyII.getInstance());
 				}
+				bigTiff = options.isBigTIFF();
 			}
 		}
 		// Write header first
-		int writeOffset = writeHeader(rout);
+		long writeOffset = writeHeader(rout, bigTiff);
 		// Write pages
 		int pageNumber = 0;
 		int maxPageNumber = frames.length;
@@ -3582,7 +3532,7 @@ public class TIFFTweaker {
 			param = frames[i].getFrameParam();
 			try {
 				writer.setImageParam(param);
-				writeOffset = writer.writePage(frame, pageNumber++, maxPageNumber, rout, writeOffset);
+				writeOffset = writer.writePage(frame, pageNumber++, maxPageNumber, rout, writeOffset, bigTiff);
 				list.add(writer.getIFD());
 			} catch (Exception e) {
 				LOGGER.error("Failed writing page " + pageNumber, e);
@@ -3594,8 +3544,7 @@ public class TIFFTweaker {
 			list.get(i).setNextIFDOffset(rout, list.get(i+1).getStartOffset());
 		
 		if(list.size() > 0) { // We have at least one page to write
-			int firstIFDOffset = list.get(0).getStartOffset();
-			writeToStream(rout, firstIFDOffset);
+			writeToStream(rout, list.get(0));
 		}		
 	}
 	
@@ -3613,6 +3562,7 @@ public class TIFFTweaker {
 			params = imageParams;
 		}
 		TIFFOptions options = (TIFFOptions)params[0].getImageOptions();
+		boolean bigTiff = false;
 		if(options != null) {
 			// Set ByteOrder
 			ByteOrder byteOrder = options.getByteOrder();
@@ -3621,9 +3571,10 @@ public class TIFFTweaker {
 			} else {
 				rout.setWriteStrategy(WriteStrategyII.getInstance());
 			}
+			bigTiff = options.isBigTIFF();
 		}			
 		// Write header first
-		int writeOffset = writeHeader(rout);
+		long writeOffset = writeHeader(rout, bigTiff);
 		// Write pages
 		int pageNumber = 0;
 		int maxPageNumber = images.length;
@@ -3633,7 +3584,7 @@ public class TIFFTweaker {
 		for(int i = 0; i < images.length; i++) {
 			try {
 				writer.setImageParam(params[i]);
-				writeOffset = writer.writePage(images[i], pageNumber++, maxPageNumber, rout, writeOffset);
+				writeOffset = writer.writePage(images[i], pageNumber++, maxPageNumber, rout, writeOffset, bigTiff);
 				list.add(writer.getIFD());
 			} catch (Exception e) {
 				LOGGER.error("Failed writing page " + pageNumber, e);
@@ -3645,8 +3596,7 @@ public class TIFFTweaker {
 			list.get(i).setNextIFDOffset(rout, list.get(i+1).getStartOffset());
 		
 		if(list.size() > 0) { // We have at least one page to write
-			int firstIFDOffset = list.get(0).getStartOffset();
-			writeToStream(rout, firstIFDOffset);
+			writeToStream(rout, list.get(0));
 		}		
 	}
 	
@@ -3660,7 +3610,7 @@ public class TIFFTweaker {
 	 * List<IFD> list = new ArrayList<IFD>();
 	 * RandomAccessOutputStream rout = new FileCacheRandomAccessOutputStream(new FileOuputStream("out.tif"));;
 	 * BufferedImage bi = getBufferedImageSomeWay();
-	 * int offset = TIFFTweaker.prepareForWrite(rout);
+	 * long offset = TIFFTweaker.prepareForWrite(rout);
 	 * TIFFWriter writer = new TIFFWriter();
 	 * offset = TIFFTweaker.writePage(bi, rout, list, offset, writer);
 	 * //keep adding pages until finish, then call
@@ -3668,9 +3618,12 @@ public class TIFFTweaker {
 	 * }
 	 * </pre>
 	 */
-	public static int writePage(BufferedImage image, RandomAccessOutputStream rout, List<IFD> ifds, int writeOffset, TIFFWriter writer) throws IOException {
+	public static long writePage(BufferedImage image, RandomAccessOutputStream rout, List<IFD> ifds, long writeOffset, TIFFWriter writer) throws IOException {
 		try {
-			writeOffset = writer.writePage(image, 0, 0, rout, writeOffset);
+			if(ifds.isEmpty())
+				writeOffset = writer.writePage(image, 0, 0, rout, writeOffset);
+			else // Keep the format of the pages already written
+				writeOffset = writer.writePage(image, 0, 0, rout, writeOffset, ifds.get(0).isBigTIFF());
 			ifds.add(writer.getIFD());
 		} catch (Exception e) {
 			LOGGER.error("Failed writing page", e);
@@ -3680,21 +3633,42 @@ public class TIFFTweaker {
 		return writeOffset;
 	}
 	
-	public static int writePage(ImageFrame page, RandomAccessOutputStream rout, List<IFD> ifds, int writeOffset, TIFFWriter writer) throws IOException {
+	public static long writePage(ImageFrame page, RandomAccessOutputStream rout, List<IFD> ifds, long writeOffset, TIFFWriter writer) throws IOException {
 		BufferedImage image = page.getFrame();
 		writer.setImageParam(page.getFrameParam());
 		
 		return writePage(image, rout, ifds, writeOffset, writer);
 	}
 	
-	private static void writeToStream(RandomAccessOutputStream rout, int firstIFDOffset) throws IOException {
+	private static void writeToStream(RandomAccessOutputStream rout, IFD firstIFD) throws IOException {
 		// Go to the place where we should write the first IFD offset
 		// and write the first IFD offset
-		rout.seek(OFFSET_TO_WRITE_FIRST_IFD_OFFSET);
-		rout.writeInt(firstIFDOffset);
+		if(firstIFD.isBigTIFF()) {
+			// BigTIFF header: identifier 43, offset byte size 8, reserved 0 and 8 byte first IFD offset
+			rout.seek(STREAM_HEAD);
+			rout.writeShort(rout.getEndian());
+			rout.writeShort(0x2b);
+			rout.writeShort(8);
+			rout.writeShort(0);
+			rout.writeLong(firstIFD.getStartOffset());
+		} else {
+			rout.seek(OFFSET_TO_WRITE_FIRST_IFD_OFFSET);
+			rout.writeInt((int)firstIFD.getStartOffset());
+		}
 		// Dump the data to the real output stream
 		rout.seek(STREAM_HEAD);
 		rout.writeToStream(rout.getLength());
 		//rout.flush();
 	}
+	
+	// The offset to write the first page of the output which takes after the format of the IFDs
+	private static long firstWriteOffset(List<IFD> list) {
+		return list.get(0).isBigTIFF()? BIGTIFF_FIRST_WRITE_OFFSET : FIRST_WRITE_OFFSET;
+	}
+	
+	// Make the IFDs of another input match the format of the output
+	private static void setBigTIFF(List<IFD> list, boolean bigTiff) {
+		for(IFD ifd : list)
+			ifd.setBigTIFF(bigTiff);
+	}
 }
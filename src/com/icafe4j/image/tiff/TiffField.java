@@ -35,7 +35,7 @@ public abstract class TiffField<T> implements Comparable<TiffField<?>> {
 	protected IFD parent;
 	protected static final int MAX_STRING_REPR_LEN = 10; // Default length for string representation
 	
-	protected int dataOffset;
+	protected long dataOffset;
 	
 	public TiffField(IFD parent, short tag, FieldType fieldType, int length) {
 		this(tag, fieldType, length);
@@ -66,6 +66,20 @@ public abstract class TiffField<T> implements Comparable<TiffField<?>> {
 				+ " short, long, and rational data types");
 	}
 	
+	/**
+	 * Return a long array representing TIFF long and BigTIFF long8 fields.
+	 * Values of 32 bit types are treated as unsigned.
+	 */
+	public long[] getDataAsLong8() {
+		int[] values = getDataAsLong();
+		long[] longs = new long[values.length];
+		
+		for(int i = 0; i < values.length; i++)
+			longs[i] = values[i]&0xffffffffL;
+		
+		return longs;
+	}
+	
 	/**
 	 * @return a String representation of the field data
 	 */
@@ -82,7 +96,7 @@ public abstract class TiffField<T> implements Comparable<TiffField<?>> {
 	 * 
 	 * @return the stream position where actual data starts to write
 	 */
-	public int getDataOffset() {
+	public long getDataOffset() {
 		return dataOffset;
 	}
 	
@@ -112,5 +126,41 @@ public abstract class TiffField<T> implements Comparable<TiffField<?>> {
 		return writeData(os, toOffset);
 	}
 	
+	/**
+	 * Write this field as a BigTIFF directory entry. Data no longer than 8 bytes
+	 * is written inline, otherwise it is written at toOffset.
+	 * 
+	 * @param os RandomAccessOutputStream
+	 * @param toOffset stream offset to write data which doesn't fit in the entry
+	 * @return stream offset to write the data of the next field
+	 * @throws IOException
+	 */
+	public final long writeBigTIFF(RandomAccessOutputStream os, long toOffset) throws IOException {
+		// Write the header first
+		os.writeShort(this.tag);
+		os.writeShort(getType().getValue());
+		os.writeLong(getLength());
+		// Then the actual data
+		long dataSize = (long)getLength()*getType().getSize();
+		
+		if(dataSize <= 8) {
+			dataOffset = os.getStreamPointer();
+			writeValues(os);
+			for(long i = dataSize; i < 8; i++)
+				os.write(0);
+		} else {
+			dataOffset = toOffset;
+			os.writeLong(toOffset);
+			os.seek(toOffset);
+			writeValues(os);
+			toOffset += dataSize;
+		}
+		
+		return toOffset;
+	}
+	
 	protected abstract int writeData(RandomAccessOutputStream os, int toOffset) throws IOException;
+	
+	/** Write the field values one after another at the current stream position */
+	protected abstract void writeValues(RandomAccessOutputStream os) throws IOException;
 }
@@ -54,4 +54,8 @@ public final class UndefinedField extends TiffField<byte[]> {
 		
 		return toOffset;
 	}
+	
+	protected void writeValues(RandomAccessOutputStream os) throws IOException {
+		os.write(data);
+	}
 }
@@ -14,6 +14,9 @@
  *
  * Who   Date       Description
  * ====  =======    =================================================
+ * AG    17Oct2026  Added accurate integer forward DCT used by JPGWriter
+ * AG    17Oct2026  Added reduced size IDCT for scaled JPEG decoding
+ * AG    17Oct2026  Added accurate integer IDCT used by JPGReader
  * WY    25Mar2014  Combined DCT and IDCT.
  */
 
@@ -46,6 +49,33 @@ public class DCT {
 	// Multiplier factors
 	private static final float[][] MULTIPLIER = new float[8][8];
 	
+	// Fixed-point constants for the integer (LLM) transform: FIX(x) = (int)(x*(1<<CONST_BITS) + 0.5)
+	private static final int CONST_BITS = 13;
+	private static final int PASS1_BITS = 2;
+	
+	private static final int FIX_0_211164243 = 1730;
+	private static final int FIX_0_298631336 = 2446;
+	private static final int FIX_0_390180644 = 3196;
+	private static final int FIX_0_509795579 = 4176;
+	private static final int FIX_0_541196100 = 4433;
+	private static final int FIX_0_601344887 = 4926;
+	private static final int FIX_0_720959822 = 5906;
+	private static final int FIX_0_765366865 = 6270;
+	private static final int FIX_0_850430095 = 6967;
+	private static final int FIX_0_899976223 = 7373;
+	private static final int FIX_1_061594337 = 8697;
+	private static final int FIX_1_175875602 = 9633;
+	private static final int FIX_1_272758580 = 10426;
+	private static final int FIX_1_451774981 = 11893;
+	private static final int FIX_1_501321110 = 12299;
+	private static final int FIX_1_847759065 = 15137;
+	private static final int FIX_1_961570560 = 16069;
+	private static final int FIX_2_053119869 = 16819;
+	private static final int FIX_2_172734803 = 17799;
+	private static final int FIX_2_562915447 = 20995;
+	private static final int FIX_3_072711026 = 25172;
+	private static final int FIX_3_624509785 = 29692;
+	
 	static {
 		for(int i = 0; i < 8; i++) {
 			for(int j = 0; j < 8; j++) {
@@ -149,6 +179,382 @@ public class DCT {
         return input;
     }
     
+	/**
+	 * Accurate integer forward DCT (Loeffler, Ligtenberg and Moschytz) done in
+	 * place on a single block.
+	 * <p>
+	 * The input is expected to be level shifted. The output is scaled up by an
+	 * overall factor of 8 compared to a true DCT, so the quantization divisors
+	 * should be multiplied by 8 accordingly.
+	 * 
+	 * @param data 64 samples in natural order, replaced by the coefficients
+	 */
+	public static void forwardDCT(int[] data) {
+		int tmp0, tmp1, tmp2, tmp3, tmp4, tmp5, tmp6, tmp7;
+		int tmp10, tmp11, tmp12, tmp13;
+		int z1, z2, z3, z4, z5;
+		// Pass 1: process rows, results are scaled up by sqrt(8) and 2**PASS1_BITS
+		for(int p = 0; p < 64; p += 8) {
+			tmp0 = data[p] + data[p + 7];
+			tmp7 = data[p] - data[p + 7];
+			tmp1 = data[p + 1] + data[p + 6];
+			tmp6 = data[p + 1] - data[p + 6];
+			tmp2 = data[p + 2] + data[p + 5];
+			tmp5 = data[p + 2] - data[p + 5];
+			tmp3 = data[p + 3] + data[p + 4];
+			tmp4 = data[p + 3] - data[p + 4];
+			// Even part
+			tmp10 = tmp0 + tmp3;
+			tmp13 = tmp0 - tmp3;
+			tmp11 = tmp1 + tmp2;
+			tmp12 = tmp1 - tmp2;
+			
+			data[p] = (tmp10 + tmp11)<<PASS1_BITS;
+			data[p + 4] = (tmp10 - tmp11)<<PASS1_BITS;
+			
+			z1 = (tmp12 + tmp13)*FIX_0_541196100;
+			data[p + 2] = (z1 + tmp13*FIX_0_765366865 + (1<<(CONST_BITS - PASS1_BITS - 1)))>>(CONST_BITS - PASS1_BITS);
+			data[p + 6] = (z1 - tmp12*FIX_1_847759065 + (1<<(CONST_BITS - PASS1_BITS - 1)))>>(CONST_BITS - PASS1_BITS);
+			// Odd part
+			z1 = tmp4 + tmp7;
+			z2 = tmp5 + tmp6;
+			z3 = tmp4 + tmp6;
+			z4 = tmp5 + tmp7;
+			z5 = (z3 + z4)*FIX_1_175875602;
+			
+			tmp4 *= FIX_0_298631336;
+			tmp5 *= FIX_2_053119869;
+			tmp6 *= FIX_3_072711026;
+			tmp7 *= FIX_1_501321110;
+			z1 *= -FIX_0_899976223;
+			z2 *= -FIX_2_562915447;
+			z3 = z3*(-FIX_1_961570560) + z5;
+			z4 = z4*(-FIX_0_390180644) + z5;
+			
+			data[p + 7] = (tmp4 + z1 + z3 + (1<<(CONST_BITS - PASS1_BITS - 1)))>>(CONST_BITS - PASS1_BITS);
+			data[p + 5] = (tmp5 + z2 + z4 + (1<<(CONST_BITS - PASS1_BITS - 1)))>>(CONST_BITS - PASS1_BITS);
+			data[p + 3] = (tmp6 + z2 + z3 + (1<<(CONST_BITS - PASS1_BITS - 1)))>>(CONST_BITS - PASS1_BITS);
+			data[p + 1] = (tmp7 + z1 + z4 + (1<<(CONST_BITS - PASS1_BITS - 1)))>>(CONST_BITS - PASS1_BITS);
+		}
+		// Pass 2: process columns, remove PASS1_BITS scaling but leave the factor of 8
+		for(int i = 0; i < 8; i++) {
+			tmp0 = data[i] + data[i + 56];
+			tmp7 = data[i] - data[i + 56];
+			tmp1 = data[i + 8] + data[i + 48];
+			tmp6 = data[i + 8] - data[i + 48];
+			tmp2 = data[i + 16] + data[i + 40];
+			tmp5 = data[i + 16] - data[i + 40];
+			tmp3 = data[i + 24] + data[i + 32];
+			tmp4 = data[i + 24] - data[i + 32];
+			// Even part
+			tmp10 = tmp0 + tmp3;
+			tmp13 = tmp0 - tmp3;
+			tmp11 = tmp1 + tmp2;
+			tmp12 = tmp1 - tmp2;
+			
+			data[i] = (tmp10 + tmp11 + (1<<(PASS1_BITS - 1)))>>PASS1_BITS;
+			data[i + 32] = (tmp10 - tmp11 + (1<<(PASS1_BITS - 1)))>>PASS1_BITS;
+			
+			z1 = (tmp12 + tmp13)*FIX_0_541196100;
+			data[i + 16] = (z1 + tmp13*FIX_0_765366865 + (1<<(CONST_BITS + PASS1_BITS - 1)))>>(CONST_BITS + PASS1_BITS);
+			data[i + 48] = (z1 - tmp12*FIX_1_847759065 + (1<<(CONST_BITS + PASS1_BITS - 1)))>>(CONST_BITS + PASS1_BITS);
+			// Odd part
+			z1 = tmp4 + tmp7;
+			z2 = tmp5 + tmp6;
+			z3 = tmp4 + tmp6;
+			z4 = tmp5 + tmp7;
+			z5 = (z3 + z4)*FIX_1_175875602;
+			
+			tmp4 *= FIX_0_298631336;
+			tmp5 *= FIX_2_053119869;
+			tmp6 *= FIX_3_072711026;
+			tmp7 *= FIX_1_501321110;
+			z1 *= -FIX_0_899976223;
+			z2 *= -FIX_2_562915447;
+			z3 = z3*(-FIX_1_961570560) + z5;
+			z4 = z4*(-FIX_0_390180644) + z5;
+			
+			data[i + 56] = (tmp4 + z1 + z3 + (1<<(CONST_BITS + PASS1_BITS - 1)))>>(CONST_BITS + PASS1_BITS);
+			data[i + 40] = (tmp5 + z2 + z4 + (1<<(CONST_BITS + PASS1_BITS - 1)))>>(CONST_BITS + PASS1_BITS);
+			data[i + 24] = (tmp6 + z2 + z3 + (1<<(CONST_BITS + PASS1_BITS - 1)))>>(CONST_BITS + PASS1_BITS);
+			data[i + 8] = (tmp7 + z1 + z4 + (1<<(CONST_BITS + PASS1_BITS - 1)))>>(CONST_BITS + PASS1_BITS);
+		}
+	}
+	
+	private static int clamp(int value) {
+		return (value < 0)? 0 : ((value > 255)? 255 : value);
+	}
+	
+	/**
+	 * Accurate integer inverse DCT (Loeffler, Ligtenberg and Moschytz) combined
+	 * with dequantization, level shift and range limiting.
+	 * 
+	 * @param coef 64 coefficients in natural order
+	 * @param qt quantization table in natural order
+	 * @param ws work space of at least 64 integers
+	 * @param out output samples, an 8x8 area starting at offset will be written
+	 * @param offset start offset of the output area
+	 * @param stride scan line stride of the output
+	 */
+	public static void inverseDCT(int[] coef, int[] qt, int[] ws, byte[] out, int offset, int stride) {
+		int tmp0, tmp1, tmp2, tmp3;
+		int tmp10, tmp11, tmp12, tmp13;
+		int z1, z2, z3, z4, z5;
+		// Pass 1: process columns from input, store into work space
+		for(int i = 0; i < 8; i++) {
+			// Columns of zero AC terms are quite common, short-cut them
+			if(coef[i + 8] == 0 && coef[i + 16] == 0 && coef[i + 24] == 0 && coef[i + 32] == 0 &&
+					coef[i + 40] == 0 && coef[i + 48] == 0 && coef[i + 56] == 0) {
+				int dc = (coef[i]*qt[i])<<PASS1_BITS;
+				for(int j = i; j < 64; j += 8)
+					ws[j] = dc;
+				continue;
+			}
+			// Even part
+			z2 = coef[i + 16]*qt[i + 16];
+			z3 = coef[i + 48]*qt[i + 48];
+			
+			z1 = (z2 + z3)*FIX_0_541196100;
+			tmp2 = z1 - z3*FIX_1_847759065;
+			tmp3 = z1 + z2*FIX_0_765366865;
+			
+			z2 = coef[i]*qt[i];
+			z3 = coef[i + 32]*qt[i + 32];
+			
+			tmp0 = (z2 + z3)<<CONST_BITS;
+			tmp1 = (z2 - z3)<<CONST_BITS;
+			
+			tmp10 = tmp0 + tmp3;
+			tmp13 = tmp0 - tmp3;
+			tmp11 = tmp1 + tmp2;
+			tmp12 = tmp1 - tmp2;
+			// Odd part
+			tmp0 = coef[i + 56]*qt[i + 56];
+			tmp1 = coef[i + 40]*qt[i + 40];
+			tmp2 = coef[i + 24]*qt[i + 24];
+			tmp3 = coef[i + 8]*qt[i + 8];
+			
+			z1 = tmp0 + tmp3;
+			z2 = tmp1 + tmp2;
+			z3 = tmp0 + tmp2;
+			z4 = tmp1 + tmp3;
+			z5 = (z3 + z4)*FIX_1_175875602;
+			
+			tmp0 *= FIX_0_298631336;
+			tmp1 *= FIX_2_053119869;
+			tmp2 *= FIX_3_072711026;
+			tmp3 *= FIX_1_501321110;
+			z1 *= -FIX_0_899976223;
+			z2 *= -FIX_2_562915447;
+			z3 = z3*(-FIX_1_961570560) + z5;
+			z4 = z4*(-FIX_0_390180644) + z5;
+			
+			tmp0 += z1 + z3;
+			tmp1 += z2 + z4;
+			tmp2 += z2 + z3;
+			tmp3 += z1 + z4;
+			
+			final int round = 1<<(CONST_BITS - PASS1_BITS - 1);
+			final int shift = CONST_BITS - PASS1_BITS;
+			
+			ws[i]      = (tmp10 + tmp3 + round)>>shift;
+			ws[i + 56] = (tmp10 - tmp3 + round)>>shift;
+			ws[i + 8]  = (tmp11 + tmp2 + round)>>shift;
+			ws[i + 48] = (tmp11 - tmp2 + round)>>shift;
+			ws[i + 16] = (tmp12 + tmp1 + round)>>shift;
+			ws[i + 40] = (tmp12 - tmp1 + round)>>shift;
+			ws[i + 24] = (tmp13 + tmp0 + round)>>shift;
+			ws[i + 32] = (tmp13 - tmp0 + round)>>shift;
+		}
+		// Pass 2: process rows from work space, store into output
+		final int shift = CONST_BITS + PASS1_BITS + 3;
+		final int round = (1<<(shift - 1)) + (128<<shift); // Rounding plus level shift
+		
+		for(int i = 0, row = offset; i < 64; i += 8, row += stride) {
+			if(ws[i + 1] == 0 && ws[i + 2] == 0 && ws[i + 3] == 0 && ws[i + 4] == 0 &&
+					ws[i + 5] == 0 && ws[i + 6] == 0 && ws[i + 7] == 0) {
+				byte dc = (byte)clamp(((ws[i] + (1<<(PASS1_BITS + 2)))>>(PASS1_BITS + 3)) + 128);
+				for(int j = row; j < row + 8; j++)
+					out[j] = dc;
+				continue;
+			}
+			// Even part
+			z2 = ws[i + 2];
+			z3 = ws[i + 6];
+			
+			z1 = (z2 + z3)*FIX_0_541196100;
+			tmp2 = z1 - z3*FIX_1_847759065;
+			tmp3 = z1 + z2*FIX_0_765366865;
+			
+			tmp0 = (ws[i] + ws[i + 4])<<CONST_BITS;
+			tmp1 = (ws[i] - ws[i + 4])<<CONST_BITS;
+			
+			tmp10 = tmp0 + tmp3;
+			tmp13 = tmp0 - tmp3;
+			tmp11 = tmp1 + tmp2;
+			tmp12 = tmp1 - tmp2;
+			// Odd part
+			tmp0 = ws[i + 7];
+			tmp1 = ws[i + 5];
+			tmp2 = ws[i + 3];
+			tmp3 = ws[i + 1];
+			
+			z1 = tmp0 + tmp3;
+			z2 = tmp1 + tmp2;
+			z3 = tmp0 + tmp2;
+			z4 = tmp1 + tmp3;
+			z5 = (z3 + z4)*FIX_1_175875602;
+			
+			tmp0 *= FIX_0_298631336;
+			tmp1 *= FIX_2_053119869;
+			tmp2 *= FIX_3_072711026;
+			tmp3 *= FIX_1_501321110;
+			z1 *= -FIX_0_899976223;
+			z2 *= -FIX_2_562915447;
+			z3 = z3*(-FIX_1_961570560) + z5;
+			z4 = z4*(-FIX_0_390180644) + z5;
+			
+			tmp0 += z1 + z3;
+			tmp1 += z2 + z4;
+			tmp2 += z2 + z3;
+			tmp3 += z1 + z4;
+			
+			out[row]     = (byte)clamp((tmp10 + tmp3 + round)>>shift);
+			out[row + 7] = (byte)clamp((tmp10 - tmp3 + round)>>shift);
+			out[row + 1] = (byte)clamp((tmp11 + tmp2 + round)>>shift);
+			out[row + 6] = (byte)clamp((tmp11 - tmp2 + round)>>shift);
+			out[row + 2] = (byte)clamp((tmp12 + tmp1 + round)>>shift);
+			out[row + 5] = (byte)clamp((tmp12 - tmp1 + round)>>shift);
+			out[row + 3] = (byte)clamp((tmp13 + tmp0 + round)>>shift);
+			out[row + 4] = (byte)clamp((tmp13 - tmp0 + round)>>shift);
+		}
+	}
+	
+	/**
+	 * Inverse DCT producing a reduced size 4x4 output (1/2 scale) from an 8x8
+	 * block of coefficients. Row and column 4 are not needed and ignored.
+	 * 
+	 * @see #inverseDCT(int[], int[], int[], byte[], int, int)
+	 */
+	public static void inverseDCT4x4(int[] coef, int[] qt, int[] ws, byte[] out, int offset, int stride) {
+		int tmp0, tmp2, tmp10, tmp12;
+		int z1, z2, z3, z4;
+		// Pass 1: process columns from input, store 4 rows into work space
+		for(int i = 0; i < 8; i++) {
+			if(i == 4) continue; // Column 4 is not used by pass 2
+			if(coef[i + 8] == 0 && coef[i + 16] == 0 && coef[i + 24] == 0 &&
+					coef[i + 40] == 0 && coef[i + 48] == 0 && coef[i + 56] == 0) {
+				int dc = (coef[i]*qt[i])<<PASS1_BITS;
+				ws[i] = ws[i + 8] = ws[i + 16] = ws[i + 24] = dc;
+				continue;
+			}
+			// Even part
+			tmp0 = (coef[i]*qt[i])<<(CONST_BITS + 1);
+			tmp2 = coef[i + 16]*qt[i + 16]*FIX_1_847759065 - coef[i + 48]*qt[i + 48]*FIX_0_765366865;
+			tmp10 = tmp0 + tmp2;
+			tmp12 = tmp0 - tmp2;
+			// Odd part
+			z1 = coef[i + 56]*qt[i + 56];
+			z2 = coef[i + 40]*qt[i + 40];
+			z3 = coef[i + 24]*qt[i + 24];
+			z4 = coef[i + 8]*qt[i + 8];
+			
+			tmp0 = -z1*FIX_0_211164243 + z2*FIX_1_451774981 - z3*FIX_2_172734803 + z4*FIX_1_061594337;
+			tmp2 = -z1*FIX_0_509795579 - z2*FIX_0_601344887 + z3*FIX_0_899976223 + z4*FIX_2_562915447;
+			
+			final int shift = CONST_BITS - PASS1_BITS + 1;
+			final int round = 1<<(shift - 1);
+			
+			ws[i]      = (tmp10 + tmp2 + round)>>shift;
+			ws[i + 24] = (tmp10 - tmp2 + round)>>shift;
+			ws[i + 8]  = (tmp12 + tmp0 + round)>>shift;
+			ws[i + 16] = (tmp12 - tmp0 + round)>>shift;
+		}
+		// Pass 2: process 4 rows from work space, store into output
+		final int shift = CONST_BITS + PASS1_BITS + 3 + 1;
+		final int round = (1<<(shift - 1)) + (128<<shift);
+		
+		for(int i = 0, row = offset; i < 32; i += 8, row += stride) {
+			if(ws[i + 1] == 0 && ws[i + 2] == 0 && ws[i + 3] == 0 &&
+					ws[i + 5] == 0 && ws[i + 6] == 0 && ws[i + 7] == 0) {
+				byte dc = (byte)clamp(((ws[i] + (1<<(PASS1_BITS + 2)))>>(PASS1_BITS + 3)) + 128);
+				out[row] = out[row + 1] = out[row + 2] = out[row + 3] = dc;
+				continue;
+			}
+			// Even part
+			tmp0 = ws[i]<<(CONST_BITS + 1);
+			tmp2 = ws[i + 2]*FIX_1_847759065 - ws[i + 6]*FIX_0_765366865;
+			tmp10 = tmp0 + tmp2;
+			tmp12 = tmp0 - tmp2;
+			// Odd part
+			z1 = ws[i + 7];
+			z2 = ws[i + 5];
+			z3 = ws[i + 3];
+			z4 = ws[i + 1];
+			
+			tmp0 = -z1*FIX_0_211164243 + z2*FIX_1_451774981 - z3*FIX_2_172734803 + z4*FIX_1_061594337;
+			tmp2 = -z1*FIX_0_509795579 - z2*FIX_0_601344887 + z3*FIX_0_899976223 + z4*FIX_2_562915447;
+			
+			out[row]     = (byte)clamp((tmp10 + tmp2 + round)>>shift);
+			out[row + 3] = (byte)clamp((tmp10 - tmp2 + round)>>shift);
+			out[row + 1] = (byte)clamp((tmp12 + tmp0 + round)>>shift);
+			out[row + 2] = (byte)clamp((tmp12 - tmp0 + round)>>shift);
+		}
+	}
+	
+	/**
+	 * Inverse DCT producing a reduced size 2x2 output (1/4 scale) from an 8x8
+	 * block of coefficients. Only the odd rows and columns besides DC are used.
+	 * 
+	 * @see #inverseDCT(int[], int[], int[], byte[], int, int)
+	 */
+	public static void inverseDCT2x2(int[] coef, int[] qt, int[] ws, byte[] out, int offset, int stride) {
+		int tmp0, tmp10;
+		// Pass 1: process columns from input, store 2 rows into work space
+		for(int i = 0; i < 8; i++) {
+			if(i == 2 || i == 4 || i == 6) continue; // Columns not used by pass 2
+			if(coef[i + 8] == 0 && coef[i + 24] == 0 && coef[i + 40] == 0 && coef[i + 56] == 0) {
+				ws[i] = ws[i + 8] = (coef[i]*qt[i])<<PASS1_BITS;
+				continue;
+			}
+			
+			tmp10 = (coef[i]*qt[i])<<(CONST_BITS + 2);
+			tmp0 = -coef[i + 56]*qt[i + 56]*FIX_0_720959822 + coef[i + 40]*qt[i + 40]*FIX_0_850430095
+					- coef[i + 24]*qt[i + 24]*FIX_1_272758580 + coef[i + 8]*qt[i + 8]*FIX_3_624509785;
+			
+			final int shift = CONST_BITS - PASS1_BITS + 2;
+			final int round = 1<<(shift - 1);
+			
+			ws[i]     = (tmp10 + tmp0 + round)>>shift;
+			ws[i + 8] = (tmp10 - tmp0 + round)>>shift;
+		}
+		// Pass 2: process 2 rows from work space, store into output
+		final int shift = CONST_BITS + PASS1_BITS + 3 + 2;
+		final int round = (1<<(shift - 1)) + (128<<shift);
+		
+		for(int i = 0, row = offset; i < 16; i += 8, row += stride) {
+			if(ws[i + 1] == 0 && ws[i + 3] == 0 && ws[i + 5] == 0 && ws[i + 7] == 0) {
+				out[row] = out[row + 1] = (byte)clamp(((ws[i] + (1<<(PASS1_BITS + 2)))>>(PASS1_BITS + 3)) + 128);
+				continue;
+			}
+			
+			tmp10 = ws[i]<<(CONST_BITS + 2);
+			tmp0 = -ws[i + 7]*FIX_0_720959822 + ws[i + 5]*FIX_0_850430095
+					- ws[i + 3]*FIX_1_272758580 + ws[i + 1]*FIX_3_624509785;
+			
+			out[row]     = (byte)clamp((tmp10 + tmp0 + round)>>shift);
+			out[row + 1] = (byte)clamp((tmp10 - tmp0 + round)>>shift);
+		}
+	}
+	
+	/**
+	 * Inverse DCT producing a single sample (1/8 scale) which is simply the
+	 * average value of the block as given by the DC coefficient.
+	 */
+	public static void inverseDCT1x1(int[] coef, int[] qt, byte[] out, int offset) {
+		out[offset] = (byte)clamp(((coef[0]*qt[0] + 4)>>3) + 128);
+	}
+	
     public static float[][] inverseDCT(float input[][])	{
 		for (int i=0 ; i<8 ; i++) {
 			inverseDCT_col(input, i*8);
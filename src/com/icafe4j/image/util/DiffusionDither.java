@@ -0,0 +1,317 @@
+/**
+ * COPYRIGHT (C) 2014-2019 WEN YU (YUWEN_66@YAHOO.COM) ALL RIGHTS RESERVED.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Any modifications to this file must keep this entire header intact.
+ */
+
+package com.icafe4j.image.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import com.icafe4j.image.quant.DitherMethod;
+
+/**
+ * Error diffusion dithering with the kernels selectable through {@link DitherMethod}:
+ * Floyd-Steinberg, Atkinson and Sierra Lite. Only forward error diffusion is done.
+ * <p>
+ * Without an executor the image is dithered in one pass from top to bottom. With an
+ * {@link ExecutorService}, the image is split into bands of {@value #BAND_HEIGHT} rows
+ * dithered concurrently. Each band first goes through the {@value #BAND_OVERLAP} rows
+ * above it without output, so the errors coming into its first row are close to what
+ * a single pass would have, and there is no visible seam between bands. The band size
+ * does not depend on the executor, so the output is the same whatever the number of
+ * threads, but it differs slightly from the output of the single pass.
+ *
+ * @author agent
+ * @version 1.0 10/17/2026
+ */
+public class DiffusionDither {
+	// Rows of the bands dithered concurrently
+	private static final int BAND_HEIGHT = 256;
+	// Rows above a band dithered only to build up the errors coming into the band
+	private static final int BAND_OVERLAP = 16;
+	// Extra columns on both sides of the error rows for the kernel to spill over
+	private static final int PAD = 2;
+
+	// Column offset, row offset and weight of each neighbor receiving part of the error
+	private static final Kernel FLOYD_STEINBERG = new Kernel(4, new int[][] {{1, 0, 7}, {-1, 1, 3}, {0, 1, 5}, {1, 1, 1}});
+	private static final Kernel ATKINSON = new Kernel(3, new int[][] {{1, 0, 1}, {2, 0, 1}, {-1, 1, 1}, {0, 1, 1}, {1, 1, 1}, {0, 2, 1}});
+	private static final Kernel SIERRA_LITE = new Kernel(2, new int[][] {{1, 0, 2}, {-1, 1, 1}, {0, 1, 1}});
+
+	private DiffusionDither() {}
+
+	/**
+	 * Dither a color image to the color palette.
+	 *
+	 * @param ditherMethod error diffusion kernel to use
+	 * @param rgbTriplet input pixels in ARGB format
+	 * @param width width of the image
+	 * @param height height of the image
+	 * @param newPixels output pixels
+	 * @param invMap inverse color map of the color palette
+	 * @param colorPalette color palette
+	 * @param transparent_index transparent color index of the color palette
+	 */
+	public static void dither(DitherMethod ditherMethod, int[] rgbTriplet, int width, int height, byte[] newPixels, InverseColorMap invMap,
+			int[] colorPalette, int transparent_index) {
+		ditherRows(getKernel(ditherMethod), rgbTriplet, width, 0, 0, height, newPixels, invMap, colorPalette, transparent_index);
+	}
+
+	/**
+	 * Dither a color image to the color palette, concurrently in bands if an executor is given.
+	 *
+	 * @param ditherMethod error diffusion kernel to use
+	 * @param rgbTriplet input pixels in ARGB format
+	 * @param width width of the image
+	 * @param height height of the image
+	 * @param newPixels output pixels
+	 * @param invMap inverse color map of the color palette
+	 * @param colorPalette color palette
+	 * @param transparent_index transparent color index of the color palette
+	 * @param executor ExecutorService to run the bands or null to dither in a single pass
+	 * @throws Exception if dithering a band fails or the wait is interrupted
+	 */
+	public static void dither(DitherMethod ditherMethod, final int[] rgbTriplet, final int width, final int height, final byte[] newPixels,
+			final InverseColorMap invMap, final int[] colorPalette, final int transparent_index, ExecutorService executor) throws Exception {
+		final Kernel kernel = getKernel(ditherMethod);
+
+		if(executor == null || height <= BAND_HEIGHT) {
+			ditherRows(kernel, rgbTriplet, width, 0, 0, height, newPixels, invMap, colorPalette, transparent_index);
+			return;
+		}
+
+		List<Future<Void>> futures = new ArrayList<Future<Void>>();
+
+		try {
+			for(int startRow = 0; startRow < height; startRow += BAND_HEIGHT) {
+				final int fromRow = Math.max(0, startRow - BAND_OVERLAP);
+				final int bandStart = startRow;
+				final int bandEnd = Math.min(height, startRow + BAND_HEIGHT);
+				futures.add(executor.submit(new Callable<Void>() {
+					public Void call() {
+						ditherRows(kernel, rgbTriplet, width, fromRow, bandStart, bandEnd, newPixels, invMap, colorPalette, transparent_index);
+						return null;
+					}
+				}));
+			}
+			for(Future<Void> future : futures)
+				waitFor(future);
+		} finally {
+			for(Future<Void> future : futures)
+				future.cancel(true);
+		}
+	}
+
+	/**
+	 * Dither a gray-scale image to black and white.
+	 *
+	 * @param ditherMethod error diffusion kernel to use
+	 * @param gray input gray-scale image array - also as output BW image array
+	 * @param mask a mask array for transparent pixels - 0 transparent, 1 opaque
+	 * @param width image width
+	 * @param height image height
+	 * @param threshold gray-scale threshold to convert to BW image
+	 */
+	public static void dither(DitherMethod ditherMethod, byte[] gray, byte[] mask, int width, int height, int threshold) {
+		Kernel kernel = getKernel(ditherMethod);
+		int entries = kernel.dx.length;
+		int[][] err = new int[kernel.rows][width + 2*PAD];
+		int[][] target = new int[entries][];
+		int[] offset = new int[entries];
+
+		for(int i = 0; i < entries; i++)
+			offset[i] = PAD + kernel.dx[i];
+
+		for (int row = 0, index = 0; row < height; row++) {
+			int[] thisErr = err[row%kernel.rows];
+			for(int i = 0; i < entries; i++)
+				target[i] = err[(row + kernel.dy[i])%kernel.rows];
+
+			for (int col = 0; col < width; index++, col++) {
+				if(mask[index] == 0) {
+					// make transparency color white (Assume WHITE_IS_ZERO)
+					gray[index] = 0;
+					continue;
+				}
+
+				int intensity = (gray[index]&0xff) + thisErr[col + PAD];
+				if (intensity > 255) intensity = 255;
+				else if (intensity < 0) intensity = 0;
+
+				// Find the nearest color index	- black or white
+				int newIntensity = 0;
+				if(intensity <= threshold) {
+					gray[index] = 1;
+					newIntensity = 0;
+				} else {
+					gray[index] = 0;
+					newIntensity = 255;
+				}
+
+				// Diffuse error
+				int err1 = intensity - newIntensity;
+				for(int i = 0; i < entries; i++)
+					target[i][col + offset[i]] += kernel.divide(err1*kernel.weight[i]);
+			}
+			// This row becomes the last row below the next one
+			Arrays.fill(thisErr, 0);
+		}
+	}
+
+	// Dither the rows from startRow to endRow, going through the rows from fromRow on without output to build up the errors
+	private static void ditherRows(Kernel kernel, int[] rgbTriplet, int width, int fromRow, int startRow, int endRow, byte[] newPixels,
+			InverseColorMap invMap, int[] colorPalette, int transparent_index) {
+		int entries = kernel.dx.length;
+		int rows = kernel.rows;
+		int[][] errR = new int[rows][width + 2*PAD];
+		int[][] errG = new int[rows][width + 2*PAD];
+		int[][] errB = new int[rows][width + 2*PAD];
+		int[][] targetR = new int[entries][];
+		int[][] targetG = new int[entries][];
+		int[][] targetB = new int[entries][];
+		int[] offset = new int[entries];
+		int[] weight = kernel.weight;
+		// Floyd-Steinberg is the default, spell it out to save the loop over the kernel
+		boolean floydSteinberg = (kernel == FLOYD_STEINBERG);
+
+		for(int i = 0; i < entries; i++)
+			offset[i] = PAD + kernel.dx[i];
+
+		for (int row = fromRow, index1 = fromRow*width; row < endRow; row++) {
+			boolean output = (row >= startRow);
+			int[] thisErrR = errR[row%rows];
+			int[] thisErrG = errG[row%rows];
+			int[] thisErrB = errB[row%rows];
+			int[] nextErrR = errR[(row + 1)%rows];
+			int[] nextErrG = errG[(row + 1)%rows];
+			int[] nextErrB = errB[(row + 1)%rows];
+			for(int i = 0; i < entries; i++) {
+				int target = (row + kernel.dy[i])%rows;
+				targetR[i] = errR[target];
+				targetG[i] = errG[target];
+				targetB[i] = errB[target];
+			}
+
+			for (int col = 0; col < width; index1++, col++) {
+				// Transparent, no dither
+				if((rgbTriplet[index1] >>> 24) < 0x80 ) {
+					if(output) newPixels[index1] = (byte)transparent_index;
+					continue;
+				}
+
+				int red = ((rgbTriplet[index1]&0xff0000)>>>16) + thisErrR[col + PAD];
+				if (red > 255) red = 255;
+				else if (red < 0) red = 0;
+
+				int green = ((rgbTriplet[index1]&0x00ff00)>>>8) + thisErrG[col + PAD];
+				if (green > 255) green = 255;
+				else if (green < 0) green = 0;
+
+				int blue = (rgbTriplet[index1]&0x0000ff) + thisErrB[col + PAD];
+				if (blue > 255) blue = 255;
+				else if (blue < 0) blue = 0;
+
+				// Find the nearest color index
+				int index = invMap.getNearestColorIndex(red, green, blue);
+				if(output) newPixels[index1] = (byte)index;// The colorPalette index for this pixel
+
+				// Find errors for different channels
+				int err1 = red   - ((colorPalette[index]>>16)&0xff);// Red channel
+				int err2 = green - ((colorPalette[index]>>8)&0xff);// Green channel
+				int err3 = blue  -  (colorPalette[index]&0xff);// Blue channel
+				// Diffuse error
+				if(floydSteinberg) {
+					// Red
+					thisErrR[col + PAD + 1] += ((err1*7)/16);
+					nextErrR[col + PAD - 1] += ((err1*3)/16);
+					nextErrR[col + PAD    ] += ((err1*5)/16);
+					nextErrR[col + PAD + 1] += ((err1)/16);
+					// Green
+					thisErrG[col + PAD + 1] += ((err2*7)/16);
+					nextErrG[col + PAD - 1] += ((err2*3)/16);
+					nextErrG[col + PAD    ] += ((err2*5)/16);
+					nextErrG[col + PAD + 1] += ((err2)/16);
+					// Blue
+					thisErrB[col + PAD + 1] += ((err3*7)/16);
+					nextErrB[col + PAD - 1] += ((err3*3)/16);
+					nextErrB[col + PAD    ] += ((err3*5)/16);
+					nextErrB[col + PAD + 1] += ((err3)/16);
+					continue;
+				}
+				for(int i = 0; i < entries; i++) {
+					int pos = col + offset[i];
+					targetR[i][pos] += kernel.divide(err1*weight[i]);
+					targetG[i][pos] += kernel.divide(err2*weight[i]);
+					targetB[i][pos] += kernel.divide(err3*weight[i]);
+				}
+			}
+			// This row becomes the last row below the next one
+			Arrays.fill(thisErrR, 0);
+			Arrays.fill(thisErrG, 0);
+			Arrays.fill(thisErrB, 0);
+		}
+	}
+
+	private static Kernel getKernel(DitherMethod ditherMethod) {
+		switch(ditherMethod) {
+			case FLOYD_STEINBERG:
+				return FLOYD_STEINBERG;
+			case ATKINSON:
+				return ATKINSON;
+			case SIERRA_LITE:
+				return SIERRA_LITE;
+			default:
+				throw new IllegalArgumentException("Not an error diffusion dither method: " + ditherMethod);
+		}
+	}
+
+	private static void waitFor(Future<Void> future) throws Exception {
+		try {
+			future.get();
+		} catch(ExecutionException ex) {
+			Throwable cause = ex.getCause();
+			if(cause instanceof Exception)
+				throw (Exception)cause;
+			throw ex;
+		}
+	}
+
+	private static class Kernel {
+		private int[] dx;
+		private int[] dy;
+		private int[] weight;
+		// The weights add up to 1<<shift
+		private int shift;
+		// Number of error rows kept, the current one and those below
+		private int rows;
+
+		Kernel(int shift, int[][] entries) {
+			this.shift = shift;
+			dx = new int[entries.length];
+			dy = new int[entries.length];
+			weight = new int[entries.length];
+			for(int i = 0; i < entries.length; i++) {
+				dx[i] = entries[i][0];
+				dy[i] = entries[i][1];
+				weight[i] = entries[i][2];
+				rows = Math.max(rows, dy[i] + 1);
+			}
+		}
+
+		// Same as division by 1<<shift, rounding towards zero
+		int divide(int value) {
+			return (value + ((value>>31)&((1<<shift) - 1)))>>shift;
+		}
+	}
+}
@@ -14,6 +14,11 @@
  *
  * Who   Date       Description
  * ====  =========  ==============================================================
+ * AG    17Oct2026  Added error diffusion dither selection and concurrent dithering
+ * AG    17Oct2026  Get cached inverse color maps for dithering
+ * AG    17Oct2026  Use IntIntHashtable and a last color cache in checkColorDepth()
+ * AG    17Oct2026  Added createColorPalette() and dither methods taking an InverseColorMap
+ * AG    17Oct2026  Recognize BigTIFF magic number
  * WY    24Nov2017  Added invertBits(short[]) to handle TIFF 16 bit WhiteIsZero
  * WY    07Feb2016  Renamed methods related to popularity quantization
  * WY    31Jan2016  Removed ditherThreshold related method arguments
@@ -61,6 +66,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -69,6 +75,7 @@ import com.icafe4j.image.ImageIO;
 import com.icafe4j.image.ImageType;
 import com.icafe4j.image.meta.adobe.ImageResourceID;
 import com.icafe4j.image.meta.adobe._8BIM;
+import com.icafe4j.image.quant.DitherMethod;
 import com.icafe4j.image.quant.NeuQuant;
 import com.icafe4j.image.quant.QuantMethod;
 import com.icafe4j.image.quant.WuQuant;
@@ -76,7 +83,7 @@ import com.icafe4j.image.writer.ImageWriter;
 import com.icafe4j.io.IOUtils;
 import com.icafe4j.io.PeekHeadInputStream;
 import com.icafe4j.io.RandomAccessInputStream;
-import com.icafe4j.util.IntHashtable;
+import com.icafe4j.util.IntIntHashtable;
 
 /** 
  * This utility class contains static methods 
@@ -94,6 +101,8 @@ public class IMGUtils {
 	private static byte[] PNG = {(byte)0x89, 0x50, 0x4e, 0x47}; //.PNG
 	private static byte[] TIFF_II = {0x49, 0x49, 0x2a, 0x00}; // II*.
 	private static byte[] TIFF_MM = {0x4d, 0x4d, 0x00, 0x2a}; //MM.*
+	private static byte[] BIGTIFF_II = {0x49, 0x49, 0x2b, 0x00}; // II+.
+	private static byte[] BIGTIFF_MM = {0x4d, 0x4d, 0x00, 0x2b}; //MM.+
 	private static byte[] JPG = {(byte)0xff, (byte)0xd8, (byte)0xff};
 	private static byte[] PCX = {0x0a};
 	private static byte[] JPG2000 = {0x00, 0x00, 0x00, 0x0C};
@@ -127,9 +136,19 @@ public class IMGUtils {
 		int transparent_color = -1;// Transparent color
 		int[] colorInfo = new int[2];// Return value
 		
-		IntHashtable<Integer> rgbHash = new IntHashtable<Integer>(1023);
+		// At most 257 colors go in, a sparse table keeps the probe sequences short
+		IntIntHashtable rgbHash = new IntIntHashtable(1024);
+		// Neighboring pixels are mostly the same, remember the last one to skip the lookup
+		int lastPixel = 0;
+		byte lastIndex = 0;
+		boolean hasLast = false;
 				
 		for (int i = 0; i < rgbTriplets.length; i++) {
+			if(hasLast && rgbTriplets[i] == lastPixel) {
+				newPixels[i] = lastIndex;
+				continue;
+			}
+			
 			temp = (rgbTriplets[i]&0x00ffffff);
 
             if((rgbTriplets[i] >>> 24) == 0 ) {// Transparent
@@ -140,10 +159,10 @@ public class IMGUtils {
 				temp = Integer.MAX_VALUE;
 			}	
 
-            Integer entry = rgbHash.get(temp);
+            int entry = rgbHash.get(temp, -1);
 			
-			if (entry!=null) {
-				newPixels[i] = entry.byteValue();
+			if (entry >= 0) {
+				newPixels[i] = (byte)entry;
 			} else {
 				if(index > 0xff) {// More than 256 colors, have to reduce
 				 // Colors before saving as an indexed color image
@@ -154,6 +173,9 @@ public class IMGUtils {
 				newPixels[i] = (byte)index;
 				colorPalette[index++] = ((0xff<<24)|temp);
 			}
+			lastPixel = rgbTriplets[i];
+			lastIndex = newPixels[i];
+			hasLast = true;
 		}
 		if(transparent_index >= 0)// This line could be used to set a different background color
 			colorPalette[transparent_index] = transparent_color;
@@ -177,6 +199,16 @@ public class IMGUtils {
 		 return gammaTable;
     }
 	
+	/**
+	 * Gamma correct the color palette with the default gamma and display exponent,
+	 * the same as applied by {@link #dither_Bayer(int[], int, int, byte[], int, int[], int, int[][]) dither_Bayer}
+	 * 
+	 * @param rgbColorPalette color palette to be corrected
+	 */
+	public static void correctGamma(int[] rgbColorPalette) {
+		correctGamma(rgbColorPalette, createGammaTable(GAMMA, DISPLAY_EXPONENT));
+	}
+	
 	// Gamma correction for palette based image data
 	public static void correctGamma(int[] rgbColorPalette, byte[] gammaTable) {
 		for(int i = 0; i < rgbColorPalette.length; i++) {
@@ -321,51 +353,7 @@ public class IMGUtils {
 	 * @param threshold gray-scale threshold to convert to BW image
 	 */	
 	public static void dither_FloydSteinberg(byte[] gray, byte[] mask, int width, int height, int threshold)	{
-		// Define error arrays
-		// Errors for the current line
-		int[] tempErr;
-		int[] thisErr = new int[width + 2];
-		// Errors for the following line
-		int[] nextErr = new int[width + 2];
-			
-		for (int row = 0, index = 0; row < height; row++)
-		{
-			for (int col = 0; col < width; index++, col++) {
-				if(mask[index] == 0) { 
-					// make transparency color white (Assume WHITE_IS_ZERO)
-					gray[index] = 0; 
-					continue; 
-				}
-				
-				int intensity = (gray[index]&0xff) + thisErr[col + 1];
-				if (intensity > 255) intensity = 255;
-				else if (intensity < 0) intensity = 0;
-				
-				// Find the nearest color index	- black or white
-				int newIntensity = 0;
-				if(intensity <= threshold) {
-					gray[index] = 1;
-					newIntensity = 0;
-				} else {
-					gray[index] = 0;
-					newIntensity = 255;
-				}
-				
-				// Find errors
-				int err = intensity - newIntensity;
-				// Diffuse error
-				thisErr[col + 2] += ((err*7)/16);
-				nextErr[col    ] += ((err*3)/16);
-				nextErr[col + 1] += ((err*5)/16);
-				nextErr[col + 2] += ((err)/16);
-			}			
-			// We have finished one row, switch the error arrays
-			tempErr = thisErr;
-			thisErr = nextErr;
-			nextErr = tempErr;
-			// Clear the error arrays
-			Arrays.fill(nextErr, 0);
-		}
+		DiffusionDither.dither(DitherMethod.FLOYD_STEINBERG, gray, mask, width, height, threshold);
 	}
 	
 	/**
@@ -384,11 +372,31 @@ public class IMGUtils {
 	public static void dither_Bayer(int[] rgbTriplet, int width, int height, byte[] newPixels, int no_of_color, 
             int[] colorPalette, int transparent_index, int[][] threshold)
 	{
-		int index = 0, red, green, blue;
-		InverseColorMap invMap;
+		InverseColorMap invMap = InverseColorMap.getInstance(no_of_color, colorPalette);
 		
-		invMap = new InverseColorMap();
-		invMap.createInverseMap(no_of_color, colorPalette);
+		dither_Bayer(rgbTriplet, width, height, newPixels, invMap, transparent_index, threshold);
+		// Fixed value Gamma correction
+		correctGamma(colorPalette, IMGUtils.createGammaTable(GAMMA, DISPLAY_EXPONENT));
+	}
+	
+	/**
+	 * Dither color image using Bayer threshold matrix and an inverse color map created
+	 * beforehand, which could be shared by several images with the same color palette.
+	 * Unlike {@link #dither_Bayer(int[], int, int, byte[], int, int[], int, int[][]) dither_Bayer}
+	 * taking the number of colors, the color palette is not gamma corrected here.
+	 * 
+	 * @param rgbTriplet input pixels in ARGB format
+	 * @param width image width
+ 	 * @param height image height
+	 * @param newPixels pixel array after dither
+	 * @param invMap inverse color map of the color palette
+	 * @param transparent_index transparent color index for the color palette
+	 * @param threshold Bayer threshold matrix
+	 */
+	public static void dither_Bayer(int[] rgbTriplet, int width, int height, byte[] newPixels, InverseColorMap invMap,
+            int transparent_index, int[][] threshold)
+	{
+		int index = 0, red, green, blue;
 		
 		int level = threshold.length;
 		int scaler = threshold.length*threshold.length + 1;
@@ -421,8 +429,6 @@ public class IMGUtils {
 				newPixels[index] = (byte)invMap.getNearestColorIndex(red, green, blue);
 			}
 		}
-		// Fixed value Gamma correction
-		correctGamma(colorPalette, IMGUtils.createGammaTable(GAMMA, DISPLAY_EXPONENT));
 	}
 	
 	/**
@@ -440,86 +446,27 @@ public class IMGUtils {
 	public static void dither_FloydSteinberg(int[] rgbTriplet, int width, int height, byte[] newPixels, int no_of_color, 
 		                                      int[] colorPalette, int transparent_index)
 	{
-		int index = 0, index1 = 0, err1, err2, err3, red, green, blue;
-	    // Define error arrays
-		// Errors for the current line
-		int[] tempErr;
-		int[] thisErrR = new int[width + 2];
-		int[] thisErrG = new int[width + 2];
-		int[] thisErrB = new int[width + 2];
-        // Errors for the following line
-		int[] nextErrR = new int[width + 2];
-		int[] nextErrG = new int[width + 2];
-		int[] nextErrB = new int[width + 2];
-
-		InverseColorMap invMap;
-
-		invMap = new InverseColorMap();
-		invMap.createInverseMap(no_of_color, colorPalette);
-
-		for (int row = 0; row < height; row++) {
-			for (int col = 0; col < width; index1++, col++)	{
-				 // Transparent, no dither
-				if((rgbTriplet[index1] >>> 24) < 0x80 ) {
-					newPixels[index1] = (byte)transparent_index;
-					continue;
-		        }
+		InverseColorMap invMap = InverseColorMap.getInstance(no_of_color, colorPalette);
 		
-				red = ((rgbTriplet[index1]&0xff0000)>>>16) + thisErrR[col + 1];
-				if (red > 255) red = 255;
-			    else if (red < 0) red = 0;
-	  		    
-				green = ((rgbTriplet[index1]&0x00ff00)>>>8) + thisErrG[col + 1];
-				if (green > 255) green = 255;
-			    else if (green < 0) green = 0;
-				
-				blue = (rgbTriplet[index1]&0x0000ff) + thisErrB[col + 1];
-				if (blue > 255) blue = 255;
-			    else if (blue < 0) blue = 0;
-
-                // Find the nearest color index
-			    index = invMap.getNearestColorIndex(red, green, blue);				
-				newPixels[index1] = (byte)index;// The colorPalette index for this pixel
-
-				// Find errors for different channels
-		        err1 = red   - ((colorPalette[index]>>16)&0xff);// Red channel
-				err2 = green - ((colorPalette[index]>>8)&0xff);// Green channel
-			    err3 = blue  -  (colorPalette[index]&0xff);// Blue channel
-			    // Diffuse error
-				// Red
-                thisErrR[col + 2] += ((err1*7)/16);
-				nextErrR[col    ] += ((err1*3)/16);
-				nextErrR[col + 1] += ((err1*5)/16);
-				nextErrR[col + 2] += ((err1)/16);
-                // Green
-                thisErrG[col + 2] += ((err2*7)/16);
-				nextErrG[col    ] += ((err2*3)/16);
-				nextErrG[col + 1] += ((err2*5)/16);
-				nextErrG[col + 2] += ((err2)/16);
-				// Blue
-				thisErrB[col + 2] += ((err3*7)/16);
-				nextErrB[col    ] += ((err3*3)/16);
-				nextErrB[col + 1] += ((err3*5)/16);
-				nextErrB[col + 2] += ((err3)/16);
-		    }
-			// We have finished one row, switch the error arrays
-			tempErr = thisErrR;
-			thisErrR = nextErrR;
-            nextErrR = tempErr;
-
-			tempErr = thisErrG;
-			thisErrG = nextErrG;
-			nextErrG = tempErr;
+		dither_FloydSteinberg(rgbTriplet, width, height, newPixels, invMap, colorPalette, transparent_index);
+	}
 	
-	        tempErr = thisErrB;
-			thisErrB = nextErrB;
-			nextErrB = tempErr;
-			
-            // Clear the error arrays
-			Arrays.fill(nextErrR, 0);
-			Arrays.fill(nextErrG, 0);
-			Arrays.fill(nextErrB, 0);
-		}
+	/**
+	 * Floyd-Steinberg dithering with an inverse color map created beforehand, which
+	 * could be shared by several images with the same color palette.
+	 * 
+	 * @param rgbTriplet input pixels in ARGB format 
+	 * @param width width of the image
+	 * @param height height of the image
+	 * @param newPixels output pixels
+	 * @param invMap inverse color map of the color palette
+	 * @param colorPalette color palette
+	 * @param transparent_index transparent color index of the color palette
+	 */
+	public static void dither_FloydSteinberg(int[] rgbTriplet, int width, int height, byte[] newPixels, InverseColorMap invMap, 
+		                                      int[] colorPalette, int transparent_index)
+	{
+		DiffusionDither.dither(DitherMethod.FLOYD_STEINBERG, rgbTriplet, width, height, newPixels, invMap, colorPalette, transparent_index);
 	}
 	
 	// Convert RGB to CMYK w/o alpha the cheap way
@@ -982,7 +929,8 @@ public class IMGUtils {
 	public static ImageType guessImageType(byte[] magicNumber) {
 		ImageType imageType = ImageType.UNKNOWN;
 		// Check image type
-		if(Arrays.equals(magicNumber, TIFF_II) || Arrays.equals(magicNumber, TIFF_MM))
+		if(Arrays.equals(magicNumber, TIFF_II) || Arrays.equals(magicNumber, TIFF_MM)
+				|| Arrays.equals(magicNumber, BIGTIFF_II) || Arrays.equals(magicNumber, BIGTIFF_MM))
 			imageType = ImageType.TIFF;
 		else if(Arrays.equals(magicNumber, PNG))
 			imageType = ImageType.PNG;
@@ -1220,6 +1168,27 @@ public class IMGUtils {
 		return colorInfo;
 	}
 	
+	/**
+	 * Creates a color palette for the input pixels without mapping the pixels to it.
+	 * The pixels could be a sample of one or more images which are to share the palette.
+	 * 
+	 * @param quantMethod color quantization method
+	 * @param rgbTriplets input pixels in ARGB format
+	 * @param colorDepth the desired color depth - actual value might be smaller
+	 * @param colorPalette the color map to be filled
+	 * @param colorInfo a two element int array to hold the color depth and the transparent color index if any
+	 * @return the number of colors in the palette excluding the transparent color
+	 */
+	public static int createColorPalette(QuantMethod quantMethod, int[] rgbTriplets, int colorDepth, final int[] colorPalette, int[] colorInfo) {
+		if(colorDepth > 8 || colorDepth < 1) 
+			throw new IllegalArgumentException("Invalid color depth " + colorDepth);
+		if(quantMethod == QuantMethod.WU_QUANT)
+			return new WuQuant(rgbTriplets, 1<<colorDepth).quantize(colorPalette, colorInfo);
+		else if(quantMethod == QuantMethod.NEU_QUANT)
+			return new NeuQuant(rgbTriplets).quantize(colorPalette, colorInfo);
+		return reduceColors(rgbTriplets, colorDepth, colorPalette, colorInfo);
+	}
+	
 	// Color quantization
 	public static int[] reduceColors(QuantMethod quantMethod, int[] rgbTriplets, int colorDepth, byte[] newPixels, final int[] colorPalette, boolean fullAlpha)	{
 		int[] colorInfo = new int[2];
@@ -1250,16 +1219,8 @@ public class IMGUtils {
 	}
 	
 	public static int[] reduceColorsDiffusionDither(QuantMethod quantMethod, int[] rgbTriplets, int width, int height, int colorDepth, byte[] newPixels, final int[] colorPalette)	{
-		if(colorDepth > 8 || colorDepth < 1) 
-			throw new IllegalArgumentException("Invalid color depth " + colorDepth);
 		int[] colorInfo = new int[2];
-		int colors = 0;
-		if(quantMethod == QuantMethod.WU_QUANT)
-			colors = new WuQuant(rgbTriplets, 1<<colorDepth).quantize(colorPalette, colorInfo);
-		else if(quantMethod == QuantMethod.NEU_QUANT)
-			colors = new NeuQuant(rgbTriplets).quantize(colorPalette, colorInfo);
-		else
-			colors = reduceColors(rgbTriplets, colorDepth, colorPalette, colorInfo);
+		int colors = createColorPalette(quantMethod, rgbTriplets, colorDepth, colorPalette, colorInfo);
 		// Call Floyd-Steinberg dither
 		dither_FloydSteinberg(rgbTriplets, width, height, newPixels, colors, colorPalette, colorInfo[1]);
 		// Return the actual bits per pixel and the transparent color index if any
@@ -1267,6 +1228,31 @@ public class IMGUtils {
 		return colorInfo;
 	}
 	
+	/**
+	 * Reduces a true color image to an indexed-color image followed by error diffusion dithering.
+	 * 
+	 * @param quantMethod color quantization method
+	 * @param ditherMethod error diffusion dither method
+	 * @param rgbTriplets input pixels in ARGB format
+	 * @param width image width
+	 * @param height image height
+	 * @param colorDepth the desired color depth - actual value might be smaller
+	 * @param newPixels a byte array to hold the color map indexes for the image
+	 * @param colorPalette the color map to be filled
+	 * @param executor ExecutorService to dither in concurrent bands or null to dither in a single pass
+	 * @return an int array holding the color depth and the transparent color index if any
+	 * @throws Exception if the concurrent dithering fails
+	 */
+	public static int[] reduceColorsDiffusionDither(QuantMethod quantMethod, DitherMethod ditherMethod, int[] rgbTriplets, int width, int height, int colorDepth, byte[] newPixels, final int[] colorPalette, ExecutorService executor) throws Exception {
+		int[] colorInfo = new int[2];
+		int colors = createColorPalette(quantMethod, rgbTriplets, colorDepth, colorPalette, colorInfo);
+		InverseColorMap invMap = InverseColorMap.getInstance(colors, colorPalette);
+		DiffusionDither.dither(ditherMethod, rgbTriplets, width, height, newPixels, invMap, colorPalette, colorInfo[1], executor);
+		// Return the actual bits per pixel and the transparent color index if any
+
+		return colorInfo;
+	}
+	
 	public static int[] reduceColorsOrderedDither(int[] rgbTriplet, int width, int height, int colorDepth, byte[] newPixels, final int[] colorPalette, int[][] threshold)	{
 		if(colorDepth > 8 || colorDepth < 1) 
 			throw new IllegalArgumentException("Invalid color depth " + colorDepth);
@@ -1280,16 +1266,8 @@ public class IMGUtils {
 	}
 	
 	public static int[] reduceColorsOrderedDither(QuantMethod quantMethod, int[] rgbTriplets, int width, int height, int colorDepth, byte[] newPixels, final int[] colorPalette, int[][] threshold)	{
-		if(colorDepth > 8 || colorDepth < 1) 
-			throw new IllegalArgumentException("Invalid color depth " + colorDepth);
 		int[] colorInfo = new int[2];
-		int colors = 0;
-		if(quantMethod == QuantMethod.WU_QUANT)
-			colors = new WuQuant(rgbTriplets, 1<<colorDepth).quantize(colorPalette, colorInfo);
-		else if(quantMethod == QuantMethod.NEU_QUANT)
-			colors = new NeuQuant(rgbTriplets).quantize(colorPalette, colorInfo);
-		else
-			colors = reduceColors(rgbTriplets, colorDepth, colorPalette, colorInfo);
+		int colors = createColorPalette(quantMethod, rgbTriplets, colorDepth, colorPalette, colorInfo);
 		dither_Bayer(rgbTriplets, width, height, newPixels, colors, colorPalette, colorInfo[1], threshold);
 		// Return the actual bits per pixel and the transparent color index if any
 
@@ -1438,6 +1416,19 @@ public class IMGUtils {
 	 * @return byte array for the BW image
 	 */
 	public static byte[] rgb2bilevelDiffusionDither(int[] rgb, int imageWidth, int imageHeight) {
+		return rgb2bilevelDiffusionDither(rgb, imageWidth, imageHeight, DitherMethod.FLOYD_STEINBERG);
+	}
+	
+	/**
+	 * RGB to bilevel image conversion with error diffusion dither
+	 * 
+	 * @param rgb input RGB image array (format: ARGBARGBARGB...)
+	 * @param imageWidth image width
+	 * @param imageHeight image height
+	 * @param ditherMethod error diffusion dither method
+	 * @return byte array for the BW image
+	 */
+	public static byte[] rgb2bilevelDiffusionDither(int[] rgb, int imageWidth, int imageHeight, DitherMethod ditherMethod) {
 		// RGB to gray-scale
 		byte[] pixels = new byte[rgb.length];
 		byte[] mask = new byte[rgb.length];
@@ -1457,7 +1448,7 @@ public class IMGUtils {
 		// Calculate threshold
 		int threshold = (int)(sum/pixels.length);
 		
-		IMGUtils.dither_FloydSteinberg(pixels, mask, imageWidth, imageHeight, threshold);
+		DiffusionDither.dither(ditherMethod, pixels, mask, imageWidth, imageHeight, threshold);
 		
 		return pixels;
 	}
@@ -11,63 +11,163 @@
 
 package com.icafe4j.image.util;
 
+import java.util.Arrays;
+import java.util.Map;
+
+import com.icafe4j.util.LRUCache;
+
 /**
  * Helper class used for the dithering process to provide an efficient 
  * nearest color searching in a predefined color map for a given color.
+ * <p>
+ * With {@link #HIGH_PRECISION_BITS} or more quantization bits, the map is not
+ * computed up front. Each cell is filled in by a search of the color map the first
+ * time it is looked up, so only the colors actually met are paid for. The result
+ * is the same as computing the whole map.
+ * <p>
+ * {@link #getInstance(int, int, int[]) getInstance} caches the maps of the most
+ * recently used color maps, so images sharing a color map don't compute it again.
  *
  * See "Efficient Inverse Color Map Computation" by Spencer W. Thomas
  * in "Graphics Gems Volume II"
  *
- * @version 1.05 03/17/2008
+ * @version 1.06 10/17/2026
  * @author Wen Yu, yuwen_66@yahoo.com
  */
 public class InverseColorMap {
+	public static final int DEFAULT_BITS = 5;
+	// From this number of bits on, the map is filled in as it is used
+	public static final int HIGH_PRECISION_BITS = 6;
+	// Number of inverse color maps kept by getInstance()
+	private static final int CACHE_SIZE = 8;
+	
+	private static final Map<PaletteKey, InverseColorMap> cache = new LRUCache<PaletteKey, InverseColorMap>(CACHE_SIZE, true);
+	
 	private int bitsReserved;// Number of bits used in color quantization.
 	private int bitsDiscarded;// Number of discarded bits
 	private int maxColorVal;// Maximum value for each quantized color
 	private int invMapLen;// Length of the inverse color map
 	// The inverse color map itself
 	private byte[] invColorMap;
+	// Inverse color map filled in as it is used, -1 for the cells not looked up yet
+	private short[] lazyColorMap;
+	// Forward color map searched for the lazy map cells
+	private int[] lazyPalette;
 	
 	// Default constructor using 5 for quantization bits
 	public InverseColorMap() {
-		this(5);
+		this(DEFAULT_BITS);
 	}
 	
     // Constructor using bitsReserved bits for quantization
 	public InverseColorMap(int rbits) {
+		if(rbits < 1 || rbits > 8)
+			throw new IllegalArgumentException("Invalid number of quantization bits: " + rbits);
 		bitsReserved = rbits;
 		bitsDiscarded  = 8 - bitsReserved;
 		maxColorVal = 1 << bitsReserved;
 		invMapLen = maxColorVal * maxColorVal * maxColorVal;
-        invColorMap = new byte[invMapLen];
+		if(bitsReserved < HIGH_PRECISION_BITS)
+			invColorMap = new byte[invMapLen];
+	}
+	
+	/**
+	 * Get the inverse color map of a forward RGB map with the default quantization bits.
+	 * 
+	 * @see #getInstance(int, int, int[])
+	 */
+	public static InverseColorMap getInstance(int no_of_colors, int[] colorPalette) {
+		return getInstance(DEFAULT_BITS, no_of_colors, colorPalette);
+	}
+	
+	/**
+	 * Get the inverse color map of a forward RGB map from the cache, creating it if it
+	 * is not there. The map returned may be shared with other callers, so it must not
+	 * be changed by calling createInverseMap().
+	 * 
+	 * @param rbits number of bits used for quantization
+	 * @param no_of_colors number of colors in the color map
+	 * @param colorPalette forward RGB map, alpha is ignored
+	 * @return the inverse color map
+	 */
+	public static InverseColorMap getInstance(int rbits, int no_of_colors, int[] colorPalette) {
+		PaletteKey key = new PaletteKey(rbits, no_of_colors, colorPalette);
+		InverseColorMap invMap = cache.get(key);
+		
+		if(invMap == null) {
+			invMap = new InverseColorMap(rbits);
+			invMap.createInverseMap(no_of_colors, colorPalette);
+			cache.put(key, invMap);
+		}
+		
+		return invMap;
+	}
+	
+	// Fill in a cell of the lazy map searching the forward map for the color nearest the cell center
+	private int findNearestColorIndex(int index) {
+		int center = (1 << bitsDiscarded)>>1;
+		int mask = maxColorVal - 1;
+		int red = ((index >> (bitsReserved<<1)) << bitsDiscarded) + center;
+		int green = (((index >> bitsReserved)&mask) << bitsDiscarded) + center;
+		int blue = ((index&mask) << bitsDiscarded) + center;
+		int nearest = 0;
+		int minDist = 0x7FFFFFFF;
+		
+		for (int i = 0; i < lazyPalette.length; i++) {
+			int rdist = red - ((lazyPalette[i]>>16)&0xff);
+			int gdist = green - ((lazyPalette[i]>>8)&0xff);
+			int bdist = blue - (lazyPalette[i]&0xff);
+			int dist = rdist*rdist + gdist*gdist + bdist*bdist;
+			if (dist < minDist) {
+				minDist = dist;
+				nearest = i;
+			}
+		}
+		// A short is written at once, threads racing here write the same value
+		lazyColorMap[index] = (short)nearest;
+		
+		return nearest;
+	}
+	
+	private int getColorIndex(int index) {
+		if (lazyColorMap == null)
+			return invColorMap[index]&0xff;
+		int colorIndex = lazyColorMap[index];
+		return (colorIndex >= 0)? colorIndex : findNearestColorIndex(index);
 	}
 	
     // Fetch the forward color map index for this color
 	public int getNearestColorIndex(int color) {
-		return invColorMap[((((color&0xff0000) >> (16 + bitsDiscarded)) << (bitsReserved<<1))) | 
+		return getColorIndex(((((color&0xff0000) >> (16 + bitsDiscarded)) << (bitsReserved<<1))) | 
 					 (((color&0x00ff00) >> (8 + bitsDiscarded)) << bitsReserved) |
-					 ((color&0x0000ff) >> bitsDiscarded)]&0xff;
+					 ((color&0x0000ff) >> bitsDiscarded));
 	}
 	
 	// Fetch the forward color map index for this RGB 
 	public int getNearestColorIndex(int red, int green, int blue) {
-		return invColorMap[(((red >> bitsDiscarded) << (bitsReserved<<1))) | 
+		return getColorIndex((((red >> bitsDiscarded) << (bitsReserved<<1))) | 
 					 ((green >> bitsDiscarded) << bitsReserved) |
-					 (blue >> bitsDiscarded)]&0xff;
+					 (blue >> bitsDiscarded));
 	}
 	
 	// Fetch the forward color map index for this RGB represented by bytes
 	public int getNearestColorIndex(byte red, byte green, byte blue) {
-		return invColorMap[((((red&0xff) >> bitsDiscarded) << (bitsReserved<<1))) | 
+		return getColorIndex(((((red&0xff) >> bitsDiscarded) << (bitsReserved<<1))) | 
 					 (((green&0xff) >> bitsDiscarded) << bitsReserved) |
-					 ((blue&0xff) >> bitsDiscarded)]&0xff;
+					 ((blue&0xff) >> bitsDiscarded));
 	}
 	
 	/**
 	 * Create an inverse color map using the input forward RGB map.
 	 */
 	public void createInverseMap(int no_of_colors, int[] colorPalette) {   
+		if (bitsReserved >= HIGH_PRECISION_BITS) {
+			lazyPalette = Arrays.copyOf(colorPalette, no_of_colors);
+			lazyColorMap = new short[invMapLen];
+			Arrays.fill(lazyColorMap, (short)-1);
+			return;
+		}
+		
 		int red, green, blue, r, g, b;
         int rdist, gdist, bdist, dist;
         int rinc, ginc, binc;
@@ -122,6 +222,14 @@ public class InverseColorMap {
 	 * Create an inverse color map using the input forward Red, Green and Blue maps.
 	 */
 	public void createInverseMap(int no_of_colors, byte[] redPalette, byte[] greenPalette, byte[] bluePalette) {   
+		if (bitsReserved >= HIGH_PRECISION_BITS) {
+			int[] colorPalette = new int[no_of_colors];
+			for (int i = 0; i < no_of_colors; i++)
+				colorPalette[i] = ((redPalette[i]&0xff)<<16)|((greenPalette[i]&0xff)<<8)|(bluePalette[i]&0xff);
+			createInverseMap(no_of_colors, colorPalette);
+			return;
+		}
+		
 		int red, green, blue, r, g, b;
         int rdist, gdist, bdist, dist;
         int rinc, ginc, binc;
@@ -171,4 +279,32 @@ public class InverseColorMap {
 			}
 		}
 	}
+	
+	// Cache key made of the quantization bits and the RGB values of a color map
+	private static class PaletteKey {
+		private int rbits;
+		private int[] colors;
+		private int hash;
+		
+		PaletteKey(int rbits, int no_of_colors, int[] colorPalette) {
+			this.rbits = rbits;
+			colors = new int[no_of_colors];
+			for (int i = 0; i < no_of_colors; i++)
+				colors[i] = colorPalette[i]&0x00ffffff;
+			hash = 31*Arrays.hashCode(colors) + rbits;
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof PaletteKey))
+				return false;
+			PaletteKey other = (PaletteKey)obj;
+			return hash == other.hash && rbits == other.rbits && Arrays.equals(colors, other.colors);
+		}
+		
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
 }
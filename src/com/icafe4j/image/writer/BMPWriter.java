@@ -19,7 +19,6 @@ import org.slf4j.LoggerFactory;
 import com.icafe4j.image.ImageColorType;
 import com.icafe4j.image.ImageParam;
 import com.icafe4j.image.ImageType;
-import com.icafe4j.image.quant.DitherMethod;
 import com.icafe4j.image.util.IMGUtils;
 
 /** 
@@ -233,8 +232,8 @@ public class BMPWriter extends ImageWriter {
 		int[] colorPalette = new int[256];
 		
 		if(param.isApplyDither()) {
-    		if(param.getDitherMethod() == DitherMethod.FLOYD_STEINBERG)
-        		IMGUtils.reduceColorsDiffusionDither(param.getQuantMethod(), pixels, imageWidth, imageHeight, 8, newPixels, colorPalette);	        		
+    		if(param.getDitherMethod().isErrorDiffusion())
+        		IMGUtils.reduceColorsDiffusionDither(param.getQuantMethod(), param.getDitherMethod(), pixels, imageWidth, imageHeight, 8, newPixels, colorPalette, null);	        		
     		else
         		IMGUtils.reduceColorsOrderedDither(param.getQuantMethod(), pixels, imageWidth, imageHeight, 8, newPixels, colorPalette, param.getDitherMatrix());
     	} else
@@ -14,6 +14,13 @@
  *
  * Who   Date       Description
  * ====  =======    ==========================================================
+ * AG    17Oct2026  Build the exact shared palette from all the pixels of large frames
+ * AG    17Oct2026  Made banded dithering opt-in through setBandedDither()
+ * AG    17Oct2026  Reset state and cancel frames left in flight by an unfinished stream
+ * AG    17Oct2026  Support Atkinson and Sierra Lite dithering, dither single images in bands
+ * AG    17Oct2026  Look up exact shared palette colors with IntIntHashtable
+ * AG    17Oct2026  Added shared palette and concurrent color reduction
+ * AG    17Oct2026  Added inter-frame delta for animated GIF
  * WY    14Oct2015  Bug fix for transparent frame
  * WY    05Oct2015  Revised writeFrame() to crop images outside logical screen
  * WY    18Aug2015  Added support to use ImageParam to control dither
@@ -26,22 +33,37 @@
 package com.icafe4j.image.writer;
 
 import java.awt.Dimension;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.io.*; 
+import java.util.ArrayDeque;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import com.icafe4j.image.ImageParam;
 import com.icafe4j.image.ImageType;
 import com.icafe4j.image.gif.GIFFrame;
-import com.icafe4j.image.quant.DitherMethod;
+import com.icafe4j.image.options.GIFOptions;
+import com.icafe4j.image.options.ImageOptions;
+import com.icafe4j.image.util.DiffusionDither;
 import com.icafe4j.image.util.IMGUtils;
+import com.icafe4j.image.util.InverseColorMap;
+import com.icafe4j.util.IntIntHashtable;
 
 import static com.icafe4j.image.gif.GIFTweaker.*;
 
 /**
  * A light-weight GIF encoder implemented using tree search as demonstrated 
  * by Bob Montgomery in "LZW compression used to encode/decode a GIF file"
+ * <p>
+ * If an {@link ExecutorService} is set, the color reduction and dithering of
+ * animated GIF frames run concurrently while the frames are LZW encoded and
+ * written out in order on the calling thread.
  *
  * @author Wen Yu, yuwen_66@yahoo.com 
  * @version 1.1 12/05/2007
@@ -61,6 +83,8 @@ public class GIFWriter extends ImageWriter {
 	private int[] colorPalette;
  
 	private static final int MASK[] = {0x00, 0x01, 0x03, 0x07, 0x0f, 0x1f, 0x3f, 0x7f, 0xff};
+	// Number of pixels sampled from all the frames to create a shared palette
+	private static final int PALETTE_SAMPLE_SIZE = 1<<20;
 	
 	private static Dimension getLogicalScreenSize(BufferedImage[] images) {
 		// Determine the logical screen dimension assuming all the frames have the same
@@ -113,6 +137,30 @@ public class GIFWriter extends ImageWriter {
 	private int loopCount;
 	private boolean firstFrame = true;
 	
+	// Inter-frame delta, see GIFOptions.setApplyFrameDelta()
+	private boolean applyFrameDelta;
+	// The frames given composited according to their own disposal methods
+	private int[] inputCanvas;
+	private int[] inputBackup;
+	// What a decoder shows before the pending frame is drawn
+	private int[] outputCanvas;
+	// The logical screen the pending frame has to show. It is held back until the
+	// next frame tells which disposal method it needs.
+	private int[] pendingScreen;
+	private Rectangle pendingArea;
+	private int pendingDelay;
+	private int pendingDisposalMethod;
+	private int pendingUserInputFlag;
+	
+	// Global palette for all the frames, see GIFOptions.setApplySharedPalette()
+	private SharedPalette sharedPalette;
+	
+	private ExecutorService executor;
+	// Error diffusion dither single images in bands on the executor
+	private boolean bandedDither;
+	// Frames being quantized, to be written in order
+	private Queue<Future<FrameQuantizer>> quantizedFrames = new ArrayDeque<Future<FrameQuantizer>>();
+	
 	public GIFWriter() {}
 	
 	public GIFWriter(ImageParam param) {
@@ -203,6 +251,245 @@ public class GIFWriter extends ImageWriter {
 		flush_buf(os, bufIndex+1);
     }
 	
+	private void cancelQuantizedFrames() {
+		for(Future<FrameQuantizer> future : quantizedFrames)
+			future.cancel(true);
+		quantizedFrames.clear();
+	}
+	
+	/**
+	 * Create a global palette from a sample of all the frames if a shared palette is
+	 * requested by GIFOptions. A transparent color is always kept in the palette.
+	 * <p>
+	 * If all the frames together have no more than 255 opaque colors, the palette holds
+	 * every one of them even when the frames are too big to be sampled pixel by pixel,
+	 * so such frames are written without loss.
+	 */
+	private void createSharedPalette(BufferedImage[] images) {
+		ImageOptions options = getImageParam().getImageOptions();
+		sharedPalette = null;
+		
+		if(!(options instanceof GIFOptions) || !((GIFOptions)options).isApplySharedPalette() || images.length == 0)
+			return;
+		
+		long totalPixels = 0;
+		for(BufferedImage image : images)
+			totalPixels += (long)image.getWidth()*image.getHeight();
+		// Sample every step rows and every step columns
+		int step = (int)Math.max(1, Math.ceil(Math.sqrt((double)totalPixels/PALETTE_SAMPLE_SIZE)));
+		
+		if(step > 1) {
+			// A sample may miss some of the colors, so look for every color first
+			int[] colors = getExactColors(images);
+			if(colors != null) {
+				sharedPalette = new SharedPalette(colors, getImageParam());
+				return;
+			}
+		}
+		
+		int sampleSize = 1;
+		for(BufferedImage image : images)
+			sampleSize += ((image.getWidth() + step - 1)/step)*((image.getHeight() + step - 1)/step);
+		
+		int[] sample = new int[sampleSize];
+		int index = 0;
+		
+		for(BufferedImage image : images) {
+			int width = image.getWidth();
+			int[] row = new int[width];
+			for(int y = 0; y < image.getHeight(); y += step) {
+				image.getRGB(0, y, width, 1, row, 0, width);
+				for(int x = 0; x < width; x += step)
+					sample[index++] = row[x];
+			}
+		}
+		// Transparent pixels and pixels left unchanged by the inter-frame delta need a transparent color
+		sample[index] = 0;
+		
+		sharedPalette = new SharedPalette(sample, getImageParam());
+	}
+	
+	/**
+	 * Collect the opaque colors of all the frames plus a transparent color.
+	 * 
+	 * @return the colors or null if there are more than 255 opaque colors
+	 */
+	private static int[] getExactColors(BufferedImage[] images) {
+		IntIntHashtable colors = new IntIntHashtable(1024);
+		int[] sample = new int[256];
+		int count = 0;
+		
+		for(BufferedImage image : images) {
+			int width = image.getWidth();
+			int[] row = new int[width];
+			for(int y = 0; y < image.getHeight(); y++) {
+				image.getRGB(0, y, width, 1, row, 0, width);
+				for(int pixel : row) {
+					if((pixel>>>24) < 0x80 || colors.contains(pixel |= 0xff000000))
+						continue;
+					if(count == 255) return null; // Too many colors, the palette has to be quantized
+					colors.put(pixel, count);
+					sample[count++] = pixel;
+				}
+			}
+		}
+		// Transparent pixels and pixels left unchanged by the inter-frame delta need a transparent color
+		sample[count++] = 0;
+		
+		return Arrays.copyOf(sample, count);
+	}
+	
+	/**
+	 * Write the pending frame if there is one. This must be done before the trailer.
+	 */
+	private void finishFrameDelta(OutputStream os) throws Exception {
+		if(pendingScreen != null)
+			writePendingFrame(null, os);
+		inputCanvas = inputBackup = outputCanvas = pendingScreen = null;
+	}
+	
+	/**
+	 * Bounding rectangle of the pixels that differ between two logical screens.
+	 * 
+	 * @param from the logical screen shown before
+	 * @param to the logical screen to be shown
+	 * @param clearedOnly only count the pixels which turn transparent
+	 * @return the bounding rectangle or null if there is no such pixel
+	 */
+	private Rectangle getChangedArea(int[] from, int[] to, boolean clearedOnly) {
+		int left = logicalScreenWidth, top = -1, right = -1, bottom = -1;
+		
+		for(int y = 0, offset = 0; y < logicalScreenHeight; y++) {
+			for(int x = 0; x < logicalScreenWidth; x++, offset++) {
+				if(from[offset] == to[offset] || (clearedOnly && to[offset] != 0)) continue;
+				if(top < 0) top = y;
+				bottom = y;
+				if(x < left) left = x;
+				if(x > right) right = x;
+			}
+		}
+		
+		if(top < 0) return null;
+		
+		return new Rectangle(left, top, right - left + 1, bottom - top + 1);
+	}
+	
+	private void initFrameDelta() {
+		ImageOptions options = getImageParam().getImageOptions();
+		applyFrameDelta = (options instanceof GIFOptions) && ((GIFOptions)options).isApplyFrameDelta();
+		inputCanvas = inputBackup = outputCanvas = pendingScreen = null;
+	}
+	
+	/**
+	 * Write the frame held back as the difference from what a decoder shows at that time.
+	 * If the next frame has transparent pixels which are not transparent now, the
+	 * pending frame is disposed of by restoring to background with its area grown
+	 * to cover those pixels. Otherwise it is left in place.
+	 * 
+	 * @param nextScreen the logical screen of the next frame or null if there is none
+	 */
+	private void writePendingFrame(int[] nextScreen, OutputStream os) throws Exception {
+		Rectangle area = pendingArea;
+		int disposalMethod = pendingDisposalMethod; // The last frame keeps its own disposal method
+		
+		if(nextScreen != null) {
+			Rectangle clearedArea = getChangedArea(pendingScreen, nextScreen, true);
+			if(clearedArea != null) {
+				area = (area == null)? clearedArea : area.union(clearedArea);
+				disposalMethod = GIFFrame.DISPOSAL_RESTORE_TO_BACKGROUND;
+			} else
+				disposalMethod = GIFFrame.DISPOSAL_LEAVE_AS_IS;
+		}
+		
+		// Nothing changed, a frame still needs at least one pixel
+		if(area == null) area = new Rectangle(0, 0, 1, 1);
+		
+		// Pixels left unchanged become transparent
+		int[] pixels = new int[area.width*area.height];
+		
+		for(int y = area.y, index = 0; y < area.y + area.height; y++) {
+			for(int x = area.x, offset = y*logicalScreenWidth + area.x; x < area.x + area.width; x++, offset++, index++) {
+				if(pendingScreen[offset] != outputCanvas[offset])
+					pixels[index] = pendingScreen[offset];
+			}
+		}
+		
+		encodeFrame(pixels, area.width, area.height, area.x, area.y, pendingDelay, disposalMethod, pendingUserInputFlag, os);
+		
+		// Update what a decoder shows before the next frame
+		System.arraycopy(pendingScreen, 0, outputCanvas, 0, outputCanvas.length);
+		
+		if(disposalMethod == GIFFrame.DISPOSAL_RESTORE_TO_BACKGROUND) {
+			for(int y = area.y; y < area.y + area.height; y++)
+				Arrays.fill(outputCanvas, y*logicalScreenWidth + area.x, y*logicalScreenWidth + area.x + area.width, 0);
+		}
+		
+		pendingScreen = null;
+	}
+	
+	/**
+	 * Composite the frame with the previous ones according to their disposal methods
+	 * and keep the resulting logical screen as the pending frame. The previous pending
+	 * frame is written now that its disposal method can be decided. 
+	 */
+	private void writeDeltaFrame(int[] pixels, int imageWidth, int imageHeight, int imageLeftPosition, int imageTopPosition, int delay, int disposalMethod, int userInputFlag, OutputStream os) throws Exception {
+		if(inputCanvas == null) {
+			inputCanvas = new int[logicalScreenWidth*logicalScreenHeight];
+			outputCanvas = new int[logicalScreenWidth*logicalScreenHeight];
+		}
+		
+		int right = Math.min(imageLeftPosition + imageWidth, logicalScreenWidth);
+		int bottom = Math.min(imageTopPosition + imageHeight, logicalScreenHeight);
+		int areaWidth = Math.max(right - imageLeftPosition, 0);
+		
+		if(disposalMethod == GIFFrame.DISPOSAL_RESTORE_TO_PREVIOUS) {
+			if(inputBackup == null || inputBackup.length < imageWidth*imageHeight)
+				inputBackup = new int[imageWidth*imageHeight];
+			for(int y = imageTopPosition, offset = 0; y < bottom; y++, offset += areaWidth)
+				System.arraycopy(inputCanvas, y*logicalScreenWidth + imageLeftPosition, inputBackup, offset, areaWidth);
+		}
+		
+		// Same as the color reduction, pixels with alpha less than 0x80 are transparent
+		for(int y = imageTopPosition; y < bottom; y++) {
+			for(int x = imageLeftPosition, src = (y - imageTopPosition)*imageWidth, dst = y*logicalScreenWidth + x; x < right; x++, src++, dst++) {
+				if((pixels[src]>>>24) >= 0x80)
+					inputCanvas[dst] = pixels[src]|0xff000000;
+			}
+		}
+		
+		int[] screen = inputCanvas.clone();
+		
+		// Check about disposal method to take action accordingly
+		if(disposalMethod == GIFFrame.DISPOSAL_RESTORE_TO_BACKGROUND) {
+			for(int y = imageTopPosition; y < bottom; y++)
+				Arrays.fill(inputCanvas, y*logicalScreenWidth + imageLeftPosition, y*logicalScreenWidth + imageLeftPosition + areaWidth, 0);
+		} else if(disposalMethod == GIFFrame.DISPOSAL_RESTORE_TO_PREVIOUS) {
+			for(int y = imageTopPosition, offset = 0; y < bottom; y++, offset += areaWidth)
+				System.arraycopy(inputBackup, offset, inputCanvas, y*logicalScreenWidth + imageLeftPosition, areaWidth);
+		} else if(disposalMethod > GIFFrame.DISPOSAL_RESTORE_TO_PREVIOUS) { // To be defined
+			Arrays.fill(inputCanvas, 0);
+		}
+		
+		if(pendingScreen != null)
+			writePendingFrame(screen, os);
+		
+		pendingScreen = screen;
+		pendingArea = getChangedArea(outputCanvas, screen, false);
+		pendingDelay = delay;
+		pendingDisposalMethod = disposalMethod;
+		pendingUserInputFlag = userInputFlag;
+	}
+	
+	// Write the frames still being quantized in order
+	private void flushQuantizedFrames(OutputStream os) throws Exception {
+		try {
+			while(!quantizedFrames.isEmpty())
+				writeQuantizedFrame(waitFor(quantizedFrames.remove()), os);
+		} finally {
+			cancelQuantizedFrames();
+		}
+	}
+	
 	/**
 	 * This is intended to be called after writing all the frames if we write
 	 * an animated GIF frame by frame.
@@ -211,6 +498,8 @@ public class GIFWriter extends ImageWriter {
 	 * @throws Exception
 	 */
 	public void finishWrite(OutputStream os) throws Exception {	   	
+		finishFrameDelta(os);
+		flushQuantizedFrames(os);
     	os.write(IMAGE_TRAILER);
 		os.close();    	
 	}
@@ -257,6 +546,12 @@ public class GIFWriter extends ImageWriter {
     	this.logicalScreenHeight = logicalScreenHeight;
     	// We are going to write animated GIF, so enable animated flag
     	animated = true;
+    	initFrameDelta();
+    	// Start afresh, dropping frames left over from a stream which was never finished
+    	firstFrame = true;
+    	cancelQuantizedFrames();
+    	// The frames are not known in advance, each one gets its own palette
+    	sharedPalette = null;
     }
     
     // Translate codes into bytes
@@ -280,6 +575,34 @@ public class GIFWriter extends ImageWriter {
 		empty_bits = -temp;
 	}
     
+	/**
+	 * Error diffusion dither a single image in bands on the executor set by
+	 * {@link #setExecutorService(ExecutorService)}. The output is the same for
+	 * any number of threads but differs slightly from the single pass dither,
+	 * so it is off by default. Animated GIF frames are tasks on the executor
+	 * themselves and are always dithered in a single pass.
+	 * 
+	 * @param bandedDither true to dither in concurrent bands
+	 */
+	public void setBandedDither(boolean bandedDither) {
+		this.bandedDither = bandedDither;
+	}
+	
+	/**
+	 * Set the executor used to reduce the colors of animated GIF frames concurrently.
+	 * The frames are still LZW encoded and written in order on the calling thread.
+	 * Set to null to do everything on the calling thread. The executor is not shut
+	 * down by this writer.
+	 * <p>
+	 * Frames written one by one may still be in flight after the last writeFrame(),
+	 * so finish with {@link #finishWrite(OutputStream) finishWrite} of this writer.
+	 * 
+	 * @param executor ExecutorService to run the color reduction tasks
+	 */
+	public void setExecutorService(ExecutorService executor) {
+		this.executor = executor;
+	}
+	
     public void setLoopCount(int loopCount) {
     	this.loopCount = loopCount;
     }
@@ -294,8 +617,10 @@ public class GIFWriter extends ImageWriter {
 		firstFrame = true;
 		// We only need to write one frame, so disable animated flag
     	animated = false;
+    	sharedPalette = null;
 		// Write the image frame
 		writeFrame(pixels, imageWidth, imageHeight, 0, 0, 0, os);
+		flushQuantizedFrames(os);
 		// Make a clean end up of the image
 		os.write(IMAGE_TRAILER);
 		os.close();
@@ -319,6 +644,11 @@ public class GIFWriter extends ImageWriter {
     	logicalScreenHeight = logicalScreenSize.height;
     	// We are going to write animated GIF, so enable animated flag
     	animated = true;
+    	initFrameDelta();
+    	// Start afresh, dropping frames left over from a stream which was never finished
+    	firstFrame = true;
+    	cancelQuantizedFrames();
+    	createSharedPalette(images);
     	
     	for(int i = 0; i < images.length; i++) {
     		// Retrieve image dimension
@@ -328,6 +658,9 @@ public class GIFWriter extends ImageWriter {
 			writeFrame(pixels, imageWidth, imageHeight, 0, 0, delays[i], os);
     	}
     	
+    	finishFrameDelta(os);
+    	flushQuantizedFrames(os);
+    	sharedPalette = null;
     	os.write(IMAGE_TRAILER);
 		os.close();    	
     }
@@ -349,6 +682,15 @@ public class GIFWriter extends ImageWriter {
     	logicalScreenHeight = logicalScreenSize.height;
     	// We are going to write animated GIF, so enable animated flag
     	animated = true;
+    	initFrameDelta();
+    	// Start afresh, dropping frames left over from a stream which was never finished
+    	firstFrame = true;
+    	cancelQuantizedFrames();
+    	
+    	BufferedImage[] images = new BufferedImage[frames.length];
+    	for(int i = 0; i < frames.length; i++)
+    		images[i] = frames[i].getFrame();
+    	createSharedPalette(images);
     	
     	for(int i = 0; i < frames.length; i++) {
     		// Retrieve image dimension
@@ -366,6 +708,9 @@ public class GIFWriter extends ImageWriter {
 					frames[i].getDelay(), frames[i].getDisposalMethod(), frames[i].getUserInputFlag(), os);
     	}
     	
+    	finishFrameDelta(os);
+    	flushQuantizedFrames(os);
+    	sharedPalette = null;
     	os.write(IMAGE_TRAILER);
 		os.close();    	
     }
@@ -455,37 +800,49 @@ public class GIFWriter extends ImageWriter {
     }
 
 	private void writeFrame(int[] pixels, int imageWidth, int imageHeight, int imageLeftPosition, int imageTopPosition, int delay, int disposalMethod, int userInputFlag, OutputStream os) throws Exception {	
-		ImageParam param = getImageParam();
+		if(animated && applyFrameDelta)
+			writeDeltaFrame(pixels, imageWidth, imageHeight, imageLeftPosition, imageTopPosition, delay, disposalMethod, userInputFlag, os);
+		else
+			encodeFrame(pixels, imageWidth, imageHeight, imageLeftPosition, imageTopPosition, delay, disposalMethod, userInputFlag, os);
+	}
+	
+	private void encodeFrame(int[] pixels, int imageWidth, int imageHeight, int imageLeftPosition, int imageTopPosition, int delay, int disposalMethod, int userInputFlag, OutputStream os) throws Exception {	
+		FrameQuantizer frame = new FrameQuantizer(pixels, imageWidth, imageHeight, imageLeftPosition, imageTopPosition, delay, disposalMethod, userInputFlag);
+		
+		if(executor == null || !animated) {
+			// A single image may be dithered in concurrent bands instead
+			if(bandedDither)
+				frame.ditherExecutor = executor;
+			writeQuantizedFrame(frame.call(), os);
+			return;
+		}
 		
+		// Limit the number of quantized frames waiting to be written
+		int window = Runtime.getRuntime().availableProcessors()*2;
+		
+		try {
+			quantizedFrames.add(executor.submit(frame));
+			while(quantizedFrames.size() >= window)
+				writeQuantizedFrame(waitFor(quantizedFrames.remove()), os);
+		} catch(Exception ex) {
+			cancelQuantizedFrames();
+			throw ex;
+		}
+	}
+	
+	private void writeQuantizedFrame(FrameQuantizer frame, OutputStream os) throws Exception {
 		// Reset empty_bits
     	empty_bits = 0x08;
     	
-    	int transparent_color = -1;
-		int[] colorInfo; 
-		
-		// Reduce colors, if the color depth is less than 8 bits, reduce colors
-		// to the actual bits needed, otherwise reduce to 8 bits.
-		byte[] newPixels = new byte[imageWidth*imageHeight];
-	    colorPalette = new int[256];
-	    
-	    colorInfo = IMGUtils.checkColorDepth(pixels, newPixels, colorPalette);
-		
-	    if(colorInfo[0] > 0x08) {
-			bitsPerPixel = param.getBitsPerPixel();
-			if(bitsPerPixel <= 0 || bitsPerPixel > 8)
-				bitsPerPixel = 8;
-	    	if(param.isApplyDither()) {
-	    		if(param.getDitherMethod() == DitherMethod.FLOYD_STEINBERG)
-	        		colorInfo = IMGUtils.reduceColorsDiffusionDither(param.getQuantMethod(), pixels, imageWidth, imageHeight, bitsPerPixel, newPixels, colorPalette);	        		
-	    		else
-	        		colorInfo = IMGUtils.reduceColorsOrderedDither(param.getQuantMethod(), pixels, imageWidth, imageHeight, bitsPerPixel, newPixels, colorPalette, param.getDitherMatrix());
-	    	} else
-	    		colorInfo = IMGUtils.reduceColors(param.getQuantMethod(), pixels, bitsPerPixel, newPixels, colorPalette, false);
-	    }
-	    
-	    bitsPerPixel = colorInfo[0];
+    	if(sharedPalette != null) {
+    		colorPalette = sharedPalette.colorPalette;
+    		bitsPerPixel = sharedPalette.bitsPerPixel;
+    	} else {
+    		colorPalette = frame.colorPalette;
+    		bitsPerPixel = frame.bitsPerPixel;
+    	}
 	    
-	    transparent_color = colorInfo[1];
+	    int transparent_color = frame.transparentIndex;
 	    
 	    int num_of_color = 1<<bitsPerPixel;
 	    
@@ -497,7 +854,9 @@ public class GIFWriter extends ImageWriter {
 			int colorResolution = 0x07;
 			// Set GIF logical screen descriptor parameters
 			flags |= ((colorResolution<<4)|(bitsPerPixel - 1)); 			
-			if(transparent_color >= 0)
+			if(sharedPalette != null)
+				bgcolor = (byte)sharedPalette.transparentIndex;
+			else if(transparent_color >= 0)
 				bgcolor = (byte)transparent_color;
 			// Write logical screen descriptor
 			writeLSD(os, (short)logicalScreenWidth, (short)logicalScreenHeight, flags, bgcolor, aspectRatio);
@@ -509,25 +868,36 @@ public class GIFWriter extends ImageWriter {
 	    }		
 		
       	// Output the graphic control block
-	    writeGraphicControlBlock(os, delay, transparent_color, disposalMethod, userInputFlag);
+	    writeGraphicControlBlock(os, frame.delay, transparent_color, frame.disposalMethod, frame.userInputFlag);
         // Output image descriptor
-        if(firstFrame) {
-        	writeImageDescriptor(os, imageWidth, imageHeight, imageLeftPosition, imageTopPosition, -1);
+        if(firstFrame || sharedPalette != null) {
+        	writeImageDescriptor(os, frame.imageWidth, frame.imageHeight, frame.imageLeftPosition, frame.imageTopPosition, -1);
 			firstFrame = false;
         } else {
-        	writeImageDescriptor(os, imageWidth, imageHeight, imageLeftPosition, imageTopPosition, bitsPerPixel - 1);
+        	writeImageDescriptor(os, frame.imageWidth, frame.imageHeight, frame.imageLeftPosition, frame.imageTopPosition, bitsPerPixel - 1);
         	// Write local colorPalette
         	writePalette(os, num_of_color);
         }
         // LZW encode the image
-        encode(newPixels, os);
+        encode(frame.newPixels, os);
 		/** Write out a zero length data sub-block */
 		os.write(0x00);
 	}
 	
-	private void writeFrame(int[] pixels, int imageWidth, int imageHeight, int imageLeftPosition, int imageTopPosition, int delay, OutputStream os) throws Exception	{	
-    	writeFrame(pixels, imageWidth, imageHeight, imageLeftPosition, imageTopPosition, delay, GIFFrame.DISPOSAL_RESTORE_TO_BACKGROUND, GIFFrame.USER_INPUT_NONE, os);
-    }
+	private void writeFrame(int[] pixels, int imageWidth, int imageHeight, int imageLeftPosition, int imageTopPosition, int delay, OutputStream os) throws Exception {
+		writeFrame(pixels, imageWidth, imageHeight, imageLeftPosition, imageTopPosition, delay, GIFFrame.DISPOSAL_RESTORE_TO_BACKGROUND, GIFFrame.USER_INPUT_NONE, os);
+	}
+	
+	private static FrameQuantizer waitFor(Future<FrameQuantizer> future) throws Exception {
+		try {
+			return future.get();
+		} catch(ExecutionException ex) {
+			Throwable cause = ex.getCause();
+			if(cause instanceof Exception)
+				throw (Exception)cause;
+			throw ex;
+		}
+	}
 	
 	// Unit of delay is supposed to be in millisecond
     private void writeGraphicControlBlock(OutputStream os, int delay, int transparent_color, int disposalMethod, int userInputFlag) throws Exception {
@@ -634,4 +1004,172 @@ public class GIFWriter extends ImageWriter {
         
 	    os.write(colors, 0, num_of_color*3);
 	}
+	
+	// Reduces the colors of a frame, which may run on another thread than the one writing the frame
+	private class FrameQuantizer implements Callable<FrameQuantizer> {
+		private ImageParam param = getImageParam();
+		private SharedPalette palette = sharedPalette;
+		private int[] pixels;
+		private int imageWidth;
+		private int imageHeight;
+		private int imageLeftPosition;
+		private int imageTopPosition;
+		private int delay;
+		private int disposalMethod;
+		private int userInputFlag;
+		// Executor to dither the frame in bands, only used when the frame is not itself a task on it
+		private ExecutorService ditherExecutor;
+		// Color reduction result
+		private byte[] newPixels;
+		private int[] colorPalette;
+		private int bitsPerPixel;
+		private int transparentIndex;
+		
+		FrameQuantizer(int[] pixels, int imageWidth, int imageHeight, int imageLeftPosition, int imageTopPosition, int delay, int disposalMethod, int userInputFlag) {
+			this.pixels = pixels;
+			this.imageWidth = imageWidth;
+			this.imageHeight = imageHeight;
+			this.imageLeftPosition = imageLeftPosition;
+			this.imageTopPosition = imageTopPosition;
+			this.delay = delay;
+			this.disposalMethod = disposalMethod;
+			this.userInputFlag = userInputFlag;
+		}
+		
+		public FrameQuantizer call() throws Exception {
+			newPixels = new byte[imageWidth*imageHeight];
+			
+			if(palette != null) {
+				transparentIndex = palette.map(pixels, imageWidth, imageHeight, newPixels, param);
+				pixels = null;
+				return this;
+			}
+			
+			int[] colorInfo; 
+			
+			// Reduce colors, if the color depth is less than 8 bits, reduce colors
+			// to the actual bits needed, otherwise reduce to 8 bits.
+		    colorPalette = new int[256];
+		    
+		    colorInfo = IMGUtils.checkColorDepth(pixels, newPixels, colorPalette);
+			
+		    if(colorInfo[0] > 0x08) {
+				bitsPerPixel = param.getBitsPerPixel();
+				if(bitsPerPixel <= 0 || bitsPerPixel > 8)
+					bitsPerPixel = 8;
+		    	if(param.isApplyDither()) {
+		    		if(param.getDitherMethod().isErrorDiffusion())
+		        		colorInfo = IMGUtils.reduceColorsDiffusionDither(param.getQuantMethod(), param.getDitherMethod(), pixels, imageWidth, imageHeight, bitsPerPixel, newPixels, colorPalette, ditherExecutor);
+		    		else
+		        		colorInfo = IMGUtils.reduceColorsOrderedDither(param.getQuantMethod(), pixels, imageWidth, imageHeight, bitsPerPixel, newPixels, colorPalette, param.getDitherMatrix());
+		    	} else
+		    		colorInfo = IMGUtils.reduceColors(param.getQuantMethod(), pixels, bitsPerPixel, newPixels, colorPalette, false);
+		    }
+		    
+		    bitsPerPixel = colorInfo[0];
+		    transparentIndex = colorInfo[1];
+		    pixels = null;
+		    
+		    return this;
+		}
+	}
+	
+	/**
+	 * A global color palette shared by all the frames together with the inverse color
+	 * map used to map the frame pixels to it. It is read only once created, so frames
+	 * can be mapped concurrently.
+	 */
+	private static class SharedPalette {
+		// The palette written as the global color table
+		private int[] colorPalette = new int[256];
+		// The palette before gamma correction for ordered dither
+		private int[] ditherPalette;
+		private int bitsPerPixel;
+		private int transparentIndex;
+		private InverseColorMap invMap = new InverseColorMap();
+		// Palette indexes of the colors if the palette holds every color of the sample
+		private IntIntHashtable exactColors;
+		
+		SharedPalette(int[] sample, ImageParam param) {
+			byte[] indexes = new byte[sample.length];
+			int[] colorInfo = IMGUtils.checkColorDepth(sample, indexes, colorPalette);
+			int colors = 0;
+			
+			if(colorInfo[0] <= 0x08) {
+				// Few enough colors to keep them as they are
+				for(byte index : indexes)
+					colors = Math.max(colors, (index&0xff) + 1);
+				// Move the transparent color to the end so the opaque colors come first
+				int last = colors - 1;
+				int temp = colorPalette[colorInfo[1]];
+				colorPalette[colorInfo[1]] = colorPalette[last];
+				colorPalette[last] = temp;
+				colors = last;
+				bitsPerPixel = colorInfo[0];
+				transparentIndex = last;
+				// Sparse table for short probe sequences
+				exactColors = new IntIntHashtable(1024);
+				for(int i = 0; i < colors; i++)
+					exactColors.put(colorPalette[i]&0x00ffffff, i);
+			} else {
+				int colorDepth = param.getBitsPerPixel();
+				if(colorDepth <= 0 || colorDepth > 8)
+					colorDepth = 8;
+				colors = IMGUtils.createColorPalette(param.getQuantMethod(), sample, colorDepth, colorPalette, colorInfo);
+				bitsPerPixel = colorInfo[0];
+				transparentIndex = colorInfo[1];
+			}
+			
+			invMap.createInverseMap(colors, colorPalette);
+			ditherPalette = colorPalette.clone();
+			
+			if(exactColors == null && param.isApplyDither() && !param.getDitherMethod().isErrorDiffusion())
+				IMGUtils.correctGamma(colorPalette);
+		}
+		
+		/**
+		 * Map the pixels of a frame to the palette.
+		 * 
+		 * @return the transparent color index if the frame has transparent pixels, otherwise -1
+		 */
+		int map(int[] pixels, int width, int height, byte[] newPixels, ImageParam param) {
+			boolean transparent = false;
+			
+			for(int pixel : pixels) {
+				if((pixel>>>24) < 0x80) {
+					transparent = true;
+					break;
+				}
+			}
+			
+			if(exactColors == null && param.isApplyDither()) {
+				if(param.getDitherMethod().isErrorDiffusion())
+					DiffusionDither.dither(param.getDitherMethod(), pixels, width, height, newPixels, invMap, ditherPalette, transparentIndex);
+				else
+					IMGUtils.dither_Bayer(pixels, width, height, newPixels, invMap, transparentIndex, param.getDitherMatrix());
+			} else {
+				// Neighboring pixels are often the same, so remember the last one looked up
+				int lastPixel = 0;
+				byte lastIndex = (byte)transparentIndex;
+				for(int i = 0; i < pixels.length; i++) {
+					int pixel = pixels[i];
+					if((pixel>>>24) < 0x80) {
+						newPixels[i] = (byte)transparentIndex;
+						continue;
+					}
+					if(pixel != lastPixel) {
+						int index = (exactColors != null)? exactColors.get(pixel&0x00ffffff, -1) : -1;
+						if(index >= 0)
+							lastIndex = (byte)index;
+						else
+							lastIndex = (byte)invMap.getNearestColorIndex(pixel);
+						lastPixel = pixel;
+					}
+					newPixels[i] = lastIndex;
+				}
+			}
+			
+			return transparent? transparentIndex : -1;
+		}
+	}
 }
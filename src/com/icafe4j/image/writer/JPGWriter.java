@@ -14,6 +14,10 @@
  *
  * Who   Date       Description
  * ====  =======    =================================================
+ * AG    17Oct2026  Added restart interval and parallel encoding of bands
+ * AG    17Oct2026  Added optimized Huffman tables and progressive JPEG
+ * AG    17Oct2026  Added chroma subsampling (4:2:2 and 4:2:0)
+ * AG    17Oct2026  Encode one MCU row at a time using integer forward DCT
  * WY    08Nov2015  Write Adobe APP14 segment for RGB color space
  * WY    21Jun2015  Removed copyright notice from generated JPEG images
  * WY    13Aug2014  Added support for YCCK JPEG image
@@ -27,17 +31,31 @@
 
 package com.icafe4j.image.writer;
 
+import java.awt.color.ColorSpace;
 import java.awt.color.ICC_ColorSpace;
 import java.awt.color.ICC_Profile;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorConvertOp;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
 import java.io.*; 
 import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import com.icafe4j.image.ImageColorType;
 import com.icafe4j.image.ImageParam;
 import com.icafe4j.image.ImageType;
 import com.icafe4j.image.compression.huffman.HuffmanEncoder;
+import com.icafe4j.image.compression.huffman.HuffmanTbl;
 import com.icafe4j.image.jpeg.HTable;
 import com.icafe4j.image.jpeg.JPGConsts;
 import com.icafe4j.image.jpeg.Marker;
@@ -50,7 +68,20 @@ import com.icafe4j.image.util.IMGUtils;
 import com.icafe4j.io.IOUtils;
 
 /**
- * JPEG image writer  
+ * JPEG image writer
+ * <p>
+ * Image data are converted and encoded one MCU row at a time using an integer
+ * forward DCT, so apart from the input pixels only a few rows of samples are
+ * kept in memory.
+ * <p>
+ * If Huffman tables are to be optimized or progressive JPEG is requested, the
+ * quantized coefficients of the whole image are kept instead, so that symbol
+ * statistics can be gathered before the tables and the scans are written.
+ * <p>
+ * If an {@link ExecutorService} is set, the image is split into bands of MCU
+ * rows which are transformed and encoded concurrently. Each band makes up a
+ * restart interval, so the entropy-coded segments can simply be concatenated
+ * with RSTn markers in between.
  *
  * @author Wen Yu, yuwen_66@yahoo.com
  * @version 1.0 12/02/2013
@@ -67,15 +98,31 @@ public class JPGWriter extends ImageWriter {
     private int numOfQTables = 2; // Default number of quantization tables
     private int numOfHTables = 2; // Default number of Huffman tables for each class
     private int[] qTableSelector = new int[] {0, 1, 1, 1}; // q table selectors for different components
+    // Horizontal and vertical sampling factors for different components
+    private int[] hSampFactor = new int[] {1, 1, 1, 1};
+    private int[] vSampFactor = new int[] {1, 1, 1, 1};
+    private int maxHSampFactor = 1;
+    private int maxVSampFactor = 1;
     
     private int[][] quant_table = new int[2][];
     private byte[][][] huffman_bits = new byte[2][2][]; // AC, DC
     private byte[][][] huffman_values = new byte[2][2][]; // AC, DC
+    // Quantization divisors matching the output scaling of the integer DCT
+    private int[][] divisors = new int[2][64];
+    // Quantized coefficients of the whole image for two-pass encoding
+    private short[][] coefficients;
+    private int[] blocksPerLine;
     
 	private int quality = 100; // Default image quality
 	private boolean includeTables = true;
 	private boolean grayScale;
 	private int colorSpace = JPGOptions.COLOR_SPACE_YCbCr;
+	private int subsampling = JPGConsts.SUBSAMPLING_NONE;
+	private boolean optimizeCoding;
+	private boolean progressive;
+	private int restartInterval;
+	// Bands of the image are encoded concurrently if set
+	private ExecutorService executor;
 	
 	private static final String pathToCMYKProfile = "/resources/CMYK Profiles/USWebCoatedSWOP.icc";
 	private ICC_ColorSpace cmykColorSpace;
@@ -90,40 +137,183 @@ public class JPGWriter extends ImageWriter {
 		super(param);
 	}
    	
-	// Expand array to make image width and height a multiple of 8
-	private float[][] expandArray(float[][] component, int width, int height) {
-		int xpadding = width%8;
-		int ypadding = height%8;
-		newWidth = width + ((xpadding == 0)?0:(8-xpadding));
-		newHeight = height + ((ypadding == 0)?0:(8-ypadding));
-		
-		if(newWidth > width || newHeight > height) {
-			float[][] temp = new float[newHeight][newWidth];			
-			// Expand width first
-			for(int i = 0; i < height; i++) {
-				System.arraycopy(component[i], 0, temp[i], 0, width);
-				Arrays.fill(temp[i], width, newWidth, component[i][width - 1]);
+	// Transform and encode a band of the image from MCU row firstRow to lastRow (exclusive)
+	private class BandEncoder implements Callable<byte[]> {
+		private int[] pixels;
+		private int imageWidth;
+		private int imageHeight;
+		private int firstRow;
+		private int lastRow;
+		private boolean keepCoefficients;
+		
+		BandEncoder(int[] pixels, int imageWidth, int imageHeight, int firstRow, int lastRow, boolean keepCoefficients) {
+			this.pixels = pixels;
+			this.imageWidth = imageWidth;
+			this.imageHeight = imageHeight;
+			this.firstRow = firstRow;
+			this.lastRow = lastRow;
+			this.keepCoefficients = keepCoefficients;
+		}
+		
+		public byte[] call() throws Exception {
+			if(keepCoefficients) {
+				encodeBand(null, pixels, imageWidth, imageHeight, firstRow, lastRow);
+				return null;
 			}
-			// Expand height
-			for(int k = height; k < newHeight; k++) {
-				System.arraycopy(temp[height - 1], 0, temp[k], 0, newWidth);
+			ByteArrayOutputStream bout = new ByteArrayOutputStream();
+			HuffmanEncoder encoder = createEncoder(bout);
+			encodeBand(encoder, pixels, imageWidth, imageHeight, firstRow, lastRow);
+			encoder.finish();
+			
+			return bout.toByteArray();
+		}
+	}
+	
+	// Build Huffman encoder tables for each component from the Huffman tables in use
+	private HuffmanEncoder createEncoder(OutputStream os) {
+		HuffmanEncoder encoder = new HuffmanEncoder(os, 4096);
+		
+		if(optimizeCoding) {
+			int[][] DC_EHUFCO = new int[4][], DC_EHUFSI = new int[4][], AC_EHUFCO = new int[4][], AC_EHUFSI = new int[4][];
+			for(int k = 0; k < numOfComponents; k++) {
+				int id = qTableSelector[k];
+				HuffmanTbl huffTbl = new HuffmanTbl(huffman_bits[0][id], huffman_values[0][id]);
+				huffTbl.generateEncoderTables();
+				DC_EHUFCO[k] = huffTbl.getEncoderCodeTable();
+				DC_EHUFSI[k] = huffTbl.getEncoderSizeTable();
+				huffTbl = new HuffmanTbl(huffman_bits[1][id], huffman_values[1][id]);
+				huffTbl.generateEncoderTables();
+				AC_EHUFCO[k] = huffTbl.getEncoderCodeTable();
+				AC_EHUFSI[k] = huffTbl.getEncoderSizeTable();
 			}
-					
-			return temp;
+			encoder.setEncodingTables(DC_EHUFCO, DC_EHUFSI, AC_EHUFCO, AC_EHUFSI);
+		}
+		
+		encoder.initialize();
+		
+		return encoder;
+	}
+	
+	// DCT transform, quantize and Huffman encode an 8x8 block of level shifted samples.
+	// If there is no encoder, the block is saved in the coefficient buffers at column bx and row by.
+	private void encodeBlock(HuffmanEncoder encoder, int[] block, int[] samples, int offset, int stride, int component, int bx, int by) throws Exception {
+		for(int i = 0; i < 64; i += 8, offset += stride)
+			System.arraycopy(samples, offset, block, i, 8);
+		
+		DCT.forwardDCT(block);
+		
+		int[] q = divisors[qTableSelector[component]];
+		// Quantization with rounding
+		for(int i = 0; i < 64; i++) {
+			int value = block[i], divisor = q[i];
+			block[i] = (value < 0)? -((divisor>>1) - value)/divisor : (value + (divisor>>1))/divisor;
 		}
 		
-		return component;		
+		if(encoder != null) {
+			encoder.encode(block, component);
+		} else {
+			short[] coef = coefficients[component];
+			for(int i = 0, index = (by*blocksPerLine[component] + bx)<<6; i < 64; i++)
+				coef[index++] = (short)block[i];
+		}
 	}
 	
-	private float[][] getDCTBlock(float[][] component, int x, int y) {
-		//
-		float[][] block = new float[8][8];
+	// Encode a scan from the coefficient buffers. Single component scans cover only the blocks
+	// within the component, otherwise all the blocks of each MCU are encoded.
+	private void encodeScan(HuffmanEncoder encoder, int[] components, int Ss, int Se, int imageWidth, int imageHeight) throws Exception {
+		int[] block = new int[64];
+		encoder.setRestartInterval(restartInterval);
 		
-		for(int i = x, index = 0; i < 8 + x; i++, index++) {
-			System.arraycopy(component[i], y, block[index], 0, 8);
+		if(components.length == 1) {
+			int k = components[0];
+			int width = ((imageWidth*hSampFactor[k] + maxHSampFactor - 1)/maxHSampFactor + 7)>>3;
+			int height = ((imageHeight*vSampFactor[k] + maxVSampFactor - 1)/maxVSampFactor + 7)>>3;
+			for(int by = 0; by < height; by++) {
+				for(int bx = 0; bx < width; bx++) {
+					encoder.startMCU();
+					encodeBlock(encoder, block, k, bx, by, Ss, Se);
+				}
+			}
+		} else {
+			int mcusPerLine = newWidth/(maxHSampFactor<<3);
+			int mcusPerColumn = newHeight/(maxVSampFactor<<3);
+			for(int i = 0; i < mcusPerColumn; i++) {
+				for(int j = 0; j < mcusPerLine; j++) {
+					encoder.startMCU();
+					for(int k : components) {
+						for(int v = 0; v < vSampFactor[k]; v++) {
+							for(int h = 0; h < hSampFactor[k]; h++)
+								encodeBlock(encoder, block, k, j*hSampFactor[k] + h, i*vSampFactor[k] + v, Ss, Se);
+						}
+					}
+				}
+			}
 		}
 		
-		return block;
+		encoder.finish();
+	}
+	
+	// Encode spectral band Ss through Se of a block from the coefficient buffers
+	private void encodeBlock(HuffmanEncoder encoder, int[] block, int component, int bx, int by, int Ss, int Se) throws Exception {
+		short[] coef = coefficients[component];
+		
+		for(int i = 0, index = (by*blocksPerLine[component] + bx)<<6; i < 64; i++)
+			block[i] = coef[index++];
+		
+		if(Ss == 0 && Se == 63)
+			encoder.encode(block, component);
+		else if(Se == 0)
+			encoder.encodeDC(block, component);
+		else
+			encoder.encodeAC(block, Ss, Se, component);
+	}
+	
+	// Encode a row of MCUs held by the sample buffers, the first rows of them are filled with image data.
+	// The planes are either the sample buffers or the buffers for the subsampled components.
+	private void encodeMCURow(HuffmanEncoder encoder, int[] block, int[][] samples, int[][] planes, int imageWidth, int rows, int mcuRow) throws Exception {
+		int mcuWidth = maxHSampFactor<<3;
+		int mcuHeight = maxVSampFactor<<3;
+		// Expand the samples to make them a multiple of the MCU size in both directions
+		for(int k = 0; k < numOfComponents; k++) {
+			int[] component = samples[k];
+			if(newWidth > imageWidth) {
+				for(int i = 0, offset = 0; i < rows; i++, offset += newWidth)
+					Arrays.fill(component, offset + imageWidth, offset + newWidth, component[offset + imageWidth - 1]);
+			}
+			for(int i = rows; i < mcuHeight; i++)
+				System.arraycopy(component, (rows - 1)*newWidth, component, i*newWidth, newWidth);
+			if(planes[k] != component)
+				downSample(component, planes[k], maxVSampFactor/vSampFactor[k], mcuHeight);
+		}
+		
+		for(int j = 0, mcu = 0; j < newWidth; j += mcuWidth, mcu++) {
+			if(encoder != null)
+				encoder.startMCU();
+			for(int k = 0; k < numOfComponents; k++) {
+				int stride = newWidth*hSampFactor[k]/maxHSampFactor;
+				int offset = j*hSampFactor[k]/maxHSampFactor;
+				for(int v = 0; v < vSampFactor[k]; v++, offset += (stride<<3)) {
+					for(int h = 0; h < hSampFactor[k]; h++)
+						encodeBlock(encoder, block, planes[k], offset + (h<<3), stride, k, mcu*hSampFactor[k] + h, mcuRow*vSampFactor[k] + v);
+				}
+			}
+		}
+	}
+	
+	// Down-sample by 2 horizontally and by vFactor (1 or 2) vertically with alternating rounding bias
+	private void downSample(int[] src, int[] dest, int vFactor, int height) {
+		int destWidth = newWidth>>1;
+		
+		for(int i = 0, index = 0; i < height; i += vFactor) {
+			int offset = i*newWidth;
+			if(vFactor == 2) {
+				for(int j = 0, bias = 1; j < destWidth; j++, offset += 2, bias ^= 3)
+					dest[index++] = (src[offset] + src[offset + 1] + src[offset + newWidth] + src[offset + newWidth + 1] + bias)>>2;
+			} else {
+				for(int j = 0, bias = 0; j < destWidth; j++, offset += 2, bias ^= 1)
+					dest[index++] = (src[offset] + src[offset + 1] + bias)>>1;
+			}
+		}
 	}
 	
 	public byte[] getCMYK_ICC_Profile() {
@@ -151,6 +341,21 @@ public class JPGWriter extends ImageWriter {
 			colorSpace = jpegOptions.getColorSpace();
 			isTiffFlavor = jpegOptions.isTiffFlavor();
 			writeICCProfile = jpegOptions.writeICCProfile();
+			subsampling = jpegOptions.getSubsampling();
+			progressive = jpegOptions.isProgressive();
+			// The standard tables don't have the end of band run codes needed by progressive JPEG
+			optimizeCoding = jpegOptions.isOptimizeCoding() || progressive;
+			restartInterval = jpegOptions.getRestartInterval();
+		}
+		// Optimized tables can't be written separately from the image
+		if(!includeTables)
+			optimizeCoding = progressive = false;
+		if(!grayScale) {
+			if(colorSpace != JPGOptions.COLOR_SPACE_YCbCr && colorSpace != JPGOptions.COLOR_SPACE_RGB &&
+					colorSpace != JPGOptions.COLOR_SPACE_CMYK && colorSpace != JPGOptions.COLOR_SPACE_YCCK)
+				throw new IllegalArgumentException("Unsupported color space type: " + colorSpace);
+			if(colorSpace == JPGOptions.COLOR_SPACE_YCCK && isTiffFlavor)
+				throw new UnsupportedOperationException("YCCK JPEG is not supported in TIFF!");
 		}
 		if(colorSpace == JPGOptions.COLOR_SPACE_CMYK || colorSpace == JPGOptions.COLOR_SPACE_YCCK) {
 			numOfComponents = 4;
@@ -163,27 +368,98 @@ public class JPGWriter extends ImageWriter {
 			numOfQTables = 1;
 			numOfHTables = 1;
 		}
+		// Only chroma components are subsampled, luma and black (YCCK) keep full resolution
+		maxHSampFactor = maxVSampFactor = 1;
+		if(!grayScale && (colorSpace == JPGOptions.COLOR_SPACE_YCbCr || colorSpace == JPGOptions.COLOR_SPACE_YCCK)) {
+			if(subsampling == JPGConsts.SUBSAMPLING_422) {
+				maxHSampFactor = 2;
+			} else if(subsampling == JPGConsts.SUBSAMPLING_420) {
+				maxHSampFactor = 2;
+				maxVSampFactor = 2;
+			}
+		}
+		hSampFactor = new int[] {maxHSampFactor, 1, 1, maxHSampFactor};
+		vSampFactor = new int[] {maxVSampFactor, 1, 1, maxVSampFactor};
 		// Set tables (Could be custom ones)
-		setDefaultTables(quality);	
-	}
-	
-	// Convert RGB to separate R, G, B with level shift (minus 128)
-	private void RGB2RGB(int[] rgb, float[][] r, float[][] g, float[][] b, int imageWidth, int imageHeight) throws Exception {
-		// TODO: Add down-sampling
-		int red,green,blue, index = 0;
-	
-		for(int i = 0; i < imageHeight; i++) {
-			for(int j = 0; j < imageWidth; j++) {
-				red = ((rgb[index] >> 16) & 0xff);
-				green = ((rgb[index] >> 8) & 0xff);
-				blue = (rgb[index++] & 0xff);
-				r[i][j] = red - 128.0f;
-				g[i][j] = green - 128.0f;
-				b[i][j] = blue - 128.0f;
+		setDefaultTables(quality);
+		// The integer DCT output is scaled up by 8
+		for(int i = 0; i < numOfQTables; i++) {
+			for(int j = 0; j < 64; j++)
+				divisors[i][j] = quant_table[i][j]<<3;
+		}
+	}
+	
+	// Gather symbol statistics from the coefficient buffers and replace the Huffman tables with optimal ones
+	private void optimizeTables(int[][] scans, int imageWidth, int imageHeight) throws Exception {
+		int[][] dcFreq = new int[numOfComponents][257];
+		int[][] acFreq = new int[numOfComponents][257];
+		
+		for(int[] scan : scans) {
+			HuffmanEncoder encoder = new HuffmanEncoder(null, 1);
+			encoder.setStatistics(dcFreq, acFreq);
+			encodeScan(encoder, Arrays.copyOfRange(scan, 2, scan.length), scan[0], scan[1], imageWidth, imageHeight);
+		}
+		// Components sharing the same tables are counted together
+		for(int i = 0; i < numOfHTables; i++) {
+			int[] dc = new int[257];
+			int[] ac = new int[257];
+			for(int k = 0; k < numOfComponents; k++) {
+				if(qTableSelector[k] != i) continue;
+				for(int j = 0; j < 257; j++) {
+					dc[j] += dcFreq[k][j];
+					ac[j] += acFreq[k][j];
+				}
 			}
+			HuffmanTbl huffTbl = HuffmanTbl.generateOptimalTable(dc);
+			huffman_bits[0][i] = huffTbl.getBitsTable();
+			huffman_values[0][i] = huffTbl.getValueTable();
+			huffTbl = HuffmanTbl.generateOptimalTable(ac);
+			huffman_bits[1][i] = huffTbl.getBitsTable();
+			huffman_values[1][i] = huffTbl.getValueTable();
 		}
 	}
 	
+	// Scans to write, each one as {Ss, Se, component...}
+	private int[][] getScans() {
+		int[] all = new int[numOfComponents];
+		for(int k = 0; k < numOfComponents; k++)
+			all[k] = k;
+		
+		if(!progressive)
+			return new int[][] {concat(new int[] {0, 63}, all)};
+		// Interleaved DC first, then low and high frequency bands for luma (and black), single band for chroma
+		int[][] scans = new int[1 + numOfComponents*2][];
+		int count = 0;
+		scans[count++] = concat(new int[] {0, 0}, all);
+		for(int k = 0; k < numOfComponents; k++) {
+			if(qTableSelector[k] == 0 || k == 3) {
+				scans[count++] = new int[] {1, 5, k};
+				scans[count++] = new int[] {6, 63, k};
+			} else {
+				scans[count++] = new int[] {1, 63, k};
+			}
+		}
+		
+		return Arrays.copyOf(scans, count);
+	}
+	
+	private static int[] concat(int[] a, int[] b) {
+		int[] result = Arrays.copyOf(a, a.length + b.length);
+		System.arraycopy(b, 0, result, a.length, b.length);
+		return result;
+	}
+	
+	/**
+	 * Set the executor used to encode bands of the image concurrently. Restart
+	 * markers are written between the bands. Set to null to encode on the
+	 * calling thread. The executor is not shut down by this writer.
+	 * 
+	 * @param executor ExecutorService to run the encoding tasks
+	 */
+	public void setExecutorService(ExecutorService executor) {
+		this.executor = executor;
+	}
+	
 	// TODO: find a way to use different tables if CMYK or RGB color space is used
 	// May need to change HuffmanEncoder accordingly.
 	private void setDefaultTables(int quality) {
@@ -217,6 +493,45 @@ public class JPGWriter extends ImageWriter {
         writeComment(comment, os);
       	// Write creation time comment
      	writeComment("Created on " + new SimpleDateFormat("yyyy:MM:dd HH:mm:ss z").format(new Date()), os);	
+     	int mcuWidth = maxHSampFactor<<3;
+		int mcuHeight = maxVSampFactor<<3;
+		newWidth = (imageWidth + mcuWidth - 1)/mcuWidth*mcuWidth;
+		newHeight = (imageHeight + mcuHeight - 1)/mcuHeight*mcuHeight;
+		
+		int mcusPerLine = newWidth/mcuWidth;
+		int mcuRows = newHeight/mcuHeight;
+		// Rows of MCUs in a band for parallel encoding
+		int bandRows = 0;
+		
+		if(executor != null) {
+			if(optimizeCoding) {
+				// Only the first pass is done in parallel, any restart interval works
+				bandRows = Math.max(1, (mcuRows + 63)/64);
+			} else {
+				// Each band makes up a restart interval
+				bandRows = Math.max(1, restartInterval/mcusPerLine);
+				if(bandRows*mcusPerLine > 0xffff)
+					bandRows = Math.max(1, 0xffff/mcusPerLine);
+				restartInterval = bandRows*mcusPerLine;
+			}
+		}
+		
+		int[][] scans = getScans();
+		
+		if(optimizeCoding) {
+			// First pass: keep the quantized coefficients and work out the Huffman tables
+			coefficients = new short[numOfComponents][];
+			blocksPerLine = new int[numOfComponents];
+			for(int k = 0; k < numOfComponents; k++) {
+				blocksPerLine[k] = newWidth*hSampFactor[k]/maxHSampFactor>>3;
+				coefficients[k] = new short[blocksPerLine[k]*(newHeight*vSampFactor[k]/maxVSampFactor>>3)<<6];
+			}
+			if(executor != null)
+				writeBands(pixels, null, imageWidth, imageHeight, mcuRows, bandRows);
+			else
+				encodeBand(null, pixels, imageWidth, imageHeight, 0, mcuRows);
+			optimizeTables(scans, imageWidth, imageHeight);
+		}
      	// Write JPEG tables if needed (for TIFF Technote2, JPEG tables can be written separately)
         if(includeTables) {	     	   
 			// Write DQT
@@ -224,15 +539,33 @@ public class JPGWriter extends ImageWriter {
 			// Write DHT
 			writeDHT(os);
         }
-        // Write SOF0
-        writeSOF0(os, imageWidth, imageHeight);	
-        // Write SOS
-        writeSOS(os);
-        // Write actual image stream
-       	if(grayScale)		
-			writeGrayScale(IMGUtils.rgb2grayscale(pixels, imageWidth, imageHeight), os, imageWidth, imageHeight);
-		else
-			writeFullColor(pixels, os, imageWidth, imageHeight);   
+        // Write SOF0 or SOF2
+        writeSOF(os, imageWidth, imageHeight);
+        // Write DRI
+        if(restartInterval > 0)
+        	writeDRI(os);
+        
+        if(optimizeCoding) {
+        	// Second pass: write the scans from the coefficient buffers
+        	for(int[] scan : scans) {
+        		int[] components = Arrays.copyOfRange(scan, 2, scan.length);
+        		writeSOS(os, components, scan[0], scan[1]);
+        		encodeScan(createEncoder(os), components, scan[0], scan[1], imageWidth, imageHeight);
+        	}
+        	coefficients = null;
+        } else {
+        	// Write SOS
+        	writeSOS(os, Arrays.copyOfRange(scans[0], 2, scans[0].length), 0, 63);
+        	// Write actual image stream
+        	if(executor != null) {
+        		writeBands(pixels, os, imageWidth, imageHeight, mcuRows, bandRows);
+        	} else {
+        		HuffmanEncoder encoder = createEncoder(os);
+        		encoder.setRestartInterval(restartInterval);
+        		encodeBand(encoder, pixels, imageWidth, imageHeight, 0, mcuRows);
+        		encoder.finish();
+        	}
+        }
        	// Write EOI marker
         writeEOI(os);        
     }
@@ -354,32 +687,10 @@ public class JPGWriter extends ImageWriter {
 		os.write(EOI);
 	}
 	
-	private void writeGrayScale(float[][] pixels, OutputStream os, int imageWidth, int imageHeight) throws Exception {
-		// Expand image if needed
-		pixels = expandArray(pixels, imageWidth, imageHeight);
+	private void writeDRI(OutputStream os) throws Exception {
+		byte[] data = new byte[] {(byte)(restartInterval>>8), (byte)restartInterval};
 		
-		// DCT transform and Huffman encoding
-		HuffmanEncoder encoder = new HuffmanEncoder(os, 4096);
-		// If we are going to use custom encoder tables, call encoder.setEncodingTables() here before
-		// calling encoder.initialize() which will skip the default encoding tables generation
-		encoder.initialize();
-		
-		for(int i = 0; i < newHeight; i+=8) {
-			for(int j = 0; j < newWidth; j+=8) {
-			    float[][] block = getDCTBlock(pixels, i, j);
-				// DCT transform
-				block = DCT.forwardDCT(block);
-				int[] unzigzagBlock = new int[64];
-				// Natural order block and quantization
-				for(int k = 0, index = 0; k < 8; k++) {
-					for(int l = 0; l < 8; l++, index++) 
-						unzigzagBlock[index] = (int)block[k][l]/quant_table[0][index];
-				}				
-				encoder.encode(unzigzagBlock, 0);								
-			}
-		}
-		
-		encoder.finish();
+		new Segment(Marker.DRI, data.length + 2, data).write(os);
 	}
 	
 	private void writeICCProfile(OutputStream os) throws Exception {
@@ -411,58 +722,154 @@ public class JPGWriter extends ImageWriter {
 		}
 	}
 	
-	// Write actual image data
-	private void writeFullColor(int[] pixels, OutputStream os, int imageWidth, int imageHeight) throws Exception {
-		// Create arrays according to number of color components
-		float[][][] c = new float[numOfComponents][imageHeight][imageWidth];		
-		// Determine the color space to use
-		if(colorSpace == JPGOptions.COLOR_SPACE_YCbCr) {
-			// RGB to YCbCr transform
-			IMGUtils.RGB2YCbCr(pixels, c[0], c[1], c[2], imageWidth, imageHeight);
-		} else if(colorSpace == JPGOptions.COLOR_SPACE_RGB) {
-			// RGB to separate R, G, B transform with level shifting
-			RGB2RGB(pixels, c[0], c[1], c[2], imageWidth, imageHeight);
-		} else if(colorSpace == JPGOptions.COLOR_SPACE_CMYK) {
-			if(!isTiffFlavor) // All the software tends to believe JPEG CMYK is inverted!
-				IMGUtils.RGB2CMYK_Inverted(cmykColorSpace, pixels, c[0], c[1], c[2], c[3], imageWidth, imageHeight);
+	// Transform and encode MCU rows firstRow to lastRow (exclusive). If there is no encoder,
+	// the quantized coefficients are saved in the coefficient buffers instead.
+	private void encodeBand(HuffmanEncoder encoder, int[] pixels, int imageWidth, int imageHeight, int firstRow, int lastRow) throws Exception {
+		int mcuHeight = maxVSampFactor<<3;
+		// Level shifted samples for one MCU row
+		int[][] samples = new int[numOfComponents][newWidth*mcuHeight];
+		// Subsampled components get their own smaller planes
+		int[][] planes = new int[numOfComponents][];
+		for(int k = 0; k < numOfComponents; k++) {
+			if(hSampFactor[k] < maxHSampFactor || vSampFactor[k] < maxVSampFactor)
+				planes[k] = new int[samples[k].length*hSampFactor[k]*vSampFactor[k]/(maxHSampFactor*maxVSampFactor)];
 			else
-				IMGUtils.RGB2CMYK(cmykColorSpace, pixels, c[0], c[1], c[2], c[3], imageWidth, imageHeight);
-		} else if(colorSpace == JPGOptions.COLOR_SPACE_YCCK) {
-			if(!isTiffFlavor) // All the software tends to believe JPEG YCCK is inverted!
-				IMGUtils.RGB2YCCK_Inverted(cmykColorSpace, pixels, c[0], c[1], c[2], c[3], imageWidth, imageHeight);
+				planes[k] = samples[k];
+		}
+		// CMYK conversion is done with the ICC profile on strips of the image
+		ColorConvertOp cco = null;
+		int[] strip = null;
+		if(numOfComponents == 4) {
+			cco = new ColorConvertOp(ColorSpace.getInstance(ColorSpace.CS_sRGB), cmykColorSpace, null);
+			strip = new int[imageWidth*mcuHeight];
+		}
+		// Work block reused for all the 8x8 blocks
+		int[] block = new int[64];
+		
+		for(int mcuRow = firstRow; mcuRow < lastRow; mcuRow++) {
+			int y = mcuRow*mcuHeight;
+			int rows = Math.min(mcuHeight, imageHeight - y);
+			if(grayScale)
+				RGB2GraySamples(pixels, samples, y, imageWidth, rows);
+			else if(numOfComponents == 4)
+				CMYK2Samples(cco, pixels, strip, samples, y, imageWidth, rows);
 			else
-				throw new UnsupportedOperationException("YCCK JPEG is not supported in TIFF!");
-		} else {
-			throw new IllegalArgumentException("Unsupported color space type: " + colorSpace);
-		}		
-		// Expand image if needed
-		for(int i = 0; i < numOfComponents; i++)
-			c[i] = expandArray(c[i], imageWidth, imageHeight);
-		// DCT transform and Huffman encoding
-		HuffmanEncoder encoder = new HuffmanEncoder(os, 4096);
-		// If we are going to use custom encoder tables, call encoder.setEncodingTables() here before
-		// calling encoder.prepare() which will skip the default encoding tables generation
-		encoder.initialize();
+				RGB2Samples(pixels, samples, y, imageWidth, rows);
+			encodeMCURow(encoder, block, samples, planes, imageWidth, rows, mcuRow);
+		}
+	}
+	
+	// Transform and encode bands of MCU rows concurrently. The encoded bands are written out in order
+	// separated by restart markers. If the output stream is null, the coefficients are saved instead.
+	private void writeBands(int[] pixels, OutputStream os, int imageWidth, int imageHeight, int mcuRows, int bandRows) throws Exception {
+		int numOfBands = (mcuRows + bandRows - 1)/bandRows;
+		// Limit the number of encoded bands waiting to be written
+		int window = Runtime.getRuntime().availableProcessors()*2;
+		Queue<Future<byte[]>> futures = new ArrayDeque<Future<byte[]>>();
+		int submitted = 0;
 		
-		for(int i = 0; i < newHeight; i+=8) {
-			for(int j = 0; j < newWidth; j+=8) {
-			   for(int k = 0; k < numOfComponents; k++) {
-				   int[] q = quant_table[qTableSelector[k]];
-				   float[][] block = getDCTBlock(c[k], i, j);
-				   // DCT transform
-				   block = DCT.forwardDCT(block);
-				   int[] unzigzagBlock = new int[64];
-				   // Natural order block and quantization
-				   for(int l = 0, index = 0; l < 8; l++) {
-					   for(int m = 0; m < 8; m++, index++) 
-						   unzigzagBlock[index] = (int)block[l][m]/q[index];
-				   }				
-				   encoder.encode(unzigzagBlock, k);
-			   }		
+		try {
+			for(int band = 0; band < numOfBands; band++) {
+				for(; submitted < numOfBands && submitted < band + window; submitted++)
+					futures.add(executor.submit(new BandEncoder(pixels, imageWidth, imageHeight, submitted*bandRows,
+							Math.min(mcuRows, (submitted + 1)*bandRows), os == null)));
+				byte[] data;
+				try {
+					data = futures.remove().get();
+				} catch(ExecutionException ex) {
+					Throwable cause = ex.getCause();
+					if(cause instanceof Exception)
+						throw (Exception)cause;
+					throw ex;
+				}
+				if(os != null) {
+					if(band > 0) { // RSTn marker
+						os.write(0xFF);
+						os.write(0xD0 + ((band - 1)&0x07));
+					}
+					os.write(data);
+				}
 			}
+		} finally {
+			for(Future<byte[]> future : futures)
+				future.cancel(true);
 		}
+	}
+	
+	// Convert rows of the image to level shifted luma samples
+	private void RGB2GraySamples(int[] pixels, int[][] samples, int y, int imageWidth, int rows) {
+		int[] gray = samples[0];
 		
-		encoder.finish();
+		for(int i = 0, index = y*imageWidth; i < rows; i++) {
+			for(int j = 0, offset = i*newWidth; j < imageWidth; j++, offset++) {
+				int rgb = pixels[index++];
+				// Luma method, same as IMGUtils.rgb2grayscale
+				gray[offset] = ((((rgb>>16)&0xff)*13933 + ((rgb>>8)&0xff)*46871 + (rgb&0xff)*4732 + 32768)>>16) - 128;
+			}
+		}
+	}
+	
+	// Convert rows of the image to CMYK or YCCK samples with level shift
+	private void CMYK2Samples(ColorConvertOp cco, int[] pixels, int[] strip, int[][] samples, int y, int imageWidth, int rows) {
+		System.arraycopy(pixels, y*imageWidth, strip, 0, imageWidth*rows);
+		WritableRaster raster = Raster.createPackedRaster(new DataBufferInt(strip, imageWidth*rows), imageWidth, rows, imageWidth, new int[] {0x00ff0000, 0x0000ff00, 0x000000ff}, null);
+		BufferedImage rgbImage = new BufferedImage(new DirectColorModel(24, 0x00ff0000, 0x0000ff00, 0x000000ff), raster, false, null);
+		byte[] cmyk = (byte[])cco.filter(rgbImage, null).getRaster().getDataElements(0, 0, imageWidth, rows, null);
+		// All the software tends to believe JPEG CMYK and YCCK are inverted!
+		boolean inverted = !isTiffFlavor;
+		
+		for(int i = 0, index = 0; i < rows; i++) {
+			for(int j = 0, offset = i*newWidth; j < imageWidth; j++, offset++) {
+				int c = cmyk[index++]&0xff;
+				int m = cmyk[index++]&0xff;
+				int ye = cmyk[index++]&0xff;
+				int k = cmyk[index++]&0xff;
+				if(colorSpace == JPGOptions.COLOR_SPACE_YCCK) {
+					// YCbCr of the inverted C, M, Y
+					c = 255 - c;
+					m = 255 - m;
+					ye = 255 - ye;
+					samples[0][offset] = 128 - ((c*19595 + m*38470 + ye*7471 + 32768)>>16);
+					samples[1][offset] = -((-c*11059 - m*21709 + ye*32768 + 32768)>>16);
+					samples[2][offset] = -((c*32768 - m*27439 - ye*5329 + 32768)>>16);
+					samples[3][offset] = 128 - k;
+				} else if(inverted) {
+					samples[0][offset] = 128 - c;
+					samples[1][offset] = 128 - m;
+					samples[2][offset] = 128 - ye;
+					samples[3][offset] = 128 - k;
+				} else {
+					samples[0][offset] = c - 128;
+					samples[1][offset] = m - 128;
+					samples[2][offset] = ye - 128;
+					samples[3][offset] = k - 128;
+				}
+			}
+		}
+	}
+	
+	// Convert rows of the image to YCbCr or separate R, G, B samples with level shift
+	private void RGB2Samples(int[] pixels, int[][] samples, int y, int imageWidth, int rows) {
+		int[] c0 = samples[0], c1 = samples[1], c2 = samples[2];
+		boolean ycc = (colorSpace == JPGOptions.COLOR_SPACE_YCbCr);
+		
+		for(int i = 0, index = y*imageWidth; i < rows; i++) {
+			for(int j = 0, offset = i*newWidth; j < imageWidth; j++, offset++) {
+				int rgb = pixels[index++];
+				int red = (rgb>>16)&0xff;
+				int green = (rgb>>8)&0xff;
+				int blue = rgb&0xff;
+				if(ycc) { // 16 bit fixed point RGB to YCbCr transform
+					c0[offset] = ((red*19595 + green*38470 + blue*7471 + 32768)>>16) - 128;
+					c1[offset] = (-red*11059 - green*21709 + blue*32768 + 32768)>>16;
+					c2[offset] = (red*32768 - green*27439 - blue*5329 + 32768)>>16;
+				} else {
+					c0[offset] = red - 128;
+					c1[offset] = green - 128;
+					c2[offset] = blue - 128;
+				}
+			}
+		}
 	}
 	
 	private void writeJFIF(OutputStream os) throws Exception {
@@ -523,13 +930,13 @@ public class JPGWriter extends ImageWriter {
 		writeEOI(os);		
 	}
 	
-	private void writeSOF0(OutputStream os, int imageWidth, int imageHeight) throws Exception {
-		// SOF0 segment
+	private void writeSOF(OutputStream os, int imageWidth, int imageHeight) throws Exception {
+		// SOF0 or SOF2 segment
 		int length = 8 + 3*numOfComponents;
 		byte SOF[] = new byte[length + 2];
-	    // Marker: 0xffc0
+	    // Marker: 0xffc0 (baseline) or 0xffc2 (progressive)
 		SOF[0] = (byte) 0xFF;
-		SOF[1] = (byte) 0xC0;
+		SOF[1] = (byte) (progressive? 0xC2 : 0xC0);
 		// Write length
 		SOF[2] = (byte) (length >> 8);
 		SOF[3] = (byte) length;
@@ -547,7 +954,7 @@ public class JPGWriter extends ImageWriter {
 		
 		for(int i = 0; i < numOfComponents; i++) {
 			SOF[offset++] = (byte) (i+1);
-			SOF[offset++] = (byte) ((1 << 4) + 1);
+			SOF[offset++] = (byte) ((hSampFactor[i] << 4) + vSampFactor[i]);
 			SOF[offset++] = (byte) qTableSelector[i];
 		}
 		
@@ -560,28 +967,28 @@ public class JPGWriter extends ImageWriter {
 		os.write(SOI);
 	}
 	
-	private void writeSOS(OutputStream os) throws Exception {
-		//
-		int length = 6 + 2*numOfComponents;		
+	// Write SOS for the components with spectral selection Ss through Se
+	private void writeSOS(OutputStream os, int[] components, int Ss, int Se) throws Exception {
+		int length = 6 + 2*components.length;		
 		byte SOS[] = new byte[length + 2];
 		
 		SOS[0] = (byte) 0xFF;
 		SOS[1] = (byte) 0xDA;
 		SOS[2] = (byte) (length >> 8);
 		SOS[3] = (byte) length;
-		SOS[4] = (byte) numOfComponents;
+		SOS[4] = (byte) components.length;
 		
 		int offset = 5;
 		
-		for(int i = 0; i < numOfComponents; i++) {
+		for(int i : components) {
 			SOS[offset++] = (byte) (i+1);
 			SOS[offset++] = (byte) ((qTableSelector[i] << 4) + qTableSelector[i]);
 		}
 		
-        SOS[offset++] = (byte) 0;
-        SOS[offset++] = (byte) 63;
-        SOS[offset++] = (byte) 0;
+        SOS[offset++] = (byte) Ss;
+        SOS[offset++] = (byte) Se;
+        SOS[offset++] = (byte) 0; // No successive approximation
         
         os.write(SOS);
 	}
-}
+}
\ No newline at end of file
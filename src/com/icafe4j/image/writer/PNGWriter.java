@@ -14,18 +14,31 @@
  *
  * Who   Date       Description
  * ====  =======    =================================================
+ * AG    17Oct2026  Made banded dithering opt-in through setBandedDither()
+ * AG    17Oct2026  Dither indexed images concurrently through setExecutorService()
+ * AG    17Oct2026  Single pass adaptive filter selection with entropy and brute force strategies
+ * AG    17Oct2026  Added concurrent IDAT compression through setExecutorService()
  * WY    21Jun2015  Removed copyright notice from generated PNG images
  * WY    01Mar2014  Added apply_adamptive_filter method
  */
 
 package com.icafe4j.image.writer;
 
+import java.io.ByteArrayOutputStream;
 import java.io.OutputStream;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.List;
+import java.util.Queue;
 import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.Adler32;
+import java.util.zip.Deflater;
 
 import com.icafe4j.image.ImageColorType;
 import com.icafe4j.image.ImageParam;
@@ -44,13 +57,19 @@ import com.icafe4j.image.png.PNGTweaker;
 import com.icafe4j.image.png.TIMEBuilder;
 import com.icafe4j.image.png.TRNSBuilder;
 import com.icafe4j.image.png.TextBuilder;
-import com.icafe4j.image.quant.DitherMethod;
 import com.icafe4j.image.util.IMGUtils;
 import com.icafe4j.io.IOUtils;
 import com.icafe4j.util.ArrayUtils;
 
 /** 
  * PNG image writer
+ * <p>
+ * If an {@link ExecutorService} is set, the filtered scan lines are split into
+ * pieces of about 128K which are deflated concurrently, each one primed with
+ * the last 32K of the preceding scan lines as preset dictionary. The pieces
+ * are written out in order as IDAT chunks forming a single zlib stream.
+ * Indexed images can be error diffusion dithered in concurrent bands as well,
+ * see {@link #setBandedDither(boolean)}.
  *
  * @author Wen Yu, yuwen_66@yahoo.com
  * @version 1.0 04/29/2013
@@ -60,9 +79,18 @@ public class PNGWriter extends ImageWriter {
 	boolean isApplyAdaptiveFilter = false;	
 	int filterType = Filter.NONE;		
 	int compressionLevel = 4;
+	int filterStrategy = PNGOptions.FILTER_STRATEGY_MSAD;
 	ImageParam imageParam;
 	// A collection of chunks representing the PNG image.
 	private List<Chunk> chunks = new ArrayList<Chunk>(10);
+	// IDAT data is deflated in pieces concurrently if set
+	private ExecutorService executor;
+	// Error diffusion dither in bands on the executor
+	private boolean bandedDither;
+	
+	// Uncompressed bytes per piece and preset dictionary size for concurrent compression
+	private static final int PIECE_SIZE = 128*1024;
+	private static final int DICTIONARY_SIZE = 32*1024;
 	
 	/** PNG signature constant */
     private static final long SIGNATURE = 0x89504E470D0A1A0AL;
@@ -73,51 +101,166 @@ public class PNGWriter extends ImageWriter {
     	super(param);
     }
 	
-	// Apply dynamic filtering by "the minimum sum of absolute differences" (MSAD) heuristic 
-	private static void apply_adaptive_filter(int[] filter_type, byte[] pixBytes, int height, int bytesPerPixel, int bytesPerScanLine) {
-		// keep track of the current row
-		byte[] tempRow = new byte[bytesPerScanLine];
-		byte[] filteredRow = new byte[bytesPerScanLine];
+	// Deflate scan lines firstRow to lastRow (exclusive) as a piece of the zlib stream. Scan lines preceding
+	// the piece are set as preset dictionary and the piece ends on a byte boundary with a SYNC_FLUSH, so the
+	// pieces can be concatenated. Only the last piece finishes the deflate stream.
+	private class DeflateTask implements Callable<byte[]> {
+		private byte[] pixels;
+		private int[] filter_type;
+		private int bytesPerScanLine;
+		private int firstRow;
+		private int lastRow;
+		private boolean last;
+		// Adler-32 checksum and length of the uncompressed piece
+		private long adler;
+		private int length;
+		
+		DeflateTask(byte[] pixels, int[] filter_type, int bytesPerScanLine, int firstRow, int lastRow, boolean last) {
+			this.pixels = pixels;
+			this.filter_type = filter_type;
+			this.bytesPerScanLine = bytesPerScanLine;
+			this.firstRow = firstRow;
+			this.lastRow = lastRow;
+			this.last = last;
+		}
 		
-		for (int j = height - 1, offset = pixBytes.length - bytesPerScanLine; j >= 0; j--, offset -= bytesPerScanLine) {
-			System.arraycopy(pixBytes, offset, tempRow, 0, bytesPerScanLine);
-			
-			Filter.filter_sub(bytesPerPixel, bytesPerScanLine, pixBytes, offset);
-			int sum = calculateMSAD(pixBytes, offset, bytesPerScanLine);
-			filter_type[j] = Filter.SUB;
-			System.arraycopy(pixBytes, offset, filteredRow, 0, bytesPerScanLine);
+		public byte[] call() throws Exception {
+			int lineLen = bytesPerScanLine + 1;
+			int dictRows = Math.min(firstRow, (DICTIONARY_SIZE + lineLen - 1)/lineLen);
+			int startRow = firstRow - dictRows;
+			byte[] input = new byte[(lastRow - startRow)*lineLen];
 			
-			System.arraycopy(tempRow, 0, pixBytes, offset, bytesPerScanLine);			
-			Filter.filter_up(bytesPerScanLine, pixBytes, offset);
-			int newSum = calculateMSAD(pixBytes, offset, bytesPerScanLine);
-			
-			if(newSum < sum) {
-				sum = newSum;
-				filter_type[j] = Filter.UP;
-				System.arraycopy(pixBytes, offset, filteredRow, 0, bytesPerScanLine);		
+			for(int i = startRow, offset = 0; i < lastRow; i++, offset += lineLen) {
+				input[offset] = (byte)filter_type[i];
+				System.arraycopy(pixels, i*bytesPerScanLine, input, offset + 1, bytesPerScanLine);
 			}
 			
-			System.arraycopy(tempRow, 0, pixBytes, offset, bytesPerScanLine);
-			Filter.filter_average(bytesPerPixel, bytesPerScanLine, pixBytes, offset);
-			newSum = calculateMSAD(pixBytes, offset, bytesPerScanLine);
+			int start = dictRows*lineLen;
+			length = input.length - start;
 			
-			if(newSum < sum) {
-				sum = newSum;
-				filter_type[j] = Filter.AVERAGE;
-				System.arraycopy(pixBytes, offset, filteredRow, 0, bytesPerScanLine);
-			}
+			Adler32 checksum = new Adler32();
+			checksum.update(input, start, length);
+			adler = checksum.getValue();
 			
-			System.arraycopy(tempRow, 0, pixBytes, offset, bytesPerScanLine);			
-			Filter.filter_paeth(bytesPerPixel, bytesPerScanLine, pixBytes, offset);
-			newSum = calculateMSAD(pixBytes, offset, bytesPerScanLine);
+			ByteArrayOutputStream bout = new ByteArrayOutputStream(4096);
+			byte[] buffer = new byte[4096];
+			Deflater deflater = new Deflater(compressionLevel, true);
 			
-			if(newSum < sum) {
-				sum = newSum;
-				filter_type[j] = Filter.PAETH;
-				System.arraycopy(pixBytes, offset, filteredRow, 0, bytesPerScanLine);
+			try {
+				if(start > 0) {
+					int dictLen = Math.min(DICTIONARY_SIZE, start);
+					deflater.setDictionary(input, start - dictLen, dictLen);
+				}
+				deflater.setInput(input, start, length);
+				if(last) {
+					deflater.finish();
+					while(!deflater.finished()) {
+						int bytesCompressed = deflater.deflate(buffer);
+						bout.write(buffer, 0, bytesCompressed);
+					}
+				} else {
+					int bytesCompressed;
+					do {
+						bytesCompressed = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+						bout.write(buffer, 0, bytesCompressed);
+					} while(bytesCompressed == buffer.length);
+				}
+			} finally {
+				deflater.end();
 			}
 			
-			System.arraycopy(filteredRow, 0, pixBytes, offset, bytesPerScanLine);         			
+			return bout.toByteArray();
+		}
+	}
+	
+	// Combine the Adler-32 checksums of two consecutive pieces of data, len2 being the length of the second piece
+	private static long adler32Combine(long adler1, long adler2, int len2) {
+		final long BASE = 65521;
+		long rem = len2 % BASE;
+		long sum1 = adler1 & 0xffff;
+		long sum2 = (rem * sum1) % BASE;
+		sum1 += (adler2 & 0xffff) + BASE - 1;
+		sum2 += ((adler1>>16) & 0xffff) + ((adler2>>16) & 0xffff) + BASE - rem;
+		if(sum1 >= BASE) sum1 -= BASE;
+		if(sum1 >= BASE) sum1 -= BASE;
+		if(sum2 >= (BASE<<1)) sum2 -= (BASE<<1);
+		if(sum2 >= BASE) sum2 -= BASE;
+		
+		return sum1 | (sum2<<16);
+	}
+	
+	// Apply dynamic filtering, selecting the filter for each scan line by the given strategy
+	private static void apply_adaptive_filter(int strategy, int compressionLevel, int[] filter_type, byte[] pixBytes, int height, int bytesPerPixel, int bytesPerScanLine) {
+		if(strategy == PNGOptions.FILTER_STRATEGY_BRUTE_FORCE) {
+			apply_brute_force_filter(compressionLevel, filter_type, pixBytes, height, bytesPerPixel, bytesPerScanLine);
+			return;
+		}
+		// Histograms of the filtered bytes for each filter type if entropy is used
+		int[][] histograms = (strategy == PNGOptions.FILTER_STRATEGY_ENTROPY)? new int[5][256] : null;
+		// Going from the bottom up keeps the upper scan line unfiltered
+		for (int j = height - 1, offset = (height - 1)*bytesPerScanLine; j >= 0; j--, offset -= bytesPerScanLine) {
+			filter_type[j] = selectFilter(pixBytes, offset, bytesPerPixel, bytesPerScanLine, histograms);
+			filter(filter_type[j], pixBytes, offset, bytesPerPixel, bytesPerScanLine);
+		}
+	}
+	
+	// Deflate the scan line filtered by each filter type right after the scan lines already done and
+	// keep the filter giving the fewest bytes. Scan lines are processed from the top down, so a copy
+	// of the unfiltered upper scan line is kept.
+	private static void apply_brute_force_filter(int compressionLevel, int[] filter_type, byte[] pixBytes, int height, int bytesPerPixel, int bytesPerScanLine) {
+		int lineLen = bytesPerScanLine + 1;
+		byte[] prior = new byte[bytesPerScanLine]; // All zeros for the first scan line
+		byte[][] candidates = new byte[5][lineLen];
+		// Filtered scan lines so far, the tail of which is used as preset dictionary
+		byte[] history = new byte[DICTIONARY_SIZE*2 + lineLen];
+		int historyLen = 0;
+		byte[] buffer = new byte[4096];
+		Deflater deflater = new Deflater(compressionLevel, true);
+		
+		try {
+			for (int j = 0, offset = 0; j < height; j++, offset += bytesPerScanLine) {
+				for (int i = 0, k = 1; i < bytesPerScanLine; i++, k++) {
+					int x = pixBytes[offset + i]&0xff;
+					int a = (i < bytesPerPixel)? 0 : pixBytes[offset + i - bytesPerPixel]&0xff;
+					int b = prior[i]&0xff;
+					int c = (i < bytesPerPixel)? 0 : prior[i - bytesPerPixel]&0xff;
+					candidates[Filter.NONE][k] = (byte)x;
+					candidates[Filter.SUB][k] = (byte)(x - a);
+					candidates[Filter.UP][k] = (byte)(x - b);
+					candidates[Filter.AVERAGE][k] = (byte)(x - ((a + b)>>1));
+					candidates[Filter.PAETH][k] = (byte)(x - paethPredictor(a, b, c));
+				}
+				int best = Filter.NONE;
+				int bestSize = Integer.MAX_VALUE;
+				for (int type = Filter.NONE; type <= Filter.PAETH; type++) {
+					candidates[type][0] = (byte)type;
+					deflater.reset();
+					int dictLen = Math.min(DICTIONARY_SIZE, historyLen);
+					if(dictLen > 0) deflater.setDictionary(history, historyLen - dictLen, dictLen);
+					deflater.setInput(candidates[type]);
+					int size = 0;
+					int bytesCompressed;
+					do {
+						bytesCompressed = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+						size += bytesCompressed;
+					} while(bytesCompressed == buffer.length);
+					if(size < bestSize) {
+						bestSize = size;
+						best = type;
+					}
+				}
+				filter_type[j] = best;
+				System.arraycopy(pixBytes, offset, prior, 0, bytesPerScanLine);
+				System.arraycopy(candidates[best], 1, pixBytes, offset, bytesPerScanLine);
+				if(historyLen + lineLen > history.length) {
+					System.arraycopy(history, historyLen - DICTIONARY_SIZE, history, 0, DICTIONARY_SIZE);
+					historyLen = DICTIONARY_SIZE;
+				}
+				System.arraycopy(candidates[best], 0, history, historyLen, lineLen);
+				historyLen += lineLen;
+			}
+		} finally {
+			deflater.end();
 		}
 	}
 	
@@ -125,36 +268,106 @@ public class PNGWriter extends ImageWriter {
 	private static void apply_filter(int[] filter_type, byte[] pixBytes, int height, int bytesPerPixel, int bytesPerScanLine) {
 		//
 		for (int j = height - 1, offset = pixBytes.length - bytesPerScanLine; j >= 0; j--, offset -= bytesPerScanLine) {
-			switch (filter_type[j]) {
-		  		case Filter.NONE:
-		  			break;
-		  		case Filter.SUB:		  			
-		  			Filter.filter_sub(bytesPerPixel, bytesPerScanLine, pixBytes, offset);
-		  			break;
-		  		case Filter.UP:
-		  			Filter.filter_up(bytesPerScanLine, pixBytes, offset);
-		  			break;
-		  		case Filter.AVERAGE:
-		  			Filter.filter_average(bytesPerPixel, bytesPerScanLine, pixBytes, offset);
-		  			break;
-		  		case Filter.PAETH:
-		  			Filter.filter_paeth(bytesPerPixel, bytesPerScanLine, pixBytes, offset);
-		  			break;
-		  		default:
-		  			break;
-            }
+			filter(filter_type[j], pixBytes, offset, bytesPerPixel, bytesPerScanLine);
 		}
 	}
 	
-	// Calculate minimum sum of absolute differences
-	private static int calculateMSAD(byte[] input, int offset, int length) {
-		int sum = 0;
+	// Filter one scan line in place, the upper scan line must be unfiltered
+	private static void filter(int filter_type, byte[] pixBytes, int offset, int bytesPerPixel, int bytesPerScanLine) {
+		switch (filter_type) {
+	  		case Filter.NONE:
+	  			break;
+	  		case Filter.SUB:		  			
+	  			Filter.filter_sub(bytesPerPixel, bytesPerScanLine, pixBytes, offset);
+	  			break;
+	  		case Filter.UP:
+	  			Filter.filter_up(bytesPerScanLine, pixBytes, offset);
+	  			break;
+	  		case Filter.AVERAGE:
+	  			Filter.filter_average(bytesPerPixel, bytesPerScanLine, pixBytes, offset);
+	  			break;
+	  		case Filter.PAETH:
+	  			Filter.filter_paeth(bytesPerPixel, bytesPerScanLine, pixBytes, offset);
+	  			break;
+	  		default:
+	  			break;
+		}
+	}
+	
+	// Branch free Paeth predictor, the bytes are too random for branch prediction to work well
+	private static int paethPredictor(int a, int b, int c) {
+		int pa = b - c;
+		int pb = a - c;
+		int pc = pa + pb;
+		pa = (pa ^ (pa>>31)) - (pa>>31);
+		pb = (pb ^ (pb>>31)) - (pb>>31);
+		pc = (pc ^ (pc>>31)) - (pc>>31);
+		int notA = ((pb - pa)|(pc - pa))>>31; // All ones if pa > pb or pa > pc
+		int isC = (pc - pb)>>31; // All ones if pb > pc
+		
+		return (a & ~notA)|(notA & ((b & ~isC)|(c & isC)));
+	}
+	
+	// Work out the residuals of all five filter types in a single pass over the scan line and select
+	// the filter with the minimum sum of absolute differences (the filtered bytes taken as signed) or,
+	// if histograms are given, with the minimum entropy of the filtered bytes.
+	private static int selectFilter(byte[] pixBytes, int offset, int bytesPerPixel, int bytesPerScanLine, int[][] histograms) {
+		boolean firstLine = (offset < bytesPerScanLine);
+		int sumNone = 0, sumSub = 0, sumUp = 0, sumAverage = 0, sumPaeth = 0;
+		
+		if(histograms != null) {
+			for(int[] histogram : histograms)
+				Arrays.fill(histogram, 0);
+		}
 		
-		for(int i = offset + length - 1; i >= offset; i--) {
-			sum += ((input[i] > 0)? input[i]:-input[i]);
+		for (int i = offset, end = offset + bytesPerScanLine, subStart = offset + bytesPerPixel; i < end; i++) {
+			int x = pixBytes[i]&0xff;
+			int a = (i < subStart)? 0 : pixBytes[i - bytesPerPixel]&0xff;
+			int b = firstLine? 0 : pixBytes[i - bytesPerScanLine]&0xff;
+			int c = (firstLine || i < subStart)? 0 : pixBytes[i - bytesPerScanLine - bytesPerPixel]&0xff;
+			int none = (byte)x;
+			int sub = (byte)(x - a);
+			int up = (byte)(x - b);
+			int average = (byte)(x - ((a + b)>>1));
+			int paeth = (byte)(x - paethPredictor(a, b, c));
+			if(histograms == null) { // Branch free absolute values
+				sumNone += (none ^ (none>>31)) - (none>>31);
+				sumSub += (sub ^ (sub>>31)) - (sub>>31);
+				sumUp += (up ^ (up>>31)) - (up>>31);
+				sumAverage += (average ^ (average>>31)) - (average>>31);
+				sumPaeth += (paeth ^ (paeth>>31)) - (paeth>>31);
+			} else {
+				histograms[Filter.NONE][none&0xff]++;
+				histograms[Filter.SUB][sub&0xff]++;
+				histograms[Filter.UP][up&0xff]++;
+				histograms[Filter.AVERAGE][average&0xff]++;
+				histograms[Filter.PAETH][paeth&0xff]++;
+			}
+		}
+		
+		int best = Filter.NONE;
+		
+		if(histograms == null) {
+			int[] sums = {sumNone, sumSub, sumUp, sumAverage, sumPaeth};
+			for (int type = Filter.SUB; type <= Filter.PAETH; type++) {
+				if(sums[type] < sums[best]) best = type;
+			}
+		} else {
+			// With the same number of bytes for each filter, minimum entropy means maximum sum of n*log(n)
+			double bestSum = -1;
+			for (int type = Filter.NONE; type <= Filter.PAETH; type++) {
+				double sum = 0;
+				for(int count : histograms[type]) {
+					if(count > 1) sum += count*Math.log(count);
+				}
+				if(sum > bestSum) {
+					bestSum = sum;
+					best = type;
+				}
+			}
 		}
 		
-		return sum;
+		return best;
 	}
 	
 	// Determine number of bytes per scan-line for gray-scale image
@@ -206,7 +419,34 @@ public class PNGWriter extends ImageWriter {
 		chunks.clear();
 		isApplyAdaptiveFilter = false;	
 		filterType = Filter.NONE;		
-		compressionLevel = 4;	
+		compressionLevel = 4;
+		filterStrategy = PNGOptions.FILTER_STRATEGY_MSAD;
+	}
+	
+	/**
+	 * Error diffusion dither indexed images in bands on the executor set by
+	 * {@link #setExecutorService(ExecutorService)}. Each band starts with the
+	 * error built up over a few rows above it, so the output is the same for
+	 * any number of threads but differs slightly from the single pass dither.
+	 * It is off by default, leaving the output the same with or without an
+	 * executor.
+	 * 
+	 * @param bandedDither true to dither in concurrent bands
+	 */
+	public void setBandedDither(boolean bandedDither) {
+		this.bandedDither = bandedDither;
+	}
+	
+	/**
+	 * Set the executor used to compress the image data concurrently. The filtered
+	 * scan lines are split into pieces which are deflated independently and joined
+	 * into one zlib stream. Set to null to do everything on the calling thread.
+	 * The executor is not shut down by this writer.
+	 * 
+	 * @param executor ExecutorService to run the compression tasks
+	 */
+	public void setExecutorService(ExecutorService executor) {
+		this.executor = executor;
 	}
 	
 	protected void write(int[] pixels, int imageWidth, int imageHeight, OutputStream os) throws Exception {	
@@ -225,6 +465,7 @@ public class PNGWriter extends ImageWriter {
 			isApplyAdaptiveFilter = pngOptions.isApplyAdaptiveFilter();
 			filterType = pngOptions.getFilterType();
 			compressionLevel = pngOptions.getCompressionLevel();
+			filterStrategy = pngOptions.getFilterStrategy();
 		}
 		
 		boolean noAlpha = !imageParam.hasAlpha();
@@ -307,22 +548,33 @@ public class PNGWriter extends ImageWriter {
 		
 		if(bitsPerPixel == 8) {
 			if(isApplyAdaptiveFilter) {
-				apply_adaptive_filter(filter_type, pixels, imageHeight, bytesPerPixel, bytesPerScanLine);
+				apply_adaptive_filter(filterStrategy, compressionLevel, filter_type, pixels, imageHeight, bytesPerPixel, bytesPerScanLine);
 			} else if(filterType != Filter.NONE) {
 				apply_filter(filter_type, pixels, imageHeight, bytesPerPixel, bytesPerScanLine);
 			}
 		}
 		
+		writeIDAT(pixels, filter_type, imageHeight, bytesPerScanLine, os);
+	}
+	
+	// Compress the filtered scan lines and write them out as IDAT chunks
+	private void writeIDAT(byte[] pixels, int[] filter_type, int imageHeight, int bytesPerScanLine, OutputStream os) throws Exception {
+		int rowsPerPiece = Math.max(1, PIECE_SIZE/(bytesPerScanLine + 1));
+		
+		if(executor != null && imageHeight > rowsPerPiece) {
+			writePieces(pixels, filter_type, imageHeight, bytesPerScanLine, rowsPerPiece, os);
+			return;
+		}
+		
 		byte[] buffer = new byte[bytesPerScanLine + 1];
 		
 		IDATBuilder builder = new IDATBuilder(compressionLevel);
 		
 		// How many bytes to buffer before creating an IDAT chunk
-		int bufferLen = bytesPerPixel * imageWidth * imageHeight / 5; // We are expecting 5 IDAT chunks
+		int bufferLen = pixels.length / 5; // We are expecting 5 IDAT chunks
 		int counter = 0;
 		
 		for (int i = 0, j = 0; i < imageHeight; i++, j += bytesPerScanLine) {
-			buffer = new byte[bytesPerScanLine + 1];
 			buffer[0] = (byte)filter_type[i];
 			System.arraycopy(pixels, j, buffer, 1, bytesPerScanLine);
 			builder.data(buffer);
@@ -333,18 +585,18 @@ public class PNGWriter extends ImageWriter {
 				Chunk chunk = builder.build();
 				if(chunk.getData().length > 0) {
 					chunk.write(os);
-				}					
+				}
 				counter = 0;
 			}
 		}
 		
 		// This should be called for the last chunk to make sure we get all the input data compressed
-		builder.setFinish(true);		
+		builder.setFinish(true);
 		
 		Chunk chunk = builder.build();
 		
 		if(chunk.getData().length > 0) 
-			chunk.write(os);	
+			chunk.write(os);
 	}
 	
 	private void writeIndexed(int[] pixels, int imageWidth, int imageHeight, OutputStream os) throws Exception {
@@ -364,8 +616,8 @@ public class PNGWriter extends ImageWriter {
 			if(bitsPerPixel <= 0 || bitsPerPixel > 8)
 				bitsPerPixel = 8;
 			if(param.isApplyDither()) {
-				if(param.getDitherMethod() == DitherMethod.FLOYD_STEINBERG)
-					colorInfo = IMGUtils.reduceColorsDiffusionDither(param.getQuantMethod(), pixels, imageWidth, imageHeight, bitsPerPixel, bytePixels, colorPalette);
+				if(param.getDitherMethod().isErrorDiffusion())
+					colorInfo = IMGUtils.reduceColorsDiffusionDither(param.getQuantMethod(), param.getDitherMethod(), pixels, imageWidth, imageHeight, bitsPerPixel, bytePixels, colorPalette, bandedDither? executor : null);
 				else
 					colorInfo = IMGUtils.reduceColorsOrderedDither(param.getQuantMethod(), pixels, imageWidth, imageHeight, bitsPerPixel, bytePixels, colorPalette, param.getDitherMatrix());				
 			} else
@@ -429,48 +681,17 @@ public class PNGWriter extends ImageWriter {
 		
 		if(bitsPerPixel == 8) {
 			if(isApplyAdaptiveFilter) {
-				apply_adaptive_filter(filter_type, bytePixels, imageHeight, 1, bytesPerScanLine);
+				apply_adaptive_filter(filterStrategy, compressionLevel, filter_type, bytePixels, imageHeight, 1, bytesPerScanLine);
 			} else if(filterType != Filter.NONE) {
 				apply_filter(filter_type, bytePixels, imageHeight, 1, bytesPerScanLine);
 			}
 		}		
 		
-		byte[] buffer = new byte[bytesPerScanLine + 1];
-		
-		IDATBuilder builder = new IDATBuilder(compressionLevel);
-		
-		// How many bytes to buffer before creating an IDAT chunk
-		int bufferLen = imageWidth * imageHeight / 5; // We are expecting 5 IDAT chunks
-		int counter = 0;
-	
 		// Pack bytePixels according to bitsPerPixel value
 		if(bitsPerPixel != 8)
 			bytePixels = ArrayUtils.packByteArray(bytePixels, imageWidth, 0, bitsPerPixel, imageWidth*imageHeight);
 		
-		for (int i = 0, j = 0; i < imageHeight; i++, j += bytesPerScanLine) {
-			buffer = new byte[bytesPerScanLine + 1];
-			buffer[0] = (byte)filter_type[i];
-			System.arraycopy(bytePixels, j, buffer, 1, bytesPerScanLine);
-			builder.data(buffer);
-			
-			counter += bytesPerScanLine;
-			
-			if(counter > bufferLen) {
-				Chunk chunk = builder.build();
-				if(chunk.getData().length > 0) {
-					chunk.write(os);
-				}
-				counter = 0;
-			}
-		}
-		
-		// This should be called for the last chunk to make sure we get all the input data compressed
-		builder.setFinish(true);
-		
-		Chunk chunk = builder.build();
-		
-		if(chunk.getData().length > 0) 
-			chunk.write(os);
+		writeIDAT(bytePixels, filter_type, imageHeight, bytesPerScanLine, os);
 	}
 	
 	private void writeRGB(int[] pixels, int imageWidth, int imageHeight, OutputStream os) throws Exception {
@@ -524,44 +745,69 @@ public class PNGWriter extends ImageWriter {
 		
 		if(isApplyAdaptiveFilter) {
 			// PNG specification suggests adaptive filter for RGB or grayscale image with 8 or more bit depth
-			apply_adaptive_filter(filter_type, bytePixels, imageHeight, bytesPerPixel, bytesPerScanLine);
+			apply_adaptive_filter(filterStrategy, compressionLevel, filter_type, bytePixels, imageHeight, bytesPerPixel, bytesPerScanLine);
 		} else {
 			apply_filter(filter_type, bytePixels, imageHeight, bytesPerPixel, bytesPerScanLine);
 		}
 		
-		byte[] buffer = new byte[bytesPerScanLine + 1];
-		
-		// Now build the data
-		IDATBuilder builder = new IDATBuilder(compressionLevel);
-		
-		// How many bytes to buffer before creating an IDAT chunk
-		int bufferLen = bytesPerPixel * imageWidth * imageHeight / 5; // We are expecting 5 IDAT chunks
-		int counter = 0;
-		
-		for (int i = 0, j = 0; i < imageHeight; i++, j += bytesPerScanLine) {
-			buffer = new byte[bytesPerScanLine + 1];
-			buffer[0] = (byte)filter_type[i];
-			System.arraycopy(bytePixels, j, buffer, 1, bytesPerScanLine);
-			builder.data(buffer);
-			
-			counter += bytesPerScanLine;
-			
-			if(counter > bufferLen) {
-				Chunk chunk = builder.build();
-				if(chunk.getData().length > 0) {
-					chunk.write(os);
+		writeIDAT(bytePixels, filter_type, imageHeight, bytesPerScanLine, os);
+	}
+	
+	// Deflate pieces of scan lines concurrently and write each piece as an IDAT chunk. The pieces are
+	// stitched together into a single zlib stream whose checksum is combined from those of the pieces.
+	private void writePieces(byte[] pixels, int[] filter_type, int imageHeight, int bytesPerScanLine, int rowsPerPiece, OutputStream os) throws Exception {
+		int numOfPieces = (imageHeight + rowsPerPiece - 1)/rowsPerPiece;
+		// Limit the number of compressed pieces waiting to be written
+		int window = Runtime.getRuntime().availableProcessors()*2;
+		Queue<DeflateTask> tasks = new ArrayDeque<DeflateTask>();
+		Queue<Future<byte[]>> futures = new ArrayDeque<Future<byte[]>>();
+		int submitted = 0;
+		long adler = 1L;
+		
+		try {
+			for(int piece = 0; piece < numOfPieces; piece++) {
+				for(; submitted < numOfPieces && submitted < piece + window; submitted++) {
+					DeflateTask task = new DeflateTask(pixels, filter_type, bytesPerScanLine, submitted*rowsPerPiece,
+							Math.min(imageHeight, (submitted + 1)*rowsPerPiece), submitted == numOfPieces - 1);
+					tasks.add(task);
+					futures.add(executor.submit(task));
 				}
-				counter = 0;
+				byte[] data;
+				try {
+					data = futures.remove().get();
+				} catch(ExecutionException ex) {
+					Throwable cause = ex.getCause();
+					if(cause instanceof Exception)
+						throw (Exception)cause;
+					throw ex;
+				}
+				DeflateTask task = tasks.remove();
+				adler = (piece == 0)? task.adler : adler32Combine(adler, task.adler, task.length);
+				// The first piece carries the zlib header and the last one the checksum
+				int header = (piece == 0)? 2 : 0;
+				int trailer = (piece == numOfPieces - 1)? 4 : 0;
+				byte[] chunkData = new byte[header + data.length + trailer];
+				if(header > 0) {
+					int level = (compressionLevel < 2)? 0 : (compressionLevel < 6)? 1 : (compressionLevel == 6)? 2 : 3;
+					int cmf = 0x78; // Deflate with 32K window
+					int flg = level<<6;
+					flg += 31 - ((cmf<<8)|flg)%31;
+					chunkData[0] = (byte)cmf;
+					chunkData[1] = (byte)flg;
+				}
+				System.arraycopy(data, 0, chunkData, header, data.length);
+				if(trailer > 0) {
+					int offset = chunkData.length - 4;
+					chunkData[offset++] = (byte)(adler>>>24);
+					chunkData[offset++] = (byte)(adler>>>16);
+					chunkData[offset++] = (byte)(adler>>>8);
+					chunkData[offset] = (byte)adler;
+				}
+				new Chunk(ChunkType.IDAT, chunkData.length, chunkData, Chunk.calculateCRC(ChunkType.IDAT.getValue(), chunkData)).write(os);
 			}
+		} finally {
+			for(Future<byte[]> future : futures)
+				future.cancel(true);
 		}
-		
-		// This should be called for the last chunk to make sure we get all the input data compressed
-		builder.setFinish(true);
-		
-		Chunk chunk = builder.build();
-		
-		if(chunk.getData().length > 0) 
-			chunk.write(os);
-		// End of IDAT builder
 	}
 }
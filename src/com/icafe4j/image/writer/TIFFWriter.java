@@ -14,6 +14,13 @@
  *
  * Who   Date       Description
  * ====  =======    =================================================
+ * AG    17Oct2026  Check the first IFD offset against the 4GB limit of classic TIFF
+ * AG    17Oct2026  Write ROWS_PER_STRIP of row bands as LONG too
+ * AG    17Oct2026  Write ROWS_PER_STRIP as LONG so strips taller than 65535 rows work
+ * AG    17Oct2026  Support Atkinson and Sierra Lite dithering
+ * AG    17Oct2026  Added row band output
+ * AG    17Oct2026  Added BigTIFF output
+ * AG    17Oct2026  Added tiled output and target strip size
  * WY    06Dec2017  Remove unnecessary T4Options for G3/1D and G4/2D
  * WY    23Nov2017  Fix bug with gray-scale image byte packing
  * WY    22Oct2017  Added compression type check
@@ -62,9 +69,9 @@ import com.icafe4j.image.compression.packbits.Packbits;
 import com.icafe4j.image.options.ImageOptions;
 import com.icafe4j.image.options.JPGOptions;
 import com.icafe4j.image.options.TIFFOptions;
-import com.icafe4j.image.quant.DitherMethod;
 import com.icafe4j.image.tiff.ASCIIField;
 import com.icafe4j.image.tiff.IFD;
+import com.icafe4j.image.tiff.Long8Field;
 import com.icafe4j.image.tiff.LongField;
 import com.icafe4j.image.tiff.RationalField;
 import com.icafe4j.image.tiff.ShortField;
@@ -92,17 +99,41 @@ import com.icafe4j.util.Updatable;
 public class TIFFWriter extends ImageWriter implements Updatable<Integer> {
 	private static final String pathToCMYKProfile = "/resources/CMYK Profiles/USWebCoatedSWOP.icc";
 	// Offset to write image data
-	private int stripOffset;
+	private long stripOffset;
 	private IFD ifd;
+	// Whether the current page is written as tiles instead of strips
+	private boolean tiled;
 	
 	private TIFFOptions tiffOptions;
 	private ICC_ColorSpace cmykColorSpace;
 		
 	// Lists to hold strip offset and strip bytes count
-	private List<Integer> stripOffsets = new ArrayList<Integer>();	
+	private List<Long> stripOffsets = new ArrayList<Long>();	
 	private List<Integer> stripByteCounts = new ArrayList<Integer>();	
 	private RandomAccessOutputStream randomOS;
 	
+	// State of the page being written row band by row band
+	private int streamWidth;
+	private int streamHeight;
+	private int streamRows; // Rows written so far
+	private boolean streamSelfContained;
+	private ImageColorType streamColorType;
+	private PhotoMetric streamPhotoMetric;
+	private boolean streamAlpha;
+	private Compression streamCompression;
+	private ImageEncoder streamEncoder;
+	private int streamPredictor;
+	private int bytesPerRow;
+	// Samples of the current strip or row of tiles
+	private byte[] band;
+	private int bandHeight;
+	private int bandRows;
+	private byte[] tile;
+	private int tileBytesPerRow;
+	
+	// Default strip size for row band output, rows of the strip are held in memory
+	private static final int STREAM_STRIP_BYTES = 8192;
+	
 	// Obtain a logger instance
 	private static final Logger LOGGER = LoggerFactory.getLogger(TIFFWriter.class);
 	
@@ -125,111 +156,415 @@ public class TIFFWriter extends ImageWriter implements Updatable<Integer> {
 		return input;
 	}
 	
-	// RGB images seems to work better with predictor but not indexed images
-	// Predictor for RGB and gray-scale PLANARY_CONFIGURATION value 2 and gray-scale PLANARY_CONFIGURATION value 1 without alpha
-	private static byte[] applyPredictor2(byte[] input, int imageWidth, int imageHeight) {
-		//
-		for(int i = imageHeight - 1, inc = imageWidth, maxVal = inc - 1, minVal = 1; i >= 0; maxVal += inc, minVal += inc,  i--) {
-			for (int j = maxVal; j >= minVal; j--) {
-				input[j] -= input[j - 1];
+	/**
+	 * Start writing a self-contained single page TIFF image row band by row band.
+	 * <p>
+	 * Unlike {@link #write}, the image is never held in memory as a whole. Rows passed
+	 * to {@link #writeRows} are compressed and written out as soon as a strip or a row
+	 * of tiles is complete. The stream is only sought back by {@link #endPage} to write
+	 * the offset of the IFD into the header. Use a {@link com.icafe4j.io.FileRandomAccessOutputStream}
+	 * to write straight to a file without caching.
+	 * <p>
+	 * Only RGB, CMYK, gray-scale and bilevel images compressed with LZW, DEFLATE or PACKBITS
+	 * can be written this way. Gray-scale images are always written as 8 bits and bilevel
+	 * images use a fixed threshold instead of the image average.
+	 * 
+	 * @param randomOutStream RandomAccessOutputStream to write the image to
+	 * @param imageWidth image width
+	 * @param imageHeight total number of rows to be written
+	 * @throws Exception
+	 */
+	public void beginPage(RandomAccessOutputStream randomOutStream, int imageWidth, int imageHeight) throws Exception {
+		randomOS = randomOutStream;
+		tiffOptions = null;
+		
+		ImageOptions options = getImageParam().getImageOptions();
+		
+		if(options instanceof TIFFOptions) {
+			tiffOptions = (TIFFOptions)options;
+		}
+		
+		boolean bigTiff = (tiffOptions != null && tiffOptions.isBigTIFF());
+		
+		randomOS.seek(STREAM_HEAD);
+		writeHeader(bigTiff);
+		
+		ifd = new IFD();
+		ifd.setBigTIFF(bigTiff);
+		ifd.addField(new LongField(TiffTag.NEW_SUBFILE_TYPE.getValue(), new int[]{0}));
+		
+		reset(bigTiff? BIGTIFF_FIRST_WRITE_OFFSET : FIRST_WRITE_OFFSET);
+		streamSelfContained = true;
+		
+		beginBand(imageWidth, imageHeight);
+	}
+	
+	/**
+	 * Start writing a single page of a multiple page TIFF row band by row band.
+	 * <p>
+	 * This is the row band version of {@link #writePage}. Once {@link #endPage} returns,
+	 * the IFD of the page can be retrieved by {@link #getIFD} to be linked with the others.
+	 * 
+	 * @param imageWidth image width
+	 * @param imageHeight total number of rows to be written
+	 * @param randomOutStream RandomAccessOutputStream
+	 * @param offset stream offset to write this page
+	 * @param bigTiff true to write a BigTIFF page
+	 * @throws Exception
+	 */
+	public void beginPage(int imageWidth, int imageHeight, int pageNumber, int maxNumber,
+			RandomAccessOutputStream randomOutStream, long offset, boolean bigTiff) throws Exception {
+		if(bigTiff && offset < BIGTIFF_FIRST_WRITE_OFFSET)
+			throw new IllegalArgumentException("BigTIFF page offset " + offset + " overlaps the BigTIFF header");
+		
+		randomOS = randomOutStream;
+		tiffOptions = null;
+		
+		ImageOptions options = getImageParam().getImageOptions();
+		
+		if(options instanceof TIFFOptions) {
+			tiffOptions = (TIFFOptions)options;
+		}
+		
+		ifd = new IFD();
+		ifd.setBigTIFF(bigTiff);
+		ifd.addField(new LongField(TiffTag.NEW_SUBFILE_TYPE.getValue(), new int[]{2}));
+		ifd.addField(new ShortField(TiffTag.PAGE_NUMBER.getValue(), new short[]{(short)pageNumber, (short)maxNumber}));
+		
+		reset(offset);
+		streamSelfContained = false;
+		
+		beginBand(imageWidth, imageHeight);
+	}
+	
+	// Set up the fields, buffers and encoder shared by all the strips or tiles of the page
+	private void beginBand(int imageWidth, int imageHeight) throws Exception {
+		if(imageWidth <= 0 || imageHeight <= 0)
+			throw new IllegalArgumentException("Invalid image size: " + imageWidth + "x" + imageHeight);
+		
+		ImageParam param = getImageParam();
+		Compression compression = Compression.PACKBITS;
+		boolean applyPredictor = true;
+		PhotoMetric photoMetric = PhotoMetric.RGB;
+		tiled = false;
+		
+		if(tiffOptions != null) {
+			compression = tiffOptions.getTiffCompression();
+			applyPredictor = tiffOptions.isApplyPredictor();
+			tiled = tiffOptions.isTiled();
+			if(tiffOptions.getPhotoMetric() == PhotoMetric.SEPARATED)
+				photoMetric = PhotoMetric.SEPARATED;
+		}
+		
+		EnumSet<Compression> supportedCompressionTypes = EnumSet.of(Compression.LZW, Compression.DEFLATE, Compression.DEFLATE_ADOBE, Compression.PACKBITS);
+		
+		if(!supportedCompressionTypes.contains(compression)) throw new UnsupportedCompressionException("Row band output only supports the following compression types: " + supportedCompressionTypes);
+		
+		ImageColorType colorType = param.getColorType();
+		
+		if(colorType == ImageColorType.INDEXED)
+			throw new UnsupportedOperationException("Row band output does not support indexed color image which needs the whole image to reduce colors");
+		
+		if(compression == Compression.PACKBITS)
+			applyPredictor = false;
+		
+		boolean hasAlpha = param.hasAlpha() && colorType != ImageColorType.BILEVEL;
+		int samplesPerPixel = 1;
+		int bitsPerSample = 8;
+		
+		ifd.addField(new LongField(TiffTag.IMAGE_WIDTH.getValue(), new int[]{imageWidth}));
+		ifd.addField(new LongField(TiffTag.IMAGE_LENGTH.getValue(), new int[]{imageHeight}));
+		
+		if(colorType == ImageColorType.BILEVEL) {
+			if(param.isApplyDither())
+				LOGGER.warn("#Warning: dithering is not applied to row band output");
+			bitsPerSample = 1;
+			applyPredictor = false;
+			photoMetric = PhotoMetric.WHITE_IS_ZERO;
+			ifd.addField(new ShortField(TiffTag.FILL_ORDER.getValue(), new short[] {1}));
+		} else if(colorType == ImageColorType.GRAY_SCALE) {
+			photoMetric = PhotoMetric.BLACK_IS_ZERO;
+		} else {
+			samplesPerPixel = (photoMetric == PhotoMetric.SEPARATED)? 4 : 3;
+			ifd.addField(new ShortField(TiffTag.PLANAR_CONFIGURATTION.getValue(), new short[]{(short)PlanarConfiguration.CONTIGUOUS.getValue()}));
+			if(photoMetric == PhotoMetric.SEPARATED) {
+				if(cmykColorSpace == null)
+					cmykColorSpace = IMGUtils.getICCColorSpace(pathToCMYKProfile);
+				if(tiffOptions.writeICCProfile())
+					ifd.addField(new UndefinedField(TiffTag.ICC_PROFILE.getValue(), cmykColorSpace.getProfile().getData()));
 			}
 		}
 		
-		return input;
+		if(hasAlpha) {
+			samplesPerPixel++;
+			ifd.addField(new ShortField(TiffTag.EXTRA_SAMPLES.getValue(), new short[]{2}));
+		}
+		
+		short[] bitsPerSamples = new short[samplesPerPixel];
+		Arrays.fill(bitsPerSamples, (short)bitsPerSample);
+		
+		ifd.addField(new ShortField(TiffTag.PHOTOMETRIC_INTERPRETATION.getValue(), new short[]{(short)photoMetric.getValue()}));
+		ifd.addField(new ShortField(TiffTag.SAMPLES_PER_PIXEL.getValue(), new short[]{(short)samplesPerPixel}));
+		ifd.addField(new ShortField(TiffTag.BITS_PER_SAMPLE.getValue(), bitsPerSamples));
+		
+		if(applyPredictor)
+			ifd.addField(new ShortField(TiffTag.PREDICTOR.getValue(), new short[]{2}));
+		
+		streamWidth = imageWidth;
+		streamHeight = imageHeight;
+		streamRows = 0;
+		streamColorType = colorType;
+		streamPhotoMetric = photoMetric;
+		streamAlpha = hasAlpha;
+		streamPredictor = applyPredictor? samplesPerPixel : 0;
+		bytesPerRow = (imageWidth*samplesPerPixel*bitsPerSample + 7)>>3;
+		
+		if(tiled) {
+			bandHeight = tiffOptions.getTileHeight();
+			// Tile width is a multiple of 16, so each tile starts on a byte boundary
+			tileBytesPerRow = (tiffOptions.getTileWidth()*samplesPerPixel*bitsPerSample)>>3;
+			tile = new byte[tileBytesPerRow*bandHeight];
+		} else {
+			bandHeight = getRowsPerStrip(bytesPerRow, imageHeight);
+			if(bandHeight == 0)
+				bandHeight = Math.max(1, Math.min(imageHeight, STREAM_STRIP_BYTES/bytesPerRow));
+			tile = null;
+		}
+		
+		band = new byte[bytesPerRow*bandHeight];
+		bandRows = 0;
+		
+		streamCompression = compression;
+		streamEncoder = createEncoder(compression, 4096);
+		
+		randomOS.seek(stripOffset);
 	}
 	
 	private void ccittCompress(byte[] input, int imageWidth, int imageHeight, ImageEncoder encoder) throws Exception {
+		if(tiled) {
+			LOGGER.warn("#Warning: CCITT compression is only written as a single strip");
+			tiled = false;
+		}
 		encoder.initialize();
 		encoder.encode(input, 0, imageWidth*imageHeight);
 		encoder.finish();
 		
-		TiffField<?> tiffField = new ShortField(TiffTag.ROWS_PER_STRIP.getValue(), new short[]{(short)imageHeight});
+		TiffField<?> tiffField = new LongField(TiffTag.ROWS_PER_STRIP.getValue(), new int[]{imageHeight});
 		ifd.addField(tiffField);
 	}
 		
-	private void compressSample(byte[] samples, int imageWidth, int imageHeight, Compression compression, int bufferSize) throws Exception {
-		// This will make the compression more flexible by allowing different ROWS_PER_STRIP for different compression methods
-		int rowsPerStrip = imageHeight;
-					
+	// Compress samples as strips or tiles. bitsPerPixel covers all the samples of a pixel and each row of samples
+	// starts on a byte boundary. Predictor is applied to each strip or tile if predictorStride is not zero.
+	private void compressSample(byte[] samples, int bitsPerPixel, int imageWidth, int imageHeight, Compression compression, int bufferSize, int predictorStride) throws Exception {
+		ImageEncoder encoder = createEncoder(compression, bufferSize);
+		
+		if(encoder == null)
+			compression = Compression.PACKBITS;
+		
+		int bytesPerRow = (imageWidth*bitsPerPixel + 7)>>3;
+		
+		if(tiled) {
+			int tileWidth = tiffOptions.getTileWidth();
+			int tileHeight = tiffOptions.getTileHeight();
+			// Tile width is a multiple of 16, so each tile starts on a byte boundary
+			int tileBytesPerRow = (tileWidth*bitsPerPixel)>>3;
+			byte[] tile = new byte[tileBytesPerRow*tileHeight];
+			
+			for(int y = 0; y < imageHeight; y += tileHeight) {
+				compressTileRow(encoder, samples, y*bytesPerRow, bytesPerRow, Math.min(tileHeight, imageHeight - y), tile, tileBytesPerRow, predictorStride);
+			}
+			
+			ifd.addField(new LongField(TiffTag.TILE_WIDTH.getValue(), new int[]{tileWidth}));
+			ifd.addField(new LongField(TiffTag.TILE_LENGTH.getValue(), new int[]{tileHeight}));
+		} else {
+			// LZW and DEFLATE default to one strip, PACKBITS to one row per strip
+			int rowsPerStrip = getRowsPerStrip(bytesPerRow, imageHeight);
+			if(rowsPerStrip == 0)
+				rowsPerStrip = (encoder != null)? imageHeight : 1;
+			
+			if(predictorStride > 0)
+				applyPredictor(predictorStride, samples, bytesPerRow/predictorStride, imageHeight);
+			
+			for(int y = 0; y < imageHeight; y += rowsPerStrip) {
+				compressBlock(encoder, samples, y*bytesPerRow, bytesPerRow, Math.min(rowsPerStrip, imageHeight - y));
+			}
+			
+			// Add ROWS_PER_STRIP field
+			ifd.addField(new LongField(TiffTag.ROWS_PER_STRIP.getValue(), new int[]{rowsPerStrip}));
+		}
+		
+		// Add compression field to IFD
+		ifd.addField(new ShortField(TiffTag.COMPRESSION.getValue(), new short[]{(short)compression.getValue()}));
+	}
+	
+	// Compress one row of tiles out of the rows of samples starting at offset
+	private void compressTileRow(ImageEncoder encoder, byte[] samples, int offset, int bytesPerRow, int rows, byte[] tile, int tileBytesPerRow, int predictorStride) throws Exception {
+		int tileHeight = tile.length/tileBytesPerRow;
+		
+		for(int x = 0; x < bytesPerRow; x += tileBytesPerRow) {
+			int len = Math.min(tileBytesPerRow, bytesPerRow - x);
+			// Edge tiles are padded with zeros
+			Arrays.fill(tile, (byte)0);
+			for(int i = 0, index = offset + x; i < rows; i++, index += bytesPerRow) {
+				System.arraycopy(samples, index, tile, i*tileBytesPerRow, len);
+			}
+			if(predictorStride > 0)
+				applyPredictor(predictorStride, tile, tileBytesPerRow/predictorStride, tileHeight);
+			compressBlock(encoder, tile, 0, tileBytesPerRow, tileHeight);
+		}
+	}
+	
+	// Compress rows of samples as one strip or tile. A null encoder means PACKBITS
+	private void compressBlock(ImageEncoder encoder, byte[] samples, int offset, int bytesPerRow, int rows) throws Exception {
+		if(encoder != null) {
+			encoder.initialize();
+			encoder.encode(samples, offset, bytesPerRow*rows);
+			// This will call update
+			encoder.finish();
+		} else {
+			// PACKBITS compresses each row separately
+			int bytesOut = 0;
+			byte[] buffer = new byte[bytesPerRow + (bytesPerRow + 127)/128];
+			for(int i = 0; i < rows; i++) {
+				int tempBytes = Packbits.packbits(ArrayUtils.subArray(samples, offset, bytesPerRow), buffer);
+				offset += bytesPerRow;
+				randomOS.write(buffer, 0, tempBytes);
+				bytesOut += tempBytes;
+			}
+			update(bytesOut);
+		}
+	}
+	
+	// Convert rows of ARGB pixels to samples in the band
+	private void convertRows(int[] pixels, int offset, int rows) {
+		int index = bandRows*bytesPerRow;
+		int end = offset + rows*streamWidth;
+		
+		if(streamColorType == ImageColorType.BILEVEL) {
+			Arrays.fill(band, index, index + rows*bytesPerRow, (byte)0);
+			for(int i = offset; i < end; i += streamWidth, index += bytesPerRow) {
+				for(int j = 0; j < streamWidth; j++) {
+					int pixel = pixels[i + j];
+					if((pixel >>> 24) < 0x80) continue; // Transparent as white
+					// WHITE_IS_ZERO
+					if(((pixel>>16)&0xff)*0.2126 + ((pixel>>8)&0xff)*0.7152 + (pixel&0xff)*0.0722 < 128)
+						band[index + (j>>3)] |= 0x80>>(j&7);
+				}
+			}
+		} else if(streamColorType == ImageColorType.GRAY_SCALE) {
+			for(int i = offset; i < end; i++) {
+				band[index++] = (byte)(((pixels[i]>>16)&0xff)*0.2126 + ((pixels[i]>>8)&0xff)*0.7152 + (pixels[i]&0xff)*0.0722);
+				if(streamAlpha)
+					band[index++] = (byte)((pixels[i]>>24)&0xff);
+			}
+		} else if(streamPhotoMetric == PhotoMetric.SEPARATED) {
+			byte[] cmyk = IMGUtils.RGB2CMYK(cmykColorSpace, Arrays.copyOfRange(pixels, offset, end), streamWidth, rows, streamAlpha);
+			System.arraycopy(cmyk, 0, band, index, cmyk.length);
+		} else {
+			for(int i = offset; i < end; i++) {
+				band[index++] = (byte)((pixels[i]>>16)&0xff);
+				band[index++] = (byte)((pixels[i]>>8)&0xff);
+				band[index++] = (byte)(pixels[i]&0xff);
+				if(streamAlpha)
+					band[index++] = (byte)((pixels[i]>>24)&0xff);
+			}
+		}
+	}
+	
+	// Encoder for LZW or DEFLATE compression, null for PACKBITS
+	private ImageEncoder createEncoder(Compression compression, int bufferSize) throws Exception {
 		switch(compression) {
 			case LZW:
 				// LZW encode the image data
-				ImageEncoder encoder = new LZWTreeEncoder(randomOS, 8, bufferSize, this); // 1K buffer		
-				encoder.initialize();		
-				encoder.encode(samples, 0, samples.length);
-				// This will call update
-				encoder.finish();
-				break;
+				return new LZWTreeEncoder(randomOS, 8, bufferSize, this);
 			case DEFLATE:
 			case DEFLATE_ADOBE:
 				int compressionLevel = 4;
 				if(tiffOptions != null) {
 					compressionLevel = tiffOptions.getDeflateCompressionLevel();
 				}		
-				ImageEncoder deflateEncoder = new DeflateEncoder(randomOS, bufferSize, compressionLevel, this);
-				deflateEncoder.initialize();
-				deflateEncoder.encode(samples, 0, samples.length);
-				// This will call update
-				deflateEncoder.finish();
-				break;			
+				return new DeflateEncoder(randomOS, bufferSize, compressionLevel, this);
 			case PACKBITS:
 			default:
-				compression = Compression.PACKBITS;
-				@SuppressWarnings("unused")
-				int bytesOut = 0;
-				int offset = 0;
-				byte[] buffer = new byte[imageWidth + (imageWidth + 127)/128];
-				for(int i = 0; i < imageHeight; i++) {
-					int tempBytes = Packbits.packbits(ArrayUtils.subArray(samples, offset, imageWidth), buffer);
-					offset += imageWidth;			
-					randomOS.write(buffer, 0, tempBytes);
-					update(tempBytes);
-					//bytesOut += tempBytes;			
-				}				
-				//update(bytesOut);	
-				rowsPerStrip = 1;
-				break;
+				return null;
 		}
-		
-		// Add ROWS_PER_STRIP field
-		TiffField<?> tiffField = new ShortField(TiffTag.ROWS_PER_STRIP.getValue(), new short[]{(short)rowsPerStrip});
-		ifd.addField(tiffField);
-		
-		// Add compression field to IFD
-		tiffField = new ShortField(TiffTag.COMPRESSION.getValue(), new short[]{(short)compression.getValue()});
-		ifd.addField(tiffField);
 	}
 	
-	private void deflateCompress(int compressionLevel, byte[] inflated, int bitsPerPixel, int imageWidth, int imageHeight, byte[] buffer) throws Exception {
-		// Starts first strip
-		DeflateEncoder deflateEncoder = new DeflateEncoder(randomOS, buffer.length, compressionLevel, this);
+	/**
+	 * Finish the page started by one of the beginPage methods.
+	 * <p>
+	 * The IFD is written after the image data. For a self-contained image, the
+	 * offset of the IFD is also written into the header.
+	 * 
+	 * @return stream offset after writing the IFD
+	 * @throws Exception
+	 */
+	public long endPage() throws Exception {
+		if(band == null)
+			throw new IllegalStateException("No page has been started");
+		if(streamRows < streamHeight)
+			throw new IllegalStateException("Only " + streamRows + " of " + streamHeight + " rows have been written");
+		
+		if(tiled) {
+			ifd.addField(new LongField(TiffTag.TILE_WIDTH.getValue(), new int[]{tiffOptions.getTileWidth()}));
+			ifd.addField(new LongField(TiffTag.TILE_LENGTH.getValue(), new int[]{tiffOptions.getTileHeight()}));
+		} else
+			ifd.addField(new LongField(TiffTag.ROWS_PER_STRIP.getValue(), new int[]{bandHeight}));
 		
-		deflateEncoder.initialize();
+		ifd.addField(new ShortField(TiffTag.COMPRESSION.getValue(), new short[]{(short)streamCompression.getValue()}));
 		
-		if(bitsPerPixel == 8) {
-			deflateEncoder.encode(inflated, 0, imageWidth*(imageHeight/2+1));
-		} else {
-			byte[] temp = ArrayUtils.packByteArray(inflated, imageWidth, 0, bitsPerPixel, imageWidth*(imageHeight/2+1));
-			deflateEncoder.encode(temp, 0, temp.length);
-		}
+		finishIFD();
 		
-		deflateEncoder.finish();
+		if(streamSelfContained)
+			writeIFDOffset(ifd.isBigTIFF());
 		
-		// Resets to compress next strip
-		deflateEncoder.initialize();
-
-		// Starts another strip
-		if(bitsPerPixel == 8) {
-			deflateEncoder.encode(inflated, imageWidth*(imageHeight/2+1), inflated.length - imageWidth*(imageHeight/2+1));
+		band = null;
+		tile = null;
+		streamEncoder = null;
+		
+		// Write IFD
+		return ifd.write(randomOS, stripOffset);
+	}
+	
+	// Add the strip or tile offsets, byte counts and the common fields once the image data is written
+	private void finishIFD() {
+		// Add a new STRIP_OFFSETS or TILE_OFFSETS field.
+		ifd.addField(getOffsetsField(ifd.isBigTIFF()));
+		// and a new STRIP_BYTE_COUNTS or TILE_BYTE_COUNTS field as well
+		TiffField<?> tiffField = new LongField((tiled? TiffTag.TILE_BYTE_COUNTS : TiffTag.STRIP_BYTE_COUNTS).getValue(), CollectionUtils.integerListToIntArray(stripByteCounts));
+		ifd.addField(tiffField);
+		// Add software field
+		String softWare = "ICAFE - https://github.com/dragon66/icafe\0";
+		tiffField = new ASCIIField(TiffTag.SOFTWARE.getValue(), softWare);
+		ifd.addField(tiffField);
+		DateFormat formatter = new SimpleDateFormat("yyyy:MM:dd HH:mm:ss");
+		tiffField = new ASCIIField(TiffTag.DATETIME.getValue(), formatter.format(new Date()) + '\0');
+		ifd.addField(tiffField);
+		
+		int xResolution = 72;
+		int yResolution = 72;
+		int resolutionUnit = ResolutionUnit.RESUNIT_INCH.getValue();
+		if(tiffOptions != null) {
+			xResolution = tiffOptions.getXResolution();
+			yResolution = tiffOptions.getYResolution();
+			resolutionUnit = tiffOptions.getResolutionUnit().getValue();
+		}
+		ifd.addField(new RationalField(TiffTag.X_RESOLUTION.getValue(), new int[]{xResolution, 1}));
+		ifd.addField(new RationalField(TiffTag.Y_RESOLUTION.getValue(), new int[]{yResolution, 1}));
+		ifd.addField(new ShortField(TiffTag.RESOLUTION_UNIT.getValue(), new short[]{(short)resolutionUnit}));
+	}
+	
+	// Compress the rows in the band as a strip or a row of tiles
+	private void flushBand() throws Exception {
+		if(tiled) {
+			compressTileRow(streamEncoder, band, 0, bytesPerRow, bandRows, tile, tileBytesPerRow, streamPredictor);
 		} else {
-			byte[] temp = ArrayUtils.packByteArray(inflated, imageWidth, imageWidth*(imageHeight/2+1), bitsPerPixel, inflated.length - imageWidth*(imageHeight/2+1));
-			deflateEncoder.encode(temp, 0, temp.length);
+			if(streamPredictor > 0)
+				applyPredictor(streamPredictor, band, bytesPerRow/streamPredictor, bandRows);
+			compressBlock(streamEncoder, band, 0, bytesPerRow, bandRows);
 		}
 		
-		deflateEncoder.finish();
-		
-		TiffField<?> tiffField = new ShortField(TiffTag.ROWS_PER_STRIP.getValue(), new short[]{(short)(imageHeight/2 + 1)});
-		ifd.addField(tiffField);
+		bandRows = 0;
 	}
 	
 	/**
@@ -246,14 +581,39 @@ public class TIFFWriter extends ImageWriter implements Updatable<Integer> {
 		return new IFD(ifd);
 	}
 	
+	// Offsets of the strips or tiles written so far, LONG8 for BigTIFF
+	private TiffField<?> getOffsetsField(boolean bigTiff) {
+		short tag = (tiled? TiffTag.TILE_OFFSETS : TiffTag.STRIP_OFFSETS).getValue();
+		
+		if(bigTiff)
+			return new Long8Field(tag, CollectionUtils.longListToLongArray(stripOffsets));
+		
+		int[] offsets = new int[stripOffsets.size()];
+		
+		for(int i = 0; i < offsets.length; i++) {
+			long offset = stripOffsets.get(i);
+			if(offset > 0xffffffffL)
+				throw new RuntimeException("Image data exceeds the 4GB limit of classic TIFF, use TIFFOptions.setBigTIFF(true)");
+			offsets[i] = (int)offset;
+		}
+		
+		return new LongField(tag, offsets);
+	}
+	
 	@Override
 	public ImageType getImageType() {
 		return ImageType.TIFF;
 	}
+	
+	// Rows per strip derived from the target strip size, 0 if there is no target
+	private int getRowsPerStrip(int bytesPerRow, int imageHeight) {
+		int targetStripBytes = (tiffOptions != null)? tiffOptions.getTargetStripBytes() : 0;
+		if(targetStripBytes <= 0) return 0;
+		
+		return Math.max(1, Math.min(imageHeight, targetStripBytes/bytesPerRow));
+	}
 		
 	private void jpegCompress(int[] pixels, int imageWidth, int imageHeight, boolean grayscale) throws Exception {
-		// This will make the compression more flexible by allowing different ROWS_PER_STRIP for different compression methods
-		int rowsPerStrip = imageHeight/2 + 1; // Two strips
 		int jpegQuality = 90;
 		boolean writeICCProfile = false;
 		PhotoMetric photoMetric = PhotoMetric.YCbCr;
@@ -313,23 +673,41 @@ public class TIFFWriter extends ImageWriter implements Updatable<Integer> {
 		// Add JPEG tables field
 		ifd.addField(new UndefinedField(TiffTag.JPEG_TABLES.getValue(), bout.toByteArray()));
 		
-		// This is amazing. We can actually keep track of how many bytes have been
-		// written to the underlying stream by JPGWriter
-		long startOffset = randomOS.getStreamPointer();
-		jpgWriter.write(Arrays.copyOfRange(pixels, 0, imageWidth*(imageHeight/2 + 1)), imageWidth, imageHeight/2 + 1, randomOS);
-		long finishOffset = randomOS.getStreamPointer();
-		
-		int totalOut = (int)(finishOffset - startOffset);
-		// Update STRIP_OFFSETS and STRIP_BYTE_COUNTS
-		update(totalOut);
-		
-		// Another strip
-		startOffset = finishOffset;
-		jpgWriter.write(Arrays.copyOfRange(pixels, imageWidth*(imageHeight/2 + 1), pixels.length), imageWidth, imageHeight - imageHeight/2 - 1, randomOS);
-		finishOffset = randomOS.getStreamPointer();
-		totalOut = (int)(finishOffset - startOffset);
-		// Update STRIP_OFFSETS and STRIP_BYTE_COUNTS
-		update(totalOut);		
+		if(tiled) {
+			int tileWidth = tiffOptions.getTileWidth();
+			int tileHeight = tiffOptions.getTileHeight();
+			int[] tile = new int[tileWidth*tileHeight];
+			
+			for(int y = 0; y < imageHeight; y += tileHeight) {
+				for(int x = 0; x < imageWidth; x += tileWidth) {
+					// Edge tiles are padded by repeating the last column and row
+					for(int i = 0, index = 0; i < tileHeight; i++) {
+						int offset = Math.min(y + i, imageHeight - 1)*imageWidth;
+						for(int j = 0; j < tileWidth; j++) {
+							tile[index++] = pixels[offset + Math.min(x + j, imageWidth - 1)];
+						}
+					}
+					jpegWrite(jpgWriter, tile, tileWidth, tileHeight);
+				}
+			}
+			
+			ifd.addField(new LongField(TiffTag.TILE_WIDTH.getValue(), new int[]{tileWidth}));
+			ifd.addField(new LongField(TiffTag.TILE_LENGTH.getValue(), new int[]{tileHeight}));
+		} else {
+			int rowsPerStrip = getRowsPerStrip(numOfSamples*imageWidth, imageHeight);
+			if(rowsPerStrip == 0)
+				rowsPerStrip = imageHeight/2 + 1; // Two strips
+			else // All strips but the last one must hold whole 8 row MCUs
+				rowsPerStrip = Math.min((rowsPerStrip + 7)&~7, imageHeight);
+			
+			for(int y = 0; y < imageHeight; y += rowsPerStrip) {
+				int rows = Math.min(rowsPerStrip, imageHeight - y);
+				jpegWrite(jpgWriter, Arrays.copyOfRange(pixels, y*imageWidth, (y + rows)*imageWidth), imageWidth, rows);
+			}
+			
+			// Add ROWS_PER_STRIP field
+			ifd.addField(new LongField(TiffTag.ROWS_PER_STRIP.getValue(), new int[]{rowsPerStrip}));
+		}
 		
 		if(photoMetric == PhotoMetric.SEPARATED && writeICCProfile) {
 			// Add ICC_Profile field
@@ -343,71 +721,21 @@ public class TIFFWriter extends ImageWriter implements Updatable<Integer> {
 		ifd.addField(new ShortField(TiffTag.PLANAR_CONFIGURATTION.getValue(), new short[]{(short)PlanarConfiguration.CONTIGUOUS.getValue()}));
 		// Add compression field to IFD
 		ifd.addField(new ShortField(TiffTag.COMPRESSION.getValue(), new short[]{(short)Compression.JPG.getValue()}));
-		// Add ROWS_PER_STRIP field
-		ifd.addField(new ShortField(TiffTag.ROWS_PER_STRIP.getValue(), new short[]{(short)rowsPerStrip}));
 	}
 	
-	private void lzwCompress(byte[] newPixels, int bitsPerPixel, int imageWidth, int imageHeight, int buffSize) throws Exception {
-		// LZW encode the image data
-		ImageEncoder encoder = new LZWTreeEncoder(randomOS, 8, buffSize, this); // 1K buffer
-		
-		encoder.initialize();
-		
-		if(bitsPerPixel == 8) {
-			encoder.encode(newPixels, 0, imageWidth*(imageHeight/2+1));
-		} else {
-			byte[] temp = ArrayUtils.packByteArray(newPixels, imageWidth, 0, bitsPerPixel, imageWidth*(imageHeight/2+1));
-			encoder.encode(temp, 0, temp.length);
-		}
-		
-		// This will call update
-		encoder.finish();
-		
-		// Another strip starts		
-		encoder.initialize();		
-		
-		if(bitsPerPixel == 8) {
-			encoder.encode(newPixels, imageWidth*(imageHeight/2+1), newPixels.length - imageWidth*(imageHeight/2+1));
-		} else {
-			byte[] temp = ArrayUtils.packByteArray(newPixels, imageWidth, imageWidth*(imageHeight/2+1), bitsPerPixel, newPixels.length - imageWidth*(imageHeight/2+1));
-			encoder.encode(temp, 0, temp.length);
-		}
-		
-		// This will call update when finish encoding
-		encoder.finish();
-	
-		TiffField<?> tiffField = new ShortField(TiffTag.ROWS_PER_STRIP.getValue(), new short[]{(short)(imageHeight/2 + 1)});
-		ifd.addField(tiffField);
-	}
-	
-	private void packbitsCompress(byte[] input, int bitsPerPixel, int imageWidth, int imageHeight) throws Exception {
-		///////////
-		int offset = 0;
-		int bytesOut = 0;
-		
-		int rowsPerStrip = (((imageHeight%2)==0)?(imageHeight/2):(imageHeight/2 + 1));
-		byte[] buffer = new byte[imageWidth + (imageWidth + 127)/128];
-		
-		for(int i = 0; i < imageHeight; i++) {			
-			byte[] temp = ArrayUtils.packByteArray(input, imageWidth, offset, bitsPerPixel, imageWidth);
-			int tempBytes = Packbits.packbits(temp, buffer);
-			offset += imageWidth;		
-		
-			randomOS.write(buffer, 0, tempBytes);
-			bytesOut += tempBytes;
-	
-			if(i == (rowsPerStrip - 1) || (i == imageHeight - 1)) {
-				update(bytesOut);		
-				bytesOut = 0;
-			}
-		}
-		
-		TiffField<?> tiffField = new ShortField(TiffTag.ROWS_PER_STRIP.getValue(), new short[]{(short)rowsPerStrip});
-		ifd.addField(tiffField);
+	// Write one strip or tile as a self-contained JPEG stream
+	private void jpegWrite(JPGWriter jpgWriter, int[] pixels, int width, int height) throws Exception {
+		// This is amazing. We can actually keep track of how many bytes have been
+		// written to the underlying stream by JPGWriter
+		long startOffset = randomOS.getStreamPointer();
+		jpgWriter.write(pixels, width, height, randomOS);
+		long finishOffset = randomOS.getStreamPointer();
+		// Update STRIP_OFFSETS and STRIP_BYTE_COUNTS
+		update((int)(finishOffset - startOffset));
 	}
 	
 	// Reset the writer to start write new page
-	private void reset(int offset) {
+	private void reset(long offset) {
 		stripOffset = offset;
 		stripOffsets.clear();
 		stripByteCounts.clear();
@@ -442,24 +770,13 @@ public class TIFFWriter extends ImageWriter implements Updatable<Integer> {
 		// Wrap OutputStream with a RandomAccessOutputStream	
 		randomOS = new FileCacheRandomAccessOutputStream(os);
 		
-		ByteOrder byteOrder = ByteOrder.BIG_ENDIAN;
-		
-		if(tiffOptions != null) {
-			byteOrder = tiffOptions.getByteOrder();
-		}
-		
-		if(byteOrder == ByteOrder.BIG_ENDIAN) {
-			randomOS.setWriteStrategy(WriteStrategyMM.getInstance());
-			randomOS.writeShort(IOUtils.BIG_ENDIAN);
-		} else {
-			randomOS.setWriteStrategy(WriteStrategyII.getInstance());
-			randomOS.writeShort(IOUtils.LITTLE_ENDIAN);
-		}			
+		boolean bigTiff = (tiffOptions != null && tiffOptions.isBigTIFF());
 		
-		randomOS.writeShort(0x2a); // TIFF identifier
+		writeHeader(bigTiff);
 		
 		// Single IFD only
 		ifd = new IFD();
+		ifd.setBigTIFF(bigTiff);
 		TiffField<?> tiffField = new LongField(TiffTag.NEW_SUBFILE_TYPE.getValue(), new int[]{0});
 		ifd.addField(tiffField);
 		tiffField = new LongField(TiffTag.IMAGE_WIDTH.getValue(), new int[]{imageWidth});
@@ -467,41 +784,17 @@ public class TIFFWriter extends ImageWriter implements Updatable<Integer> {
 		tiffField = new LongField(TiffTag.IMAGE_LENGTH.getValue(), new int[]{imageHeight});
 		ifd.addField(tiffField);	
 		
-		reset(FIRST_WRITE_OFFSET);
+		reset(bigTiff? BIGTIFF_FIRST_WRITE_OFFSET : FIRST_WRITE_OFFSET);
 		
 		randomOS.seek(stripOffset);
 		// Write image data
 		writePageData(param, pixels, imageWidth, imageHeight);		
 		
-		// We have done with the strips, now add a new STRIP_OFFSETS field.
-		tiffField = new LongField(TiffTag.STRIP_OFFSETS.getValue(), CollectionUtils.integerListToIntArray(stripOffsets));
-		ifd.addField(tiffField);
-		// and a new STRIP_BYTE_COUNTS field as well
-		tiffField = new LongField(TiffTag.STRIP_BYTE_COUNTS.getValue(), CollectionUtils.integerListToIntArray(stripByteCounts));
-		ifd.addField(tiffField);
-		// Add software field
-		String softWare = "ICAFE - https://github.com/dragon66/icafe\0";
-		tiffField = new ASCIIField(TiffTag.SOFTWARE.getValue(), softWare);
-		ifd.addField(tiffField);
-		DateFormat formatter = new SimpleDateFormat("yyyy:MM:dd HH:mm:ss");
-		tiffField = new ASCIIField(TiffTag.DATETIME.getValue(), formatter.format(new Date()) + '\0');
-		ifd.addField(tiffField);
-	
-		int xResolution = 72;
-		int yResolution = 72;
-		int resolutionUnit = ResolutionUnit.RESUNIT_INCH.getValue();
-		if(tiffOptions != null) {
-			xResolution = tiffOptions.getXResolution();
-			yResolution = tiffOptions.getYResolution();
-			resolutionUnit = tiffOptions.getResolutionUnit().getValue();
-		}
-		ifd.addField(new RationalField(TiffTag.X_RESOLUTION.getValue(), new int[]{xResolution, 1}));
-		ifd.addField(new RationalField(TiffTag.Y_RESOLUTION.getValue(), new int[]{yResolution, 1}));
-		ifd.addField(new ShortField(TiffTag.RESOLUTION_UNIT.getValue(), new short[]{(short)resolutionUnit}));		
+		// We have done with the strips or tiles, now add the remaining fields
+		finishIFD();
 				
-		randomOS.seek(OFFSET_TO_WRITE_FIRST_IFD_OFFSET);
 		// Write IFD offset
-		randomOS.writeInt(stripOffset);
+		writeIFDOffset(bigTiff);
 		// Write IFD
 		ifd.write(randomOS, stripOffset);
 		// Write to actual stream
@@ -542,13 +835,11 @@ public class TIFFWriter extends ImageWriter implements Updatable<Integer> {
 				break;
 			case LZW:
 			case DEFLATE:
-				compressSample(ArrayUtils.packByteArray(pixels, imageWidth, 0, 1, pixels.length), imageWidth, imageHeight, compression, 1024);
-				break;
 			case PACKBITS:
 			default:
-				compression = Compression.PACKBITS;
-				packbitsCompress(pixels, 1, imageWidth, imageHeight);
-				break;
+				// This will add the compression field
+				compressSample(ArrayUtils.packByteArray(pixels, imageWidth, 0, 1, pixels.length), 1, imageWidth, imageHeight, compression, 1024, 0);
+				return;
 		}
 		
 		tiffField = new ShortField(TiffTag.COMPRESSION.getValue(), new short[]{(short)compression.getValue()});
@@ -626,28 +917,17 @@ public class TIFFWriter extends ImageWriter implements Updatable<Integer> {
 			ifd.addField(new ShortField(TiffTag.BITS_PER_SAMPLE.getValue(), new short[]{(short)bitsPerPixel, (short)bitsPerPixel}));
 		}
 		
-		if(bitsPerPixel == 8) {
-			// Apply predictor if needed
-			if(applyPredictor) {
-				if(noAlpha) {
-					applyPredictor2(newPixels, imageWidth, imageHeight);
-				} else {
-					for(int i = imageHeight - 1, inc = 2*imageWidth, maxVal = inc - 2, minVal = 2; i >= 0; maxVal += inc, minVal += inc,  i--) {
-						for (int j = maxVal; j >= minVal; j-=2) {
-							newPixels[j] -= newPixels[j - 2];
-							newPixels[j+1] -= newPixels[j - 1];
-						}						
-					}
-				}
-				tiffField = new ShortField(TiffTag.PREDICTOR.getValue(), new short[]{2});
-				ifd.addField(tiffField);
-			}
+		// Predictor is applied by compressSample to each strip or tile
+		int predictorStride = 0;
+		
+		if(bitsPerPixel == 8 && applyPredictor) {
+			predictorStride = samplesPerPixel;
+			tiffField = new ShortField(TiffTag.PREDICTOR.getValue(), new short[]{2});
+			ifd.addField(tiffField);
 		}
 		
 		// Now compress the data
-		// We pass in samplesPerPixel*imageWidth instead of imageWidth to make PACKBITS work, LZW and DEFLATE don't
-		// use imageWidth parameter, so it doesn't matter what value is passed in
-		compressSample(newPixels, samplesPerPixel*imageWidth, imageHeight, compression, 1024);
+		compressSample(newPixels, samplesPerPixel*bitsPerPixel, imageWidth, imageHeight, compression, 1024, predictorStride);
 	}
 	
 	private void writePageData(ImageParam param, int[] pixels, int imageWidth, int imageHeight) throws Exception {
@@ -656,15 +936,17 @@ public class TIFFWriter extends ImageWriter implements Updatable<Integer> {
 		
 		if(tiffOptions != null) {
 			compression = tiffOptions.getTiffCompression();
-		}
+			tiled = tiffOptions.isTiled();
+		} else
+			tiled = false;
 		// Start writing image data				
 		if(param.getColorType() == ImageColorType.INDEXED) {
 			writeIndexed(pixels, imageWidth, imageHeight, compression);
 		} else if(param.getColorType() == ImageColorType.BILEVEL) {
 			if(param.isApplyDither()) {
 				byte[] bilevelPixels = null;
-				if(param.getDitherMethod() == DitherMethod.FLOYD_STEINBERG)
-					bilevelPixels = IMGUtils.rgb2bilevelDiffusionDither(pixels, imageWidth, imageHeight);
+				if(param.getDitherMethod().isErrorDiffusion())
+					bilevelPixels = IMGUtils.rgb2bilevelDiffusionDither(pixels, imageWidth, imageHeight, param.getDitherMethod());
 				else
 					bilevelPixels = IMGUtils.rgb2bilevelOrderedDither(pixels, imageWidth, imageHeight, param.getDitherMatrix());
 				writeBilevel(bilevelPixels, imageWidth, imageHeight, compression);
@@ -690,6 +972,43 @@ public class TIFFWriter extends ImageWriter implements Updatable<Integer> {
 		}
 	}
 	
+	// Write the TIFF or BigTIFF header except for the first IFD offset
+	private void writeHeader(boolean bigTiff) throws IOException {
+		ByteOrder byteOrder = ByteOrder.BIG_ENDIAN;
+		
+		if(tiffOptions != null) {
+			byteOrder = tiffOptions.getByteOrder();
+		}
+		
+		if(byteOrder == ByteOrder.BIG_ENDIAN) {
+			randomOS.setWriteStrategy(WriteStrategyMM.getInstance());
+			randomOS.writeShort(IOUtils.BIG_ENDIAN);
+		} else {
+			randomOS.setWriteStrategy(WriteStrategyII.getInstance());
+			randomOS.writeShort(IOUtils.LITTLE_ENDIAN);
+		}			
+		
+		if(bigTiff) {
+			randomOS.writeShort(0x2b); // BigTIFF identifier
+			randomOS.writeShort(8); // Byte size of offsets
+			randomOS.writeShort(0); // Always 0
+		} else
+			randomOS.writeShort(0x2a); // TIFF identifier
+	}
+	
+	// Point the header to the IFD which is going to be written at stripOffset
+	private void writeIFDOffset(boolean bigTiff) throws IOException {
+		if(bigTiff) {
+			randomOS.seek(OFFSET_TO_WRITE_FIRST_BIGTIFF_IFD_OFFSET);
+			randomOS.writeLong(stripOffset);
+		} else {
+			if(stripOffset > 0xffffffffL)
+				throw new RuntimeException("Image data exceeds the 4GB limit of classic TIFF, use TIFFOptions.setBigTIFF(true)");
+			randomOS.seek(OFFSET_TO_WRITE_FIRST_IFD_OFFSET);
+			randomOS.writeInt((int)stripOffset);
+		}
+	}
+	
 	private void writeIndexed(int[] pixels, int imageWidth, int imageHeight, Compression compression) throws Exception {		
 		// Check compression type
 		EnumSet<Compression> supportedCompressionTypes = Compression.forIndexed();
@@ -711,8 +1030,8 @@ public class TIFFWriter extends ImageWriter implements Updatable<Integer> {
 			if(bitsPerPixel <= 0 || bitsPerPixel > 8)
 				bitsPerPixel = 8;
 			if(param.isApplyDither()) {
-				if(param.getDitherMethod() == DitherMethod.FLOYD_STEINBERG)
-					colorInfo = IMGUtils.reduceColorsDiffusionDither(param.getQuantMethod(), pixels, imageWidth, imageHeight, bitsPerPixel, newPixels, colorPalette);
+				if(param.getDitherMethod().isErrorDiffusion())
+					colorInfo = IMGUtils.reduceColorsDiffusionDither(param.getQuantMethod(), param.getDitherMethod(), pixels, imageWidth, imageHeight, bitsPerPixel, newPixels, colorPalette, null);
 				else
 					colorInfo = IMGUtils.reduceColorsOrderedDither(param.getQuantMethod(), pixels, imageWidth, imageHeight, bitsPerPixel, newPixels, colorPalette, param.getDitherMatrix());				
 			} else
@@ -773,23 +1092,12 @@ public class TIFFWriter extends ImageWriter implements Updatable<Integer> {
 		tiffField = new ShortField(TiffTag.BITS_PER_SAMPLE.getValue(), new short[]{(short)bitsPerPixel});
 		ifd.addField(tiffField);
 		
-		// Now compress the data
-		if(compression == Compression.LZW) {				
-			lzwCompress(newPixels, bitsPerPixel, imageWidth, imageHeight, 4096);
-		} else if(compression == Compression.DEFLATE_ADOBE || compression == Compression.DEFLATE) {
-			byte buffer[] = new byte[4096];
-			int compressionLevel = 4;
-			if(tiffOptions != null) {
-				compressionLevel = tiffOptions.getDeflateCompressionLevel();
-			}	
-			deflateCompress(compressionLevel, newPixels, bitsPerPixel, imageWidth, imageHeight, buffer);				
-		} else {
-			compression = Compression.PACKBITS;
-			packbitsCompress(newPixels, bitsPerPixel, imageWidth, imageHeight);			
-		}
+		// Pack newPixels according to bitsPerPixel value
+		if(bitsPerPixel != 8)
+			newPixels = ArrayUtils.packByteArray(newPixels, imageWidth, 0, bitsPerPixel, newPixels.length);
 		
-		tiffField = new ShortField(TiffTag.COMPRESSION.getValue(), new short[]{(short)compression.getValue()});
-		ifd.addField(tiffField);		
+		// Now compress the data, this will add the compression field
+		compressSample(newPixels, bitsPerPixel, imageWidth, imageHeight, compression, 4096, 0);
 	}
 	
 	/**
@@ -805,14 +1113,37 @@ public class TIFFWriter extends ImageWriter implements Updatable<Integer> {
 	 * @return stream offset after writing this page
 	 * @throws Exception
 	 */
-	public int writePage(BufferedImage frame, int pageNumber, int maxNumber,
-			RandomAccessOutputStream randomOutStream, int offset) throws Exception {
+	public long writePage(BufferedImage frame, int pageNumber, int maxNumber,
+			RandomAccessOutputStream randomOutStream, long offset) throws Exception {
+		ImageOptions options = getImageParam().getImageOptions();
+		boolean bigTiff = (options instanceof TIFFOptions) && ((TIFFOptions)options).isBigTIFF();
+		
+		return writePage(frame, pageNumber, maxNumber, randomOutStream, offset, bigTiff);
+	}
+	
+	/**
+	 * Write a single page to TIFF stream as either a classic TIFF or a BigTIFF page.
+	 * All the pages of a TIFF must be of the same format.
+	 * 
+	 * @param frame input BufferedImage
+	 * 
+	 * @param randomOutStream RandomAccessOutputStream
+	 * @param offset stream offset to write this page
+	 * @param bigTiff true to write a BigTIFF page regardless of TIFFOptions
+	 * @return stream offset after writing this page
+	 * @throws Exception
+	 */
+	public long writePage(BufferedImage frame, int pageNumber, int maxNumber,
+			RandomAccessOutputStream randomOutStream, long offset, boolean bigTiff) throws Exception {
+		if(bigTiff && offset < BIGTIFF_FIRST_WRITE_OFFSET)
+			throw new IllegalArgumentException("BigTIFF page offset " + offset + " overlaps the BigTIFF header");
 		// Grab image pixels in ARGB format
 		int imageWidth = frame.getWidth();
 		int imageHeight = frame.getHeight();
 		int[] pixels = IMGUtils.getRGB(frame);//image.getRGB(0, 0, imageWidth, imageHeight, null, 0, imageWidth);
 		// One page of a multiple page TIFF
 		ifd = new IFD();
+		ifd.setBigTIFF(bigTiff);
 		TiffField<?> tiffField = new LongField(TiffTag.NEW_SUBFILE_TYPE.getValue(), new int[]{2});
 		ifd.addField(tiffField);
 		tiffField = new ShortField(TiffTag.PAGE_NUMBER.getValue(), new short[]{(short)pageNumber, (short)maxNumber});
@@ -838,35 +1169,53 @@ public class TIFFWriter extends ImageWriter implements Updatable<Integer> {
 		// Write image data
 		writePageData(param, pixels, imageWidth, imageHeight);
 		 
-		// We have done with the strips, now add a new STRIP_OFFSETS field.
-		tiffField = new LongField(TiffTag.STRIP_OFFSETS.getValue(), CollectionUtils.integerListToIntArray(stripOffsets));
-		ifd.addField(tiffField);
-		// and a new STRIP_BYTE_COUNTS field as well
-		tiffField = new LongField(TiffTag.STRIP_BYTE_COUNTS.getValue(), CollectionUtils.integerListToIntArray(stripByteCounts));
-		ifd.addField(tiffField);
-		// Add software field
-		String softWare = "ICAFE - https://github.com/dragon66/icafe\0";
-		tiffField = new ASCIIField(TiffTag.SOFTWARE.getValue(), softWare);
-		ifd.addField(tiffField);
-		DateFormat formatter = new SimpleDateFormat("yyyy:MM:dd HH:mm:ss");
-		tiffField = new ASCIIField(TiffTag.DATETIME.getValue(), formatter.format(new Date()) + '\0');
-		ifd.addField(tiffField);
-		int xResolution = 72;
-		int yResolution = 72;
-		int resolutionUnit = ResolutionUnit.RESUNIT_INCH.getValue();
-		if(tiffOptions != null) {
-			xResolution = tiffOptions.getXResolution();
-			yResolution = tiffOptions.getYResolution();
-			resolutionUnit = tiffOptions.getResolutionUnit().getValue();
-		}
-		ifd.addField(new RationalField(TiffTag.X_RESOLUTION.getValue(), new int[]{xResolution, 1}));
-		ifd.addField(new RationalField(TiffTag.Y_RESOLUTION.getValue(), new int[]{yResolution, 1}));
-		ifd.addField(new ShortField(TiffTag.RESOLUTION_UNIT.getValue(), new short[]{(short)resolutionUnit}));
+		// We have done with the strips or tiles, now add the remaining fields
+		finishIFD();
 		
 		// Write IFD
 		return ifd.write(randomOS, stripOffset);
 	}
 	
+	/**
+	 * Write rows of the page started by one of the beginPage methods.
+	 * 
+	 * @param pixels ARGB pixels of the rows, one image width per row
+	 * @param offset index of the first pixel of the first row
+	 * @param rows number of rows to write
+	 * @throws Exception
+	 */
+	public void writeRows(int[] pixels, int offset, int rows) throws Exception {
+		if(band == null)
+			throw new IllegalStateException("No page has been started");
+		if(rows < 0 || streamRows + rows > streamHeight)
+			throw new IllegalArgumentException("Number of rows " + rows + " is out of range: " + (streamHeight - streamRows) + " rows left");
+		if(offset < 0 || offset + rows*streamWidth > pixels.length)
+			throw new IllegalArgumentException("Pixel array is too short for " + rows + " rows");
+		
+		while(rows > 0) {
+			int len = Math.min(rows, bandHeight - bandRows);
+			convertRows(pixels, offset, len);
+			bandRows += len;
+			streamRows += len;
+			offset += len*streamWidth;
+			rows -= len;
+			if(bandRows == bandHeight || streamRows == streamHeight)
+				flushBand();
+		}
+	}
+	
+	/**
+	 * Write rows of the page started by one of the beginPage methods.
+	 * 
+	 * @param rows BufferedImage holding the rows, must be as wide as the page
+	 * @throws Exception
+	 */
+	public void writeRows(BufferedImage rows) throws Exception {
+		if(rows.getWidth() != streamWidth)
+			throw new IllegalArgumentException("Row width " + rows.getWidth() + " differs from page width " + streamWidth);
+		writeRows(IMGUtils.getRGB(rows), 0, rows.getHeight());
+	}
+	
 	private void writeTrueColor(int[] pixels, int imageWidth, int imageHeight, Compression compression) throws Exception {
 		// Check compression type
 		EnumSet<Compression> supportedCompressionTypes = Compression.forTrueColor();
@@ -942,14 +1291,11 @@ public class TIFFWriter extends ImageWriter implements Updatable<Integer> {
 		} else
 			throw new UnsupportedOperationException("Unsupported TiffPhotoMetric: " + photoMetric);
 				
-		if(applyPredictor) {
-			applyPredictor(samplesPerPixel, samples, imageWidth, imageHeight);
+		// Predictor is applied by compressSample to each strip or tile
+		if(applyPredictor)
 			ifd.addField(new ShortField(TiffTag.PREDICTOR.getValue(), new short[]{2}));
-		}
 		
-		// We pass in samplesPerPixel*imageWidth instead of imageWidth to make PACKBITS work, LZW and DEFLATE don't
-		// use imageWidth parameter, so it doesn't matter what value is passed in
-		compressSample(samples, samplesPerPixel*imageWidth, imageHeight, compression, 1024);
+		compressSample(samples, samplesPerPixel*8, imageWidth, imageHeight, compression, 1024, applyPredictor? samplesPerPixel : 0);
 		
 		ifd.addField(new ShortField(TiffTag.PLANAR_CONFIGURATTION.getValue(), new short[]{(short)PlanarConfiguration.CONTIGUOUS.getValue()}));
 		ifd.addField(new ShortField(TiffTag.PHOTOMETRIC_INTERPRETATION.getValue(), new short[]{(short)photoMetric.getValue()}));
@@ -967,9 +1313,9 @@ public class TIFFWriter extends ImageWriter implements Updatable<Integer> {
 			blues[i] = (byte)(pixels[i]&0xff);
 		}
 		
-		compressSample(applyPredictor2(reds, imageWidth, imageHeight), imageWidth, imageHeight, compression, 1024);
-		compressSample(applyPredictor2(greens, imageWidth, imageHeight), imageWidth, imageHeight, compression, 1024);
-		compressSample(applyPredictor2(blues, imageWidth, imageHeight), imageWidth, imageHeight, compression, 1024);
+		compressSample(reds, 8, imageWidth, imageHeight, compression, 1024, 1);
+		compressSample(greens, 8, imageWidth, imageHeight, compression, 1024, 1);
+		compressSample(blues, 8, imageWidth, imageHeight, compression, 1024, 1);
 		
 		tiffField = new ShortField(TiffTag.PLANAR_CONFIGURATTION.getValue(), new short[]{2});
 		ifd.addField(tiffField);
@@ -979,5 +1325,8 @@ public class TIFFWriter extends ImageWriter implements Updatable<Integer> {
 	// Offset where to write the value of the first IFD offset
 	public static final int OFFSET_TO_WRITE_FIRST_IFD_OFFSET = 0x04;
 	public static final int FIRST_WRITE_OFFSET = 0x08;
+	// BigTIFF header is 16 bytes long with an 8 byte first IFD offset
+	public static final int OFFSET_TO_WRITE_FIRST_BIGTIFF_IFD_OFFSET = 0x08;
+	public static final int BIGTIFF_FIRST_WRITE_OFFSET = 0x10;
 	public static final int STREAM_HEAD = 0x00;
 }
@@ -0,0 +1,206 @@
+/**
+ * COPYRIGHT (C) 2014-2019 WEN YU (YUWEN_66@YAHOO.COM) ALL RIGHTS RESERVED.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Any modifications to this file must keep this entire header intact.
+ */
+
+package com.icafe4j.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * RandomAccessOutputStream writing straight to a file.
+ * <p>
+ * Unlike {@link FileCacheRandomAccessOutputStream}, nothing is cached. Every
+ * write goes to its final position in the file, so there is no need to copy
+ * the content to another stream when done and seeking back only costs the
+ * bytes actually rewritten.
+ * <p>
+ * Consecutive writes are collected in a small buffer which goes to the file
+ * when the stream seeks elsewhere, is flushed or closed. This keeps the many
+ * single byte and short writes of the TIFF and other encoders from turning
+ * into one file seek and write each.
+ *
+ * @author agent
+ * @version 1.0 10/17/2026
+ */
+public class FileRandomAccessOutputStream extends RandomAccessOutputStream {
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private RandomAccessFile file;
+
+	/** Number of bytes in the file, including those still in the buffer. */
+	private long length = 0L;
+
+	/** Next byte to be written. */
+	private long pointer = 0L;
+
+	/** Bytes written but not yet in the file, they belong at pointer - count. */
+	private byte[] buf = new byte[BUFFER_SIZE];
+	private int count;
+
+	/**
+	 * Create a new stream truncating any existing content of the file.
+	 *
+	 * @param file output file
+	 * @throws IOException
+	 */
+	public FileRandomAccessOutputStream(File file) throws IOException {
+		super(null);
+		this.file = new RandomAccessFile(file, "rw");
+		this.file.setLength(0);
+	}
+
+	/**
+	 * Create a new stream appending to the current content of the file.
+	 * The stream pointer starts at the end of the file.
+	 *
+	 * @param file RandomAccessFile opened for writing
+	 * @throws IOException
+	 */
+	public FileRandomAccessOutputStream(RandomAccessFile file) throws IOException {
+		super(null);
+		this.file = file;
+		this.length = file.length();
+		this.pointer = length;
+	}
+
+	/**
+	 * Writes out the buffer, closes this stream and the underlying file.
+	 *
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public void close() throws IOException {
+		if(closed) return;
+		try {
+			flushBuffer();
+		} finally {
+			file.close();
+			closed = true;
+		}
+	}
+
+	public void shallowClose() throws IOException {
+		close();
+	}
+
+	@Override
+	public void disposeBefore(long pos) {
+		// Nothing is cached
+	}
+
+	/**
+	 * Writes out the buffered bytes to the file.
+	 *
+	 * @throws IOException if an I/O error occurs.
+	 */
+	@Override
+	public void flush() throws IOException {
+		ensureOpen();
+		flushBuffer();
+	}
+
+	private void flushBuffer() throws IOException {
+		if(count > 0) {
+			file.seek(pointer - count);
+			file.write(buf, 0, count);
+			count = 0;
+		}
+	}
+
+	// Everything written ends up in place in the file
+	@Override
+	public long getFlushPos() {
+		return length;
+	}
+
+	@Override
+	public long getLength() {
+		return length;
+	}
+
+	@Override
+	public long getStreamPointer() {
+		return pointer;
+	}
+
+	@Override
+	public void reset() { }
+
+	@Override
+	public void seek(long pos) throws IOException {
+		ensureOpen();
+		if (pos < 0) {
+			throw new IOException("Negtive seek position.");
+		}
+		if (pos != pointer) {
+			flushBuffer();
+			pointer = pos;
+		}
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		ensureOpen();
+		if (b == null) {
+			throw new NullPointerException("b == null!");
+		}
+
+		if ((off < 0) || (len < 0) || (off + len > b.length) || (off + len < 0)) {
+			throw new IndexOutOfBoundsException();
+		}
+
+		if (count + len > buf.length) {
+			flushBuffer();
+		}
+
+		if (len >= buf.length) {
+			// Too big to buffer, write it through
+			file.seek(pointer);
+			file.write(b, off, len);
+		} else {
+			System.arraycopy(b, off, buf, count, len);
+			count += len;
+		}
+
+		pointer += len;
+
+		if (pointer > length) {
+			length = pointer;
+		}
+	}
+
+	@Override
+	public void write(int value) throws IOException {
+		ensureOpen();
+		if (count == buf.length) {
+			flushBuffer();
+		}
+
+		buf[count++] = (byte)value;
+		pointer++;
+
+		if (pointer > length) {
+			length = pointer;
+		}
+	}
+
+	@Override
+	public void writeToStream(long len) throws IOException {
+		ensureOpen();
+		if (pointer + len > length) {
+			throw new IndexOutOfBoundsException("Argument out of file");
+		}
+		// The data is already in place
+		flushBuffer();
+		pointer += len;
+	}
+}
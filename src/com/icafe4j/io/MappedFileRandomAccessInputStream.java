@@ -0,0 +1,185 @@
+/**
+ * COPYRIGHT (C) 2014-2019 WEN YU (YUWEN_66@YAHOO.COM) ALL RIGHTS RESERVED.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Any modifications to this file must keep this entire header intact.
+ */
+
+package com.icafe4j.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Implements a random access input stream over a memory mapped local file.
+ * <p>
+ * Unlike {@link FileCacheRandomAccessInputStream}, the content is not copied to
+ * a cache file first. Seeking only moves the stream pointer and reads come
+ * straight from the mapped pages.
+ * <p>
+ * The file is mapped in segments of at most 1GB so files larger than 2GB
+ * such as BigTIFF can be read as well.
+ * <p>
+ * Java has no public way to unmap a file. Closing this stream closes the
+ * file channel and drops the segments, but the mapping itself stays until
+ * the segments are garbage collected. Until then the file remains in use,
+ * and on Windows it can not be deleted, renamed or written to.
+ *
+ * @author agent
+ * @version 1.0 10/17/2026
+ */
+public class MappedFileRandomAccessInputStream extends RandomAccessInputStream {
+
+	private static final int SEGMENT_SHIFT = 30;
+	private static final long SEGMENT_SIZE = 1L << SEGMENT_SHIFT;
+
+	private FileChannel channel;
+
+	/** The mapped segments of the file. */
+	private MappedByteBuffer[] segments;
+
+	/** Number of bytes in the file. */
+	private long length;
+
+	/** Next byte to be read. */
+	private long pointer = 0L;
+
+	/**
+	 * Maps the whole file read only.
+	 *
+	 * @param file input file
+	 * @throws IOException if the file cannot be opened or mapped
+	 */
+	public MappedFileRandomAccessInputStream(File file) throws IOException {
+		super(null);
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			channel = raf.getChannel();
+			length = channel.size();
+			int numOfSegments = (int)((length + SEGMENT_SIZE - 1) >>> SEGMENT_SHIFT);
+			segments = new MappedByteBuffer[numOfSegments];
+			for(int i = 0; i < numOfSegments; i++) {
+				long start = (long)i << SEGMENT_SHIFT;
+				segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT_SIZE, length - start));
+			}
+		} catch (IOException ex) {
+			raf.close();
+			throw ex;
+		}
+	}
+
+	public int available() throws IOException {
+		ensureOpen();
+		return (int)Math.min(Integer.MAX_VALUE, Math.max(0L, length - pointer));
+	}
+
+	/**
+	 * Closes this stream and the file channel. The mapped segments are released
+	 * to the garbage collector, which unmaps the file some time later.
+	 *
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public void close() throws IOException {
+		if(closed) return;
+		segments = null;
+		channel.close();
+		closed = true;
+	}
+
+	public long getLength() {
+		return length;
+	}
+
+	/**
+	 * Returns the current offset in this stream.
+	 *
+	 * @return  the offset from the beginning of the stream, in bytes,
+	 *          at which the next read occurs.
+	 */
+	public long getStreamPointer() {
+		return pointer;
+	}
+
+	public int read() throws IOException {
+		ensureOpen();
+		if(pointer >= length) return -1;
+		int value = segments[(int)(pointer >>> SEGMENT_SHIFT)].get((int)(pointer & (SEGMENT_SIZE - 1))) & 0xff;
+		pointer++;
+		return value;
+	}
+
+	public int read(byte[] b, int off, int len) throws IOException {
+		ensureOpen();
+		if (b == null) {
+			throw new NullPointerException();
+		}
+		if ((off < 0) || (len < 0) || (off + len > b.length)) {
+			throw new IndexOutOfBoundsException();
+		}
+		if (len == 0) {
+			return 0;
+		}
+		if (pointer >= length) {
+			return -1;
+		}
+
+		len = (int)Math.min(len, length - pointer);
+		int remaining = len;
+		while (remaining > 0) {
+			MappedByteBuffer segment = segments[(int)(pointer >>> SEGMENT_SHIFT)];
+			int segmentPos = (int)(pointer & (SEGMENT_SIZE - 1));
+			int count = Math.min(remaining, segment.limit() - segmentPos);
+			// Leave the position of the shared segment alone
+			ByteBuffer view = segment.duplicate();
+			view.position(segmentPos);
+			view.get(b, off, count);
+			off += count;
+			remaining -= count;
+			pointer += count;
+		}
+
+		return len;
+	}
+
+	/**
+	 * Sets the stream-pointer offset, measured from the beginning of this
+	 * file, at which the next read occurs. Seeking past the end of the file
+	 * is allowed, subsequent reads return EOF.
+	 *
+	 * @param  pos the offset position, measured in bytes from the
+	 *             beginning of the stream, at which to set the stream
+	 *                   pointer.
+	 * @exception  IOException  if <code>pos</code> is less than
+	 *                          <code>0</code> or if an I/O error occurs.
+	 */
+	public void seek(long pos) throws IOException {
+		ensureOpen();
+		if (pos < 0) {
+			throw new IOException("Negative seek position.");
+		}
+		pointer = pos;
+	}
+
+	/**
+	 * There is no separate underlying stream, same as {@link #close()}.
+	 */
+	public void shallowClose() throws IOException {
+		close();
+	}
+
+	public long skip(long n) throws IOException {
+		ensureOpen();
+		if (n <= 0) return 0;
+		long skipped = Math.min(n, Math.max(0L, length - pointer));
+		pointer += skipped;
+		return skipped;
+	}
+}
@@ -14,6 +14,7 @@
  *
  * Who   Date       Description
  * ====  =========  ==============================================================
+ * AG    17Oct2026  Added long8ArrayToString() for BigTIFF LONG8 fields
  * WY    03May2015  Added rationalToString()
  * WY    04Mar2015  Added toHexString()
  * WY    04Mar2015  Added generateMD5()
@@ -634,6 +635,46 @@ public class StringUtils {
 	    return longs.toString();	    
 	}
 	
+	/**
+	 * Convert an array of 64 bit values to a string representation
+	 * 
+	 * @param data an array of long
+	 * @param offset start position of the array to convert
+	 * @param length number of values to convert
+	 * @return a string representation of the long array
+	 */
+	public static String long8ArrayToString(long[] data, int offset, int length) {
+		if ( data == null ) {
+		      return null;
+		}
+			
+		if(data.length == 0) return "[]";
+	    
+	    if(offset < 0 || offset >= data.length)
+	    	throw new IllegalArgumentException("Offset out of array bound!");
+	    
+	    int endOffset = Math.min(offset + length, data.length);
+	    
+	    StringBuilder longs = new StringBuilder();	    
+	    longs.append("[");
+		    
+	    for (int i = offset; i < endOffset; i++) {
+			longs.append(data[i]);
+			longs.append(",");
+		}
+	    
+	    // Remove the last ","
+	    if(longs.length() > 1)
+	    	longs.deleteCharAt(longs.length()-1);
+	    
+	    if(endOffset < data.length)
+	    	longs.append(" ..."); // Partial output
+	    
+	    longs.append("]");
+	    
+	    return longs.toString();	    
+	}
+	
 	public static boolean parseBoolean(String s) {
 		return Boolean.parseBoolean(s);
 	}
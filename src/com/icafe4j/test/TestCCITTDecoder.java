@@ -0,0 +1,41 @@
+package com.icafe4j.test;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.file.Files;
+
+import com.icafe4j.image.reader.TIFFReader;
+
+/**
+ * Measure the decoding throughput of CCITT compressed bilevel TIFF images.
+ * The file is read into memory first so only the decoding is timed.
+ * <p>
+ * Usage: TestCCITTDecoder image.tif [runs]
+ */
+public class TestCCITTDecoder extends TestBase {
+
+	public static void main(String[] args) throws Exception {
+		new TestCCITTDecoder().test(args);
+	}
+
+	public void test(String ... args) throws Exception {
+		byte[] data = Files.readAllBytes(new File(args[0]).toPath());
+		int runs = (args.length > 1)? Integer.parseInt(args[1]) : 10;
+		long pixels = 0;
+		long best = Long.MAX_VALUE;
+
+		for(int i = 0; i < runs; i++) {
+			TIFFReader reader = new TIFFReader();
+			long t1 = System.nanoTime();
+			reader.read(new ByteArrayInputStream(data));
+			long t2 = System.nanoTime();
+			best = Math.min(best, t2 - t1);
+			pixels = 0;
+			for(BufferedImage frame : reader.getFrames())
+				pixels += (long)frame.getWidth()*frame.getHeight();
+		}
+
+		logger.info("{} pixels decoded in {}ms, {} megapixels per second", pixels, best/1000000, pixels*1000/Math.max(best, 1));
+	}
+}
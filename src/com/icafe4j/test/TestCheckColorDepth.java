@@ -0,0 +1,42 @@
+package com.icafe4j.test;
+
+import java.awt.image.BufferedImage;
+import java.io.FileInputStream;
+
+import com.icafe4j.image.util.IMGUtils;
+
+/**
+ * Measure how fast IMGUtils.checkColorDepth() indexes the pixels of an image,
+ * typically a screenshot with no more than 256 colors.
+ * <p>
+ * Usage: TestCheckColorDepth screenshot.png [runs]
+ */
+public class TestCheckColorDepth extends TestBase {
+
+	public static void main(String[] args) throws Exception {
+		new TestCheckColorDepth().test(args);
+	}
+
+	public void test(String ... args) throws Exception {
+		FileInputStream fin = new FileInputStream(args[0]);
+		BufferedImage img = javax.imageio.ImageIO.read(fin);
+		fin.close();
+		int runs = (args.length > 1)? Integer.parseInt(args[1]) : 15;
+		int width = img.getWidth();
+		int height = img.getHeight();
+		int[] pixels = img.getRGB(0, 0, width, height, null, 0, width);
+		byte[] newPixels = new byte[pixels.length];
+		int[] colorPalette = new int[256];
+		int[] colorInfo = null;
+		long best = Long.MAX_VALUE;
+
+		for(int i = 0; i < runs; i++) {
+			long t1 = System.nanoTime();
+			colorInfo = IMGUtils.checkColorDepth(pixels, newPixels, colorPalette);
+			long t2 = System.nanoTime();
+			best = Math.min(best, t2 - t1);
+		}
+
+		logger.info("{}x{} image, {} bits per pixel, checked in {}us", width, height, colorInfo[0], best/1000);
+	}
+}
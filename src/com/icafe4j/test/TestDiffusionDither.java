@@ -0,0 +1,254 @@
+package com.icafe4j.test;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.icafe4j.image.ImageColorType;
+import com.icafe4j.image.ImageIO;
+import com.icafe4j.image.ImageParam;
+import com.icafe4j.image.quant.DitherMethod;
+import com.icafe4j.image.util.DiffusionDither;
+import com.icafe4j.image.util.IMGUtils;
+import com.icafe4j.image.util.InverseColorMap;
+import com.icafe4j.image.writer.GIFWriter;
+import com.icafe4j.image.writer.ImageWriter;
+import com.icafe4j.image.writer.PNGWriter;
+
+/**
+ * Check the error diffusion dither: the single pass Floyd-Steinberg against the
+ * original IMGUtils implementation, the banded dither across thread pool sizes,
+ * and the Atkinson and Sierra Lite kernels through the writers.
+ * <p>
+ * Usage: TestDiffusionDither [image]
+ */
+public class TestDiffusionDither extends TestBase {
+
+	public static void main(String[] args) throws Exception {
+		new TestDiffusionDither().test(args);
+	}
+
+	public void test(String ... args) throws Exception {
+		BufferedImage img = (args.length > 0)? read(args[0]) : createImage(640, 600);
+		int width = img.getWidth();
+		int height = img.getHeight();
+		int[] pixels = img.getRGB(0, 0, width, height, null, 0, width);
+
+		// 6x6x6 color cube
+		int[] colorPalette = new int[216];
+		for(int i = 0; i < colorPalette.length; i++)
+			colorPalette[i] = ((i/36)*51<<16)|((i/6%6)*51<<8)|(i%6*51);
+		InverseColorMap invMap = InverseColorMap.getInstance(colorPalette.length, colorPalette);
+
+		// Single pass Floyd-Steinberg must not change
+		byte[] expected = new byte[pixels.length];
+		floydSteinberg(pixels, width, height, expected, invMap, colorPalette, 0);
+		byte[] serial = new byte[pixels.length];
+		IMGUtils.dither_FloydSteinberg(pixels, width, height, serial, invMap, colorPalette, 0);
+		check("Floyd-Steinberg single pass", mismatches(expected, serial));
+
+		byte[] gray = new byte[pixels.length];
+		byte[] mask = new byte[pixels.length];
+		for(int i = 0; i < pixels.length; i++) {
+			gray[i] = (byte)(((pixels[i]>>16&0xff) + (pixels[i]>>8&0xff) + (pixels[i]&0xff))/3);
+			mask[i] = 1;
+		}
+		byte[] expectedBW = gray.clone();
+		floydSteinberg(expectedBW, mask, width, height, 127);
+		byte[] bw = gray.clone();
+		IMGUtils.dither_FloydSteinberg(bw, mask, width, height, 127);
+		check("Floyd-Steinberg bilevel", mismatches(expectedBW, bw));
+
+		// Banded output must be the same for any number of threads
+		for(DitherMethod method : new DitherMethod[] {DitherMethod.FLOYD_STEINBERG, DitherMethod.ATKINSON, DitherMethod.SIERRA_LITE}) {
+			byte[] single = new byte[pixels.length];
+			DiffusionDither.dither(method, pixels, width, height, single, invMap, colorPalette, 0);
+			byte[] reference = null;
+			for(int threads : new int[] {1, 2, 4}) {
+				ExecutorService executor = Executors.newFixedThreadPool(threads);
+				byte[] banded = new byte[pixels.length];
+				try {
+					DiffusionDither.dither(method, pixels, width, height, banded, invMap, colorPalette, 0, executor);
+				} finally {
+					executor.shutdown();
+				}
+				if(reference == null) {
+					reference = banded;
+					logger.info("{} banded: {} of {} pixels differ from the single pass", method, mismatches(single, banded), pixels.length);
+				} else
+					check(method + " banded on " + threads + " threads", mismatches(reference, banded));
+			}
+		}
+
+		// The new kernels through the writers, with and without bands
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			for(DitherMethod method : new DitherMethod[] {DitherMethod.ATKINSON, DitherMethod.SIERRA_LITE}) {
+				ImageParam param = ImageParam.getBuilder().colorType(ImageColorType.INDEXED).applyDither(true).ditherMethod(method).build();
+				for(boolean bandedDither : new boolean[] {false, true}) {
+					PNGWriter pngWriter = new PNGWriter();
+					pngWriter.setExecutorService(executor);
+					pngWriter.setBandedDither(bandedDither);
+					GIFWriter gifWriter = new GIFWriter();
+					gifWriter.setExecutorService(executor);
+					gifWriter.setBandedDither(bandedDither);
+					for(ImageWriter writer : new ImageWriter[] {pngWriter, gifWriter}) {
+						writer.setImageParam(param);
+						ByteArrayOutputStream bout = new ByteArrayOutputStream();
+						writer.write(img, bout);
+						BufferedImage result = ImageIO.read(new ByteArrayInputStream(bout.toByteArray()));
+						logger.info("{} {} banded {}: {} bytes, mean error {}", method, writer.getImageType(), bandedDither, bout.size(),
+								meanDifference(pixels, result.getRGB(0, 0, width, height, null, 0, width)));
+					}
+				}
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private void check(String what, int mismatches) {
+		if(mismatches == 0)
+			logger.info("{}: identical", what);
+		else
+			logger.error("{}: {} pixels differ", what, mismatches);
+	}
+
+	// Smooth gradients with a little noise so that the errors spread over many rows
+	private static BufferedImage createImage(int width, int height) {
+		BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		Random random = new Random(17);
+
+		for(int y = 0; y < height; y++) {
+			for(int x = 0; x < width; x++) {
+				int red = x*255/width, green = y*255/height, blue = (x + y)*255/(width + height);
+				int noise = random.nextInt(9) - 4;
+				img.setRGB(x, y, (clamp(red + noise)<<16)|(clamp(green + noise)<<8)|clamp(blue + noise));
+			}
+		}
+
+		return img;
+	}
+
+	private static int clamp(int value) {
+		return (value < 0)? 0 : ((value > 255)? 255 : value);
+	}
+
+	private static double meanDifference(int[] pixels, int[] result) {
+		long sum = 0;
+
+		for(int i = 0; i < pixels.length; i++) {
+			for(int shift = 0; shift < 24; shift += 8)
+				sum += Math.abs(((pixels[i]>>shift)&0xff) - ((result[i]>>shift)&0xff));
+		}
+
+		return sum/(3.0*pixels.length);
+	}
+
+	private static int mismatches(byte[] a, byte[] b) {
+		int count = 0;
+
+		for(int i = 0; i < a.length; i++)
+			if(a[i] != b[i]) count++;
+
+		return count;
+	}
+
+	private static BufferedImage read(String fileName) throws Exception {
+		FileInputStream fin = new FileInputStream(fileName);
+		BufferedImage img = javax.imageio.ImageIO.read(fin);
+		fin.close();
+
+		return img;
+	}
+
+	// The Floyd-Steinberg dither IMGUtils had before DiffusionDither, kept as reference
+	private static void floydSteinberg(int[] rgbTriplet, int width, int height, byte[] newPixels, InverseColorMap invMap,
+			int[] colorPalette, int transparent_index) {
+		int index = 0, index1 = 0, err1, err2, err3, red, green, blue;
+		int[] tempErr;
+		int[] thisErrR = new int[width + 2];
+		int[] thisErrG = new int[width + 2];
+		int[] thisErrB = new int[width + 2];
+		int[] nextErrR = new int[width + 2];
+		int[] nextErrG = new int[width + 2];
+		int[] nextErrB = new int[width + 2];
+
+		for (int row = 0; row < height; row++) {
+			for (int col = 0; col < width; index1++, col++) {
+				if((rgbTriplet[index1] >>> 24) < 0x80) {
+					newPixels[index1] = (byte)transparent_index;
+					continue;
+				}
+				red = clamp(((rgbTriplet[index1]&0xff0000)>>>16) + thisErrR[col + 1]);
+				green = clamp(((rgbTriplet[index1]&0x00ff00)>>>8) + thisErrG[col + 1]);
+				blue = clamp((rgbTriplet[index1]&0x0000ff) + thisErrB[col + 1]);
+
+				index = invMap.getNearestColorIndex(red, green, blue);
+				newPixels[index1] = (byte)index;
+
+				err1 = red   - ((colorPalette[index]>>16)&0xff);
+				err2 = green - ((colorPalette[index]>>8)&0xff);
+				err3 = blue  -  (colorPalette[index]&0xff);
+
+				thisErrR[col + 2] += ((err1*7)/16);
+				nextErrR[col    ] += ((err1*3)/16);
+				nextErrR[col + 1] += ((err1*5)/16);
+				nextErrR[col + 2] += ((err1)/16);
+				thisErrG[col + 2] += ((err2*7)/16);
+				nextErrG[col    ] += ((err2*3)/16);
+				nextErrG[col + 1] += ((err2*5)/16);
+				nextErrG[col + 2] += ((err2)/16);
+				thisErrB[col + 2] += ((err3*7)/16);
+				nextErrB[col    ] += ((err3*3)/16);
+				nextErrB[col + 1] += ((err3*5)/16);
+				nextErrB[col + 2] += ((err3)/16);
+			}
+			tempErr = thisErrR; thisErrR = nextErrR; nextErrR = tempErr;
+			tempErr = thisErrG; thisErrG = nextErrG; nextErrG = tempErr;
+			tempErr = thisErrB; thisErrB = nextErrB; nextErrB = tempErr;
+			Arrays.fill(nextErrR, 0);
+			Arrays.fill(nextErrG, 0);
+			Arrays.fill(nextErrB, 0);
+		}
+	}
+
+	// The bilevel Floyd-Steinberg dither IMGUtils had before DiffusionDither, kept as reference
+	private static void floydSteinberg(byte[] gray, byte[] mask, int width, int height, int threshold) {
+		int[] tempErr;
+		int[] thisErr = new int[width + 2];
+		int[] nextErr = new int[width + 2];
+
+		for (int row = 0, index = 0; row < height; row++) {
+			for (int col = 0; col < width; index++, col++) {
+				if(mask[index] == 0) {
+					gray[index] = 0;
+					continue;
+				}
+				int intensity = clamp((gray[index]&0xff) + thisErr[col + 1]);
+				int newIntensity = 0;
+				if(intensity <= threshold) {
+					gray[index] = 1;
+					newIntensity = 0;
+				} else {
+					gray[index] = 0;
+					newIntensity = 255;
+				}
+				int err = intensity - newIntensity;
+				thisErr[col + 2] += ((err*7)/16);
+				nextErr[col    ] += ((err*3)/16);
+				nextErr[col + 1] += ((err*5)/16);
+				nextErr[col + 2] += ((err)/16);
+			}
+			tempErr = thisErr;
+			thisErr = nextErr;
+			nextErr = tempErr;
+			Arrays.fill(nextErr, 0);
+		}
+	}
+}
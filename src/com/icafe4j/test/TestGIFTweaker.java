@@ -1,20 +1,28 @@
 package com.icafe4j.test;
 
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import com.icafe4j.image.ImageIO;
 import com.icafe4j.image.ImageParam;
 import com.icafe4j.image.ImageType;
 import com.icafe4j.image.gif.GIFFrame;
 import com.icafe4j.image.gif.GIFTweaker;
+import com.icafe4j.image.options.GIFOptions;
 import com.icafe4j.image.options.JPGOptions;
 import com.icafe4j.image.options.PNGOptions;
 import com.icafe4j.image.options.TIFFOptions;
 import com.icafe4j.image.png.Filter;
+import com.icafe4j.image.reader.GIFReader;
 import com.icafe4j.image.tiff.TiffFieldEnum.Compression;
 import com.icafe4j.image.writer.GIFWriter;
 import com.icafe4j.image.writer.ImageWriter;
@@ -29,6 +37,33 @@ public class TestGIFTweaker extends TestBase {
 	}
 	
 	public void test(String ... args) throws Exception {
+		// Frames written one by one must all come back, including those the writer holds back
+		GIFReader reader = new GIFReader();
+		FileInputStream gif = new FileInputStream("images/PennGwyn.gif");
+		reader.read(gif);
+		gif.close();
+		List<BufferedImage> frames = reader.getFrames();
+		
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		
+		for(ExecutorService frameExecutor : new ExecutorService[] {null, executor}) {
+			for(boolean frameDelta : new boolean[] {false, true}) {
+				logger.info("Frame delta {}, executor {}: {} of {} frames read back", frameDelta, frameExecutor != null,
+						roundTrip(frames, frameDelta, frameExecutor), frames.size());
+				logger.info("Frame delta {}, executor {}: {} of 1 frame read back", frameDelta, frameExecutor != null,
+						roundTrip(frames.subList(0, 1), frameDelta, frameExecutor));
+				logger.info("Frame delta {}, executor {}, deprecated finishWrite: {} of {} frames read back", frameDelta, frameExecutor != null,
+						roundTrip(frames, frameDelta, frameExecutor, true), frames.size());
+			}
+		}
+		
+		executor.shutdown();
+		
+		// Frames too big to be sampled pixel by pixel but with few colors must still come back unchanged
+		logger.info("Shared palette, 2 frames of 1200x1000 with 200 colors: {} pixels differ", sharedPaletteMismatches(1200, 1000, 200));
+		
+		if(args.length == 0) return;
+		
 		FileOutputStream fout = new FileOutputStream("NEW.gif");
 		
 		File[] files = FileUtils.listFilesMatching(new File(args[1]), args[2]);
@@ -56,7 +91,7 @@ public class TestGIFTweaker extends TestBase {
 		for(int i = 0; i < images.length; i++)
 			GIFTweaker.writeFrame(animatedGIFWriter, fout, images[i]);
 		// wrap it up
-		GIFTweaker.finishWrite(fout);
+		GIFTweaker.finishWrite(animatedGIFWriter, fout);
 		// End of writing animated GIF frame by frame
 		long t2 = System.currentTimeMillis();
 		logger.info("time used: {}ms", (t2-t1));
@@ -103,4 +138,65 @@ public class TestGIFTweaker extends TestBase {
 		is.close();
 		fout.close();
 	}
+	
+	// Every color but the background is used by a single pixel only so that sampling misses most of them
+	private int sharedPaletteMismatches(int width, int height, int colors) throws Exception {
+		BufferedImage[] frames = new BufferedImage[2];
+		Random random = new Random(17);
+		
+		for(int i = 0; i < frames.length; i++) {
+			frames[i] = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+			for(int color = 1; color < colors; color++)
+				frames[i].setRGB(random.nextInt(width), random.nextInt(height), color*0x010305);
+		}
+		
+		GIFOptions options = new GIFOptions();
+		options.setApplySharedPalette(true);
+		GIFWriter writer = new GIFWriter();
+		writer.setImageParam(ImageParam.getBuilder().imageOptions(options).build());
+		ByteArrayOutputStream bout = new ByteArrayOutputStream();
+		writer.writeAnimatedGIF(frames, new int[] {100, 100}, bout);
+		
+		GIFReader reader = new GIFReader();
+		reader.read(new ByteArrayInputStream(bout.toByteArray()));
+		
+		int mismatches = 0;
+		
+		for(int i = 0; i < frames.length; i++) {
+			BufferedImage frame = reader.getFrame(i);
+			for(int y = 0; y < height; y++)
+				for(int x = 0; x < width; x++)
+					if((frame.getRGB(x, y)&0xffffff) != (frames[i].getRGB(x, y)&0xffffff)) mismatches++;
+		}
+		
+		return mismatches;
+	}
+	
+	private int roundTrip(List<BufferedImage> frames, boolean frameDelta, ExecutorService executor) throws Exception {
+		return roundTrip(frames, frameDelta, executor, false);
+	}
+	
+	// Write the frames one by one and count the frames read back
+	@SuppressWarnings("deprecation")
+	private int roundTrip(List<BufferedImage> frames, boolean frameDelta, ExecutorService executor, boolean deprecatedFinish) throws Exception {
+		GIFOptions options = new GIFOptions();
+		options.setApplyFrameDelta(frameDelta);
+		GIFWriter writer = new GIFWriter();
+		writer.setImageParam(ImageParam.getBuilder().imageOptions(options).build());
+		writer.setExecutorService(executor);
+		
+		ByteArrayOutputStream bout = new ByteArrayOutputStream();
+		GIFTweaker.prepareForWrite(writer, bout, 0, 0);
+		for(BufferedImage frame : frames)
+			GIFTweaker.writeFrame(writer, bout, frame, 100);
+		if(deprecatedFinish)
+			GIFTweaker.finishWrite(bout);
+		else
+			GIFTweaker.finishWrite(writer, bout);
+		
+		GIFReader reader = new GIFReader();
+		reader.read(new ByteArrayInputStream(bout.toByteArray()));
+		
+		return reader.getFrameCount();
+	}
 }
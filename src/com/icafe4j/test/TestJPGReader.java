@@ -0,0 +1,178 @@
+package com.icafe4j.test;
+
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.util.Arrays;
+
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import com.icafe4j.image.reader.JPGReader;
+import com.icafe4j.io.IOUtils;
+
+/**
+ * Check the reduced size native JPEG decoder and time it against the JDK ImageIO
+ * JPEG plugin with source subsampling and at full size.
+ * <p>
+ * Usage: TestJPGReader [image.jpg] [runs] [scale denominator]
+ */
+public class TestJPGReader extends TestBase {
+
+	private static final String[] REGRESSION_FILES = {"images/thumbnail_exif_t.jpg", "images/thumbnail_photoshop_t.jpg"};
+	private static final String CMYK_FILE = "images/cmyk-no-icc.jpg";
+	// Adobe transform 0, no APP14, restart interval, none, CMYK, none
+	private static final String[] REUSE_FILES = {"images/13.jpg", "images/05.jpg", "images/Fuji.jpg", "images/estacaosp.jpg", "images/cmyk.jpg", "images/05.jpg"};
+	private static final int WARM_UP_RUNS = 5;
+
+	public static void main(String[] args) throws Exception {
+		new TestJPGReader().test(args);
+	}
+
+	public void test(String ... args) throws Exception {
+		// These carry APP13 (and APP2) segments shorter than the identifier we look for
+		for(String file : REGRESSION_FILES) {
+			FileInputStream fin = new FileInputStream(file);
+			byte[] data = IOUtils.inputStreamToByteArray(fin);
+			fin.close();
+			BufferedImage img = scaledReader(2).read(new ByteArrayInputStream(data));
+			BufferedImage ref = shrink(javax.imageio.ImageIO.read(new ByteArrayInputStream(data)), 2);
+			logger.info("{}: {}x{}, mean difference from shrunk ImageIO: {}", file, img.getWidth(), img.getHeight(), meanDifference(img, ref));
+		}
+
+		// Full size images are read by ImageIO
+		FileInputStream fin = new FileInputStream(REUSE_FILES[1]);
+		byte[] data = IOUtils.inputStreamToByteArray(fin);
+		fin.close();
+		logger.info("{} at full size: {} pixels differ from ImageIO", REUSE_FILES[1],
+				mismatches(new JPGReader().read(new ByteArrayInputStream(data)), javax.imageio.ImageIO.read(new ByteArrayInputStream(data))));
+
+		// Four component images are handed over to ImageIO even by the native decoder
+		BufferedImage cmyk = scaledReader(2).read(new FileInputStream(CMYK_FILE));
+		logger.info("{}: {}x{}, color space type {}, CMYK is {}", CMYK_FILE, cmyk.getWidth(), cmyk.getHeight(),
+				cmyk.getColorModel().getColorSpace().getType(), ColorSpace.TYPE_CMYK);
+
+		// Nothing of one image may leak into the next one read by the same reader
+		JPGReader reused = scaledReader(2);
+		for(String file : REUSE_FILES) {
+			BufferedImage img = reused.read(new FileInputStream(file));
+			BufferedImage ref = scaledReader(2).read(new FileInputStream(file));
+			logger.info("{} read by a reused reader: {} pixels differ", file, mismatches(img, ref));
+		}
+
+		if(args.length == 0) return;
+
+		fin = new FileInputStream(new File(args[0]));
+		data = IOUtils.inputStreamToByteArray(fin);
+		fin.close();
+
+		int runs = (args.length > 1)? Integer.parseInt(args[1]) : 11;
+		int scale = (args.length > 2)? Integer.parseInt(args[2]) : 2;
+
+		BufferedImage img = scaledReader(scale).read(new ByteArrayInputStream(data));
+		logger.info("Native decoder at 1/{}: {}x{}, mean difference from shrunk ImageIO: {}", scale, img.getWidth(), img.getHeight(),
+				meanDifference(img, shrink(javax.imageio.ImageIO.read(new ByteArrayInputStream(data)), scale)));
+
+		long[] nativeTimes = new long[runs], subsampledTimes = new long[runs], fullTimes = new long[runs];
+
+		// Warm up all three before timing, then interleave the runs so they see the same machine state
+		for(int i = -WARM_UP_RUNS; i < runs; i++) {
+			long t1 = System.nanoTime();
+			scaledReader(scale).read(new ByteArrayInputStream(data));
+			long t2 = System.nanoTime();
+			readImageIO(data, scale);
+			long t3 = System.nanoTime();
+			javax.imageio.ImageIO.read(new ByteArrayInputStream(data));
+			long t4 = System.nanoTime();
+			if(i < 0) continue;
+			nativeTimes[i] = t2 - t1;
+			subsampledTimes[i] = t3 - t2;
+			fullTimes[i] = t4 - t3;
+		}
+
+		logger.info("Median of {} runs after {} warm up runs:", runs, WARM_UP_RUNS);
+		logger.info("Native decoder at 1/{}: {}ms", scale, median(nativeTimes));
+		logger.info("ImageIO subsampled by {}: {}ms", scale, median(subsampledTimes));
+		logger.info("ImageIO at full size: {}ms", median(fullTimes));
+	}
+
+	private static JPGReader scaledReader(int scale) {
+		JPGReader reader = new JPGReader();
+		reader.setScaleDenominator(scale);
+
+		return reader;
+	}
+
+	private static BufferedImage readImageIO(byte[] data, int scale) throws Exception {
+		ImageInputStream iis = javax.imageio.ImageIO.createImageInputStream(new ByteArrayInputStream(data));
+		ImageReader reader = javax.imageio.ImageIO.getImageReaders(iis).next();
+		try {
+			reader.setInput(iis);
+			ImageReadParam param = reader.getDefaultReadParam();
+			param.setSourceSubsampling(scale, scale, 0, 0);
+			return reader.read(0, param);
+		} finally {
+			reader.dispose();
+			iis.close();
+		}
+	}
+
+	// Average each scale x scale block, which is what the reduced inverse DCT approximates
+	private static BufferedImage shrink(BufferedImage img, int scale) {
+		int width = img.getWidth()/scale, height = img.getHeight()/scale;
+		BufferedImage shrunk = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+
+		for(int y = 0; y < height; y++) {
+			for(int x = 0; x < width; x++) {
+				int red = 0, green = 0, blue = 0;
+				for(int dy = 0; dy < scale; dy++) {
+					for(int dx = 0; dx < scale; dx++) {
+						int rgb = img.getRGB(x*scale + dx, y*scale + dy);
+						red += (rgb>>16)&0xff;
+						green += (rgb>>8)&0xff;
+						blue += rgb&0xff;
+					}
+				}
+				int n = scale*scale;
+				shrunk.setRGB(x, y, ((red/n)<<16)|((green/n)<<8)|(blue/n));
+			}
+		}
+
+		return shrunk;
+	}
+
+	private static double median(long[] nanos) {
+		long[] sorted = nanos.clone();
+		Arrays.sort(sorted);
+
+		return sorted[sorted.length/2]/1000000.0;
+	}
+
+	private static int mismatches(BufferedImage img, BufferedImage ref) {
+		int count = 0;
+
+		for(int y = 0; y < ref.getHeight(); y++)
+			for(int x = 0; x < ref.getWidth(); x++)
+				if(img.getRGB(x, y) != ref.getRGB(x, y)) count++;
+
+		return count;
+	}
+
+	// Chroma is up-sampled by replication, so expect some difference along color edges
+	private static double meanDifference(BufferedImage img, BufferedImage ref) {
+		long sum = 0;
+
+		for(int y = 0; y < ref.getHeight(); y++) {
+			for(int x = 0; x < ref.getWidth(); x++) {
+				int p = img.getRGB(x, y), q = ref.getRGB(x, y);
+				for(int shift = 0; shift < 24; shift += 8)
+					sum += Math.abs(((p>>shift)&0xff) - ((q>>shift)&0xff));
+			}
+		}
+
+		return sum/(3.0*ref.getWidth()*ref.getHeight());
+	}
+}
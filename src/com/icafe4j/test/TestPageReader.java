@@ -1,5 +1,6 @@
 package com.icafe4j.test;
 
+import java.awt.image.BufferedImage;
 import java.io.FileInputStream;
 import com.icafe4j.image.tiff.PageReader;
 
@@ -20,5 +21,17 @@ public class TestPageReader extends TestBase {
 		
 		logger.info("Total pages read {}", pageCounts);
 		fin.close();
+		
+		if(args.length > 1) { // Decode a single page on demand
+			fin = new FileInputStream(args[0]);
+			reader = new PageReader(1);
+			long t1 = System.currentTimeMillis();
+			int pages = reader.open(fin);
+			BufferedImage page = reader.getPage(Integer.parseInt(args[1]));
+			long t2 = System.currentTimeMillis();
+			logger.info("Page {} of {} pages ({}x{}) decoded in {}ms", args[1], pages, page.getWidth(), page.getHeight(), t2 - t1);
+			reader.close();
+			fin.close();
+		}
 	}
 }
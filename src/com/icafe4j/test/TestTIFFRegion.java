@@ -0,0 +1,131 @@
+package com.icafe4j.test;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilenameFilter;
+import java.util.Arrays;
+
+import com.icafe4j.image.reader.TIFFReader;
+import com.icafe4j.image.tiff.PageReader;
+
+/**
+ * Decode a region of a TIFF page and compare it with the same region of the full page.
+ * <p>
+ * Without arguments, regions along the edges and in the middle of the first page of
+ * every TIFF image under the images directory are compared with the full page.
+ * <p>
+ * Usage: TestTIFFRegion [image.tif x y width height [subsampling] [page]]
+ */
+public class TestTIFFRegion extends TestBase {
+
+	public static void main(String[] args) throws Exception {
+		new TestTIFFRegion().test(args);
+	}
+
+	public void test(String ... args) throws Exception {
+		if(args.length == 0) {
+			testSampleImages(new File("images"));
+			return;
+		}
+
+		Rectangle region = new Rectangle(Integer.parseInt(args[1]), Integer.parseInt(args[2]), Integer.parseInt(args[3]), Integer.parseInt(args[4]));
+		int subsampling = (args.length > 5)? Integer.parseInt(args[5]) : 1;
+		int page = (args.length > 6)? Integer.parseInt(args[6]) : 0;
+
+		FileInputStream fin = new FileInputStream(args[0]);
+		long t1 = System.currentTimeMillis();
+		BufferedImage image = new TIFFReader().readRegion(fin, page, region, subsampling);
+		long t2 = System.currentTimeMillis();
+		fin.close();
+
+		logger.info("Region {}x{} decoded in {}ms", image.getWidth(), image.getHeight(), t2 - t1);
+		logger.info("Pixels different from the full page: {}", mismatches(image, readPage(args[0], page), region, subsampling));
+	}
+
+	// Regions with odd offsets and sizes so subsampled chroma and partial strips or tiles are hit
+	private void testSampleImages(File dir) throws Exception {
+		String[] files = dir.list(new FilenameFilter() {
+			public boolean accept(File dir, String name) {
+				String lower = name.toLowerCase();
+				return lower.endsWith(".tif") || lower.endsWith(".tiff");
+			}
+		});
+		Arrays.sort(files);
+
+		int checked = 0, failures = 0;
+
+		for(String name : files) {
+			String file = new File(dir, name).getPath();
+			BufferedImage full;
+			try {
+				full = readPage(file, 0);
+			} catch(Exception ex) {
+				full = null;
+			}
+			if(full == null) continue; // Not decoded as a whole either
+			checked++;
+
+			int width = full.getWidth();
+			int height = full.getHeight();
+			Rectangle[] regions = {
+				new Rectangle(width/3|1, height/3|1, Math.max(1, width/3 + 1), Math.max(1, height/3 + 1)),
+				new Rectangle(1, 1, Math.max(1, width - 2), Math.max(1, height - 2)),
+				new Rectangle(Math.max(0, width - 7), Math.max(0, height - 5), 7, 5),
+				new Rectangle(0, Math.max(0, height - 3), width, 3)
+			};
+
+			for(Rectangle region : regions) {
+				for(int subsampling : new int[] {1, 3}) {
+					String what = name + " " + region.x + "," + region.y + " " + region.width + "x" + region.height + " /" + subsampling;
+					try {
+						FileInputStream fin = new FileInputStream(file);
+						BufferedImage image = new TIFFReader().readRegion(fin, 0, region, subsampling);
+						fin.close();
+						int mismatches = mismatches(image, full, region, subsampling);
+						if(mismatches != 0) {
+							logger.error("{}: {} pixels differ from the full page", what, mismatches);
+							failures++;
+						}
+					} catch(Exception ex) {
+						logger.error("{}: {}", what, ex.toString());
+						failures++;
+					}
+				}
+			}
+		}
+
+		logger.info("{} of {} TIFF images checked, {} regions differ from the full page", checked, files.length, failures);
+	}
+
+	private static BufferedImage readPage(String file, int page) throws Exception {
+		PageReader reader = new PageReader(0);
+		FileInputStream fin = new FileInputStream(file);
+		try {
+			return (page < reader.open(fin))? reader.getPage(page) : null;
+		} finally {
+			reader.close();
+			fin.close();
+		}
+	}
+
+	private static int mismatches(BufferedImage image, BufferedImage full, Rectangle region, int subsampling) {
+		region = region.intersection(new Rectangle(0, 0, full.getWidth(), full.getHeight()));
+		int expectedWidth = (region.width + subsampling - 1)/subsampling;
+		int expectedHeight = (region.height + subsampling - 1)/subsampling;
+		if(image.getWidth() != expectedWidth || image.getHeight() != expectedHeight)
+			return expectedWidth*expectedHeight;
+
+		int mismatches = 0;
+
+		for(int y = 0; y < image.getHeight(); y++) {
+			for(int x = 0; x < image.getWidth(); x++) {
+				if(image.getRGB(x, y) != full.getRGB(region.x + x*subsampling, region.y + y*subsampling))
+					mismatches++;
+			}
+		}
+
+		return mismatches;
+	}
+}
@@ -0,0 +1,84 @@
+package com.icafe4j.test;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+
+import com.icafe4j.image.ImageIO;
+import com.icafe4j.image.ImageParam;
+import com.icafe4j.image.options.TIFFOptions;
+import com.icafe4j.image.tiff.TiffFieldEnum.Compression;
+import com.icafe4j.image.writer.TIFFWriter;
+import com.icafe4j.io.FileRandomAccessOutputStream;
+
+/**
+ * Write an image as a TIFF a band of rows at a time.
+ * <p>
+ * Usage: TestTIFFRowBand [input output.tif [rows per band]]
+ */
+public class TestTIFFRowBand extends TestBase {
+
+	public static void main(String[] args) throws Exception {
+		new TestTIFFRowBand().test(args);
+	}
+
+	public void test(String ... args) throws Exception {
+		// Strips taller than 65535 rows don't fit in a SHORT ROWS_PER_STRIP
+		testTallImage(3, 70000);
+
+		if(args.length == 0) return;
+
+		BufferedImage image = ImageIO.read(new File(args[0]));
+		int rowsPerBand = (args.length > 2)? Integer.parseInt(args[2]) : 16;
+		int width = image.getWidth();
+		int height = image.getHeight();
+
+		TIFFOptions tiffOptions = new TIFFOptions();
+		tiffOptions.setTiffCompression(Compression.LZW);
+		tiffOptions.setApplyPredictor(true);
+
+		ImageParam.ImageParamBuilder builder = ImageParam.getBuilder();
+		TIFFWriter writer = new TIFFWriter(builder.imageOptions(tiffOptions).build());
+		FileRandomAccessOutputStream out = new FileRandomAccessOutputStream(new File(args[1]));
+
+		long t1 = System.currentTimeMillis();
+		writer.beginPage(out, width, height);
+		for(int y = 0; y < height; y += rowsPerBand) {
+			writer.writeRows(image.getSubimage(0, y, width, Math.min(rowsPerBand, height - y)));
+		}
+		writer.endPage();
+		long t2 = System.currentTimeMillis();
+		out.close();
+
+		logger.info("{}x{} image written in bands of {} rows in {}ms", width, height, rowsPerBand, t2 - t1);
+	}
+
+	// Write a tall image in bands as a single strip and read it back
+	private void testTallImage(int width, int height) throws Exception {
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		for(int y = 0; y < height; y++)
+			for(int x = 0; x < width; x++)
+				image.setRGB(x, y, (y*7919 + x*104729)&0xffffff);
+
+		TIFFOptions tiffOptions = new TIFFOptions();
+		tiffOptions.setTiffCompression(Compression.LZW);
+		tiffOptions.setTargetStripBytes(width*height*3);
+
+		File file = File.createTempFile("tall", ".tif");
+		file.deleteOnExit();
+		TIFFWriter writer = new TIFFWriter(ImageParam.getBuilder().imageOptions(tiffOptions).build());
+		FileRandomAccessOutputStream out = new FileRandomAccessOutputStream(file);
+		writer.beginPage(out, width, height);
+		for(int y = 0; y < height; y += 4096)
+			writer.writeRows(image.getSubimage(0, y, width, Math.min(4096, height - y)));
+		writer.endPage();
+		out.close();
+
+		BufferedImage result = javax.imageio.ImageIO.read(file);
+		int mismatches = 0;
+		for(int y = 0; y < height; y++)
+			for(int x = 0; x < width; x++)
+				if((result.getRGB(x, y)&0xffffff) != (image.getRGB(x, y)&0xffffff)) mismatches++;
+
+		logger.info("{}x{} image read back with {} mismatched pixels", width, height, mismatches);
+	}
+}
@@ -115,7 +115,7 @@ public class TestTIFFTweaker extends TestBase {
 					//TIFFTweaker.writeMultipageTIFF(rout, frames);
 					TIFFWriter writer = new TIFFWriter();
 					List<IFD> ifds = new ArrayList<IFD>();
-					int writeOffset = TIFFTweaker.prepareForWrite(rout, ByteOrder.LITTLE_ENDIAN);
+					long writeOffset = TIFFTweaker.prepareForWrite(rout, ByteOrder.LITTLE_ENDIAN);
 					for(int i = 0; i < frames.length; i++) {
 						writeOffset = TIFFTweaker.writePage(frames[i], rout, ifds, writeOffset, writer);
 					}
@@ -126,7 +126,7 @@ public class TestTIFFTweaker extends TestBase {
 					// The following lines test insert pages each at a time
 					long t1 = System.currentTimeMillis();
 					List<IFD> list = new ArrayList<IFD>();
-					int offset = TIFFTweaker.prepareForInsert(rin, rout, list);
+					long offset = TIFFTweaker.prepareForInsert(rin, rout, list);
 					int index = 3;
 					TIFFWriter writer = new TIFFWriter();
 					writer.setImageParam(frames[0].getFrameParam());
@@ -55,6 +55,17 @@ public class CollectionUtils {
 	    return ret;
 	}
 	
+	public static long[] longListToLongArray(List<Long> longs) {
+	    long[] ret = new long[longs.size()];
+	    Iterator<Long> iterator = longs.iterator();
+	    
+	    for (int i = 0; i < ret.length; i++) {
+	        ret[i] = iterator.next().longValue();
+	    }
+	    
+	    return ret;
+	}
+	
 	public static <T> LinkedList<T> reverseLinkedList(LinkedList<T> list) {
 
         if(list == null)
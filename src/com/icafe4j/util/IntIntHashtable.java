@@ -0,0 +1,164 @@
+/**
+ * COPYRIGHT (C) 2014-2019 WEN YU (YUWEN_66@YAHOO.COM) ALL RIGHTS RESERVED.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Any modifications to this file must keep this entire header intact.
+ */
+
+package com.icafe4j.util;
+
+import java.util.Arrays;
+
+/**
+ * A hash table mapping primitive integer keys to primitive integer values.
+ * <p>
+ * Unlike {@link IntHashtable}, nothing is boxed and no entry objects are created.
+ * Keys and values are kept next to each other in one array with open addressing
+ * and linear probing, so a lookup touches one cache line most of the time and
+ * allocates nothing. A zero key marks an empty slot, so key 0 itself is kept
+ * outside the array. The table size is a power of two and is doubled when it
+ * gets half full. Entries can not be removed individually.
+ *
+ * @author agent
+ * @version 1.0 10/17/2026
+ */
+public class IntIntHashtable {
+
+	private static final int DEFAULT_TABLE_SIZE = 256;
+
+	// Keys at even and values at odd indexes
+	private int[] table;
+	private int mask;
+	private int shift;
+	private int currentSize;
+	// Key 0 can't be told from an empty slot, so it is kept here
+	private boolean hasZeroKey;
+	private int zeroValue;
+
+	/**
+	 * Construct the hash table.
+	 */
+	public IntIntHashtable() {
+		this(DEFAULT_TABLE_SIZE);
+	}
+
+	/**
+	 * Construct the hash table.
+	 *
+	 * @param size the expected number of entries
+	 */
+	public IntIntHashtable(int size) {
+		if(size < 0)
+			throw new IllegalArgumentException("Invalid size: " + size);
+		int capacity = 4;
+		// Keep the table at most half full
+		while(capacity < 2*size && capacity < (1<<29))
+			capacity <<= 1;
+		allocate(capacity);
+	}
+
+	private void allocate(int capacity) {
+		table = new int[capacity*2];
+		mask = capacity - 1;
+		shift = 32 - Integer.numberOfTrailingZeros(capacity);
+	}
+
+	// Fibonacci hashing spreads keys which only differ in the low bits or high bits alike
+	private int hash(int key) {
+		return (key*0x9E3779B9)>>>shift;
+	}
+
+	/**
+	 * Remove all the entries.
+	 */
+	public void clear() {
+		Arrays.fill(table, 0);
+		hasZeroKey = false;
+		currentSize = 0;
+	}
+
+	/**
+	 * @param key the key to look for
+	 * @return true if the key is in the table
+	 */
+	public boolean contains(int key) {
+		if(key == 0)
+			return hasZeroKey;
+		for(int i = hash(key);; i = (i + 1)&mask) {
+			int k = table[i<<1];
+			if(k == key)
+				return true;
+			if(k == 0)
+				return false;
+		}
+	}
+
+	/**
+	 * Find the value for a key.
+	 *
+	 * @param key the key to look for
+	 * @param defaultValue the value to return if the key is not in the table
+	 * @return the value of the key or defaultValue if the key is not found
+	 */
+	public int get(int key, int defaultValue) {
+		if(key == 0)
+			return hasZeroKey? zeroValue : defaultValue;
+		for(int i = hash(key);; i = (i + 1)&mask) {
+			int k = table[i<<1];
+			if(k == key)
+				return table[(i<<1) + 1];
+			if(k == 0)
+				return defaultValue;
+		}
+	}
+
+	/**
+	 * Insert a key and its value, replacing the value if the key is already there.
+	 *
+	 * @param key the key to insert
+	 * @param value the value of the key
+	 */
+	public void put(int key, int value) {
+		if(key == 0) {
+			if(!hasZeroKey)
+				currentSize++;
+			hasZeroKey = true;
+			zeroValue = value;
+			return;
+		}
+		int i = hash(key);
+		for(int k; (k = table[i<<1]) != 0; i = (i + 1)&mask) {
+			if(k == key) {
+				table[(i<<1) + 1] = value;
+				return;
+			}
+		}
+		table[i<<1] = key;
+		table[(i<<1) + 1] = value;
+		if(++currentSize > table.length/4)
+			rehash();
+	}
+
+	private void rehash() {
+		int[] oldTable = table;
+
+		allocate(oldTable.length);
+		currentSize = hasZeroKey? 1 : 0;
+
+		for(int i = 0; i < oldTable.length; i += 2) {
+			if(oldTable[i] != 0)
+				put(oldTable[i], oldTable[i + 1]);
+		}
+	}
+
+	/**
+	 * @return the number of entries in the table
+	 */
+	public int size() {
+		return currentSize;
+	}
+}